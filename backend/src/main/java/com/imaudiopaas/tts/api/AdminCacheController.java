@@ -0,0 +1,52 @@
+package com.imaudiopaas.tts.api;
+
+import com.imaudiopaas.tts.api.dto.CacheStatsDto;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.service.cache.AudioCache;
+import com.imaudiopaas.tts.service.cache.DiskAudioCache;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/cache")
+@RequiredArgsConstructor
+public class AdminCacheController {
+
+    private final AudioCache audioCache;
+
+    @GetMapping
+    public CacheStatsDto getStats() {
+        CacheStatsDto.CacheStatsDtoBuilder stats = CacheStatsDto.builder()
+                .enabled(audioCache.isEnabled())
+                .entries(audioCache.getEntryCount())
+                .bytes(audioCache.getBytes())
+                .maxBytes(audioCache.getMaxBytes())
+                .hits((long) audioCache.getHits())
+                .misses((long) audioCache.getMisses())
+                .hitRatio(audioCache.getHitRatio())
+                .evictions((long) audioCache.getEvictions());
+        DiskAudioCache disk = audioCache.getDisk();
+        if (disk != null) {
+            stats.diskEnabled(true)
+                    .diskEntries(disk.getEntryCount())
+                    .diskBytes(disk.getBytes())
+                    .diskMaxBytes(disk.getMaxBytes())
+                    .diskHits((long) disk.getHits())
+                    .diskMisses((long) disk.getMisses());
+        }
+        return stats.build();
+    }
+
+    // Without parameters everything is purged; provider and voice (native voice id) narrow it down
+    @DeleteMapping
+    public Map<String, Integer> purge(
+            @RequestParam(required = false) ProviderType provider,
+            @RequestParam(required = false) String voice) {
+        return Map.of("purged", audioCache.purge(provider, voice));
+    }
+}
@@ -0,0 +1,43 @@
+package com.imaudiopaas.tts.api;
+
+import com.imaudiopaas.tts.api.dto.RoutingSnapshotDto;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshot;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshotService;
+import java.util.EnumMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/routing")
+@RequiredArgsConstructor
+public class AdminRoutingController {
+
+    private final RoutingSnapshotService snapshotService;
+
+    @GetMapping("/snapshot")
+    public RoutingSnapshotDto getSnapshot() {
+        return toDto(snapshotService.current());
+    }
+
+    // Picks up rows edited outside JPA (e.g. via the H2 console)
+    @PostMapping("/snapshot/refresh")
+    public RoutingSnapshotDto refreshSnapshot() {
+        return toDto(snapshotService.rebuild());
+    }
+
+    private RoutingSnapshotDto toDto(RoutingSnapshot snapshot) {
+        Map<ProviderType, Integer> counts = new EnumMap<>(ProviderType.class);
+        snapshot.getActiveConfigs().forEach((type, configs) -> counts.put(type, configs.size()));
+        return RoutingSnapshotDto.builder()
+                .version(snapshot.getVersion())
+                .builtAt(snapshot.getBuiltAt())
+                .voiceCount(snapshot.getVoiceCount())
+                .activeConfigCounts(counts)
+                .build();
+    }
+}
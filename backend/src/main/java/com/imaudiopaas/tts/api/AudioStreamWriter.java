@@ -0,0 +1,258 @@
+package com.imaudiopaas.tts.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.stream.BufferPool;
+import com.imaudiopaas.tts.service.cache.FileRegionInputStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes synthesized audio to the client. Three wire formats: a plain body, raw chunked audio
+ * flushed after every chunk the provider hands over, and OpenAI-style server-sent events
+ * carrying base64 audio deltas.
+ *
+ * <p>Bytes are copied through large buffers from a shared {@link BufferPool}, or handed to
+ * {@link java.nio.channels.FileChannel#transferTo} for disk cache hits. Writes are blocking, so
+ * a slow client holds back the reads from the provider (whose own pipe then pushes back
+ * upstream), and a stalled one is cut off by the connector's write timeout. The provider
+ * stream is always closed, also when the client goes away mid-body, which is what releases
+ * the upstream session or connection.
+ *
+ * <p>Metrics, tagged {@code mode=body|audio|sse}: {@code tts.stream.first_chunk} (request start
+ * to first flushed audio), {@code tts.stream.flush} (time spent in each flush),
+ * {@code tts.stream.chunk.bytes}, {@code tts.stream.throughput} (bytes/s over each response)
+ * and {@code tts.stream.responses} (also tagged {@code outcome=complete|client_abort|upstream_error}).
+ */
+@Slf4j
+@Component
+public class AudioStreamWriter {
+
+    static final String MODE_BODY = "body";
+    static final String MODE_AUDIO = "audio";
+    static final String MODE_SSE = "sse";
+    private static final byte[] SSE_DATA = "data: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SSE_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final BufferPool buffers;
+
+    public AudioStreamWriter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this(objectMapper, meterRegistry, 64 * 1024, 64);
+    }
+
+    @Autowired
+    public AudioStreamWriter(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.streaming.response-buffer-bytes:65536}") int bufferBytes,
+            @Value("${app.streaming.response-buffer-pool:64}") int pooledBuffers) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.buffers = new BufferPool(bufferBytes, pooledBuffers);
+    }
+
+    /**
+     * A complete response body, written on the calling thread and left to the container to
+     * flush. A client that disconnects mid-body is only logged, since nothing more can be sent;
+     * an upstream failure propagates so the connection is dropped.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request arrived.
+     */
+    public void body(TtsResponse response, OutputStream out, long startNanos) throws IOException {
+        Meters meters = new Meters(MODE_BODY, startNanos);
+        try (InputStream in = response.getAudioStream()) {
+            if (in instanceof FileRegionInputStream region) {
+                try {
+                    meters.count(region.transferTo(out));
+                } catch (IOException e) {
+                    throw new ClientAbortedException(e);
+                }
+            } else {
+                copy(in, out, meters, false);
+            }
+            meters.done("complete");
+        } catch (ClientAbortedException e) {
+            meters.done("client_abort");
+            log.debug("Client went away mid-body: {}", e.getCause().getMessage());
+        } catch (IOException e) {
+            meters.done("upstream_error");
+            throw e;
+        }
+    }
+
+    /**
+     * Raw audio bytes, flushed chunk by chunk. A failure after the first byte propagates, so the
+     * connection is dropped rather than the truncated body looking complete.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request arrived.
+     */
+    public StreamingResponseBody audio(TtsResponse response, long startNanos) {
+        return out -> {
+            Meters meters = new Meters(MODE_AUDIO, startNanos);
+            try (InputStream in = response.getAudioStream()) {
+                copy(in, out, meters, true);
+                meters.done("complete");
+            } catch (ClientAbortedException e) {
+                meters.done("client_abort");
+                log.debug("Client went away mid-stream: {}", e.getCause().getMessage());
+            } catch (IOException e) {
+                meters.done("upstream_error");
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Server-sent events: one {@code speech.audio.delta} per chunk with the audio base64
+     * encoded, then {@code speech.audio.done}. An upstream failure mid-stream ends the stream
+     * with an {@code error} event instead.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request arrived.
+     */
+    public StreamingResponseBody sse(TtsResponse response, long startNanos) {
+        return out -> {
+            Meters meters = new Meters(MODE_SSE, startNanos);
+            byte[] buffer = buffers.acquire();
+            try (InputStream in = response.getAudioStream()) {
+                int n;
+                while (true) {
+                    try {
+                        n = in.read(buffer);
+                    } catch (IOException e) {
+                        log.warn("Audio stream aborted: {}", e.getMessage());
+                        meters.done("upstream_error");
+                        writeEvent(out, Map.of("type", "error", "error", Map.of("message", String.valueOf(e.getMessage()))));
+                        out.flush();
+                        return;
+                    }
+                    if (n < 0) break;
+                    if (n == 0) continue;
+                    Map<String, Object> delta = new LinkedHashMap<>();
+                    delta.put("type", "speech.audio.delta");
+                    delta.put("audio", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer, n)));
+                    writeEvent(out, delta);
+                    meters.flush(out, n);
+                }
+                writeEvent(out, Map.of("type", "speech.audio.done"));
+                out.flush();
+                meters.done("complete");
+            } catch (IOException e) {
+                // Reads are handled above, so this is the client going away
+                meters.done("client_abort");
+                log.debug("Client went away mid-stream: {}", e.getMessage());
+            } finally {
+                buffers.release(buffer);
+            }
+        };
+    }
+
+    // Read failures propagate as they are; write failures are wrapped so callers can tell them apart
+    private void copy(InputStream in, OutputStream out, Meters meters, boolean flushEachChunk) throws IOException {
+        byte[] buffer = buffers.acquire();
+        try {
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                if (n == 0) continue;
+                try {
+                    out.write(buffer, 0, n);
+                    if (flushEachChunk) {
+                        meters.flush(out, n);
+                    } else {
+                        meters.count(n);
+                    }
+                } catch (IOException e) {
+                    throw new ClientAbortedException(e);
+                }
+            }
+            if (!flushEachChunk) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    throw new ClientAbortedException(e);
+                }
+            }
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    private void writeEvent(OutputStream out, Map<String, ?> event) throws IOException {
+        out.write(SSE_DATA);
+        out.write(objectMapper.writeValueAsBytes(event));
+        out.write(SSE_END);
+    }
+
+    private static final class ClientAbortedException extends IOException {
+        ClientAbortedException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private final class Meters {
+        final String mode;
+        final long startNanos;
+        final long writeStartNanos = System.nanoTime();
+        final Timer flushTimer;
+        final DistributionSummary chunkBytes;
+        final Timer firstChunk;
+        long bytes;
+        boolean first = true;
+        boolean done;
+
+        Meters(String mode, long startNanos) {
+            this.mode = mode;
+            this.startNanos = startNanos;
+            this.flushTimer = meterRegistry.timer("tts.stream.flush", "mode", mode);
+            this.chunkBytes = meterRegistry.summary("tts.stream.chunk.bytes", "mode", mode);
+            this.firstChunk = meterRegistry.timer("tts.stream.first_chunk", "mode", mode);
+        }
+
+        void flush(OutputStream out, int n) throws IOException {
+            long before = System.nanoTime();
+            out.flush();
+            long after = System.nanoTime();
+            flushTimer.record(after - before, TimeUnit.NANOSECONDS);
+            chunkBytes.record(n);
+            count(n);
+            if (first) {
+                first = false;
+                firstChunk.record(after - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void count(long n) {
+            bytes += n;
+        }
+
+        void done(String outcome) {
+            if (done) return;
+            done = true;
+            meterRegistry.counter("tts.stream.responses", "mode", mode, "outcome", outcome).increment();
+            long elapsedNanos = System.nanoTime() - writeStartNanos;
+            if (bytes > 0 && elapsedNanos > 0) {
+                DistributionSummary.builder("tts.stream.throughput")
+                        .baseUnit("bytes/s")
+                        .tag("mode", mode)
+                        .register(meterRegistry)
+                        .record(bytes * 1e9 / elapsedNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.imaudiopaas.tts.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Container for the results of a batch, written entry by entry as items finish and flushed
+ * after each, with {@value #MANIFEST} last: either a zip, or {@code multipart/mixed} where
+ * failed items also get a part of their own as they happen.
+ */
+abstract class BatchArchiveWriter {
+
+    static final String MANIFEST = "manifest.json";
+    // Positions in the batch an audio or error part stands for
+    static final String ITEMS_HEADER = "X-Batch-Items";
+
+    abstract void audio(String name, String contentType, List<Integer> indexes, byte[] audio) throws IOException;
+
+    abstract void error(List<Integer> indexes, byte[] json) throws IOException;
+
+    abstract void finish(byte[] manifest) throws IOException;
+
+    static BatchArchiveWriter zip(OutputStream out) {
+        return new Zip(out);
+    }
+
+    static BatchArchiveWriter multipart(OutputStream out, String boundary) {
+        return new Multipart(out, boundary);
+    }
+
+    private static final class Zip extends BatchArchiveWriter {
+
+        private final ZipOutputStream zip;
+
+        Zip(OutputStream out) {
+            this.zip = new ZipOutputStream(out);
+        }
+
+        // Stored, audio doesn't deflate; the CRC and size are known since the audio is complete
+        @Override
+        void audio(String name, String contentType, List<Integer> indexes, byte[] audio) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(audio);
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(audio.length);
+            entry.setCompressedSize(audio.length);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(audio);
+            zip.closeEntry();
+            zip.flush();
+        }
+
+        // Errors are only in the manifest
+        @Override
+        void error(List<Integer> indexes, byte[] json) {
+        }
+
+        @Override
+        void finish(byte[] manifest) throws IOException {
+            zip.putNextEntry(new ZipEntry(MANIFEST));
+            zip.write(manifest);
+            zip.closeEntry();
+            zip.finish();
+            zip.flush();
+        }
+    }
+
+    private static final class Multipart extends BatchArchiveWriter {
+
+        private final OutputStream out;
+        private final String boundary;
+
+        Multipart(OutputStream out, String boundary) {
+            this.out = out;
+            this.boundary = boundary;
+        }
+
+        @Override
+        void audio(String name, String contentType, List<Integer> indexes, byte[] audio) throws IOException {
+            part(contentType, name, indexes, audio);
+        }
+
+        @Override
+        void error(List<Integer> indexes, byte[] json) throws IOException {
+            part("application/json", null, indexes, json);
+        }
+
+        @Override
+        void finish(byte[] manifest) throws IOException {
+            part("application/json", MANIFEST, null, manifest);
+            out.write(ascii("--" + boundary + "--\r\n"));
+            out.flush();
+        }
+
+        private void part(String contentType, String fileName, List<Integer> indexes, byte[] body) throws IOException {
+            StringBuilder headers = new StringBuilder()
+                    .append("--").append(boundary).append("\r\n")
+                    .append("Content-Type: ").append(contentType).append("\r\n");
+            if (fileName != null) {
+                headers.append("Content-Disposition: attachment; filename=\"").append(fileName).append("\"\r\n");
+            }
+            if (indexes != null) {
+                headers.append(ITEMS_HEADER).append(": ")
+                        .append(indexes.stream().map(String::valueOf).collect(Collectors.joining(","))).append("\r\n");
+            }
+            headers.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+            out.write(ascii(headers.toString()));
+            out.write(body);
+            out.write(ascii("\r\n"));
+            out.flush();
+        }
+
+        private static byte[] ascii(String text) {
+            return text.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+}
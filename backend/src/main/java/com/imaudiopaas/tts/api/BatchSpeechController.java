@@ -0,0 +1,180 @@
+package com.imaudiopaas.tts.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.api.dto.BatchManifestDto;
+import com.imaudiopaas.tts.api.dto.BatchSpeechRequest;
+import com.imaudiopaas.tts.api.dto.OpenAiSpeechRequest;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.service.batch.BatchSynthesisService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Many speech requests in one call, for bulk work such as regenerating IVR prompts. Items run
+ * concurrently (see {@link BatchSynthesisService}) and the audio is streamed back as each one
+ * finishes, as a zip or {@code multipart/mixed}, ending with a manifest that maps every item to
+ * its file or error. A failed item is reported in the manifest; the response itself is 200
+ * unless the batch as a whole is unacceptable. Items are bulk work unless {@code X-Priority}
+ * says otherwise.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/v1/audio/batch")
+@RequiredArgsConstructor
+public class BatchSpeechController {
+
+    private static final String ZIP = "application/zip";
+    private static final String MULTIPART = "multipart/mixed";
+
+    private final BatchSynthesisService batchService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping
+    public ResponseEntity<StreamingResponseBody> synthesize(
+            @RequestBody BatchSpeechRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+            @RequestHeader(value = Priority.HEADER, required = false) String priorityHeader) {
+        boolean multipart = isMultipart(request.getOutput(), accept);
+        Priority priority = Priority.parse(priorityHeader, Priority.BULK);
+        List<OpenAiSpeechRequest> items = request.getItems() == null ? List.of() : request.getItems();
+        // Only authenticated callers get here, so no-cache is honored as is
+        boolean cacheBypass = OpenAiSpeechController.bypassesCache(cacheControl);
+        List<TtsRequest> requests = new ArrayList<>(items.size());
+        Map<Integer, String> rejected = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            String problem = validate(items.get(i));
+            if (problem == null) {
+                try {
+                    requests.add(OpenAiSpeechController.toDomainRequest(items.get(i), cacheBypass, false, priority));
+                    continue;
+                } catch (IllegalArgumentException e) {
+                    problem = e.getMessage();
+                }
+            }
+            rejected.put(i, problem);
+            requests.add(null);
+        }
+        BatchSynthesisService.Batch batch = batchService.start(requests);
+
+        if (multipart) {
+            String boundary = "batch-" + UUID.randomUUID();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(MULTIPART + "; boundary=" + boundary))
+                    .body(out -> write(batch, items.size(), rejected, BatchArchiveWriter.multipart(out, boundary)));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ZIP))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"speech.zip\"")
+                .body(out -> write(batch, items.size(), rejected, BatchArchiveWriter.zip(out)));
+    }
+
+    private String validate(OpenAiSpeechRequest item) {
+        if (item == null) {
+            return "Item is empty";
+        }
+        Set<ConstraintViolation<OpenAiSpeechRequest>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            return "Validation error: " + violations.iterator().next().getMessage();
+        }
+        return null;
+    }
+
+    private static boolean isMultipart(String output, String accept) {
+        if (output != null) {
+            return switch (output.toLowerCase(Locale.ROOT)) {
+                case "zip" -> false;
+                case "multipart" -> true;
+                default -> throw new IllegalArgumentException("Unsupported output: " + output);
+            };
+        }
+        return accept != null && accept.toLowerCase(Locale.ROOT).contains(MULTIPART);
+    }
+
+    // Runs on the async request thread; closing the batch on the way out stops it if the client went away
+    private void write(BatchSynthesisService.Batch batch, int total, Map<Integer, String> rejected,
+                       BatchArchiveWriter writer) throws IOException {
+        BatchManifestDto.Item[] entries = new BatchManifestDto.Item[total];
+        try (batch) {
+            for (Map.Entry<Integer, String> item : rejected.entrySet()) {
+                entries[item.getKey()] = failure(item.getKey(), null, 400, item.getValue());
+                writer.error(List.of(item.getKey()), objectMapper.writeValueAsBytes(entries[item.getKey()]));
+            }
+            BatchSynthesisService.Result result;
+            while ((result = batch.next()) != null) {
+                int first = result.indexes().get(0);
+                if (result.isSuccess()) {
+                    String file = fileName(first, result.format());
+                    writer.audio(file, result.contentType(), result.indexes(), result.audio());
+                    for (int index : result.indexes()) {
+                        entries[index] = BatchManifestDto.Item.builder()
+                                .index(index)
+                                .status("ok")
+                                .file(file)
+                                .contentType(result.contentType())
+                                .bytes((long) result.audio().length)
+                                .duplicateOf(index == first ? null : first)
+                                .build();
+                    }
+                } else {
+                    for (int index : result.indexes()) {
+                        entries[index] = failure(index, index == first ? null : first, result.status(), result.error());
+                    }
+                    writer.error(result.indexes(), objectMapper.writeValueAsBytes(entries[first]));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch interrupted");
+        }
+        int failed = (int) Arrays.stream(entries).filter(entry -> !"ok".equals(entry.getStatus())).count();
+        BatchManifestDto manifest = BatchManifestDto.builder()
+                .total(total)
+                .distinct(batch.size())
+                .succeeded(total - failed)
+                .failed(failed)
+                .items(Arrays.asList(entries))
+                .build();
+        writer.finish(objectMapper.writeValueAsBytes(manifest));
+        log.info("Batch of {} items done, {} failed", total, failed);
+    }
+
+    private static BatchManifestDto.Item failure(int index, Integer duplicateOf, int status, String message) {
+        return BatchManifestDto.Item.builder()
+                .index(index)
+                .status("error")
+                .duplicateOf(duplicateOf)
+                .errorStatus(status)
+                .error(message)
+                .build();
+    }
+
+    // Numbered after the first item asking for it, with the extension of what was actually returned
+    static String fileName(int index, AudioFormat format) {
+        return String.format(Locale.ROOT, "%04d.%s", index, format.name().toLowerCase(Locale.ROOT));
+    }
+}
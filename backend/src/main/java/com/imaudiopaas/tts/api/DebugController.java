@@ -1,13 +1,22 @@
 package com.imaudiopaas.tts.api;
 
+import com.imaudiopaas.tts.api.dto.ProviderStatusDto;
 import com.imaudiopaas.tts.model.ProviderConfig;
-import com.imaudiopaas.tts.repository.ProviderConfigRepository;
+import com.imaudiopaas.tts.service.routing.AdaptiveConcurrencyLimiter;
+import com.imaudiopaas.tts.service.routing.CircuitBreaker;
+import com.imaudiopaas.tts.service.routing.CircuitBreakerRegistry;
+import com.imaudiopaas.tts.service.routing.ConcurrencyLimiterRegistry;
+import com.imaudiopaas.tts.service.routing.EwmaLatencyTracker;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshot;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshotService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @RestController
@@ -15,15 +24,47 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DebugController {
 
-    private final ProviderConfigRepository providerConfigRepository;
+    private final RoutingSnapshotService snapshotService;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final ConcurrencyLimiterRegistry concurrencyLimits;
+    private final EwmaLatencyTracker ewmaLatencyTracker;
 
     @GetMapping("/providers")
     public List<String> getValidProviders() {
-        // Only return providers that have at least one active configuration
-        return providerConfigRepository.findByIsActiveTrue().stream()
-                .map(ProviderConfig::getProviderType)
-                .distinct()
-                .map(Enum::name)
+        // Only return providers that have at least one active configuration whose circuit is not open
+        return snapshotService.current().getActiveConfigs().entrySet().stream()
+                .filter(e -> e.getValue().stream()
+                        .anyMatch(c -> circuitBreakers.stateOf(c) != CircuitBreaker.State.OPEN))
+                .map(e -> e.getKey().name())
                 .collect(Collectors.toList());
     }
+
+    @GetMapping("/providers/status")
+    public List<ProviderStatusDto> getProviderStatus() {
+        return snapshotService.current().getActiveConfigs().values().stream()
+                .flatMap(List::stream)
+                .map(this::toStatus)
+                .collect(Collectors.toList());
+    }
+
+    private ProviderStatusDto toStatus(ProviderConfig config) {
+        UUID key = RoutingSnapshot.keyOf(config);
+        Optional<CircuitBreaker> breaker = circuitBreakers.find(key);
+        Optional<AdaptiveConcurrencyLimiter> limiter = concurrencyLimits.find(key);
+        double ttfb = ewmaLatencyTracker.timeToFirstBytePerChar(key);
+        double total = ewmaLatencyTracker.totalPerChar(key);
+        return ProviderStatusDto.builder()
+                .providerType(config.getProviderType())
+                .configId(config.getId())
+                .configName(config.getName())
+                .circuitState(circuitBreakers.stateOf(config).name())
+                .failureRate(breaker.map(CircuitBreaker::getFailureRate).orElse(0.0))
+                .slowCallRate(breaker.map(CircuitBreaker::getSlowCallRate).orElse(0.0))
+                .concurrencyLimit(limiter.map(AdaptiveConcurrencyLimiter::getLimit).orElse(null))
+                .inFlight(limiter.map(AdaptiveConcurrencyLimiter::getInFlight).orElse(null))
+                .queueDepth(limiter.map(AdaptiveConcurrencyLimiter::getQueueDepth).orElse(null))
+                .ttfbMsPerChar(ttfb < 0 ? null : ttfb)
+                .totalMsPerChar(total < 0 ? null : total)
+                .build();
+    }
 }
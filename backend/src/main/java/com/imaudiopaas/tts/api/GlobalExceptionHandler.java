@@ -1,7 +1,10 @@
 package com.imaudiopaas.tts.api;
 
+import com.imaudiopaas.tts.core.stream.AudioPipe;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
 import com.imaudiopaas.tts.exception.TtsException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -23,6 +26,27 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleConcurrencyLimit(ConcurrencyLimitExceededException ex) {
+        log.warn("Rejected by concurrency limit: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .message(ex.getMessage())
+                .timestamp(System.currentTimeMillis())
+                .build();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    // Audio was already on the wire, so no error body can follow. Rethrowing lets the container
+    // drop the connection instead of ending the chunked response, so the client sees the truncation.
+    @ExceptionHandler(AudioPipe.UpstreamFailedException.class)
+    public void handleUpstreamFailedMidStream(AudioPipe.UpstreamFailedException ex) throws AudioPipe.UpstreamFailedException {
+        log.warn("Audio stream aborted: {}", ex.getMessage());
+        throw ex;
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgument(IllegalArgumentException ex) {
         log.warn("Illegal Argument: {}", ex.getMessage());
@@ -1,20 +1,31 @@
 package com.imaudiopaas.tts.api;
 
 import com.imaudiopaas.tts.api.dto.OpenAiSpeechRequest;
+import com.imaudiopaas.tts.core.codec.AudioIndex;
 import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.Priority;
 import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.service.ProviderRoutingService;
+import com.imaudiopaas.tts.service.cache.FileRegionInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -22,38 +33,315 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class OpenAiSpeechController {
 
+    // Tomcat's sendfile request attributes
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Duration in seconds, for players that can't work it out from a partial body
+    private static final String CONTENT_DURATION = "X-Content-Duration";
+
     private final ProviderRoutingService routingService;
+    private final AudioStreamWriter audioStreamWriter;
+
+    // Returns Object so that Spring MVC picks the handler from the runtime value: a
+    // StreamingResponseBody (written asynchronously, chunk by chunk), or null once the plain
+    // body has been written to the response directly
+    @PostMapping(produces = {"audio/mpeg", MediaType.TEXT_EVENT_STREAM_VALUE}) // Default, but overridden by response
+    public Object generateSpeech(
+            @Valid @RequestBody OpenAiSpeechRequest request,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) throws IOException {
+        long startNanos = System.nanoTime();
+        String streamFormat = streamFormat(request);
+
+        // Execute
+        TtsResponse response = routingService.routeAndSynthesize(toDomainRequest(request,
+                bypassesCache(cacheControl, httpRequest), streamFormat != null, priorityOf(httpRequest)));
+
+        if (AudioStreamWriter.MODE_SSE.equals(streamFormat)) {
+            httpResponse.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+            httpResponse.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            return audioStreamWriter.sse(response, startNanos);
+        }
+        if (streamFormat != null) {
+            // Always chunked, even when the length happens to be known
+            httpResponse.setContentType(response.getContentType());
+            httpResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(request));
+            return audioStreamWriter.audio(response, startNanos);
+        }
+
+        httpResponse.setContentType(response.getContentType());
+        httpResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(request));
+        if (response.getContentLength() > 0) {
+            httpResponse.setContentLengthLong(response.getContentLength());
+        } // Chunked if unknown
+
+        // Audio from the disk cache goes out with sendfile when the connector supports it
+        if (response.getAudioStream() instanceof FileRegionInputStream region && useSendfile(httpRequest, region)) {
+            return null;
+        }
+        audioStreamWriter.body(response, httpResponse.getOutputStream(), startNanos);
+        return null;
+    }
+
+    /**
+     * The same speech as a plain GET, so that browsers, {@code <audio>} elements and CDNs can
+     * cache it and seek in it. Audio served from the gateway's cache carries its content hash as
+     * a strong ETag, answers {@code If-None-Match} with 304, and honors a single byte
+     * {@code Range} (206, or 416 past the end) unless an {@code If-Range} no longer matches.
+     * {@code t} starts MP3 or PCM at the frame its {@link AudioIndex} has for that second, as a
+     * representation of its own. Freshly synthesized audio is sent whole, without a validator;
+     * it is cached for the next request.
+     */
+    @GetMapping
+    public void getSpeech(
+            @RequestParam String input,
+            @RequestParam String voice,
+            @RequestParam(defaultValue = "tts-1") String model,
+            @RequestParam(name = "response_format", defaultValue = "mp3") String responseFormat,
+            @RequestParam(required = false) Float speed,
+            @RequestParam(name = "sample_rate", required = false) Integer sampleRate,
+            @RequestParam(name = "t", required = false) Double startSeconds,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) throws IOException {
+        long startNanos = System.nanoTime();
+        if (input.isBlank() || voice.isBlank()) {
+            throw new IllegalArgumentException("input and voice are required");
+        }
+        OpenAiSpeechRequest request = new OpenAiSpeechRequest();
+        request.setInput(input);
+        request.setVoice(voice);
+        request.setModel(model);
+        request.setResponseFormat(responseFormat);
+        request.setSpeed(speed);
+        request.setSampleRate(sampleRate);
+
+        TtsResponse response = routingService.routeAndSynthesize(toDomainRequest(request,
+                bypassesCache(cacheControl, httpRequest), false, priorityOf(httpRequest)));
+        httpResponse.setContentType(response.getContentType());
+        httpResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"speech." + responseFormat + "\"");
+        // Stored, but revalidated with the ETag before reuse
+        httpResponse.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        AudioIndex index = response.getIndex();
+        long length = response.getContentLength();
+        if (index == null || length <= 0) {
+            httpResponse.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+            if (length > 0) {
+                httpResponse.setContentLengthLong(length);
+            }
+            audioStreamWriter.body(response, httpResponse.getOutputStream(), startNanos);
+            return;
+        }
+
+        long base = seekOffset(index, response.getFormat(), startSeconds);
+        String etag = base == 0 ? index.getEtag() : etagAt(index, base);
+        httpResponse.setHeader(HttpHeaders.ETAG, etag);
+        httpResponse.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (base == 0 && index.getDurationMs() > 0) {
+            httpResponse.setHeader(CONTENT_DURATION, String.format(Locale.ROOT, "%.3f", index.getDurationMs() / 1000.0));
+        }
+        if (matchesAny(ifNoneMatch, etag)) {
+            response.getAudioStream().close();
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long total = length - base;
+        ByteRange byteRange = ifRange == null || ifRange.trim().equals(etag) ? ByteRange.parse(range, total) : null;
+        if (byteRange != null && !byteRange.isSatisfiable()) {
+            response.getAudioStream().close();
+            httpResponse.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            httpResponse.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + total);
+            return;
+        }
+        long from = byteRange == null ? 0 : byteRange.first();
+        long count = byteRange == null ? total : byteRange.last() - byteRange.first() + 1;
+        if (byteRange != null) {
+            httpResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            httpResponse.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + byteRange.first() + "-" + byteRange.last() + "/" + total);
+        }
+        response.setAudioStream(slice(response.getAudioStream(), base + from, count));
+        response.setContentLength(count);
+        httpResponse.setContentLengthLong(count);
+
+        if (response.getAudioStream() instanceof FileRegionInputStream region && useSendfile(httpRequest, region)) {
+            return;
+        }
+        audioStreamWriter.body(response, httpResponse.getOutputStream(), startNanos);
+    }
 
-    @PostMapping(produces = "audio/mpeg") // Default, but overridden by response
-    public ResponseEntity<Resource> generateSpeech(@Valid @RequestBody OpenAiSpeechRequest request) {
-        
-        // Map DTO to Domain Request
-        TtsRequest domainRequest = TtsRequest.builder()
+    static TtsRequest toDomainRequest(OpenAiSpeechRequest request, boolean cacheBypass, boolean stream,
+                                      Priority priority) {
+        return TtsRequest.builder()
                 .text(request.getInput())
                 .model(request.getModel())
                 .voiceId(request.getVoice())
                 .speed(request.getSpeed() != null ? request.getSpeed() : 1.0f)
                 .format(mapFormat(request.getResponseFormat()))
+                .sampleRate(request.getSampleRate())
+                .cacheBypass(cacheBypass)
+                .stream(stream)
+                .priority(priority)
                 .build();
+    }
 
-        // Execute
-        TtsResponse response = routingService.routeAndSynthesize(domainRequest);
+    // Someone is listening for this one, unless the caller says otherwise
+    private static Priority priorityOf(HttpServletRequest httpRequest) {
+        return Priority.parse(httpRequest.getHeader(Priority.HEADER), Priority.INTERACTIVE);
+    }
+
+    // Byte offset for ?t=: WAV can't start mid-data without a header of its own, so it is sent whole
+    private static long seekOffset(AudioIndex index, AudioFormat format, Double startSeconds) {
+        if (startSeconds == null || !(startSeconds > 0) || format == AudioFormat.WAV || !index.isSeekable()) {
+            return 0;
+        }
+        return index.offsetAt((long) (startSeconds * 1000));
+    }
 
-        // Build Response
-        InputStreamResource resource = new InputStreamResource(response.getAudioStream());
+    // A seeked body is a different representation, so it needs its own tag
+    private static String etagAt(AudioIndex index, long offset) {
+        String etag = index.getEtag();
+        return etag.substring(0, etag.length() - 1) + "-" + offset + '"';
+    }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(response.getContentType()))
-                .contentLength(response.getContentLength() > 0 ? response.getContentLength() : -1) // Chunked if unknown
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"speech." + request.getResponseFormat() + "\"")
-                .body(resource);
+    // If-None-Match compares weakly: W/ prefixes are ignored
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // Skip to offset and stop after count bytes; disk cache regions are narrowed instead, so
+    // they still go out with sendfile
+    private static InputStream slice(InputStream in, long offset, long count) throws IOException {
+        if (in instanceof FileRegionInputStream region) {
+            return region.region(offset, count);
+        }
+        in.skipNBytes(offset);
+        return new BoundedInputStream(in, count);
+    }
+
+    private static String contentDisposition(OpenAiSpeechRequest request) {
+        return "attachment; filename=\"speech." + request.getResponseFormat() + "\"";
+    }
+
+    // Null for a plain (non-streaming) response
+    private String streamFormat(OpenAiSpeechRequest request) {
+        String format = request.getStreamFormat();
+        if (format == null) {
+            return Boolean.TRUE.equals(request.getStream()) ? AudioStreamWriter.MODE_AUDIO : null;
+        }
+        format = format.toLowerCase();
+        if (!format.equals(AudioStreamWriter.MODE_AUDIO) && !format.equals(AudioStreamWriter.MODE_SSE)) {
+            throw new IllegalArgumentException("Unsupported stream_format: " + request.getStreamFormat());
+        }
+        return format;
+    }
+
+    private boolean useSendfile(HttpServletRequest httpRequest, FileRegionInputStream region) {
+        if (!Boolean.TRUE.equals(httpRequest.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        httpRequest.setAttribute(SENDFILE_FILENAME, region.getPath().toAbsolutePath().toString());
+        httpRequest.setAttribute(SENDFILE_START, region.getStart());
+        httpRequest.setAttribute(SENDFILE_END, region.getEnd());
+        region.close();
+        return true;
+    }
+
+    /**
+     * "Cache-Control: no-cache" or "no-store" forces a fresh synthesis, which then replaces the
+     * cached entry. Only honored for authenticated callers: the speech endpoints are open, and
+     * anonymous callers must not be able to turn every request into an upstream call.
+     */
+    static boolean bypassesCache(String cacheControl, HttpServletRequest httpRequest) {
+        return httpRequest.getUserPrincipal() != null && bypassesCache(cacheControl);
+    }
+
+    static boolean bypassesCache(String cacheControl) {
+        if (cacheControl == null) return false;
+        String value = cacheControl.toLowerCase();
+        return value.contains("no-cache") || value.contains("no-store");
+    }
+
+    /**
+     * One range of a {@code Range: bytes=} header, resolved against the body length.
+     */
+    record ByteRange(long first, long last) {
+
+        private static final Pattern SINGLE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+
+        /**
+         * @return Null when the header is absent, malformed or asks for several ranges, all of
+         *         which get the whole body.
+         */
+        static ByteRange parse(String header, long length) {
+            if (header == null) return null;
+            Matcher m = SINGLE.matcher(header.trim());
+            if (!m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty())) return null;
+            if (m.group(1).isEmpty()) {
+                // Suffix: the last n bytes
+                long suffix = Long.parseLong(m.group(2));
+                return suffix == 0 ? new ByteRange(length, length - 1) : new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            long first = Long.parseLong(m.group(1));
+            if (first >= length) return new ByteRange(length, length - 1);
+            long last = m.group(2).isEmpty() ? length - 1 : Long.parseLong(m.group(2));
+            return last < first ? null : new ByteRange(first, Math.min(last, length - 1));
+        }
+
+        boolean isSatisfiable() {
+            return first <= last;
+        }
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
     }
 
-    private AudioFormat mapFormat(String format) {
+    /**
+     * @throws IllegalArgumentException for opus and aac, which can't be encoded here; serving
+     *         MP3 in their place would break clients that decode what they asked for.
+     */
+    static AudioFormat mapFormat(String format) {
         if (format == null) return AudioFormat.MP3;
         switch (format.toLowerCase()) {
-            case "opus": return AudioFormat.OPUS;
-            case "aac": return AudioFormat.AAC;
+            case "opus":
+            case "aac":
+                throw new IllegalArgumentException("Unsupported response_format: " + format
+                        + " (mp3, wav, flac or pcm)");
             case "flac": return AudioFormat.FLAC;
             case "wav": return AudioFormat.WAV;
             case "pcm": return AudioFormat.PCM;
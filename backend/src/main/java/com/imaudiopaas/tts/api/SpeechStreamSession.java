@@ -0,0 +1,294 @@
+package com.imaudiopaas.tts.api;
+
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.service.text.SentenceSegmenter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One text-in / audio-out streaming session. Text deltas go through a {@link SentenceSegmenter};
+ * each completed sentence becomes a segment synthesized through the routing layer, and a
+ * single sender sends the segments' audio to the client strictly in order.
+ *
+ * <p>Up to {@code lookahead} segments are synthesized at once, so the next sentences are ready
+ * by the time the current one has been sent; the rest wait as text. Audio is sent with blocking
+ * writes, so a slow client stalls the sender, which stops reading the provider streams, which
+ * pauses the upstreams. Text beyond {@code maxBufferedChars} that hasn't become audio yet is
+ * refused rather than buffered without bound.
+ *
+ * <p>Locks are {@link ReentrantLock}s, not monitors, so the blocking waits here don't pin
+ * virtual threads to their carriers.
+ */
+@Slf4j
+class SpeechStreamSession {
+
+    /** Where audio and events go; implementations must be safe to call from several threads. */
+    interface Sink {
+        void audio(byte[] data, int length) throws IOException;
+
+        void event(Map<String, Object> event) throws IOException;
+    }
+
+    private static final int FRAME_SIZE = 16 * 1024;
+
+    private final Function<TtsRequest, TtsResponse> synthesizer;
+    private final Executor executor;
+    private final Sink sink;
+    private final int lookahead;
+    private final int maxBufferedChars;
+    private final SentenceSegmenter segmenter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition segmentsAvailable = lock.newCondition();
+    private final Deque<String> ready = new ArrayDeque<>();
+    private final Deque<Segment> inFlight = new ArrayDeque<>();
+    private int readyChars;
+    private int nextSegmentId = 1;
+    private TtsRequest template;
+    private boolean closed;
+
+    SpeechStreamSession(Function<TtsRequest, TtsResponse> synthesizer, Executor executor, Sink sink,
+                        int lookahead, int maxBufferedChars, int maxSegmentChars) {
+        this.synthesizer = synthesizer;
+        this.executor = executor;
+        this.sink = sink;
+        this.lookahead = Math.max(1, lookahead);
+        this.maxBufferedChars = maxBufferedChars;
+        this.segmenter = new SentenceSegmenter(maxSegmentChars);
+        executor.execute(this::sendLoop);
+    }
+
+    /**
+     * Voice, model, format, speed and extra parameters for the segments dispatched from now on.
+     */
+    void configure(TtsRequest template) {
+        lock.lock();
+        try {
+            this.template = template;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void appendText(String delta) {
+        lock.lock();
+        try {
+            if (template == null) {
+                throw new IllegalStateException("Send session.update with a voice before any text");
+            }
+            if (segmenter.bufferedChars() + readyChars + delta.length() > maxBufferedChars) {
+                throw new IllegalStateException("Too much text waiting for synthesis; wait for audio before sending more");
+            }
+            for (String sentence : segmenter.append(delta)) {
+                queue(sentence);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Synthesize the buffered text even though no sentence boundary has arrived. */
+    void flush() {
+        lock.lock();
+        try {
+            String rest = segmenter.flush();
+            if (rest != null) {
+                if (template == null) {
+                    throw new IllegalStateException("Send session.update with a voice before any text");
+                }
+                queue(rest);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drop all text and audio not yet sent, including the segment currently playing. */
+    void cancel() {
+        lock.lock();
+        try {
+            discardLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            discardLocked();
+            segmentsAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discardLocked() {
+        segmenter.reset();
+        ready.clear();
+        readyChars = 0;
+        for (Segment segment : inFlight) {
+            segment.cancel();
+        }
+        inFlight.clear();
+    }
+
+    private void queue(String sentence) {
+        ready.add(sentence);
+        readyChars += sentence.length();
+    }
+
+    // Start synthesis for waiting sentences while the lookahead window has room
+    private void dispatch() {
+        while (inFlight.size() < lookahead && !ready.isEmpty()) {
+            String text = ready.poll();
+            readyChars -= text.length();
+            Segment segment = new Segment(nextSegmentId++, text);
+            TtsRequest request = template.toBuilder().text(text).build();
+            segment.result = CompletableFuture.supplyAsync(() -> synthesizer.apply(request), executor);
+            segment.result.thenAccept(segment::closeIfCancelled);
+            inFlight.add(segment);
+        }
+        segmentsAvailable.signalAll();
+    }
+
+    private void sendLoop() {
+        while (true) {
+            Segment segment;
+            lock.lock();
+            try {
+                while (!closed && inFlight.isEmpty()) {
+                    segmentsAvailable.awaitUninterruptibly();
+                }
+                if (closed) return;
+                segment = inFlight.peek();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                send(segment);
+            } catch (IOException e) {
+                // The client is gone; afterConnectionClosed will close the session
+                log.debug("Failed to send speech stream segment {}", segment.id, e);
+                close();
+                return;
+            }
+
+            lock.lock();
+            try {
+                if (inFlight.peek() == segment) inFlight.poll();
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void send(Segment segment) throws IOException {
+        TtsResponse response;
+        try {
+            // A cancel must not wait for the synthesis to finish
+            CompletableFuture.anyOf(segment.result, segment.cancelledSignal).get();
+            if (segment.cancelled) return;
+            response = segment.result.get();
+        } catch (ExecutionException e) {
+            if (!segment.cancelled) {
+                Throwable cause = e.getCause();
+                sink.event(segmentEvent("error", segment).withMessage(cause.getMessage()));
+            }
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try (InputStream in = response.getAudioStream()) {
+            segment.stream = in;
+            if (segment.cancelled) return;
+            sink.event(segmentEvent("segment.start", segment).withText(segment.text));
+            byte[] frame = new byte[FRAME_SIZE];
+            int n;
+            while (!segment.cancelled && (n = in.read(frame)) >= 0) {
+                if (n > 0) sink.audio(frame, n);
+            }
+            if (!segment.cancelled) {
+                sink.event(segmentEvent("segment.done", segment));
+            }
+        } catch (IOException e) {
+            if (segment.cancelled) return;
+            sink.event(segmentEvent("error", segment).withMessage(e.getMessage()));
+        }
+    }
+
+    private static Event segmentEvent(String type, Segment segment) {
+        Event event = new Event();
+        event.put("type", type);
+        event.put("segment", segment.id);
+        return event;
+    }
+
+    private static final class Event extends LinkedHashMap<String, Object> {
+        Event withText(String text) {
+            put("text", text);
+            return this;
+        }
+
+        Event withMessage(String message) {
+            put("message", message);
+            return this;
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final String text;
+        final CompletableFuture<Void> cancelledSignal = new CompletableFuture<>();
+        CompletableFuture<TtsResponse> result;
+        volatile InputStream stream;
+        volatile boolean cancelled;
+
+        Segment(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        void cancel() {
+            cancelled = true;
+            cancelledSignal.complete(null);
+            // Unblocks a read waiting on the provider; a not yet finished synthesis is closed on arrival
+            closeQuietly(stream);
+            if (result.isDone() && !result.isCompletedExceptionally()) {
+                closeQuietly(result.join().getAudioStream());
+            }
+        }
+
+        void closeIfCancelled(TtsResponse response) {
+            if (cancelled) closeQuietly(response.getAudioStream());
+        }
+
+        private static void closeQuietly(InputStream in) {
+            if (in == null) return;
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.debug("Failed to close cancelled segment stream", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.imaudiopaas.tts.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.config.TaskExecutorConfig;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * Text-in / audio-out over a WebSocket, for feeding LLM output to TTS as it is generated.
+ *
+ * <p>Client messages are JSON objects with a {@code type}:
+ * <ul>
+ *   <li>{@code session.update}: {@code voice} (required), {@code model}, {@code response_format},
+ *       {@code speed}, {@code extra_body}; applies to sentences dispatched afterwards.</li>
+ *   <li>{@code text.delta}: {@code text} to append; complete sentences are synthesized at once.</li>
+ *   <li>{@code flush}: synthesize the buffered tail without waiting for a sentence end.</li>
+ *   <li>{@code cancel}: drop pending text and audio, e.g. when the user barges in.</li>
+ * </ul>
+ * The server answers with binary frames of audio and JSON events: {@code segment.start},
+ * {@code segment.done}, {@code cancelled} and {@code error}. See {@link SpeechStreamSession}.
+ */
+@Slf4j
+@Component
+public class SpeechWebSocketHandler extends TextWebSocketHandler {
+
+    private static final TypeReference<Map<String, Object>> EXTRA_BODY_TYPE = new TypeReference<>() {
+    };
+
+    private final ProviderRoutingService routingService;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final int lookahead;
+    private final int maxBufferedChars;
+    private final int maxSegmentChars;
+    private final Map<String, Connection> sessions = new ConcurrentHashMap<>();
+
+    private record Connection(SpeechStreamSession stream, SessionSink sink) {
+    }
+
+    public SpeechWebSocketHandler(
+            ProviderRoutingService routingService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Qualifier(TaskExecutorConfig.SYNTHESIS_EXECUTOR) Executor executor,
+            @Value("${app.streaming.websocket.lookahead:2}") int lookahead,
+            @Value("${app.streaming.websocket.max-buffered-chars:20000}") int maxBufferedChars,
+            @Value("${app.streaming.websocket.max-segment-chars:300}") int maxSegmentChars) {
+        this.routingService = routingService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.lookahead = lookahead;
+        this.maxBufferedChars = maxBufferedChars;
+        this.maxSegmentChars = maxSegmentChars;
+        meterRegistry.gaugeMapSize("tts.ws.sessions", List.of(), sessions);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        SessionSink sink = new SessionSink(session);
+        sessions.put(session.getId(), new Connection(new SpeechStreamSession(
+                routingService::routeAndSynthesize, executor, sink, lookahead, maxBufferedChars, maxSegmentChars), sink));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        Connection connection = sessions.get(session.getId());
+        if (connection == null) return;
+        SpeechStreamSession stream = connection.stream();
+        SessionSink sink = connection.sink();
+        try {
+            JsonNode root = objectMapper.readTree(message.getPayload());
+            String type = root.path("type").asText();
+            switch (type) {
+                case "session.update" -> stream.configure(toTemplate(root, priorityOf(session)));
+                case "text.delta" -> stream.appendText(root.path("text").asText(""));
+                case "flush" -> stream.flush();
+                case "cancel" -> {
+                    stream.cancel();
+                    sink.event(Map.of("type", "cancelled"));
+                }
+                default -> throw new IllegalArgumentException("Unknown message type: " + type);
+            }
+        } catch (JsonProcessingException e) {
+            sink.event(Map.of("type", "error", "message", "Invalid JSON message"));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            sink.event(Map.of("type", "error", "message", e.getMessage()));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection connection = sessions.remove(session.getId());
+        if (connection != null) {
+            connection.stream().close();
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Speech WebSocket {} failed: {}", session.getId(), exception.getMessage());
+    }
+
+    // A live session by default; the header is read from the handshake
+    private static Priority priorityOf(WebSocketSession session) {
+        HttpHeaders headers = session.getHandshakeHeaders();
+        return Priority.parse(headers == null ? null : headers.getFirst(Priority.HEADER), Priority.INTERACTIVE);
+    }
+
+    private TtsRequest toTemplate(JsonNode root, Priority priority) {
+        String voice = root.path("voice").asText(null);
+        if (voice == null || voice.isBlank()) {
+            throw new IllegalArgumentException("session.update requires a voice");
+        }
+        Map<String, Object> extraBody = root.has("extra_body")
+                ? objectMapper.convertValue(root.get("extra_body"), EXTRA_BODY_TYPE)
+                : null;
+        return TtsRequest.builder()
+                .text("")
+                .voiceId(voice)
+                .model(root.path("model").asText(null))
+                .speed(root.has("speed") ? (float) root.get("speed").asDouble() : 1.0f)
+                .format(OpenAiSpeechController.mapFormat(root.path("response_format").asText(null)))
+                .sampleRate(root.has("sample_rate") ? root.get("sample_rate").asInt() : null)
+                .extraBody(extraBody)
+                .stream(true)
+                .priority(priority)
+                .build();
+    }
+
+    /**
+     * Sends on the container's blocking remote endpoint, one message at a time per session.
+     */
+    private final class SessionSink implements SpeechStreamSession.Sink {
+        private final WebSocketSession session;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        SessionSink(WebSocketSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void audio(byte[] data, int length) throws IOException {
+            send(new BinaryMessage(ByteBuffer.wrap(data, 0, length)));
+        }
+
+        @Override
+        public void event(Map<String, Object> event) throws IOException {
+            send(new TextMessage(objectMapper.writeValueAsString(event)));
+        }
+
+        private void send(WebSocketMessage<?> message) throws IOException {
+            lock.lock();
+            try {
+                if (!session.isOpen()) {
+                    throw new IOException("WebSocket session is closed");
+                }
+                session.sendMessage(message);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.imaudiopaas.tts.api;
+
+import com.imaudiopaas.tts.api.dto.OpenAiSpeechRequest;
+import com.imaudiopaas.tts.api.dto.SynthesisJobDto;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.model.SynthesisJob;
+import com.imaudiopaas.tts.service.job.SynthesisJobService;
+import jakarta.validation.Valid;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Long-form synthesis as jobs: submit with the body of {@code /v1/audio/speech} (stream options
+ * are ignored), poll the status for progress, download the result once it succeeded. The
+ * result is a plain file, so it can be fetched in ranges. Segments are synthesized as bulk work
+ * unless {@code X-Priority} says otherwise.
+ */
+@RestController
+@RequestMapping("/v1/audio/jobs")
+@RequiredArgsConstructor
+public class SynthesisJobController {
+
+    private final SynthesisJobService jobService;
+
+    @PostMapping
+    public ResponseEntity<SynthesisJobDto> submit(
+            @Valid @RequestBody OpenAiSpeechRequest request,
+            @RequestHeader(value = Priority.HEADER, required = false) String priority) {
+        SynthesisJob job = new SynthesisJob();
+        job.setText(request.getInput());
+        job.setModel(request.getModel());
+        job.setVoice(request.getVoice());
+        job.setFormat(OpenAiSpeechController.mapFormat(request.getResponseFormat()));
+        job.setSpeed(request.getSpeed());
+        job.setSampleRate(request.getSampleRate());
+        job.setPriority(Priority.parse(priority, Priority.BULK));
+        SynthesisJob saved = jobService.submit(job);
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/audio/jobs/" + saved.getId()))
+                .body(toDto(saved));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<SynthesisJobDto> getStatus(@PathVariable UUID id) {
+        return jobService.find(id)
+                .map(job -> ResponseEntity.ok(toDto(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getResult(@PathVariable UUID id) {
+        SynthesisJob job = jobService.find(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != SynthesisJob.Status.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ErrorResponse.builder()
+                    .status(HttpStatus.CONFLICT.value())
+                    .message("Job is " + job.getStatus().name().toLowerCase(Locale.ROOT) + ", no result yet")
+                    .timestamp(System.currentTimeMillis())
+                    .build());
+        }
+        Path result = jobService.resultPath(job);
+        if (!Files.isRegularFile(result)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(job.getAudioFormat().getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + result.getFileName() + "\"")
+                .body(new FileSystemResource(result));
+    }
+
+    private static SynthesisJobDto toDto(SynthesisJob job) {
+        double seconds = 0;
+        if (job.getStartedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            seconds = Duration.between(job.getStartedAt(), end).toMillis() / 1000.0;
+        }
+        boolean succeeded = job.getStatus() == SynthesisJob.Status.SUCCEEDED;
+        return SynthesisJobDto.builder()
+                .id(job.getId())
+                .status(job.getStatus().name().toLowerCase(Locale.ROOT))
+                .progress(job.getTotalChars() == 0 ? 0 : (double) job.getCompletedChars() / job.getTotalChars())
+                .totalSegments(job.getTotalSegments())
+                .completedSegments(job.getCompletedSegments())
+                .totalChars(job.getTotalChars())
+                .completedChars(job.getCompletedChars())
+                .charsPerSecond(seconds > 0 ? job.getCompletedChars() / seconds : 0)
+                .contentType(job.getAudioFormat() == null ? null : job.getAudioFormat().getContentType())
+                .resultBytes(job.getResultBytes())
+                .resultUrl(succeeded ? "/v1/audio/jobs/" + job.getId() + "/result" : null)
+                .error(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
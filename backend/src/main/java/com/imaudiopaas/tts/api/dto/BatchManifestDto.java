@@ -0,0 +1,34 @@
+package com.imaudiopaas.tts.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BatchManifestDto {
+    private int total;
+    // Requests actually synthesized once duplicates were folded together
+    private int distinct;
+    private int succeeded;
+    private int failed;
+    // In the order of the request
+    private List<Item> items;
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+        private int index;
+        private String status;
+        // Name of the zip entry or multipart part holding the audio
+        private String file;
+        private String contentType;
+        private Long bytes;
+        // Set on items that repeat an earlier one; they share its file
+        private Integer duplicateOf;
+        private Integer errorStatus;
+        private String error;
+    }
+}
@@ -0,0 +1,20 @@
+package com.imaudiopaas.tts.api.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BatchSpeechRequest {
+
+    /**
+     * Requests with the body of {@code /v1/audio/speech}; stream options are ignored. Each is
+     * validated on its own, so an invalid one only fails that item.
+     */
+    private List<OpenAiSpeechRequest> items;
+
+    /**
+     * "zip" (the default) or "multipart" for {@code multipart/mixed}; an {@code Accept} of
+     * {@code multipart/mixed} selects it too.
+     */
+    private String output;
+}
@@ -0,0 +1,23 @@
+package com.imaudiopaas.tts.api.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CacheStatsDto {
+    private boolean enabled;
+    private int entries;
+    private long bytes;
+    private long maxBytes;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long evictions;
+    private boolean diskEnabled;
+    private int diskEntries;
+    private long diskBytes;
+    private long diskMaxBytes;
+    private long diskHits;
+    private long diskMisses;
+}
@@ -1,6 +1,8 @@
 package com.imaudiopaas.tts.api.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
@@ -20,4 +22,24 @@ public class OpenAiSpeechRequest {
     private String responseFormat = "mp3";
 
     private Float speed = 1.0f;
+
+    /**
+     * Output sample rate in Hz for pcm, wav and flac; the gateway's default when absent.
+     */
+    @JsonProperty("sample_rate")
+    @Min(value = 8000, message = "sample_rate must be at least 8000")
+    @Max(value = 48000, message = "sample_rate must be at most 48000")
+    private Integer sampleRate;
+
+    /**
+     * Stream the audio as it is synthesized.
+     */
+    private Boolean stream;
+
+    /**
+     * "audio" for raw chunked audio, "sse" for server-sent events with base64 audio deltas.
+     * Setting it implies {@code stream}.
+     */
+    @JsonProperty("stream_format")
+    private String streamFormat;
 }
@@ -0,0 +1,22 @@
+package com.imaudiopaas.tts.api.dto;
+
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProviderStatusDto {
+    private ProviderType providerType;
+    private UUID configId;
+    private String configName;
+    private String circuitState;
+    private double failureRate;
+    private double slowCallRate;
+    private Integer concurrencyLimit;
+    private Integer inFlight;
+    private Integer queueDepth;
+    private Double ttfbMsPerChar;
+    private Double totalMsPerChar;
+}
@@ -0,0 +1,16 @@
+package com.imaudiopaas.tts.api.dto;
+
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import java.time.Instant;
+import java.util.Map;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RoutingSnapshotDto {
+    private long version;
+    private Instant builtAt;
+    private int voiceCount;
+    private Map<ProviderType, Integer> activeConfigCounts;
+}
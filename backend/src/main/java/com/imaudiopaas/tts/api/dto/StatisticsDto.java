@@ -12,4 +12,5 @@ public class StatisticsDto {
     private long failureCount;
     private Double successRate;
     private Double avgLatencyMs;
+    private String circuitState;
 }
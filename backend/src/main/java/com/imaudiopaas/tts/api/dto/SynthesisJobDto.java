@@ -0,0 +1,28 @@
+package com.imaudiopaas.tts.api.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SynthesisJobDto {
+    private UUID id;
+    private String status;
+    // Share of the characters synthesized, 0 to 1
+    private double progress;
+    private int totalSegments;
+    private int completedSegments;
+    private int totalChars;
+    private int completedChars;
+    private double charsPerSecond;
+    private String contentType;
+    private Long resultBytes;
+    // Set once the job succeeded
+    private String resultUrl;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,33 @@
+package com.imaudiopaas.tts.config;
+
+import com.imaudiopaas.tts.service.routing.ConfigBalancer;
+import com.imaudiopaas.tts.service.routing.EwmaLatencyTracker;
+import com.imaudiopaas.tts.service.routing.InFlightTracker;
+import com.imaudiopaas.tts.service.routing.LatencyAwareBalancer;
+import com.imaudiopaas.tts.service.routing.LeastOutstandingBalancer;
+import com.imaudiopaas.tts.service.routing.PowerOfTwoChoicesBalancer;
+import com.imaudiopaas.tts.service.routing.WeightedRoundRobinBalancer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RoutingConfig {
+
+    @Bean
+    public ConfigBalancer configBalancer(
+            @Value("${app.routing.balancer:weighted-round-robin}") String strategy,
+            @Value("${app.routing.latency-aware.exploration-rate:0.05}") double explorationRate,
+            @Value("${app.routing.latency-aware.switch-ratio:0.7}") double switchRatio,
+            InFlightTracker inFlightTracker,
+            EwmaLatencyTracker ewmaLatencyTracker) {
+        switch (strategy.toLowerCase()) {
+            case "weighted-round-robin": return new WeightedRoundRobinBalancer();
+            case "least-outstanding": return new LeastOutstandingBalancer(inFlightTracker);
+            case "power-of-two": return new PowerOfTwoChoicesBalancer(inFlightTracker);
+            case "latency-aware":
+                return new LatencyAwareBalancer(ewmaLatencyTracker, inFlightTracker, explorationRate, switchRatio);
+            default: throw new IllegalArgumentException("Unknown app.routing.balancer strategy: " + strategy);
+        }
+    }
+}
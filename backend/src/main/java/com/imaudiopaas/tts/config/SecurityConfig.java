@@ -34,7 +34,7 @@ public class SecurityConfig {
                 // Allow H2 Consonew AntPathRequestMatcher("/h2-console/**"All()
                 .requestMatchers(PathRequest.toH2Console()).permitAll()
                 .requestMatchers("/v1/debug/**").permitAll()
-                .requestMatchers("/v1/audio/speech").permitAll()
+                .requestMatchers("/v1/audio/speech", "/v1/audio/speech/ws").permitAll()
                 .requestMatchers("/v1/**").authenticated()
                 .requestMatchers("/admin/**").hasRole("ADMIN")
                 .requestMatchers("/error").permitAll()
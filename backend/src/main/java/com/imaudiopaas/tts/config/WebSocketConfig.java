@@ -0,0 +1,22 @@
+package com.imaudiopaas.tts.config;
+
+import com.imaudiopaas.tts.api.SpeechWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final SpeechWebSocketHandler speechWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(speechWebSocketHandler, "/v1/audio/speech/ws")
+                .setAllowedOrigins("http://localhost:3000", "http://127.0.0.1:3000");
+    }
+}
@@ -0,0 +1,36 @@
+package com.imaudiopaas.tts.core.codec;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Streaming encoder from PCM to one output format. Instances keep per-stream state and scratch
+ * buffers, so they are used by one stream at a time and reused across streams through an
+ * {@link EncoderPool}: {@link #begin} resets them.
+ */
+public interface AudioEncoder {
+
+    AudioFormat getFormat();
+
+    /**
+     * Start a stream, writing any header.
+     *
+     * @param pcmBytes Total PCM bytes that will follow, or -1 if unknown.
+     * @throws IllegalArgumentException if the PCM layout isn't supported.
+     */
+    void begin(PcmFormat format, long pcmBytes, ByteArrayOutputStream out);
+
+    /**
+     * Encode a chunk of PCM. Chunks may split sample frames anywhere; the remainder is kept for
+     * the next call.
+     */
+    void encode(byte[] pcm, int offset, int length, ByteArrayOutputStream out);
+
+    /** Flush whatever is buffered; the stream is complete after this. */
+    void finish(ByteArrayOutputStream out);
+
+    /**
+     * Size of the encoded stream for {@code pcmBytes} of input, or -1 if it depends on the audio.
+     */
+    long encodedLength(PcmFormat format, long pcmBytes);
+}
@@ -0,0 +1,178 @@
+package com.imaudiopaas.tts.core.codec;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * What a player needs to seek in a stored piece of audio without reading it: a content hash
+ * for the ETag, the duration, and the byte offset of the first frame starting at or after each
+ * {@value #INTERVAL_MS} ms mark. Built once, when the audio is cached.
+ *
+ * <p>MP3 is walked frame by frame (see {@link Mp3Frame}); for WAV and PCM the offsets follow
+ * from the byte rate and are aligned to a sample frame. Other formats, and audio that doesn't
+ * parse, only get the hash. Serialized it takes 4 bytes per mark, so about 14 KB for an hour.
+ */
+public final class AudioIndex {
+
+    public static final int INTERVAL_MS = 1000;
+    private static final byte VERSION = 1;
+    private static final int HASH_LENGTH = 16;
+    private static final int[] NO_OFFSETS = new int[0];
+
+    private final byte[] hash;
+    private final long durationMs;
+    private final int[] offsets;
+
+    private AudioIndex(byte[] hash, long durationMs, int[] offsets) {
+        this.hash = hash;
+        this.durationMs = durationMs;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param sampleRate Sample rate of PCM (16-bit mono), 0 if unknown; ignored for other formats.
+     */
+    public static AudioIndex build(AudioFormat format, int sampleRate, byte[] data) {
+        byte[] hash = Arrays.copyOf(sha256(data), HASH_LENGTH);
+        if (format == AudioFormat.MP3) {
+            return mp3(hash, data);
+        }
+        if (format == AudioFormat.PCM && sampleRate > 0) {
+            return pcm(hash, PcmFormat.mono16(sampleRate), 0, data.length);
+        }
+        if (format == AudioFormat.WAV) {
+            try {
+                ByteArrayInputStream in = new ByteArrayInputStream(data);
+                WavHeader header = WavHeader.read(in);
+                int dataStart = data.length - in.available();
+                long declared = header.getDataSize();
+                long dataEnd = declared == 0 || declared == WavHeader.UNKNOWN_SIZE
+                        ? data.length : Math.min(data.length, dataStart + declared);
+                if (header.getFormat() != null && header.getFormat().byteRate() > 0) {
+                    return pcm(hash, header.getFormat(), dataStart, (int) dataEnd);
+                }
+            } catch (IOException e) {
+                // Not a WAV we can read: hash only
+            }
+        }
+        return new AudioIndex(hash, 0, NO_OFFSETS);
+    }
+
+    private static AudioIndex pcm(byte[] hash, PcmFormat format, int dataStart, int dataEnd) {
+        int frameBytes = format.frameBytes();
+        long frames = (dataEnd - dataStart) / frameBytes;
+        long durationMs = frames * 1000 / format.sampleRate();
+        int[] offsets = new int[(int) (durationMs / INTERVAL_MS) + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            long frame = (long) i * INTERVAL_MS * format.sampleRate() / 1000;
+            offsets[i] = (int) (dataStart + frame * frameBytes);
+        }
+        return new AudioIndex(hash, durationMs, offsets);
+    }
+
+    private static AudioIndex mp3(byte[] hash, byte[] data) {
+        int at = 0;
+        if (data.length >= 10 && data[0] == 'I' && data[1] == 'D' && data[2] == '3') {
+            at = 10 + ((data[6] & 0x7F) << 21 | (data[7] & 0x7F) << 14 | (data[8] & 0x7F) << 7 | data[9] & 0x7F);
+        }
+        int[] offsets = new int[16];
+        int marks = 0;
+        long micros = 0;
+        boolean first = true;
+        while (at + 4 <= data.length) {
+            Mp3Frame frame = Mp3Frame.parse(data, at);
+            if (frame == null || at + frame.length() > data.length
+                    || (at + frame.length() + 4 <= data.length && !frame.continues(Mp3Frame.parse(data, at + frame.length())))) {
+                at++;
+                continue;
+            }
+            if (first) {
+                first = false;
+                if (frame.isInfoFrame(data, at)) {
+                    at += frame.length();
+                    continue;
+                }
+            }
+            if (micros >= (long) marks * INTERVAL_MS * 1000) {
+                if (marks == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, marks * 2);
+                }
+                offsets[marks++] = at;
+            }
+            micros += frame.samples() * 1_000_000L / frame.sampleRate();
+            at += frame.length();
+        }
+        return new AudioIndex(hash, micros / 1000, Arrays.copyOf(offsets, marks));
+    }
+
+    /** Strong entity tag, quoted, as sent in the {@code ETag} header. */
+    public String getEtag() {
+        return '"' + HexFormat.of().formatHex(hash) + '"';
+    }
+
+    /** Duration in ms, 0 if unknown. */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /** Whether {@link #offsetAt} can seek. */
+    public boolean isSeekable() {
+        return offsets.length > 0;
+    }
+
+    /**
+     * Byte offset of the frame to start playing from for a position in the audio: the first one
+     * at or after the last mark not past it.
+     */
+    public int offsetAt(long millis) {
+        if (offsets.length == 0) {
+            return 0;
+        }
+        int mark = (int) Math.min(offsets.length - 1, Math.max(0, millis / INTERVAL_MS));
+        return offsets[mark];
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(1 + HASH_LENGTH + 8 + 4 + offsets.length * 4);
+        out.put(VERSION).put(hash).putLong(durationMs).putInt(offsets.length);
+        for (int offset : offsets) {
+            out.putInt(offset);
+        }
+        return out.array();
+    }
+
+    /**
+     * @return The index, or null if the bytes aren't one this version wrote.
+     */
+    public static AudioIndex fromBytes(ByteBuffer in) {
+        if (in.remaining() < 1 + HASH_LENGTH + 12 || in.get() != VERSION) {
+            return null;
+        }
+        byte[] hash = new byte[HASH_LENGTH];
+        in.get(hash);
+        long durationMs = in.getLong();
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / 4) {
+            return null;
+        }
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.getInt();
+        }
+        return new AudioIndex(hash, durationMs, offsets);
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.imaudiopaas.tts.core.codec;
+
+import java.util.Arrays;
+
+/**
+ * MSB-first bit packer into a growable byte array, reused across frames.
+ */
+final class BitWriter {
+
+    private byte[] buffer;
+    private int length;
+    private long accumulator;
+    private int pendingBits;
+
+    BitWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    void reset() {
+        length = 0;
+        accumulator = 0;
+        pendingBits = 0;
+    }
+
+    /** Write the low {@code bits} bits of {@code value}, {@code bits <= 32}. */
+    void write(long value, int bits) {
+        accumulator = (accumulator << bits) | (value & ((1L << bits) - 1));
+        pendingBits += bits;
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            put((byte) (accumulator >>> pendingBits));
+        }
+    }
+
+    /** {@code zeros} zero bits followed by a one. */
+    void writeUnary(int zeros) {
+        while (zeros >= 32) {
+            write(0, 32);
+            zeros -= 32;
+        }
+        write(1, zeros + 1);
+    }
+
+    void alignToByte() {
+        if (pendingBits > 0) {
+            write(0, 8 - pendingBits);
+        }
+    }
+
+    /** Bytes written so far; only whole bytes count. */
+    int length() {
+        return length;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    private void put(byte b) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = b;
+    }
+}
@@ -0,0 +1,57 @@
+package com.imaudiopaas.tts.core.codec;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Bounded free lists of {@link AudioEncoder}s per output format, so the scratch buffers of an
+ * encoder (a FLAC encoder holds about 50 KB) are allocated once rather than per response. Like
+ * {@link com.imaudiopaas.tts.core.stream.BufferPool}, {@link #acquire} never blocks: an empty
+ * pool creates a new encoder and {@link #release} drops encoders beyond {@code maxPooled}.
+ */
+public class EncoderPool {
+
+    private final Map<AudioFormat, Supplier<AudioEncoder>> factories = new EnumMap<>(AudioFormat.class);
+    private final Map<AudioFormat, ArrayBlockingQueue<AudioEncoder>> free = new EnumMap<>(AudioFormat.class);
+
+    public EncoderPool(int maxPooled) {
+        register(AudioFormat.PCM, PcmEncoder::new, maxPooled);
+        register(AudioFormat.WAV, WavEncoder::new, maxPooled);
+        register(AudioFormat.FLAC, FlacEncoder::new, maxPooled);
+    }
+
+    private void register(AudioFormat format, Supplier<AudioEncoder> factory, int maxPooled) {
+        factories.put(format, factory);
+        free.put(format, new ArrayBlockingQueue<>(Math.max(1, maxPooled)));
+    }
+
+    public boolean supports(AudioFormat format) {
+        return factories.containsKey(format);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no encoder for the format.
+     */
+    public AudioEncoder acquire(AudioFormat format) {
+        ArrayBlockingQueue<AudioEncoder> queue = free.get(format);
+        if (queue == null) {
+            throw new IllegalArgumentException("No encoder for " + format);
+        }
+        AudioEncoder encoder = queue.poll();
+        return encoder != null ? encoder : factories.get(format).get();
+    }
+
+    public void release(AudioEncoder encoder) {
+        if (encoder != null) {
+            free.get(encoder.getFormat()).offer(encoder);
+        }
+    }
+
+    public int getPooled(AudioFormat format) {
+        ArrayBlockingQueue<AudioEncoder> queue = free.get(format);
+        return queue == null ? 0 : queue.size();
+    }
+}
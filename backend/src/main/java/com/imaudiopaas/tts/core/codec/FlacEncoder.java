@@ -0,0 +1,316 @@
+package com.imaudiopaas.tts.core.codec;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Pure Java FLAC encoder for 16-bit PCM, written for streaming: the STREAMINFO block leaves the
+ * total sample count and MD5 unset (both allowed to be zero), and every block of
+ * {@value #BLOCK_SIZE} samples is emitted as a frame as soon as it is full.
+ *
+ * <p>Each channel of a frame is coded as a constant subframe (silence, common in speech), a
+ * fixed linear predictor of order 0 to 4 with partitioned Rice-coded residuals, or verbatim,
+ * whichever is smallest. That is the reference encoder's fast setting minus LPC and stereo
+ * decorrelation, typically 50-60% of the PCM size for synthesized speech.
+ */
+public class FlacEncoder implements AudioEncoder {
+
+    static final int BLOCK_SIZE = 4096;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_PARTITION_ORDER = 6;
+    private static final int MAX_RICE_PARAMETER = 14;
+    private static final int[] CRC8 = crcTable(0x07, 8);
+    private static final int[] CRC16 = crcTable(0x8005, 16);
+
+    private final BitWriter bits = new BitWriter(2 * BLOCK_SIZE * 2);
+    private final int[] residual = new int[BLOCK_SIZE];
+    private final byte[] pending = new byte[16];
+    private int[][] samples = new int[1][BLOCK_SIZE];
+    private PcmFormat format;
+    private int frameBytes;
+    private int pendingLength;
+    private int filled;
+    private long frameNumber;
+
+    @Override
+    public AudioFormat getFormat() {
+        return AudioFormat.FLAC;
+    }
+
+    @Override
+    public void begin(PcmFormat format, long pcmBytes, ByteArrayOutputStream out) {
+        if (format.bitsPerSample() != 16 || format.channels() < 1 || format.channels() > 8) {
+            throw new IllegalArgumentException("FLAC encoding needs 16-bit PCM with 1-8 channels, got " + format);
+        }
+        this.format = format;
+        this.frameBytes = format.frameBytes();
+        if (samples.length < format.channels()) {
+            samples = new int[format.channels()][BLOCK_SIZE];
+        }
+        pendingLength = 0;
+        filled = 0;
+        frameNumber = 0;
+
+        bits.reset();
+        bits.write(0x664C6143L, 32); // "fLaC"
+        bits.write(1, 1); // last metadata block
+        bits.write(0, 7); // STREAMINFO
+        bits.write(34, 24);
+        bits.write(BLOCK_SIZE, 16);
+        bits.write(BLOCK_SIZE, 16);
+        bits.write(0, 24); // min/max frame size unknown
+        bits.write(0, 24);
+        bits.write(format.sampleRate(), 20);
+        bits.write(format.channels() - 1, 3);
+        bits.write(15, 5);
+        bits.write(0, 4); // total samples unknown (36 bits)
+        bits.write(0, 32);
+        for (int i = 0; i < 4; i++) {
+            bits.write(0, 32); // MD5 unset
+        }
+        out.write(bits.buffer(), 0, bits.length());
+    }
+
+    @Override
+    public void encode(byte[] pcm, int offset, int length, ByteArrayOutputStream out) {
+        int end = offset + length;
+        int i = offset;
+        // Complete a sample frame split across chunks
+        while (pendingLength > 0 && i < end) {
+            pending[pendingLength++] = pcm[i++];
+            if (pendingLength == frameBytes) {
+                addFrame(pending, 0, out);
+                pendingLength = 0;
+            }
+        }
+        for (; i + frameBytes <= end; i += frameBytes) {
+            addFrame(pcm, i, out);
+        }
+        while (i < end) {
+            pending[pendingLength++] = pcm[i++];
+        }
+    }
+
+    @Override
+    public void finish(ByteArrayOutputStream out) {
+        if (filled > 0) {
+            writeFrame(filled, out);
+            filled = 0;
+        }
+    }
+
+    @Override
+    public long encodedLength(PcmFormat format, long pcmBytes) {
+        return -1;
+    }
+
+    private void addFrame(byte[] pcm, int at, ByteArrayOutputStream out) {
+        for (int ch = 0; ch < format.channels(); ch++) {
+            int p = at + 2 * ch;
+            samples[ch][filled] = (short) ((pcm[p] & 0xFF) | (pcm[p + 1] << 8));
+        }
+        if (++filled == BLOCK_SIZE) {
+            writeFrame(BLOCK_SIZE, out);
+            filled = 0;
+        }
+    }
+
+    private void writeFrame(int blockSize, ByteArrayOutputStream out) {
+        bits.reset();
+        bits.write(0x3FFE, 14); // sync
+        bits.write(0, 1);
+        bits.write(0, 1); // fixed block size, numbered by frame
+        int blockSizeCode = blockSize == BLOCK_SIZE ? 12 : blockSize <= 256 ? 6 : 7;
+        bits.write(blockSizeCode, 4);
+        bits.write(sampleRateCode(format.sampleRate()), 4);
+        bits.write(format.channels() - 1, 4); // independent channels
+        bits.write(4, 3); // 16 bits per sample
+        bits.write(0, 1);
+        writeUtf8(frameNumber++);
+        if (blockSizeCode == 6) bits.write(blockSize - 1, 8);
+        if (blockSizeCode == 7) bits.write(blockSize - 1, 16);
+        bits.write(crc(CRC8, 8, bits.buffer(), bits.length()), 8);
+
+        for (int ch = 0; ch < format.channels(); ch++) {
+            writeSubframe(samples[ch], blockSize);
+        }
+        bits.alignToByte();
+        bits.write(crc(CRC16, 16, bits.buffer(), bits.length()), 16);
+        out.write(bits.buffer(), 0, bits.length());
+    }
+
+    private void writeSubframe(int[] x, int n) {
+        boolean constant = true;
+        for (int i = 1; i < n && constant; i++) {
+            constant = x[i] == x[0];
+        }
+        if (constant) {
+            bits.write(0, 8);
+            bits.write(x[0], 16);
+            return;
+        }
+
+        int order = bestFixedOrder(x, n);
+        computeResidual(x, n, order);
+        int partitionOrder = bestPartitionOrder(n, order);
+        long fixedBits = 8 + 16L * order + 6 + riceBits(n, order, partitionOrder);
+        if (fixedBits >= 8 + 16L * n) {
+            bits.write(1 << 1, 8); // verbatim
+            for (int i = 0; i < n; i++) {
+                bits.write(x[i], 16);
+            }
+            return;
+        }
+
+        bits.write((8 | order) << 1, 8);
+        for (int i = 0; i < order; i++) {
+            bits.write(x[i], 16);
+        }
+        bits.write(0, 2); // Rice, 4-bit parameters
+        bits.write(partitionOrder, 4);
+        int partitions = 1 << partitionOrder;
+        int partitionSize = n >> partitionOrder;
+        int i = order;
+        for (int p = 0; p < partitions; p++) {
+            int end = (p + 1) * partitionSize;
+            int count = end - i;
+            long sum = 0;
+            for (int j = i; j < end; j++) sum += residual[j];
+            int k = riceParameter(sum, count);
+            bits.write(k, 4);
+            for (; i < end; i++) {
+                int u = residual[i];
+                bits.writeUnary(u >>> k);
+                if (k > 0) bits.write(u, k);
+            }
+        }
+    }
+
+    // The order whose residual has the smallest magnitude, as in the reference encoder
+    private static int bestFixedOrder(int[] x, int n) {
+        int maxOrder = Math.min(MAX_FIXED_ORDER, n - 1);
+        long[] error = new long[MAX_FIXED_ORDER + 1];
+        for (int i = MAX_FIXED_ORDER; i < n; i++) {
+            int e0 = x[i];
+            int e1 = e0 - x[i - 1];
+            int e2 = e1 - (x[i - 1] - x[i - 2]);
+            int e3 = e2 - (x[i - 1] - 2 * x[i - 2] + x[i - 3]);
+            int e4 = e3 - (x[i - 1] - 3 * x[i - 2] + 3 * x[i - 3] - x[i - 4]);
+            error[0] += Math.abs(e0);
+            error[1] += Math.abs(e1);
+            error[2] += Math.abs(e2);
+            error[3] += Math.abs(e3);
+            error[4] += Math.abs(e4);
+        }
+        int best = 0;
+        for (int order = 1; order <= maxOrder; order++) {
+            if (error[order] < error[best]) best = order;
+        }
+        return best;
+    }
+
+    // Zigzag-mapped prediction errors, from index `order` on
+    private void computeResidual(int[] x, int n, int order) {
+        for (int i = order; i < n; i++) {
+            int e;
+            switch (order) {
+                case 0: e = x[i]; break;
+                case 1: e = x[i] - x[i - 1]; break;
+                case 2: e = x[i] - 2 * x[i - 1] + x[i - 2]; break;
+                case 3: e = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3]; break;
+                default: e = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4]; break;
+            }
+            residual[i] = (e << 1) ^ (e >> 31);
+        }
+    }
+
+    private int bestPartitionOrder(int n, int order) {
+        int best = 0;
+        long bestBits = Long.MAX_VALUE;
+        for (int p = 0; p <= MAX_PARTITION_ORDER; p++) {
+            if ((n & ((1 << p) - 1)) != 0 || (n >> p) <= order) break;
+            long size = riceBits(n, order, p);
+            if (size < bestBits) {
+                bestBits = size;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    // Estimated residual size with the given partitioning, parameters included
+    private long riceBits(int n, int order, int partitionOrder) {
+        int partitions = 1 << partitionOrder;
+        int partitionSize = n >> partitionOrder;
+        long total = 0;
+        int i = order;
+        for (int p = 0; p < partitions; p++) {
+            int end = (p + 1) * partitionSize;
+            int count = end - i;
+            long sum = 0;
+            for (int j = i; j < end; j++) sum += residual[j];
+            int k = riceParameter(sum, count);
+            total += 4 + (long) count * (k + 1) + (sum >> k);
+            i = end;
+        }
+        return total;
+    }
+
+    private static int riceParameter(long sum, int count) {
+        int k = 0;
+        while (k < MAX_RICE_PARAMETER && ((long) count << (k + 1)) <= sum) k++;
+        return k;
+    }
+
+    private void writeUtf8(long value) {
+        if (value < 0x80) {
+            bits.write(value, 8);
+            return;
+        }
+        int extra = value < 0x800 ? 1 : value < 0x10000 ? 2 : value < 0x200000 ? 3
+                : value < 0x4000000 ? 4 : value < 0x80000000L ? 5 : 6;
+        int leadBits = 6 - extra;
+        long lead = (0xFF00L >> (extra + 1)) & 0xFF; // extra+1 leading ones
+        bits.write(lead | (value >>> (6 * extra)) & ((1L << leadBits) - 1), 8);
+        for (int i = extra - 1; i >= 0; i--) {
+            bits.write(0x80 | ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private static int sampleRateCode(int rate) {
+        switch (rate) {
+            case 8000: return 4;
+            case 16000: return 5;
+            case 22050: return 6;
+            case 24000: return 7;
+            case 32000: return 8;
+            case 44100: return 9;
+            case 48000: return 10;
+            case 96000: return 11;
+            default: return 0; // from STREAMINFO
+        }
+    }
+
+    private static int crc(int[] table, int width, byte[] data, int length) {
+        int crc = 0;
+        int mask = (1 << width) - 1;
+        for (int i = 0; i < length; i++) {
+            crc = ((crc << 8) ^ table[((crc >>> (width - 8)) ^ data[i]) & 0xFF]) & mask;
+        }
+        return crc;
+    }
+
+    private static int[] crcTable(int polynomial, int width) {
+        int[] table = new int[256];
+        int top = 1 << (width - 1);
+        int mask = (1 << width) - 1;
+        for (int i = 0; i < 256; i++) {
+            int crc = i << (width - 8);
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & top) != 0 ? (crc << 1) ^ polynomial : crc << 1;
+            }
+            table[i] = crc & mask;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,149 @@
+package com.imaudiopaas.tts.core.codec;
+
+/**
+ * Gated integrated loudness of a mono stream per ITU-R BS.1770-4, measured incrementally:
+ * K-weighting (a high-shelf and a high-pass biquad), mean square over 400 ms blocks with 75%
+ * overlap, an absolute gate at -70 LUFS and a relative gate 10 LU below the ungated mean.
+ *
+ * <p>Past blocks are kept as a histogram of 0.1 LU bins, the way libebur128 does it, so memory
+ * is fixed however long the stream is and {@link #integrated()} costs the same at any point.
+ * Samples are in 16-bit units (full scale 32768).
+ */
+public final class LoudnessMeter {
+
+    static final double ABSOLUTE_GATE = -70.0;
+    private static final double RELATIVE_GATE = -10.0;
+    private static final double BIN_WIDTH = 0.1;
+    private static final double MAX_LOUDNESS = 5.0;
+    private static final int BINS = (int) ((MAX_LOUDNESS - ABSOLUTE_GATE) / BIN_WIDTH);
+    private static final double[] BIN_ENERGY = new double[BINS];
+
+    static {
+        for (int i = 0; i < BINS; i++) {
+            BIN_ENERGY[i] = energy(ABSOLUTE_GATE + (i + 0.5) * BIN_WIDTH);
+        }
+    }
+
+    // K-weighting: pre-filter (shelf) then RLB high-pass
+    private final double b0, b1, b2, a1, a2;
+    private final double c1, c2;
+    private double s1, s2, t1, t2;
+
+    private final int subBlock;
+    private final double[] subBlockEnergy = new double[4];
+    private final long[] histogram = new long[BINS];
+    private double currentSum;
+    private int currentCount;
+    private double totalSum;
+    private long totalCount;
+    private long subBlocks;
+    private long blocks;
+
+    public LoudnessMeter(int sampleRate) {
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        b0 = (vh + vb * k / q + k * k) / a0;
+        b1 = 2 * (k * k - vh) / a0;
+        b2 = (vh - vb * k / q + k * k) / a0;
+        a1 = 2 * (k * k - 1) / a0;
+        a2 = (1 - k / q + k * k) / a0;
+
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        double d0 = 1 + k / q + k * k;
+        c1 = 2 * (k * k - 1) / d0;
+        c2 = (1 - k / q + k * k) / d0;
+
+        subBlock = sampleRate / 10;
+    }
+
+    public void add(float[] samples, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            double x = samples[i] / 32768.0;
+            // Transposed direct form II, shelf
+            double y = b0 * x + s1;
+            s1 = b1 * x - a1 * y + s2;
+            s2 = b2 * x - a2 * y;
+            // High-pass, numerator (1, -2, 1)
+            double z = y + t1;
+            t1 = -2 * y - c1 * z + t2;
+            t2 = y - c2 * z;
+            currentSum += z * z;
+            if (++currentCount == subBlock) {
+                completeSubBlock();
+            }
+        }
+    }
+
+    private void completeSubBlock() {
+        totalSum += currentSum;
+        totalCount += subBlock;
+        subBlockEnergy[(int) (subBlocks++ & 3)] = currentSum / subBlock;
+        currentSum = 0;
+        currentCount = 0;
+        if (subBlocks >= 4) {
+            double mean = (subBlockEnergy[0] + subBlockEnergy[1] + subBlockEnergy[2] + subBlockEnergy[3]) / 4;
+            double loudness = loudness(mean);
+            if (loudness > ABSOLUTE_GATE) {
+                int bin = (int) ((Math.min(loudness, MAX_LOUDNESS - 1e-9) - ABSOLUTE_GATE) / BIN_WIDTH);
+                histogram[bin]++;
+                blocks++;
+            }
+        }
+    }
+
+    /**
+     * Samples until the current 100 ms sub-block completes and the reading can change.
+     */
+    int untilSubBlock() {
+        return subBlock - currentCount;
+    }
+
+    /**
+     * Whether at least one 400 ms block above the absolute gate has been measured.
+     */
+    public boolean hasMeasurement() {
+        return blocks > 0;
+    }
+
+    /**
+     * Integrated loudness in LUFS so far, or {@code -Infinity} before the first gated block.
+     */
+    public double integrated() {
+        if (blocks == 0) return Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = 0; i < BINS; i++) {
+            sum += histogram[i] * BIN_ENERGY[i];
+        }
+        double relativeGate = loudness(sum / blocks) + RELATIVE_GATE;
+        int from = Math.max(0, (int) Math.ceil((relativeGate - ABSOLUTE_GATE) / BIN_WIDTH - 0.5));
+        double gatedSum = 0;
+        long gatedCount = 0;
+        for (int i = from; i < BINS; i++) {
+            gatedSum += histogram[i] * BIN_ENERGY[i];
+            gatedCount += histogram[i];
+        }
+        return gatedCount == 0 ? Double.NEGATIVE_INFINITY : loudness(gatedSum / gatedCount);
+    }
+
+    /**
+     * {@link #integrated()} once there is a gated block; before that the ungated loudness of
+     * everything so far, for clips shorter than one block.
+     */
+    public double provisional() {
+        if (blocks > 0) return integrated();
+        long count = totalCount + currentCount;
+        return count == 0 ? Double.NEGATIVE_INFINITY : loudness((totalSum + currentSum) / count);
+    }
+
+    static double loudness(double meanSquare) {
+        return -0.691 + 10 * Math.log10(meanSquare);
+    }
+
+    private static double energy(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+}
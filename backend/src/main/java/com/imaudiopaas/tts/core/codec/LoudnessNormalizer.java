@@ -0,0 +1,189 @@
+package com.imaudiopaas.tts.core.codec;
+
+import java.util.Arrays;
+
+/**
+ * Brings a mono stream to a target loudness in one pass, for audio that has to go out while it
+ * is still being synthesized.
+ *
+ * <p>The gain follows the {@link LoudnessMeter} reading of the input so far: the first
+ * {@code primeMs} of a stream are held back to get an initial reading, then the gain glides
+ * toward each new estimate with a one second time constant, so it settles as the integrated
+ * measurement does without audible pumping. Boosting can push peaks past full scale, so the
+ * gained signal goes through a look-ahead peak limiter: the gain reduction each sample needs
+ * is tracked as a sliding minimum over the look-ahead window and smoothed with a moving average
+ * of the same length, which ramps the gain down before the peak reaches the output instead of
+ * clipping it, and releases exponentially afterwards.
+ *
+ * <p>Latency is the look-ahead (a few milliseconds), plus {@code primeMs} at the start of the
+ * stream only. The output has exactly as many samples as the input; buffers are allocated once.
+ */
+public final class LoudnessNormalizer {
+
+    /**
+     * @param targetLufs Integrated loudness to aim for.
+     * @param maxGainDb Largest boost or cut applied.
+     * @param ceilingDbfs Sample peak limit.
+     * @param lookAheadMs Limiter look-ahead, the stream's steady-state latency.
+     * @param releaseMs Limiter release time constant.
+     * @param primeMs Audio measured before the first output.
+     */
+    public record Settings(double targetLufs, double maxGainDb, double ceilingDbfs,
+                           int lookAheadMs, int releaseMs, int primeMs) {
+    }
+
+    private static final double GAIN_TIME_CONSTANT_SECONDS = 1.0;
+
+    private final Settings settings;
+    private final LoudnessMeter meter;
+    private final double ceiling;
+    private final double gainSmoothing;
+    private final double release;
+    private final float[] prime;
+    private int primeLength;
+    private boolean primed;
+    private double gain = 1;
+    private double gainTarget = 1;
+
+    // Limiter state, rings of the look-ahead length
+    private final int lookAhead;
+    private final float[] delay;
+    private final double[] averageWindow;
+    private final double[] minValues;
+    private final long[] minIndexes;
+    private int minHead;
+    private int minSize;
+    private double averageSum;
+    private double envelope = 1;
+    private long position;
+
+    public LoudnessNormalizer(int sampleRate, Settings settings) {
+        this.settings = settings;
+        this.meter = new LoudnessMeter(sampleRate);
+        this.ceiling = 32768 * Math.pow(10, settings.ceilingDbfs() / 20);
+        this.gainSmoothing = 1 - Math.exp(-1 / (sampleRate * GAIN_TIME_CONSTANT_SECONDS));
+        this.release = 1 - Math.exp(-1000.0 / (sampleRate * Math.max(1, settings.releaseMs())));
+        this.prime = new float[Math.max(0, sampleRate * settings.primeMs() / 1000)];
+        this.lookAhead = Math.max(1, sampleRate * settings.lookAheadMs() / 1000);
+        this.delay = new float[lookAhead];
+        this.averageWindow = new double[lookAhead];
+        Arrays.fill(averageWindow, 1.0);
+        this.averageSum = lookAhead;
+        this.minValues = new double[lookAhead + 1];
+        this.minIndexes = new long[lookAhead + 1];
+        this.primed = prime.length == 0;
+    }
+
+    /**
+     * Largest number of samples one {@link #process} or {@link #finish} call can write for
+     * blocks of up to {@code block} samples.
+     */
+    public int maxOutput(int block) {
+        return block + prime.length + lookAhead;
+    }
+
+    /**
+     * @return Samples written to {@code out}.
+     */
+    public int process(float[] in, int offset, int count, float[] out, int outOffset) {
+        int written = 0;
+        int end = offset + count;
+        // Chunks end where the meter's reading can change, so the gain doesn't depend on how the
+        // input is split into blocks
+        for (int i = offset, n; i < end; i += n) {
+            int untilSubBlock = meter.untilSubBlock();
+            n = Math.min(end - i, untilSubBlock);
+            if (!primed) {
+                n = Math.min(n, prime.length - primeLength);
+            }
+            meter.add(in, i, n);
+            if (!primed) {
+                System.arraycopy(in, i, prime, primeLength, n);
+                primeLength += n;
+                if (primeLength == prime.length) {
+                    written += startFromPrime(out, outOffset + written);
+                }
+                continue;
+            }
+            for (int j = i; j < i + n; j++) {
+                written += step(in[j], out, outOffset + written);
+            }
+            if (n == untilSubBlock) {
+                updateGainTarget();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write what is still held back; the stream ends here.
+     */
+    public int finish(float[] out, int outOffset) {
+        int written = primed ? 0 : startFromPrime(out, outOffset);
+        // Push the last samples out of the look-ahead window
+        for (int i = 0; i < lookAhead; i++) {
+            written += step(Float.NaN, out, outOffset + written);
+        }
+        return written;
+    }
+
+    private int startFromPrime(float[] out, int outOffset) {
+        primed = true;
+        updateGainTarget();
+        gain = gainTarget;
+        int written = 0;
+        for (int i = 0; i < primeLength; i++) {
+            written += step(prime[i], out, outOffset + written);
+        }
+        return written;
+    }
+
+    private void updateGainTarget() {
+        double loudness = meter.provisional();
+        if (loudness == Double.NEGATIVE_INFINITY || loudness <= LoudnessMeter.ABSOLUTE_GATE) {
+            return; // Silence so far: nothing to measure
+        }
+        double db = Math.max(-settings.maxGainDb(), Math.min(settings.maxGainDb(), settings.targetLufs() - loudness));
+        gainTarget = Math.pow(10, db / 20);
+    }
+
+    // One sample in (NaN while flushing), at most one out
+    private int step(float x, float[] out, int at) {
+        boolean flushing = Float.isNaN(x);
+        gain += (gainTarget - gain) * gainSmoothing;
+        float v = flushing ? 0f : (float) (x * gain);
+        double required = Math.abs(v) > ceiling ? ceiling / Math.abs(v) : 1.0;
+
+        // Sliding minimum of the required gain over the last lookAhead + 1 samples
+        int capacity = minValues.length;
+        while (minSize > 0 && minValues[(minHead + minSize - 1) % capacity] >= required) {
+            minSize--;
+        }
+        minValues[(minHead + minSize) % capacity] = required;
+        minIndexes[(minHead + minSize) % capacity] = position;
+        minSize++;
+        if (minIndexes[minHead] < position - lookAhead) {
+            minHead = (minHead + 1) % capacity;
+            minSize--;
+        }
+        double minimum = minValues[minHead];
+
+        // Instant attack to the minimum, exponential release, then a moving average
+        envelope = minimum < envelope ? minimum : envelope + (minimum - envelope) * release;
+        int slot = (int) (position % lookAhead);
+        averageSum += envelope - averageWindow[slot];
+        averageWindow[slot] = envelope;
+        double limit = averageSum / lookAhead;
+
+        float delayed = delay[slot];
+        delay[slot] = v;
+        position++;
+        if (position <= lookAhead) {
+            return 0; // Still filling the look-ahead
+        }
+        double y = delayed * Math.min(1.0, limit);
+        // Guard against rounding in the running sum
+        out[at] = (float) Math.max(-ceiling, Math.min(ceiling, y));
+        return 1;
+    }
+}
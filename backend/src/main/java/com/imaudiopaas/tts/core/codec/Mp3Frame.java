@@ -0,0 +1,136 @@
+package com.imaudiopaas.tts.core.codec;
+
+/**
+ * Header of one MPEG audio Layer III frame (MPEG-1, 2 and 2.5), read without decoding, plus
+ * what the side information tells about the frame: whether it carries any audible signal.
+ *
+ * @param version 1 for MPEG-1, 2 for MPEG-2, 25 for MPEG-2.5.
+ * @param sideInfoOffset Where the side information starts, after the header and optional CRC.
+ */
+public record Mp3Frame(int version, int bitrate, int sampleRate, int channels, int length,
+                       int samples, int sideInfoOffset, int sideInfoLength) {
+
+    /** Largest {@code main_data_begin}: how far back the bit reservoir can reach. */
+    public static final int MAX_RESERVOIR = 511;
+
+    /** Longest Layer III frame (MPEG-2.5 at 160 kbit/s and 8 kHz, padded). */
+    public static final int MAX_LENGTH = 1441;
+
+    private static final int[] MPEG1_BITRATES = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] MPEG2_BITRATES = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[] MPEG1_RATES = {44100, 48000, 32000};
+
+    /*
+     * Count1 values are at most 1 in magnitude, scaled by 2^((global_gain - 210) / 4): at 150
+     * and below that is under -90 dBFS, below the last bit of 16-bit audio.
+     */
+    private static final int QUIET_GLOBAL_GAIN = 150;
+
+    // Parsed headers by the bits they depend on, so parsing a stream doesn't allocate per frame
+    private static final Mp3Frame[] HEADERS = new Mp3Frame[1 << 15];
+
+    /**
+     * The frame whose header starts at {@code offset}, or null if those four bytes aren't a
+     * valid Layer III header (free format included, which has no fixed length).
+     */
+    public static Mp3Frame parse(byte[] b, int offset) {
+        int b1 = b[offset + 1] & 0xFF;
+        int b2 = b[offset + 2] & 0xFF;
+        int b3 = b[offset + 3] & 0xFF;
+        if ((b[offset] & 0xFF) != 0xFF || (b1 & 0xE0) != 0xE0 || ((b1 >> 1) & 3) != 1) {
+            return null;
+        }
+        int key = (b1 & 0x1F) << 10 | b2 << 2 | b3 >> 6;
+        Mp3Frame frame = HEADERS[key];
+        if (frame == null) {
+            frame = parse(b1, b2, b3);
+            HEADERS[key] = frame; // Immutable, so a racing duplicate is harmless
+        }
+        return frame;
+    }
+
+    private static Mp3Frame parse(int b1, int b2, int b3) {
+        int versionBits = (b1 >> 3) & 3;
+        int bitrateIndex = b2 >> 4;
+        int rateIndex = (b2 >> 2) & 3;
+        if (versionBits == 1 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+            return null;
+        }
+        boolean mpeg1 = versionBits == 3;
+        int version = mpeg1 ? 1 : versionBits == 2 ? 2 : 25;
+        int bitrate = (mpeg1 ? MPEG1_BITRATES : MPEG2_BITRATES)[bitrateIndex] * 1000;
+        int sampleRate = MPEG1_RATES[rateIndex] / (mpeg1 ? 1 : version == 2 ? 2 : 4);
+        int channels = (b3 >> 6) == 3 ? 1 : 2;
+        int padding = (b2 >> 1) & 1;
+        int length = (mpeg1 ? 144 : 72) * bitrate / sampleRate + padding;
+        int sideInfoOffset = (b1 & 1) == 0 ? 6 : 4; // CRC follows the header when protected
+        int sideInfoLength = mpeg1 ? (channels == 1 ? 17 : 32) : (channels == 1 ? 9 : 17);
+        return new Mp3Frame(version, bitrate, sampleRate, channels, length, mpeg1 ? 1152 : 576,
+                sideInfoOffset, sideInfoLength);
+    }
+
+    /**
+     * Whether {@code next} can follow this frame in one stream: same MPEG version, sample rate
+     * and channel count.
+     */
+    public boolean continues(Mp3Frame next) {
+        return next != null && next.version == version && next.sampleRate == sampleRate && next.channels == channels;
+    }
+
+    /**
+     * Bytes after the side information: the main data, which may belong to later frames.
+     */
+    public int payload() {
+        return length - sideInfoOffset - sideInfoLength;
+    }
+
+    /**
+     * Whether the frame at {@code offset} is a Xing, Info (LAME) or VBRI header: a silent
+     * frame describing the whole file, which is wrong once files are joined. The whole frame
+     * must be in {@code b}.
+     */
+    public boolean isInfoFrame(byte[] b, int offset) {
+        int at = offset + sideInfoOffset + sideInfoLength;
+        return matches(b, at, "Xing") || matches(b, at, "Info") || matches(b, offset + 36, "VBRI");
+    }
+
+    /**
+     * Whether every granule and channel of the frame at {@code offset} is silent: no Huffman
+     * data at all, or only count1 values at a gain below what 16-bit audio can represent.
+     */
+    public boolean isSilent(byte[] b, int offset) {
+        boolean mpeg1 = version == 1;
+        int bit = (offset + sideInfoOffset) * 8;
+        // main_data_begin, private bits, and scfsi on MPEG-1
+        bit += mpeg1 ? 9 + (channels == 1 ? 5 : 3) + 4 * channels : 8 + (channels == 1 ? 1 : 2);
+        int granules = mpeg1 ? 2 : 1;
+        for (int i = 0; i < granules * channels; i++) {
+            int part23Length = bits(b, bit, 12);
+            int bigValues = bits(b, bit + 12, 9);
+            int globalGain = bits(b, bit + 21, 8);
+            if (part23Length != 0 && (bigValues != 0 || globalGain > QUIET_GLOBAL_GAIN)) {
+                return false;
+            }
+            // part2_3_length 12, big_values 9, global_gain 8, scalefac_compress 4 or 9, 22 bits
+            // of block or region info plus window switching, then 3 or 2 flags
+            bit += mpeg1 ? 59 : 63;
+        }
+        return true;
+    }
+
+    private static int bits(byte[] b, int bit, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++, bit++) {
+            value = (value << 1) | ((b[bit >> 3] >> (7 - (bit & 7))) & 1);
+        }
+        return value;
+    }
+
+    private static boolean matches(byte[] b, int at, String tag) {
+        if (at + 4 > b.length) return false;
+        for (int i = 0; i < 4; i++) {
+            if (b[at + i] != tag.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.imaudiopaas.tts.core.codec;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Normalizes 16-bit PCM of any channel count and sample rate to 16-bit mono at one output
+ * rate: channels are averaged, then the signal goes through a {@link Resampler} when the rates
+ * differ and an optional {@link LoudnessNormalizer}. Like the encoders it is fed chunks that
+ * may split sample frames anywhere, and it works in fixed blocks of {@value #BLOCK} samples
+ * with buffers allocated once per stream.
+ */
+public class PcmConverter {
+
+    static final int BLOCK = 1024;
+
+    private final PcmFormat input;
+    private final PcmFormat output;
+    private final Resampler resampler;
+    private final LoudnessNormalizer normalizer;
+    private final int frameBytes;
+    private final byte[] pending = new byte[16];
+    private final float[] block = new float[BLOCK];
+    private final float[] resampled;
+    private final float[] normalized;
+    private final byte[] bytes;
+    private int pendingLength;
+    private int blockLength;
+
+    /**
+     * @throws IllegalArgumentException if the input isn't 16-bit PCM with 1-8 channels, or the
+     *         rate change is out of range.
+     */
+    public PcmConverter(PcmFormat input, int outputRate) {
+        this(input, outputRate, null);
+    }
+
+    /**
+     * @param loudness Loudness normalization settings, or null to leave levels alone.
+     */
+    public PcmConverter(PcmFormat input, int outputRate, LoudnessNormalizer.Settings loudness) {
+        if (input.bitsPerSample() != 16 || input.channels() < 1 || input.channels() > 8) {
+            throw new IllegalArgumentException("Can only convert 16-bit PCM with 1-8 channels, got " + input);
+        }
+        this.input = input;
+        this.output = PcmFormat.mono16(outputRate);
+        this.frameBytes = input.frameBytes();
+        this.resampler = input.sampleRate() == outputRate ? null : new Resampler(input.sampleRate(), outputRate, BLOCK);
+        this.resampled = resampler == null ? block : new float[resampler.maxOutput()];
+        this.normalizer = loudness == null ? null : new LoudnessNormalizer(outputRate, loudness);
+        this.normalized = normalizer == null ? resampled : new float[normalizer.maxOutput(resampled.length)];
+        this.bytes = new byte[2 * normalized.length];
+    }
+
+    /**
+     * Whether audio in {@code input} needs converting to be mono at {@code outputRate}.
+     */
+    public static boolean isNeeded(PcmFormat input, int outputRate) {
+        return input.channels() != 1 || input.sampleRate() != outputRate;
+    }
+
+    public PcmFormat getOutputFormat() {
+        return output;
+    }
+
+    /**
+     * Output size for {@code inputBytes} of input, or -1 if unknown.
+     */
+    public long outputLength(long inputBytes) {
+        if (inputBytes < 0) return -1;
+        long frames = inputBytes / frameBytes;
+        return 2 * (resampler == null ? frames : resampler.outputLength(frames));
+    }
+
+    public void convert(byte[] pcm, int offset, int length, ByteArrayOutputStream out) {
+        int end = offset + length;
+        int i = offset;
+        while (pendingLength > 0 && i < end) {
+            pending[pendingLength++] = pcm[i++];
+            if (pendingLength == frameBytes) {
+                addFrame(pending, 0, out);
+                pendingLength = 0;
+            }
+        }
+        for (; i + frameBytes <= end; i += frameBytes) {
+            addFrame(pcm, i, out);
+        }
+        while (i < end) {
+            pending[pendingLength++] = pcm[i++];
+        }
+    }
+
+    public void finish(ByteArrayOutputStream out) {
+        if (blockLength > 0) {
+            flushBlock(out);
+        }
+        if (resampler != null) {
+            normalize(resampled, resampler.finish(resampled, 0), out);
+        }
+        if (normalizer != null) {
+            write(normalized, normalizer.finish(normalized, 0), out);
+        }
+    }
+
+    private void addFrame(byte[] pcm, int at, ByteArrayOutputStream out) {
+        int channels = input.channels();
+        int sum = 0;
+        for (int ch = 0; ch < channels; ch++) {
+            int p = at + 2 * ch;
+            sum += (short) ((pcm[p] & 0xFF) | (pcm[p + 1] << 8));
+        }
+        block[blockLength++] = channels == 1 ? sum : (float) sum / channels;
+        if (blockLength == BLOCK) {
+            flushBlock(out);
+        }
+    }
+
+    private void flushBlock(ByteArrayOutputStream out) {
+        if (resampler == null) {
+            normalize(block, blockLength, out);
+        } else {
+            normalize(resampled, resampler.process(block, 0, blockLength, resampled, 0), out);
+        }
+        blockLength = 0;
+    }
+
+    private void normalize(float[] samples, int count, ByteArrayOutputStream out) {
+        if (normalizer == null) {
+            write(samples, count, out);
+        } else {
+            write(normalized, normalizer.process(samples, 0, count, normalized, 0), out);
+        }
+    }
+
+    private void write(float[] samples, int count, ByteArrayOutputStream out) {
+        for (int i = 0; i < count; i++) {
+            int s = Math.round(samples[i]);
+            if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+            else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+            bytes[2 * i] = (byte) s;
+            bytes[2 * i + 1] = (byte) (s >> 8);
+        }
+        out.write(bytes, 0, 2 * count);
+    }
+}
@@ -0,0 +1,34 @@
+package com.imaudiopaas.tts.core.codec;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Raw PCM out, samples unchanged: the last stage when the audio only needed converting (see
+ * {@link PcmConverter}).
+ */
+public class PcmEncoder implements AudioEncoder {
+
+    @Override
+    public AudioFormat getFormat() {
+        return AudioFormat.PCM;
+    }
+
+    @Override
+    public void begin(PcmFormat format, long pcmBytes, ByteArrayOutputStream out) {
+    }
+
+    @Override
+    public void encode(byte[] pcm, int offset, int length, ByteArrayOutputStream out) {
+        out.write(pcm, offset, length);
+    }
+
+    @Override
+    public void finish(ByteArrayOutputStream out) {
+    }
+
+    @Override
+    public long encodedLength(PcmFormat format, long pcmBytes) {
+        return pcmBytes;
+    }
+}
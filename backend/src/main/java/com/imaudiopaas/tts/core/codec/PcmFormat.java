@@ -0,0 +1,19 @@
+package com.imaudiopaas.tts.core.codec;
+
+/**
+ * Layout of signed little-endian PCM samples, interleaved by channel.
+ */
+public record PcmFormat(int sampleRate, int channels, int bitsPerSample) {
+
+    public static PcmFormat mono16(int sampleRate) {
+        return new PcmFormat(sampleRate, 1, 16);
+    }
+
+    public int frameBytes() {
+        return channels * bitsPerSample / 8;
+    }
+
+    public int byteRate() {
+        return sampleRate * frameBytes();
+    }
+}
@@ -0,0 +1,181 @@
+package com.imaudiopaas.tts.core.codec;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming sample rate converter for one channel, a polyphase windowed-sinc (Kaiser) filter
+ * with {@value #TAPS} taps per phase, times the decimation factor when downsampling so the
+ * filter keeps its sharpness relative to the lower cutoff. The rate ratio is reduced to
+ * {@code up/down} (22050 to 24000 Hz is 160/147), and each output sample is one dot product of
+ * input samples with the filter phase that matches its fractional position, so there is no
+ * upsampled intermediate signal.
+ *
+ * <p>The filter looks half its length ahead instead of delaying the output, so
+ * output sample {@code n} lines up with input time {@code n * inRate / outRate} and the output
+ * is exactly {@link #outputLength} samples long. Input is fed in blocks of up to
+ * {@code maxBlock} samples; after construction nothing is allocated. Filter tables are shared
+ * between instances with the same ratio.
+ *
+ * <p>Passband is flat to 90% of the lower Nyquist frequency; stopband attenuation is about
+ * 80 dB. The inner loop is a plain contiguous float dot product, which C2 vectorizes.
+ */
+public final class Resampler {
+
+    static final int TAPS = 32;
+    private static final double PASSBAND = 0.9;
+    private static final double KAISER_BETA = 8.0;
+    private static final Map<Long, float[]> FILTERS = new ConcurrentHashMap<>();
+
+    private final int up;
+    private final int down;
+    private final int taps;
+    private final float[] filter;
+    private final int maxBlock;
+    private final float[] history;
+    private int length;
+    // Absolute input index of history[0]; starts negative, with zeros before the first sample
+    private long historyStart;
+    private long inputCount;
+    private long outputCount;
+
+    public Resampler(int inputRate, int outputRate, int maxBlock) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rates " + inputRate + " -> " + outputRate);
+        }
+        int gcd = gcd(inputRate, outputRate);
+        this.up = outputRate / gcd;
+        this.down = inputRate / gcd;
+        if (down > TAPS / 4 * up) {
+            throw new IllegalArgumentException("Downsampling " + inputRate + " -> " + outputRate + " is too steep");
+        }
+        this.taps = TAPS * ((down + up - 1) / up);
+        this.filter = FILTERS.computeIfAbsent(((long) up << 32) | down, k -> design(up, down, taps));
+        this.maxBlock = maxBlock;
+        this.history = new float[2 * taps + maxBlock];
+        this.length = taps;
+        this.historyStart = -taps;
+    }
+
+    /**
+     * Output samples for {@code inputSamples} of input: {@code ceil(inputSamples * outRate / inRate)}.
+     */
+    public long outputLength(long inputSamples) {
+        return (inputSamples * up + down - 1) / down;
+    }
+
+    /**
+     * Largest number of samples one {@link #process} or {@link #finish} call can write.
+     */
+    public int maxOutput() {
+        return (int) ((long) (maxBlock + taps) * up / down) + 2;
+    }
+
+    /**
+     * Feed a block of input and write the output it completes.
+     *
+     * @return Samples written to {@code out}.
+     */
+    public int process(float[] in, int offset, int count, float[] out, int outOffset) {
+        if (count > maxBlock) {
+            throw new IllegalArgumentException("Block of " + count + " exceeds " + maxBlock);
+        }
+        System.arraycopy(in, offset, history, length, count);
+        length += count;
+        inputCount += count;
+        return drain(out, outOffset, Long.MAX_VALUE);
+    }
+
+    /**
+     * Write the output still held back by the filter's look-ahead; the stream ends here.
+     */
+    public int finish(float[] out, int outOffset) {
+        // Zeros past the end stand in for the look-ahead the last samples need
+        Arrays.fill(history, length, length + taps / 2 + 1, 0f);
+        length += taps / 2 + 1;
+        return drain(out, outOffset, outputLength(inputCount));
+    }
+
+    private int drain(float[] out, int outOffset, long limit) {
+        final int taps = this.taps;
+        final float[] h = filter;
+        final float[] x = history;
+        long available = historyStart + length;
+        int written = 0;
+        while (outputCount < limit) {
+            long position = outputCount * down;
+            long q = position / up;
+            if (q + taps / 2 >= available) break;
+            int phase = (int) (position - q * up);
+            int start = (int) (q + taps / 2 - (taps - 1) - historyStart);
+            int base = phase * taps;
+            float acc = 0f;
+            for (int k = 0; k < taps; k++) {
+                acc += h[base + k] * x[start + k];
+            }
+            out[outOffset + written++] = acc;
+            outputCount++;
+        }
+        // Keep only what the next output still needs
+        long q = outputCount * down / up;
+        int drop = (int) Math.min(length, Math.max(0, q + taps / 2 - (taps - 1) - historyStart));
+        if (drop > 0) {
+            System.arraycopy(x, drop, x, 0, length - drop);
+            length -= drop;
+            historyStart += drop;
+        }
+        return written;
+    }
+
+    /*
+     * Coefficient for phase p and input sample k of the window is the ideal low-pass response
+     * at the distance between that input sample and the output position, stored in input order
+     * so the inner loop walks both arrays forward.
+     */
+    private static float[] design(int up, int down, int taps) {
+        double cutoff = 0.5 * Math.min(1.0, (double) up / down) * PASSBAND; // cycles per input sample
+        double half = taps / 2.0;
+        double i0Beta = besselI0(KAISER_BETA);
+        float[] filter = new float[up * taps];
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            double[] phase = new double[taps];
+            for (int j = 0; j < taps; j++) {
+                // Input sample j sits at q + taps/2 - (taps-1) + j; the output at q + p/up
+                double t = half - (taps - 1) + j - (double) p / up;
+                double x = t / half;
+                double window = Math.abs(x) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / i0Beta;
+                double arg = 2 * cutoff * t;
+                double sinc = arg == 0 ? 1 : Math.sin(Math.PI * arg) / (Math.PI * arg);
+                phase[j] = 2 * cutoff * sinc * window;
+                sum += phase[j];
+            }
+            // Unity gain at DC for every phase, otherwise the phases ripple at the output rate
+            for (int j = 0; j < taps; j++) {
+                filter[p * taps + j] = (float) (phase[j] / sum);
+            }
+        }
+        return filter;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+            if (term < 1e-12 * sum) break;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
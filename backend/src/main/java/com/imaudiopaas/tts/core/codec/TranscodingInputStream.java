@@ -0,0 +1,123 @@
+package com.imaudiopaas.tts.core.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Encodes a PCM stream on the fly as it is read: each read pulls one chunk of PCM from the
+ * source, runs it through the optional {@link PcmConverter} and the encoder and serves the
+ * output, so memory stays at one chunk plus one encoded frame and audio keeps flowing at the
+ * provider's pace.
+ *
+ * <p>Closing returns the encoder to its pool and closes the source, which is what releases the
+ * upstream connection of an abandoned stream.
+ */
+public class TranscodingInputStream extends InputStream {
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+
+    private final InputStream source;
+    private final PcmConverter converter;
+    private final AudioEncoder encoder;
+    private final EncoderPool pool;
+    private final byte[] chunk = new byte[CHUNK_BYTES];
+    private final Output converted;
+    private final Output output = new Output();
+    private int position;
+    private boolean sourceDone;
+    private boolean closed;
+
+    /**
+     * @param pcmBytes PCM bytes the source will deliver, or -1 if unknown.
+     */
+    public TranscodingInputStream(InputStream source, PcmFormat format, long pcmBytes,
+                                  AudioEncoder encoder, EncoderPool pool) {
+        this(source, format, pcmBytes, null, encoder, pool);
+    }
+
+    /**
+     * @param format Layout of the source PCM.
+     * @param pcmBytes PCM bytes the source will deliver, or -1 if unknown.
+     * @param converter Applied before encoding, or null.
+     */
+    public TranscodingInputStream(InputStream source, PcmFormat format, long pcmBytes, PcmConverter converter,
+                                  AudioEncoder encoder, EncoderPool pool) {
+        this.source = source;
+        this.converter = converter;
+        this.converted = converter == null ? null : new Output();
+        this.encoder = encoder;
+        this.pool = pool;
+        if (converter == null) {
+            encoder.begin(format, pcmBytes, output);
+        } else {
+            encoder.begin(converter.getOutputFormat(), converter.outputLength(pcmBytes), output);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (len == 0) return 0;
+        while (position == output.size()) {
+            if (sourceDone) return -1;
+            output.reset();
+            position = 0;
+            int n = source.read(chunk);
+            if (n < 0) {
+                sourceDone = true;
+                if (converter != null) {
+                    converted.reset();
+                    converter.finish(converted);
+                    encoder.encode(converted.buffer(), 0, converted.size(), output);
+                }
+                encoder.finish(output);
+            } else if (converter != null) {
+                converted.reset();
+                converter.convert(chunk, 0, n, converted);
+                encoder.encode(converted.buffer(), 0, converted.size(), output);
+            } else {
+                encoder.encode(chunk, 0, n, output);
+            }
+        }
+        int n = Math.min(len, output.size() - position);
+        System.arraycopy(output.buffer(), position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return closed ? 0 : output.size() - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            source.close();
+        } finally {
+            // begin() resets all state, so an encoder abandoned mid-stream is reusable too
+            pool.release(encoder);
+        }
+    }
+
+    // Exposes the internal array to avoid a copy per read
+    private static final class Output extends ByteArrayOutputStream {
+        Output() {
+            super(CHUNK_BYTES);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.imaudiopaas.tts.core.codec;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * PCM in a RIFF/WAVE container: a 44 byte header, then the samples unchanged. When the length
+ * isn't known up front the sizes are written as {@link WavHeader#UNKNOWN_SIZE}.
+ */
+public class WavEncoder implements AudioEncoder {
+
+    @Override
+    public AudioFormat getFormat() {
+        return AudioFormat.WAV;
+    }
+
+    @Override
+    public void begin(PcmFormat format, long pcmBytes, ByteArrayOutputStream out) {
+        out.writeBytes(WavHeader.write(format, pcmBytes < 0 ? WavHeader.UNKNOWN_SIZE : pcmBytes));
+    }
+
+    @Override
+    public void encode(byte[] pcm, int offset, int length, ByteArrayOutputStream out) {
+        out.write(pcm, offset, length);
+    }
+
+    @Override
+    public void finish(ByteArrayOutputStream out) {
+    }
+
+    @Override
+    public long encodedLength(PcmFormat format, long pcmBytes) {
+        return pcmBytes < 0 ? -1 : WavHeader.CANONICAL_SIZE + pcmBytes;
+    }
+}
@@ -0,0 +1,158 @@
+package com.imaudiopaas.tts.core.codec;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A RIFF/WAVE header read off the front of a stream, up to and including the size field of the
+ * data chunk, so the stream is left positioned at the first sample.
+ */
+public final class WavHeader {
+
+    /** Size value streamed WAVs use when the length isn't known yet. */
+    public static final long UNKNOWN_SIZE = 0xFFFFFFFFL;
+    public static final int CANONICAL_SIZE = 44;
+
+    private final byte[] bytes;
+    private final long dataSize;
+    private final PcmFormat format;
+
+    private WavHeader(byte[] bytes, long dataSize, PcmFormat format) {
+        this.bytes = bytes;
+        this.dataSize = dataSize;
+        this.format = format;
+    }
+
+    public static WavHeader read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header = new byte[12];
+        data.readFully(header);
+        if (!tag(header, 0, "RIFF") || !tag(header, 8, "WAVE")) {
+            throw new IOException("Not a RIFF/WAVE stream");
+        }
+        PcmFormat format = null;
+        while (true) {
+            byte[] chunk = new byte[8];
+            try {
+                data.readFully(chunk);
+            } catch (EOFException e) {
+                throw new IOException("WAV stream has no data chunk", e);
+            }
+            long size = ByteBuffer.wrap(chunk, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt() & UNKNOWN_SIZE;
+            header = append(header, chunk, chunk.length);
+            if (tag(chunk, 0, "data")) {
+                return new WavHeader(header, size, format);
+            }
+            // fmt, LIST, fact...: kept in the header, padded to an even size
+            byte[] body = new byte[(int) (size + (size & 1))];
+            data.readFully(body);
+            if (tag(chunk, 0, "fmt ") && size >= 16) {
+                ByteBuffer fmt = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+                format = new PcmFormat(fmt.getInt(4), fmt.getShort(2), fmt.getShort(14));
+            }
+            header = append(header, body, body.length);
+        }
+    }
+
+    /**
+     * A canonical 44 byte header for PCM data.
+     *
+     * @param dataSize Bytes of samples, or {@link #UNKNOWN_SIZE}.
+     */
+    public static byte[] write(PcmFormat format, long dataSize) {
+        long riffSize = dataSize == UNKNOWN_SIZE ? UNKNOWN_SIZE : Math.min(UNKNOWN_SIZE, dataSize + 36);
+        ByteBuffer header = ByteBuffer.allocate(CANONICAL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ascii("RIFF")).putInt((int) riffSize).put(ascii("WAVE"));
+        header.put(ascii("fmt ")).putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) format.channels())
+                .putInt(format.sampleRate())
+                .putInt(format.byteRate())
+                .putShort((short) format.frameBytes())
+                .putShort((short) format.bitsPerSample());
+        header.put(ascii("data")).putInt((int) dataSize);
+        return header.array();
+    }
+
+    /** The header as read, sizes included. */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /** The same header with the RIFF and data sizes set to {@link #UNKNOWN_SIZE}. */
+    public byte[] withUnknownSize() {
+        byte[] copy = bytes.clone();
+        ByteBuffer buffer = ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(4, (int) UNKNOWN_SIZE);
+        buffer.putInt(copy.length - 4, (int) UNKNOWN_SIZE);
+        return copy;
+    }
+
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /** Null if the header had no fmt chunk before the data. */
+    public PcmFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * The samples that follow the header; trailing chunks after the data are cut off when the
+     * data size is declared.
+     */
+    public InputStream data(InputStream in) {
+        if (dataSize == 0 || dataSize == UNKNOWN_SIZE) {
+            return in;
+        }
+        return new BoundedInputStream(in, dataSize);
+    }
+
+    private static boolean tag(byte[] bytes, int offset, String tag) {
+        for (int i = 0; i < 4; i++) {
+            if (bytes[offset + i] != tag.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String tag) {
+        return tag.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] append(byte[] head, byte[] tail, int length) {
+        byte[] joined = Arrays.copyOf(head, head.length + length);
+        System.arraycopy(tail, 0, joined, head.length, length);
+        return joined;
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.imaudiopaas.tts.core.domain;
+
+import java.util.Locale;
+
+/**
+ * Scheduling class of a request, for calls waiting on a provider config's concurrency limit:
+ * interactive for live callers such as voice bots, bulk for batches and long-form jobs, standard
+ * for everything in between. Chosen by the {@value #HEADER} header, else by the endpoint.
+ */
+public enum Priority {
+    INTERACTIVE, STANDARD, BULK;
+
+    public static final String HEADER = "X-Priority";
+
+    /**
+     * Parse a header value, case-insensitive.
+     *
+     * @param value The value, may be null or blank.
+     * @param fallback Class to use when there is no value.
+     * @throws IllegalArgumentException if the value names no class.
+     */
+    public static Priority parse(String value, Priority fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported " + HEADER + ": " + value
+                    + " (interactive, standard or bulk)");
+        }
+    }
+
+    /**
+     * Lower case name, as used in headers, configuration keys and metric tags.
+     */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
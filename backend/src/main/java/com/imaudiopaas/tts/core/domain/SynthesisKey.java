@@ -0,0 +1,73 @@
+package com.imaudiopaas.tts.core.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Canonical identity of a synthesis request: two requests with the same key produce the same
+ * audio. Covers text, voice, model, speed, format, sample rate, loudness target and
+ * {@code extraBody} (with map keys sorted, so field order in the client's JSON does not matter);
+ * transport options such as
+ * {@code stream} are left out.
+ */
+public final class SynthesisKey {
+
+    private static final ObjectMapper CANONICAL_JSON = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private SynthesisKey() {
+    }
+
+    /**
+     * Get the key of a request.
+     *
+     * @param request The request.
+     * @return Hex encoded SHA-256 of the canonical request fields.
+     */
+    public static String of(TtsRequest request) {
+        return of(request, null);
+    }
+
+    /**
+     * Get the key of a request once it has been resolved to a provider, with {@code voiceId}
+     * holding the provider's native voice. Used for caching audio per upstream voice.
+     *
+     * @param request The request with the native voice id.
+     * @param providerType The provider serving the request.
+     * @return Hex encoded SHA-256 of the canonical request fields and provider.
+     */
+    public static String of(TtsRequest request, ProviderType providerType) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (providerType != null) {
+            fields.put("provider", providerType);
+        }
+        fields.put("text", request.getText());
+        fields.put("voice", request.getVoiceId());
+        fields.put("model", request.getModel());
+        fields.put("speed", request.getSpeed());
+        fields.put("format", request.getFormat());
+        if (request.getSampleRate() != null) {
+            // Only when set, so keys of requests without one are unchanged
+            fields.put("sample_rate", request.getSampleRate());
+        }
+        if (request.getLoudnessTarget() != null) {
+            fields.put("loudness", request.getLoudnessTarget());
+        }
+        fields.put("extra", request.getExtraBody());
+        try {
+            byte[] canonical = CANONICAL_JSON.writeValueAsBytes(fields);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("extra_body cannot be serialized: " + e.getOriginalMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class TtsRequest {
     @NotBlank
     private String text;
@@ -33,12 +33,36 @@ public class TtsRequest {
     @Builder.Default
     private AudioFormat format = AudioFormat.MP3;
 
+    /**
+     * Sample rate in Hz for PCM, WAV and FLAC output; null for the gateway's default.
+     */
+    private Integer sampleRate;
+
+    /**
+     * Integrated loudness in LUFS to normalize PCM, WAV and FLAC output to; null to leave levels
+     * as the provider made them. Resolved by the gateway from its configuration.
+     */
+    private Double loudnessTarget;
+
     /**
      * Whether to stream the response.
      */
     @Builder.Default
     private boolean stream = false;
 
+    /**
+     * Skip the audio cache lookup for this request and always synthesize; the result still
+     * replaces the cached entry.
+     */
+    @Builder.Default
+    private boolean cacheBypass = false;
+
+    /**
+     * Scheduling class while waiting for a provider slot; null is standard. Not part of the
+     * request's identity (cache key), but only callers of the same class are coalesced.
+     */
+    private Priority priority;
+
     /**
      * Extended parameters for specific providers (emotion, tone).
      * Mapped from JSON field `extra_body`.
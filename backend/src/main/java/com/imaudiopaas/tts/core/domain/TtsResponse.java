@@ -1,16 +1,27 @@
 package com.imaudiopaas.tts.core.domain;
 
+import com.imaudiopaas.tts.core.codec.AudioIndex;
 import java.io.InputStream;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class TtsResponse {
     private InputStream audioStream;
     private AudioFormat format;
     private long contentLength;
 
+    /**
+     * Sample rate of PCM (or WAV) audio in Hz, 0 when unknown or not applicable.
+     */
+    private int sampleRate;
+
+    /**
+     * Content hash and seek points of audio served from the cache; null for fresh audio.
+     */
+    private AudioIndex index;
+
     public String getContentType() {
         return format.getContentType();
     }
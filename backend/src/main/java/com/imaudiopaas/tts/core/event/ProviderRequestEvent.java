@@ -11,13 +11,20 @@ public class ProviderRequestEvent extends ApplicationEvent {
     private final Long latencyMs;
     private final String errorMessage;
     private final LocalDateTime requestTime;
+    private final int attempt;
 
     public ProviderRequestEvent(Object source, String providerName, boolean isSuccess, Long latencyMs, String errorMessage) {
+        this(source, providerName, isSuccess, latencyMs, errorMessage, 1);
+    }
+
+    public ProviderRequestEvent(Object source, String providerName, boolean isSuccess, Long latencyMs, String errorMessage,
+                                int attempt) {
         super(source);
         this.providerName = providerName;
         this.isSuccess = isSuccess;
         this.latencyMs = latencyMs;
         this.errorMessage = errorMessage;
         this.requestTime = LocalDateTime.now();
+        this.attempt = attempt;
     }
 }
@@ -0,0 +1,18 @@
+package com.imaudiopaas.tts.core.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published whenever a {@code ProviderConfig} or {@code VoiceDefinition} row is written.
+ * The routing snapshot is rebuilt once the surrounding transaction commits.
+ */
+@Getter
+public class RoutingConfigChangedEvent extends ApplicationEvent {
+    private final String entityType;
+
+    public RoutingConfigChangedEvent(Object source, String entityType) {
+        super(source);
+        this.entityType = entityType;
+    }
+}
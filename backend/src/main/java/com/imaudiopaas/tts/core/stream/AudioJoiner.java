@@ -0,0 +1,108 @@
+package com.imaudiopaas.tts.core.stream;
+
+import com.imaudiopaas.tts.core.codec.PcmFormat;
+import com.imaudiopaas.tts.core.codec.WavHeader;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Rules for playing separately synthesized pieces of audio back to back as one stream, without
+ * decoding anything.
+ *
+ * <ul>
+ *   <li>MP3: pieces are parsed frame by frame (see {@link Mp3PieceStream}); ID3 tags, the
+ *       Xing/Info frame of each piece (which would tell players the first piece is the whole
+ *       file) and stray bytes are dropped, so the result is one clean run of frames.</li>
+ *   <li>WAV: the first piece keeps its header, with the RIFF and data sizes set to
+ *       {@code 0xFFFFFFFF} (length unknown, as for piped WAV); following pieces contribute only
+ *       the samples of their data chunk.</li>
+ *   <li>PCM: concatenation.</li>
+ *   <li>AAC (ADTS): plain concatenation, every frame is self-describing.</li>
+ *   <li>OPUS (Ogg) and FLAC can't be joined this way: chained Ogg streams and a second
+ *       STREAMINFO block break many players.</li>
+ * </ul>
+ * Providers pad every piece with silence, which adds up to long gaps between sentences. With
+ * {@code keepSilenceMs} the silence at the start and end of each MP3, WAV and PCM piece is cut
+ * to at most that much, so a join leaves a natural pause of about twice it. Everything works
+ * on the stream as it arrives: a piece is never buffered whole.
+ *
+ * <p>All pieces must share the sample rate and channel layout, which holds when they come from
+ * the same provider config and request parameters.
+ */
+public final class AudioJoiner {
+
+    private AudioJoiner() {
+    }
+
+    public static boolean canJoin(AudioFormat format) {
+        return format == AudioFormat.MP3 || format == AudioFormat.WAV
+                || format == AudioFormat.PCM || format == AudioFormat.AAC;
+    }
+
+    /**
+     * The first piece of a joined stream, with its edge silence left alone.
+     */
+    public static InputStream first(AudioFormat format, InputStream in) throws IOException {
+        return first(format, in, 0, -1);
+    }
+
+    /**
+     * The first piece of a joined stream.
+     *
+     * @param pcmSampleRate Sample rate of PCM pieces (16-bit mono), 0 if unknown, which leaves
+     *        their silence alone.
+     * @param keepSilenceMs Silence kept at each edge of the piece, or -1 to keep it all.
+     */
+    public static InputStream first(AudioFormat format, InputStream in, int pcmSampleRate, int keepSilenceMs)
+            throws IOException {
+        if (format != AudioFormat.WAV) {
+            return piece(format, in, pcmSampleRate, keepSilenceMs);
+        }
+        WavHeader header = WavHeader.read(in);
+        return new SequenceInputStream(new ByteArrayInputStream(header.withUnknownSize()),
+                trimmed(header.data(in), header.getFormat(), keepSilenceMs));
+    }
+
+    /**
+     * A piece following the first, reduced to what can be appended to it, with its edge
+     * silence left alone.
+     */
+    public static InputStream next(AudioFormat format, InputStream in) throws IOException {
+        return next(format, in, 0, -1);
+    }
+
+    /**
+     * A piece following the first, reduced to what can be appended to it.
+     *
+     * @see #first(AudioFormat, InputStream, int, int)
+     */
+    public static InputStream next(AudioFormat format, InputStream in, int pcmSampleRate, int keepSilenceMs)
+            throws IOException {
+        if (format != AudioFormat.WAV) {
+            return piece(format, in, pcmSampleRate, keepSilenceMs);
+        }
+        WavHeader header = WavHeader.read(in);
+        return trimmed(header.data(in), header.getFormat(), keepSilenceMs);
+    }
+
+    private static InputStream piece(AudioFormat format, InputStream in, int pcmSampleRate, int keepSilenceMs) {
+        switch (format) {
+            case MP3:
+                return new Mp3PieceStream(in, keepSilenceMs < 0 ? -1 : keepSilenceMs * 1000L);
+            case PCM:
+                return pcmSampleRate > 0 ? trimmed(in, PcmFormat.mono16(pcmSampleRate), keepSilenceMs) : in;
+            default:
+                return in;
+        }
+    }
+
+    private static InputStream trimmed(InputStream pcm, PcmFormat format, int keepSilenceMs) {
+        if (keepSilenceMs < 0 || format == null || format.bitsPerSample() != 16) {
+            return pcm;
+        }
+        return new PcmPieceStream(pcm, format, keepSilenceMs * 1000L);
+    }
+}
@@ -0,0 +1,275 @@
+package com.imaudiopaas.tts.core.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded hand-off of audio from a provider's push callbacks to the pull-based
+ * {@link #getInputStream() stream} of a {@code TtsResponse}, so the HTTP response can start with
+ * the first audio frame instead of after the whole utterance.
+ *
+ * <p>Producers are SDK callbacks running on a shared network IO thread, which must never be
+ * parked, so {@link #offer} doesn't block: it fails the pipe once the reader is
+ * {@code capacity} bytes behind.
+ *
+ * <p>Failures are reported by where they happen. Before the first byte the provider can still
+ * throw from {@code synthesize}, see {@link #awaitFirstAudio}. After it, the reader gets the
+ * bytes already received followed by an {@link UpstreamFailedException}, so callers can tell a
+ * truncated stream from a complete one and never cache it.
+ *
+ * <p>{@code onClose} runs once, when the reader closes the stream, and is where providers
+ * release their upstream session.
+ */
+@Slf4j
+public class AudioPipe {
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readable = lock.newCondition();
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    private final InputStream inputStream = new Reader();
+
+    private int headOffset;
+    private long buffered;
+    private long written;
+    private boolean completed;
+    private Throwable failure;
+    private boolean closed;
+    private Runnable onClose = () -> { };
+
+    public AudioPipe(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Thrown by the reader when the upstream failed after some audio had been delivered.
+     */
+    public static class UpstreamFailedException extends IOException {
+        private final long bytesDelivered;
+
+        public UpstreamFailedException(String message, long bytesDelivered, Throwable cause) {
+            super(message + " (after " + bytesDelivered + " bytes)", cause);
+            this.bytesDelivered = bytesDelivered;
+        }
+
+        public long getBytesDelivered() {
+            return bytesDelivered;
+        }
+    }
+
+    /**
+     * Run {@code action} when the reader closes the stream; runs at once if it already has.
+     */
+    public void onClose(Runnable action) {
+        boolean runNow;
+        lock.lock();
+        try {
+            runNow = closed;
+            onClose = action;
+        } finally {
+            lock.unlock();
+        }
+        if (runNow) action.run();
+    }
+
+    /**
+     * Queue a chunk of audio without ever blocking. A chunk that doesn't fit fails the pipe: the
+     * reader gets the audio buffered so far, then an {@link UpstreamFailedException}, and closing
+     * the stream releases the upstream session as usual.
+     *
+     * @return false if the reader is gone or too slow; the producer should stop.
+     */
+    public boolean offer(ByteBuffer data) {
+        int n = data.remaining();
+        if (n == 0) return !closed;
+        lock.lock();
+        try {
+            if (closed || failure != null || completed) {
+                return false;
+            }
+            // A single chunk larger than the capacity is let through when the pipe is empty
+            if (buffered > 0 && buffered + n > capacity) {
+                failLocked(new IOException("Consumer fell more than " + capacity + " bytes behind"));
+                return false;
+            }
+            byte[] chunk = new byte[n];
+            data.get(chunk);
+            chunks.add(chunk);
+            buffered += n;
+            written += n;
+            readable.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The upstream finished; the reader sees end of stream after the buffered audio. */
+    public void complete() {
+        lock.lock();
+        try {
+            if (failure == null) {
+                completed = true;
+                readable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The upstream failed; ignored once the pipe has completed. */
+    public void fail(Throwable cause) {
+        lock.lock();
+        try {
+            failLocked(cause);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void failLocked(Throwable cause) {
+        if (!completed && failure == null) {
+            failure = cause;
+            readable.signalAll();
+        }
+    }
+
+    /**
+     * Wait until the first audio arrives, the upstream finishes or fails, or the timeout passes.
+     *
+     * @return false on timeout.
+     */
+    public boolean awaitFirstAudio(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (written == 0 && !completed && failure == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                readable.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Bytes received from upstream so far. */
+    public long getBytesWritten() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isCompleted() {
+        lock.lock();
+        try {
+            return completed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The failure reported by the upstream, or null. */
+    public Throwable getFailure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    private final class Reader extends InputStream {
+        private long delivered;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            lock.lock();
+            try {
+                while (chunks.isEmpty()) {
+                    if (closed) throw new IOException("Stream closed");
+                    if (failure != null) {
+                        throw new UpstreamFailedException("Upstream synthesis failed: " + failure.getMessage(),
+                                delivered, failure);
+                    }
+                    if (completed) return -1;
+                    try {
+                        readable.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for audio", e);
+                    }
+                }
+                int copied = 0;
+                while (copied < len && !chunks.isEmpty()) {
+                    byte[] head = chunks.peek();
+                    int n = Math.min(len - copied, head.length - headOffset);
+                    System.arraycopy(head, headOffset, b, off + copied, n);
+                    copied += n;
+                    headOffset += n;
+                    if (headOffset == head.length) {
+                        chunks.poll();
+                        headOffset = 0;
+                    }
+                }
+                buffered -= copied;
+                delivered += copied;
+                return copied;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int available() {
+            lock.lock();
+            try {
+                return (int) Math.min(Integer.MAX_VALUE, buffered);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            Runnable action;
+            lock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                chunks.clear();
+                buffered = 0;
+                readable.signalAll();
+                action = onClose;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("Failed to release upstream after the audio stream was closed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.imaudiopaas.tts.core.stream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded free list of equally sized byte arrays, so copying large audio bodies doesn't
+ * allocate a fresh buffer per response. Not thread-local: with virtual threads there can be far
+ * more threads than concurrent copies.
+ *
+ * <p>{@link #acquire()} never blocks; when the pool is empty it allocates, and {@link #release}
+ * drops buffers beyond {@code maxPooled}, so a burst costs garbage rather than waiting.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<byte[]> free;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = free.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            free.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getPooled() {
+        return free.size();
+    }
+}
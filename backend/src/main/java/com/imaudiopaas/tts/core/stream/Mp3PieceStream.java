@@ -0,0 +1,78 @@
+package com.imaudiopaas.tts.core.stream;
+
+import com.imaudiopaas.tts.core.codec.Mp3Frame;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An MP3 piece reduced to its audio frames: ID3v2 tags, the Xing/Info/VBRI frame, trailing
+ * tags (ID3v1, APE) and any other bytes between frames are dropped, and so is a truncated
+ * last frame, which would otherwise swallow the first header of the next piece.
+ *
+ * <p>After junk the parser only accepts a header when the frame after it starts with a
+ * matching header too, so sync-like bytes inside a tag aren't taken for audio. Leading silent
+ * frames are trimmed while at least {@link Mp3Frame#MAX_RESERVOIR} bytes of main data are
+ * kept before the first audible frame, since it may start its data in them.
+ */
+final class Mp3PieceStream extends TrimmedPieceStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Mp3Frame stream;
+    private boolean synced;
+    private boolean first = true;
+
+    Mp3PieceStream(InputStream in, long keepMicros) {
+        super(in, BUFFER_SIZE, keepMicros, Mp3Frame.MAX_RESERVOIR);
+    }
+
+    @Override
+    protected boolean nextUnit() throws IOException {
+        while (fill(10) >= 4) {
+            if (first && buf[start] == 'I' && buf[start + 1] == 'D' && buf[start + 2] == '3' && end - start >= 10) {
+                skipInput(10 + id3v2Size(buf, start));
+                continue;
+            }
+            Mp3Frame frame = Mp3Frame.parse(buf, start);
+            if (frame == null || (stream != null && !stream.continues(frame))) {
+                start++;
+                synced = false;
+                continue;
+            }
+            int needed = synced ? frame.length() : frame.length() + 4;
+            int available = fill(needed);
+            if (available < frame.length()) {
+                skipInput(available); // Truncated
+                return false;
+            }
+            if (!synced && available >= needed && !frame.continues(Mp3Frame.parse(buf, start + frame.length()))) {
+                start++;
+                continue;
+            }
+            synced = true;
+            unitOffset = start;
+            unitLength = frame.length();
+            start += frame.length();
+            if (first) {
+                first = false;
+                if (frame.isInfoFrame(buf, unitOffset)) {
+                    continue;
+                }
+            }
+            stream = frame;
+            unitMicros = frame.samples() * 1_000_000L / frame.sampleRate();
+            unitReserve = frame.payload();
+            unitSilent = frame.isSilent(buf, unitOffset);
+            return true;
+        }
+        skipInput(end - start);
+        return false;
+    }
+
+    // Syncsafe size, plus a 10 byte footer if flagged
+    private static long id3v2Size(byte[] header, int at) {
+        long size = ((header[at + 6] & 0x7F) << 21) | ((header[at + 7] & 0x7F) << 14)
+                | ((header[at + 8] & 0x7F) << 7) | (header[at + 9] & 0x7F);
+        return (header[at + 5] & 0x10) != 0 ? size + 10 : size;
+    }
+}
@@ -0,0 +1,67 @@
+package com.imaudiopaas.tts.core.stream;
+
+import com.imaudiopaas.tts.core.codec.PcmFormat;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A piece of 16-bit PCM, in units of up to {@value #SILENT_UNIT_MS} ms of silence or any
+ * length of sound, so edges are trimmed to that precision. A sample frame is silent when every
+ * channel stays within {@value #SILENCE_DBFS} dBFS. A trailing partial sample frame is
+ * dropped, as it would shift every sample of the next piece by a byte.
+ */
+final class PcmPieceStream extends TrimmedPieceStream {
+
+    static final int SILENT_UNIT_MS = 10;
+    static final int SILENCE_DBFS = -60;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int THRESHOLD = (int) Math.round(32768 * Math.pow(10, SILENCE_DBFS / 20.0));
+
+    private final int frameBytes;
+    private final int sampleRate;
+    private final int maxSilentBytes;
+
+    PcmPieceStream(InputStream in, PcmFormat format, long keepMicros) {
+        super(in, BUFFER_SIZE, keepMicros, 0);
+        if (format.bitsPerSample() != 16) {
+            throw new IllegalArgumentException("Can only trim 16-bit PCM, got " + format);
+        }
+        this.frameBytes = format.frameBytes();
+        this.sampleRate = format.sampleRate();
+        this.maxSilentBytes = Math.max(1, sampleRate * SILENT_UNIT_MS / 1000) * frameBytes;
+    }
+
+    @Override
+    protected boolean nextUnit() throws IOException {
+        int available = fill(BUFFER_SIZE / 2);
+        if (available < frameBytes) {
+            skipInput(available);
+            return false;
+        }
+        int from = start;
+        int whole = from + available / frameBytes * frameBytes;
+        boolean silent = isSilent(from);
+        int limit = silent ? Math.min(whole, from + maxSilentBytes) : whole;
+        int at = from + frameBytes;
+        while (at < limit && isSilent(at) == silent) {
+            at += frameBytes;
+        }
+        unitOffset = from;
+        unitLength = at - from;
+        unitMicros = (long) (unitLength / frameBytes) * 1_000_000L / sampleRate;
+        unitReserve = 0;
+        unitSilent = silent;
+        start = at;
+        return true;
+    }
+
+    private boolean isSilent(int at) {
+        for (int i = at; i < at + frameBytes; i += 2) {
+            int sample = (short) ((buf[i] & 0xFF) | (buf[i + 1] << 8));
+            if (sample > THRESHOLD || sample < -THRESHOLD) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,243 @@
+package com.imaudiopaas.tts.core.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * One piece of a joined stream, read as units (an MP3 frame, a run of PCM frames) that are
+ * silent or not, with the silence at its start and end cut down to {@code keepMicros}.
+ *
+ * <p>Silent units are held back until it's clear whether they are an edge of the piece or a
+ * pause inside it: an audible unit releases them, the end of the piece keeps only the first
+ * {@code keepMicros} of them, and at the start only the last {@code keepMicros} (plus
+ * {@code reserveBytes}, for formats whose frames borrow bytes from earlier ones) survive. A
+ * pause longer than the hold buffer is kept whole. Everything else is passed through without
+ * copying beyond the read buffer. Buffers are allocated once per piece, the hold buffer only
+ * when there is silence to hold.
+ */
+abstract class TrimmedPieceStream extends InputStream {
+
+    static final int HOLD_CAPACITY = 64 * 1024;
+    private static final int MAX_HELD_UNITS = 4096;
+
+    private final InputStream in;
+    private final long keepMicros;
+    private final int reserveBytes;
+
+    // Read buffer: buf[start, end) not yet parsed
+    protected final byte[] buf;
+    protected int start;
+    protected int end;
+    private boolean eof;
+
+    // The unit found by the last nextUnit()
+    protected int unitOffset;
+    protected int unitLength;
+    protected long unitMicros;
+    protected int unitReserve;
+    protected boolean unitSilent;
+
+    // Held silent units: bytes held[heldStart, heldEnd), one entry per unit from heldHead
+    private byte[] held;
+    private int heldStart;
+    private int heldEnd;
+    private int[] heldLengths;
+    private long[] heldMicros;
+    private int[] heldReserves;
+    private int heldHead;
+    private int heldCount;
+    private long heldTotalMicros;
+    private long heldTotalReserve;
+    private boolean leading = true;
+
+    // Output not yet read: held[outHeldFrom, outHeldTo), then buf[outFrom, outTo)
+    private int outHeldFrom;
+    private int outHeldTo;
+    private int outFrom;
+    private int outTo;
+    private boolean done;
+
+    /**
+     * @param keepMicros Silence kept at each edge, or -1 to keep everything.
+     */
+    TrimmedPieceStream(InputStream in, int bufferSize, long keepMicros, int reserveBytes) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+        this.keepMicros = keepMicros;
+        this.reserveBytes = reserveBytes;
+    }
+
+    /**
+     * Parse the next unit from {@code buf[start, end)} into the unit fields and advance
+     * {@code start} past it, using {@link #fill} for more input.
+     *
+     * @return false at the end of the piece.
+     */
+    protected abstract boolean nextUnit() throws IOException;
+
+    /**
+     * Make at least {@code n} unparsed bytes available, unless the piece ends first.
+     *
+     * @return Unparsed bytes available.
+     */
+    protected final int fill(int n) throws IOException {
+        if (end - start >= n || eof) {
+            return end - start;
+        }
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while (end - start < n) {
+            int read = in.read(buf, end, buf.length - end);
+            if (read < 0) {
+                eof = true;
+                break;
+            }
+            end += read;
+        }
+        return end - start;
+    }
+
+    /**
+     * Skip {@code n} bytes of input, buffered or not.
+     */
+    protected final void skipInput(long n) throws IOException {
+        int buffered = (int) Math.min(n, end - start);
+        start += buffered;
+        if (n > buffered) {
+            in.skipNBytes(n - buffered);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n;
+        while ((n = read(one, 0, 1)) == 0) {
+            // keep reading
+        }
+        return n < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (true) {
+            if (outHeldFrom < outHeldTo) {
+                int n = Math.min(len, outHeldTo - outHeldFrom);
+                System.arraycopy(held, outHeldFrom, b, off, n);
+                outHeldFrom += n;
+                return n;
+            }
+            if (outFrom < outTo) {
+                int n = Math.min(len, outTo - outFrom);
+                System.arraycopy(buf, outFrom, b, off, n);
+                outFrom += n;
+                return n;
+            }
+            if (done) return -1;
+            advance();
+        }
+    }
+
+    private void advance() throws IOException {
+        if (!nextUnit()) {
+            done = true;
+            releaseHeldUpTo(keepMicros);
+            return;
+        }
+        if (keepMicros < 0) {
+            emitUnit();
+        } else if (unitSilent) {
+            hold();
+        } else {
+            leading = false;
+            releaseHeldUpTo(Long.MAX_VALUE);
+            emitUnit();
+        }
+    }
+
+    private void emitUnit() {
+        outFrom = unitOffset;
+        outTo = unitOffset + unitLength;
+    }
+
+    private void hold() {
+        if (held == null) {
+            held = new byte[HOLD_CAPACITY];
+            heldLengths = new int[MAX_HELD_UNITS];
+            heldMicros = new long[MAX_HELD_UNITS];
+            heldReserves = new int[MAX_HELD_UNITS];
+        }
+        if (heldCount == 0) {
+            heldStart = heldEnd = 0;
+            heldHead = 0;
+        }
+        if (heldEnd + unitLength > held.length || heldHead + heldCount == MAX_HELD_UNITS) {
+            compactHeld();
+        }
+        if (heldEnd + unitLength > held.length || heldCount == MAX_HELD_UNITS) {
+            // A pause too long to be an edge of the piece: keep it
+            leading = false;
+            releaseHeldUpTo(Long.MAX_VALUE);
+            emitUnit();
+            return;
+        }
+        System.arraycopy(buf, unitOffset, held, heldEnd, unitLength);
+        heldEnd += unitLength;
+        int slot = heldHead + heldCount++;
+        heldLengths[slot] = unitLength;
+        heldMicros[slot] = unitMicros;
+        heldReserves[slot] = unitReserve;
+        heldTotalMicros += unitMicros;
+        heldTotalReserve += unitReserve;
+        if (leading) {
+            dropLeading();
+        }
+    }
+
+    // Forget the oldest units while what is left still covers the silence and reserve kept
+    private void dropLeading() {
+        while (heldCount > 0
+                && heldTotalMicros - heldMicros[heldHead] >= keepMicros
+                && heldTotalReserve - heldReserves[heldHead] >= reserveBytes) {
+            heldStart += heldLengths[heldHead];
+            heldTotalMicros -= heldMicros[heldHead];
+            heldTotalReserve -= heldReserves[heldHead];
+            heldHead++;
+            heldCount--;
+        }
+    }
+
+    private void compactHeld() {
+        System.arraycopy(held, heldStart, held, 0, heldEnd - heldStart);
+        heldEnd -= heldStart;
+        heldStart = 0;
+        System.arraycopy(heldLengths, heldHead, heldLengths, 0, heldCount);
+        System.arraycopy(heldMicros, heldHead, heldMicros, 0, heldCount);
+        System.arraycopy(heldReserves, heldHead, heldReserves, 0, heldCount);
+        heldHead = 0;
+    }
+
+    // Queue the oldest held units, whole, until they add up to at least maxMicros; drop the rest
+    private void releaseHeldUpTo(long maxMicros) {
+        int bytes = 0;
+        long micros = 0;
+        for (int i = heldHead; i < heldHead + heldCount && micros < maxMicros; i++) {
+            bytes += heldLengths[i];
+            micros += heldMicros[i];
+        }
+        outHeldFrom = heldStart;
+        outHeldTo = heldStart + bytes;
+        heldCount = 0;
+        heldTotalMicros = 0;
+        heldTotalReserve = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,11 @@
+package com.imaudiopaas.tts.exception;
+
+/**
+ * Thrown when a provider config is at its concurrency limit and its wait queue is full, or the
+ * wait for a slot ran out. Nothing was sent upstream.
+ */
+public class ConcurrencyLimitExceededException extends TtsException {
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
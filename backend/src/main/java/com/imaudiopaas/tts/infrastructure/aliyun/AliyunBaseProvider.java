@@ -109,6 +109,17 @@ public abstract class AliyunBaseProvider implements TtsProvider {
             default: return OutputFormatEnum.MP3;
         }
     }
+
+    /**
+     * The format {@link #mapToOutputFormat} actually makes the service produce.
+     */
+    protected AudioFormat producedFormat(AudioFormat format) {
+        switch (mapToOutputFormat(format)) {
+            case WAV: return AudioFormat.WAV;
+            case PCM: return AudioFormat.PCM;
+            default: return AudioFormat.MP3;
+        }
+    }
     
     protected int toInt(Object obj) {
         if (obj instanceof Number) {
@@ -4,6 +4,7 @@ import com.alibaba.dashscope.audio.ttsv2.SpeechSynthesisAudioFormat;
 import com.alibaba.dashscope.audio.ttsv2.SpeechSynthesisParam;
 import com.alibaba.dashscope.audio.ttsv2.SpeechSynthesizer;
 import com.alibaba.dashscope.audio.tts.SpeechSynthesisResult;
+import com.alibaba.dashscope.common.ResultCallback;
 import com.alibaba.dashscope.utils.Constants;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -12,14 +13,14 @@ import com.imaudiopaas.tts.core.domain.AudioFormat;
 import com.imaudiopaas.tts.core.domain.ProviderType;
 import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.stream.AudioPipe;
 import com.imaudiopaas.tts.exception.TtsException;
 import com.imaudiopaas.tts.model.ProviderConfig;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -28,9 +29,36 @@ import java.util.Map;
 public class AliyunCosyVoiceProvider implements TtsProvider {
 
     private final ObjectMapper objectMapper;
+    private final StreamingSynthesizer streamingSynthesizer;
+    private final int bufferBytes;
+    private final long firstAudioTimeoutMs;
+
+    /**
+     * Starts a synthesis whose audio frames are pushed into {@code pipe} as they arrive; the
+     * returned action cancels it. The DashScope SDK in production, a local stand-in in tests.
+     */
+    interface StreamingSynthesizer {
+        Runnable start(SpeechSynthesisParam param, String text, AudioPipe pipe);
+    }
 
     public AliyunCosyVoiceProvider(ObjectMapper objectMapper) {
+        this(objectMapper, 1024 * 1024, 30000);
+    }
+
+    @Autowired
+    public AliyunCosyVoiceProvider(
+            ObjectMapper objectMapper,
+            @Value("${app.streaming.buffer-bytes:1048576}") int bufferBytes,
+            @Value("${app.streaming.first-audio-timeout-ms:30000}") long firstAudioTimeoutMs) {
+        this(objectMapper, AliyunCosyVoiceProvider::startWithSdk, bufferBytes, firstAudioTimeoutMs);
+    }
+
+    AliyunCosyVoiceProvider(ObjectMapper objectMapper, StreamingSynthesizer streamingSynthesizer, int bufferBytes,
+                            long firstAudioTimeoutMs) {
         this.objectMapper = objectMapper;
+        this.streamingSynthesizer = streamingSynthesizer;
+        this.bufferBytes = bufferBytes;
+        this.firstAudioTimeoutMs = firstAudioTimeoutMs;
     }
 
     @Override
@@ -71,7 +99,10 @@ public class AliyunCosyVoiceProvider implements TtsProvider {
                 .model(model)
                 .voice(voice);
 
-        // Map Format
+        // Map Format (rates without a preset fall back to 22050 Hz)
+        if (sampleRate != 8000 && sampleRate != 16000 && sampleRate != 24000 && sampleRate != 48000) {
+            sampleRate = 22050;
+        }
         boolean isPcm = (request.getFormat() == AudioFormat.PCM);
         SpeechSynthesisAudioFormat dashFormat = mapFormat(isPcm, sampleRate);
         builder.format(dashFormat);
@@ -84,29 +115,78 @@ public class AliyunCosyVoiceProvider implements TtsProvider {
 
         SpeechSynthesisParam param = builder.build();
         
-        // 3. Synthesize
-        SpeechSynthesizer synthesizer = new SpeechSynthesizer(param, null);
-        
+        // 3. Synthesize, handing frames to the caller as the SDK delivers them
+        AudioPipe pipe = new AudioPipe(bufferBytes);
+        Runnable cancel;
+        try {
+            cancel = streamingSynthesizer.start(param, request.getText(), pipe);
+        } catch (Exception e) {
+            log.error("CosyVoice synthesis failed", e);
+            throw new TtsException("CosyVoice synthesis failed: " + e.getMessage(), e);
+        }
+
         try {
-            // call() blocks and returns full audio
-            ByteBuffer audioBuffer = synthesizer.call(request.getText());
-            
-            if (audioBuffer == null || audioBuffer.remaining() == 0) {
-                 throw new TtsException("CosyVoice returned empty audio");
+            if (!pipe.awaitFirstAudio(firstAudioTimeoutMs)) {
+                cancelQuietly(cancel);
+                throw new TtsException("CosyVoice sent no audio within " + firstAudioTimeoutMs + " ms");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelQuietly(cancel);
+            throw new TtsException("Interrupted while waiting for CosyVoice audio", e);
+        }
 
-            byte[] audioData = new byte[audioBuffer.remaining()];
-            audioBuffer.get(audioData);
+        // Failures before the first frame can still fail over; later ones reach the reader
+        if (pipe.getBytesWritten() == 0) {
+            cancelQuietly(cancel);
+            Throwable failure = pipe.getFailure();
+            if (failure instanceof TtsException) {
+                throw (TtsException) failure;
+            }
+            throw new TtsException("CosyVoice returned empty audio");
+        }
+        pipe.onClose(() -> cancelQuietly(cancel));
+
+        return TtsResponse.builder()
+                .audioStream(pipe.getInputStream())
+                .format(isPcm ? AudioFormat.PCM : AudioFormat.MP3)
+                .sampleRate(isPcm ? sampleRate : 0)
+                .contentLength(pipe.isCompleted() ? pipe.getBytesWritten() : 0)
+                .build();
+    }
 
-            return TtsResponse.builder()
-                    .audioStream(new ByteArrayInputStream(audioData))
-                    .format(isPcm ? AudioFormat.PCM : AudioFormat.MP3)
-                    .contentLength(audioData.length)
-                    .build();
+    // Callback mode: call() returns at once and frames arrive on the SDK's websocket thread
+    private static Runnable startWithSdk(SpeechSynthesisParam param, String text, AudioPipe pipe) {
+        SpeechSynthesizer synthesizer = new SpeechSynthesizer(param, new ResultCallback<SpeechSynthesisResult>() {
+            @Override
+            public void onEvent(SpeechSynthesisResult result) {
+                ByteBuffer frame = result.getAudioFrame();
+                // Runs on the SDK's websocket IO thread: never wait here
+                if (frame != null && !pipe.offer(frame)) {
+                    log.debug("Audio reader is gone or too far behind, dropping the rest of the CosyVoice stream");
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                pipe.complete();
+            }
 
+            @Override
+            public void onError(Exception e) {
+                log.error("CosyVoice synthesis failed", e);
+                pipe.fail(new TtsException("CosyVoice synthesis failed: " + e.getMessage(), e));
+            }
+        });
+        synthesizer.call(text);
+        return () -> synthesizer.getDuplexApi().close(1000, "bye");
+    }
+
+    private static void cancelQuietly(Runnable cancel) {
+        try {
+            cancel.run();
         } catch (Exception e) {
-            log.error("CosyVoice synthesis failed", e);
-            throw new TtsException("CosyVoice synthesis failed: " + e.getMessage(), e);
+            log.debug("Failed to close CosyVoice session", e);
         }
     }
 
@@ -11,24 +11,36 @@ import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.exception.TtsException;
 import com.imaudiopaas.tts.model.ProviderConfig;
+import com.imaudiopaas.tts.core.stream.AudioPipe;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Component
 @Primary
 public class AliyunTtsProvider extends AliyunBaseProvider {
 
+    private final int bufferBytes;
+    private final long firstAudioTimeoutMs;
+
     public AliyunTtsProvider(ObjectMapper objectMapper) {
+        this(objectMapper, 1024 * 1024, 30000);
+    }
+
+    @Autowired
+    public AliyunTtsProvider(
+            ObjectMapper objectMapper,
+            @Value("${app.streaming.buffer-bytes:1048576}") int bufferBytes,
+            @Value("${app.streaming.first-audio-timeout-ms:30000}") long firstAudioTimeoutMs) {
         super(objectMapper);
+        this.bufferBytes = bufferBytes;
+        this.firstAudioTimeoutMs = firstAudioTimeoutMs;
     }
 
     @Override
@@ -45,24 +57,22 @@ public class AliyunTtsProvider extends AliyunBaseProvider {
 
         NlsClient client = getClient(config);
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        AtomicReference<String> errorMsg = new AtomicReference<>();
-        
+        // Audio is handed to the caller as it arrives; see AudioPipe for backpressure and failures
+        AudioPipe pipe = new AudioPipe(bufferBytes);
+
         SpeechSynthesizerListener listener = new SpeechSynthesizerListener() {
             @Override
             public void onMessage(ByteBuffer message) {
-                try {
-                    byte[] bytesArray = new byte[message.remaining()];
-                    message.get(bytesArray, 0, bytesArray.length);
-                    outputStream.write(bytesArray);
-                } catch (IOException e) {
-                    log.error("Error writing audio bytes", e);
+                // Runs on the SDK's Netty IO thread, shared with other sessions: never wait here
+                if (!pipe.offer(message)) {
+                    log.debug("Audio reader is gone or too far behind, dropping the rest of the Aliyun stream");
                 }
             }
 
             @Override
             public void onComplete(SpeechSynthesizerResponse response) {
                 log.debug("TTS Complete. taskId: {}", response.getTaskId());
+                pipe.complete();
             }
 
             @Override
@@ -70,7 +80,7 @@ public class AliyunTtsProvider extends AliyunBaseProvider {
                 String msg = String.format("TTS Failed: status=%d, text=%s, task_id=%s", 
                     response.getStatus(), response.getStatusText(), response.getTaskId());
                 log.error(msg);
-                errorMsg.set(msg);
+                pipe.fail(new TtsException(msg));
             }
         };
 
@@ -102,27 +112,48 @@ public class AliyunTtsProvider extends AliyunBaseProvider {
                     request.getText() != null && request.getText().length() > 20 ? request.getText().substring(0, 20) : request.getText());
 
             synthesizer.start();
-            synthesizer.waitForComplete();
-            
+            if (!pipe.awaitFirstAudio(firstAudioTimeoutMs)) {
+                throw new TtsException("Aliyun TTS sent no audio within " + firstAudioTimeoutMs + " ms");
+            }
+        } catch (TtsException e) {
+            closeQuietly(synthesizer);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeQuietly(synthesizer);
+            throw new TtsException("Interrupted while waiting for Aliyun TTS audio", e);
         } catch (Exception e) {
+            closeQuietly(synthesizer);
             throw new TtsException("Error during Aliyun TTS synthesis execution", e);
-        } finally {
-            if (synthesizer != null) synthesizer.close();
-        }
-
-        if (errorMsg.get() != null) {
-            throw new TtsException(errorMsg.get());
         }
 
-        byte[] audioData = outputStream.toByteArray();
-        if (audioData.length == 0) {
+        // Failures before the first byte can still fail over; later ones reach the reader
+        if (pipe.getBytesWritten() == 0) {
+            closeQuietly(synthesizer);
+            Throwable failure = pipe.getFailure();
+            if (failure instanceof TtsException) {
+                throw (TtsException) failure;
+            }
             throw new TtsException("Aliyun TTS returned empty audio data");
         }
+        SpeechSynthesizer session = synthesizer;
+        pipe.onClose(() -> closeQuietly(session));
 
+        // Short utterances are often complete by now, so their length is known up front
         return TtsResponse.builder()
-                .audioStream(new ByteArrayInputStream(audioData))
-                .format(request.getFormat())
-                .contentLength(audioData.length)
+                .audioStream(pipe.getInputStream())
+                .format(producedFormat(request.getFormat()))
+                .sampleRate(16000)
+                .contentLength(pipe.isCompleted() ? pipe.getBytesWritten() : 0)
                 .build();
     }
-}
+
+    private static void closeQuietly(SpeechSynthesizer synthesizer) {
+        if (synthesizer == null) return;
+        try {
+            synthesizer.close();
+        } catch (Exception e) {
+            log.debug("Failed to close Aliyun synthesizer", e);
+        }
+    }
+}
\ No newline at end of file
@@ -9,12 +9,14 @@ import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.exception.TtsException;
 import com.imaudiopaas.tts.model.ProviderConfig;
 import com.imaudiopaas.tts.core.ParameterMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.polly.PollyClient;
 import software.amazon.awssdk.services.polly.model.OutputFormat;
@@ -22,6 +24,9 @@ import software.amazon.awssdk.services.polly.model.SynthesizeSpeechRequest;
 import software.amazon.awssdk.services.polly.model.SynthesizeSpeechResponse;
 import software.amazon.awssdk.services.polly.model.TextType;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -29,12 +34,27 @@ import com.imaudiopaas.tts.core.domain.ProviderType; // Added import
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class AwsTtsProvider implements TtsProvider {
 
+    // Polly's PCM is 16-bit mono at 8000 or 16000 Hz
+    private static final int PCM_SAMPLE_RATE = 16000;
+
     private final ObjectMapper objectMapper;
+    private final long callTimeoutMs;
     private final Map<String, PollyClient> clientCache = new ConcurrentHashMap<>();
 
+    public AwsTtsProvider(ObjectMapper objectMapper) {
+        this(objectMapper, 30000);
+    }
+
+    @Autowired
+    public AwsTtsProvider(
+            ObjectMapper objectMapper,
+            @Value("${app.streaming.first-audio-timeout-ms:30000}") long callTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.callTimeoutMs = callTimeoutMs;
+    }
+
     @Override
     public ProviderType getType() {
         return ProviderType.AWS;
@@ -53,16 +73,25 @@ public class AwsTtsProvider implements TtsProvider {
                 return PollyClient.builder()
                         .credentialsProvider(StaticCredentialsProvider.create(credentials))
                         .region(region)
+                        // Bounds the wait for the response to start; the body is then streamed
+                        .overrideConfiguration(ClientOverrideConfiguration.builder()
+                                .apiCallTimeout(Duration.ofMillis(callTimeoutMs))
+                                .build())
                         .build();
             });
 
             String processedText = ParameterMapper.toAwsSsml(request.getText(), request.getExtraBody());
             TextType textType = processedText.contains("<speak>") ? TextType.SSML : TextType.TEXT;
 
+            OutputFormat outputFormat = mapFormat(request.getFormat());
+            boolean pcm = outputFormat == OutputFormat.PCM;
             SynthesizeSpeechRequest.Builder requestBuilder = SynthesizeSpeechRequest.builder()
                     .text(processedText)
                     .textType(textType)
-                    .outputFormat(mapFormat(request.getFormat()));
+                    .outputFormat(outputFormat);
+            if (pcm) {
+                requestBuilder.sampleRate(String.valueOf(PCM_SAMPLE_RATE));
+            }
 
              if (request.getVoiceId() != null && !request.getVoiceId().isEmpty()) {
                  requestBuilder.voiceId(request.getVoiceId());
@@ -73,11 +102,16 @@ public class AwsTtsProvider implements TtsProvider {
 
             ResponseInputStream<SynthesizeSpeechResponse> response = polly.synthesizeSpeech(requestBuilder.build());
 
+            long contentLength = response.response().sdkHttpResponse()
+                    .firstMatchingHeader("Content-Length")
+                    .map(Long::parseLong)
+                    .orElse(0L); // Polly usually answers chunked
+
             return TtsResponse.builder()
-                    .audioStream(response)
-                    .format(request.getFormat())
-                    // AWS Polly returns a stream, content length might not be available upfront easily
-                    .contentLength(0) 
+                    .audioStream(new AbortOnCloseInputStream(response))
+                    .format(pcm ? AudioFormat.PCM : AudioFormat.MP3)
+                    .sampleRate(pcm ? PCM_SAMPLE_RATE : 0)
+                    .contentLength(contentLength)
                     .build();
 
         } catch (Exception e) {
@@ -86,6 +120,43 @@ public class AwsTtsProvider implements TtsProvider {
         }
     }
 
+    /**
+     * Closing a Polly stream normally drains the rest of the body so the connection can be
+     * reused. When the reader stops early (the client went away) the connection is aborted
+     * instead, rather than downloading audio nobody will hear.
+     */
+    private static final class AbortOnCloseInputStream extends FilterInputStream {
+        private final ResponseInputStream<?> response;
+        private boolean eof;
+
+        AbortOnCloseInputStream(ResponseInputStream<?> response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) eof = true;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) eof = true;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!eof) {
+                response.abort();
+            }
+            super.close();
+        }
+    }
+
     private String parseRegion(String metadataJson) {
         if (metadataJson == null) return null;
         try {
@@ -6,13 +6,10 @@ import com.imaudiopaas.tts.core.domain.ProviderType;
 import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.model.ProviderConfig;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
@@ -47,23 +44,9 @@ public class QwenTtsProvider implements TtsProvider {
             headers.set("Authorization", "Bearer " + config.getAccessKey());
         }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
         try {
-            byte[] responseBytes = restTemplate.postForObject(url, entity, byte[].class);
-            
-            if (responseBytes == null || responseBytes.length == 0) {
-                throw new RuntimeException("Empty response from Qwen provider");
-            }
-
-            InputStream audioStream = new ByteArrayInputStream(responseBytes);
-            
-            return TtsResponse.builder()
-                    .audioStream(audioStream)
-                    .format(AudioFormat.WAV)
-                    .contentLength((long) responseBytes.length)
-                    .build();
-
+            // Streamed: long-form WAVs are never held in heap as a whole
+            return StreamingAudioClient.post(restTemplate, url, body, headers, AudioFormat.WAV);
         } catch (Exception e) {
             log.error("Failed to call Qwen TTS", e);
             throw new RuntimeException("Qwen synthesis failed", e);
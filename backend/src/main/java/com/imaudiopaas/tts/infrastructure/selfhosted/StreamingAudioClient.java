@@ -0,0 +1,122 @@
+package com.imaudiopaas.tts.infrastructure.selfhosted;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * POSTs a JSON body to a self-hosted TTS server and hands its audio body to the caller as a
+ * stream, instead of {@code postForObject(..., byte[].class)} holding the whole WAV in heap.
+ * Goes through the {@link RestTemplate}'s own request factory, message converters and error
+ * handler, so timeouts, interceptors and error mapping stay as configured.
+ *
+ * <p>The connection is released when the returned stream is closed. Closing before the end
+ * closes the body without draining it, so a cancelled long-form response isn't downloaded just
+ * to reuse the connection.
+ */
+final class StreamingAudioClient {
+
+    private StreamingAudioClient() {
+    }
+
+    /**
+     * @throws org.springframework.web.client.RestClientResponseException for an error status
+     * @throws IOException if the server answered with an empty body
+     */
+    static TtsResponse post(RestTemplate restTemplate, String url, Object body, HttpHeaders headers,
+                            AudioFormat format) throws IOException {
+        URI uri = URI.create(url);
+        ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(uri, HttpMethod.POST);
+        request.getHeaders().putAll(headers);
+        writeJson(restTemplate, body, request);
+
+        ClientHttpResponse response = request.execute();
+        boolean handedOver = false;
+        try {
+            if (restTemplate.getErrorHandler().hasError(response)) {
+                restTemplate.getErrorHandler().handleError(uri, HttpMethod.POST, response);
+            }
+            long contentLength = response.getHeaders().getContentLength();
+            PushbackInputStream audio = new PushbackInputStream(response.getBody(), 1);
+            // Wait for the first byte, so an empty answer can still fail over
+            int first = audio.read();
+            if (first < 0) {
+                throw new IOException("Empty response from " + uri.getHost());
+            }
+            audio.unread(first);
+
+            TtsResponse ttsResponse = TtsResponse.builder()
+                    .audioStream(new ReleasingInputStream(audio, response))
+                    .format(format)
+                    .contentLength(Math.max(contentLength, 0))
+                    .build();
+            handedOver = true;
+            return ttsResponse;
+        } finally {
+            if (!handedOver) {
+                response.close();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeJson(RestTemplate restTemplate, Object body, ClientHttpRequest request) throws IOException {
+        for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
+            if (converter.canWrite(body.getClass(), MediaType.APPLICATION_JSON)) {
+                ((HttpMessageConverter<Object>) converter).write(body, MediaType.APPLICATION_JSON, request);
+                return;
+            }
+        }
+        throw new IllegalStateException("No JSON message converter configured on the RestTemplate");
+    }
+
+    private static final class ReleasingInputStream extends FilterInputStream {
+        private final ClientHttpResponse response;
+        private boolean eof;
+        private boolean closed;
+
+        ReleasingInputStream(InputStream in, ClientHttpResponse response) {
+            super(in);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) eof = true;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) eof = true;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (!eof) {
+                    // Drop the rest instead of letting the response drain it
+                    super.close();
+                }
+            } finally {
+                response.close();
+            }
+        }
+    }
+}
@@ -7,13 +7,10 @@ import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.model.ProviderConfig;
 import com.imaudiopaas.tts.core.domain.ProviderType;
 import org.springframework.stereotype.Component;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.client.RestTemplate;
@@ -47,23 +44,9 @@ public class VibeVoiceProvider implements TtsProvider {
             headers.set("Authorization", "Bearer " + config.getAccessKey());
         }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
         try {
-            byte[] responseBytes = restTemplate.postForObject(url, entity, byte[].class);
-            
-            if (responseBytes == null || responseBytes.length == 0) {
-                throw new RuntimeException("Empty response from VibeVoice provider");
-            }
-
-            InputStream audioStream = new ByteArrayInputStream(responseBytes);
-            
-            return TtsResponse.builder()
-                    .audioStream(audioStream)
-                    .format(AudioFormat.WAV) // Assuming default
-                    .contentLength((long) responseBytes.length)
-                    .build();
-
+            // Streamed: long-form WAVs are never held in heap as a whole
+            return StreamingAudioClient.post(restTemplate, url, body, headers, AudioFormat.WAV);
         } catch (Exception e) {
             log.error("Failed to call VibeVoice TTS", e);
             throw new RuntimeException("VibeVoice synthesis failed", e);
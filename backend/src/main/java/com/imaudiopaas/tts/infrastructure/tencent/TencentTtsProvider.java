@@ -28,6 +28,9 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class TencentTtsProvider implements TtsProvider {
 
+    // SampleRate isn't set on the request, so the service uses its default
+    private static final int DEFAULT_SAMPLE_RATE = 16000;
+
     private final ObjectMapper objectMapper;
     private final Map<String, TtsClient> clientCache = new ConcurrentHashMap<>();
 
@@ -97,7 +100,8 @@ public class TencentTtsProvider implements TtsProvider {
 
             return TtsResponse.builder()
                     .audioStream(new ByteArrayInputStream(audioBytes))
-                    .format(request.getFormat())
+                    .format(producedFormat(request.getFormat()))
+                    .sampleRate(DEFAULT_SAMPLE_RATE)
                     .contentLength(audioBytes.length)
                     .build();
 
@@ -120,7 +124,15 @@ public class TencentTtsProvider implements TtsProvider {
         return null;
     }
 
-    private String mapFormat(AudioFormat format) {
+    private static AudioFormat producedFormat(AudioFormat format) {
+        switch (mapFormat(format)) {
+            case "wav": return AudioFormat.WAV;
+            case "pcm": return AudioFormat.PCM;
+            default: return AudioFormat.MP3;
+        }
+    }
+
+    private static String mapFormat(AudioFormat format) {
         if (format == null) return "mp3";
         switch (format) {
             case WAV: return "wav";
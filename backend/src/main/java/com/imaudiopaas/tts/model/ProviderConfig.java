@@ -2,9 +2,11 @@ package com.imaudiopaas.tts.model;
 
 import com.imaudiopaas.tts.core.domain.ProviderType;
 import com.imaudiopaas.tts.core.security.AesEncryptConverter;
+import com.imaudiopaas.tts.service.routing.RoutingConfigEntityListener;
 import jakarta.persistence.Column;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -22,6 +24,7 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Data
 @Entity
 @Table(name = "provider_configs")
+@EntityListeners(RoutingConfigEntityListener.class)
 public class ProviderConfig {
 
     @Id
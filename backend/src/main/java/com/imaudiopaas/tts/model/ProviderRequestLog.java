@@ -32,4 +32,8 @@ public class ProviderRequestLog {
 
     @Column(name = "latency_ms")
     private Long latencyMs;
+
+    // 1 for the primary call, 2+ for failover attempts of the same client request
+    @Column(name = "attempt")
+    private Integer attempt;
 }
@@ -0,0 +1,95 @@
+package com.imaudiopaas.tts.model;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.Priority;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+/**
+ * A long-form synthesis job: the request, its progress in segments and characters, and where
+ * it ended up. The id is assigned on submission, since it also names the job's directory.
+ */
+@Data
+@Entity
+@Table(name = "synthesis_jobs")
+public class SynthesisJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(name = "input_text", columnDefinition = "TEXT", nullable = false)
+    private String text;
+
+    private String model;
+
+    private String voice;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "response_format", nullable = false)
+    private AudioFormat format;
+
+    private Float speed;
+
+    @Column(name = "sample_rate")
+    private Integer sampleRate;
+
+    // Scheduling class of the segment calls, bulk when not set
+    @Enumerated(EnumType.STRING)
+    private Priority priority;
+
+    // The text is split again on resume, so the limit it was split at is kept with it
+    @Column(name = "segment_chars", nullable = false)
+    private int segmentChars;
+
+    @Column(name = "total_segments", nullable = false)
+    private int totalSegments;
+
+    @Column(name = "completed_segments", nullable = false)
+    private int completedSegments;
+
+    @Column(name = "total_chars", nullable = false)
+    private int totalChars;
+
+    @Column(name = "completed_chars", nullable = false)
+    private int completedChars;
+
+    // Of the audio the provider actually returned, known once the first segment is done
+    @Enumerated(EnumType.STRING)
+    @Column(name = "audio_format")
+    private AudioFormat audioFormat;
+
+    @Column(name = "audio_sample_rate")
+    private Integer audioSampleRate;
+
+    @Column(name = "result_bytes")
+    private Long resultBytes;
+
+    @Column(name = "error_message", length = 2048)
+    private String errorMessage;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
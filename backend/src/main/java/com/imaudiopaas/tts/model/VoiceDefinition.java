@@ -2,23 +2,28 @@ package com.imaudiopaas.tts.model;
 
 import com.imaudiopaas.tts.core.domain.ProviderType;
 import com.imaudiopaas.tts.core.domain.VoiceGender;
+import com.imaudiopaas.tts.service.routing.RoutingConfigEntityListener;
 import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
 import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OrderColumn;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.util.List;
 import java.util.Set;
 import lombok.Data;
 
 @Data
 @Entity
 @Table(name = "voice_definitions")
+@EntityListeners(RoutingConfigEntityListener.class)
 public class VoiceDefinition {
 
     @Id
@@ -46,4 +51,15 @@ public class VoiceDefinition {
     @CollectionTable(name = "voice_styles", joinColumns = @JoinColumn(name = "voice_id"))
     @Column(name = "style")
     private Set<String> styles;
+
+    /**
+     * Ordered fallbacks tried when this voice's provider fails with a retryable error.
+     * Each entry is either another voice definition id or a direct "PROVIDER_TYPE:nativeVoiceId"
+     * reference, e.g. ["cosy-longxiaochun", "TENCENT:101001"].
+     */
+    @ElementCollection
+    @CollectionTable(name = "voice_failover_links", joinColumns = @JoinColumn(name = "voice_id"))
+    @OrderColumn(name = "position")
+    @Column(name = "target")
+    private List<String> failoverChain;
 }
@@ -0,0 +1,14 @@
+package com.imaudiopaas.tts.repository;
+
+import com.imaudiopaas.tts.model.SynthesisJob;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SynthesisJobRepository extends JpaRepository<SynthesisJob, UUID> {
+
+    List<SynthesisJob> findByStatusInOrderByCreatedAtAsc(Collection<SynthesisJob.Status> statuses);
+}
@@ -27,6 +27,7 @@ public class ProviderRequestEventListener {
             logEntry.setSuccess(event.isSuccess());
             logEntry.setErrorMessage(event.getErrorMessage());
             logEntry.setLatencyMs(event.getLatencyMs());
+            logEntry.setAttempt(event.getAttempt());
 
             repository.save(logEntry);
         } catch (Exception e) {
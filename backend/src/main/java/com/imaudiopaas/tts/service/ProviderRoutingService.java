@@ -8,12 +8,36 @@ import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.exception.TtsException;
 import com.imaudiopaas.tts.model.ProviderConfig;
 import com.imaudiopaas.tts.model.VoiceDefinition;
-import com.imaudiopaas.tts.repository.ProviderConfigRepository;
-import com.imaudiopaas.tts.repository.VoiceDefinitionRepository;
+import com.imaudiopaas.tts.service.cache.AudioCache;
+import com.imaudiopaas.tts.service.coalescing.RequestCoalescer;
+import com.imaudiopaas.tts.service.routing.AdaptiveConcurrencyLimiter;
+import com.imaudiopaas.tts.service.routing.CircuitBreaker;
+import com.imaudiopaas.tts.service.routing.CircuitBreakerRegistry;
+import com.imaudiopaas.tts.service.routing.ConcurrencyLimiterRegistry;
+import com.imaudiopaas.tts.service.routing.CompletionTrackingInputStream;
+import com.imaudiopaas.tts.service.routing.ConfigBalancer;
+import com.imaudiopaas.tts.service.routing.EwmaLatencyTracker;
+import com.imaudiopaas.tts.service.routing.FailoverPolicy;
+import com.imaudiopaas.tts.service.routing.InFlightTracker;
+import com.imaudiopaas.tts.service.routing.LatencyTracker;
+import com.imaudiopaas.tts.service.routing.RequestHedger;
+import com.imaudiopaas.tts.service.routing.RouteTarget;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshot;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshotService;
+import com.imaudiopaas.tts.service.text.SegmentedSynthesizer;
+import com.imaudiopaas.tts.service.transcode.AudioTranscoder;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
@@ -23,27 +47,416 @@ import org.springframework.stereotype.Service;
 public class ProviderRoutingService {
 
     private final Map<ProviderType, TtsProvider> providers = new EnumMap<>(ProviderType.class);
-    private final ProviderConfigRepository providerConfigRepository;
-    private final VoiceDefinitionRepository voiceDefinitionRepository;
+    private final RoutingSnapshotService snapshotService;
+    private final ConfigBalancer configBalancer;
+    private final InFlightTracker inFlightTracker;
+    private final FailoverPolicy failoverPolicy;
+    private final LatencyTracker latencyTracker;
+    private final EwmaLatencyTracker ewmaLatencyTracker;
+    private final RequestHedger requestHedger;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final ConcurrencyLimiterRegistry concurrencyLimits;
+    private final RequestCoalescer requestCoalescer;
+    private final AudioCache audioCache;
+    private final SegmentedSynthesizer segmentedSynthesizer;
+    private final AudioTranscoder transcoder;
     private final ApplicationEventPublisher eventPublisher;
 
     public ProviderRoutingService(
             List<TtsProvider> providersList,
-            ProviderConfigRepository providerConfigRepository,
-            VoiceDefinitionRepository voiceDefinitionRepository,
+            RoutingSnapshotService snapshotService,
+            ConfigBalancer configBalancer,
+            InFlightTracker inFlightTracker,
+            FailoverPolicy failoverPolicy,
+            LatencyTracker latencyTracker,
+            EwmaLatencyTracker ewmaLatencyTracker,
+            RequestHedger requestHedger,
+            CircuitBreakerRegistry circuitBreakers,
+            ConcurrencyLimiterRegistry concurrencyLimits,
+            RequestCoalescer requestCoalescer,
+            AudioCache audioCache,
+            SegmentedSynthesizer segmentedSynthesizer,
+            AudioTranscoder transcoder,
             ApplicationEventPublisher eventPublisher) {
-        this.providerConfigRepository = providerConfigRepository;
-        this.voiceDefinitionRepository = voiceDefinitionRepository;
+        this.snapshotService = snapshotService;
+        this.configBalancer = configBalancer;
+        this.inFlightTracker = inFlightTracker;
+        this.failoverPolicy = failoverPolicy;
+        this.latencyTracker = latencyTracker;
+        this.ewmaLatencyTracker = ewmaLatencyTracker;
+        this.requestHedger = requestHedger;
+        this.circuitBreakers = circuitBreakers;
+        this.concurrencyLimits = concurrencyLimits;
+        this.requestCoalescer = requestCoalescer;
+        this.audioCache = audioCache;
+        this.segmentedSynthesizer = segmentedSynthesizer;
+        this.transcoder = transcoder;
         this.eventPublisher = eventPublisher;
         providersList.forEach(p -> providers.put(p.getType(), p));
     }
 
-    public TtsResponse routeAndSynthesize(TtsRequest request) {
-        log.info("Routing TTS request for voice: {}", request.getVoiceId());
-        
-        // 1. Resolve Voice Definition
-        Optional<VoiceDefinition> voiceDef = voiceDefinitionRepository.findById(request.getVoiceId());
-        
+    public TtsResponse routeAndSynthesize(TtsRequest clientRequest) {
+        log.info("Routing TTS request for voice: {}", clientRequest.getVoiceId());
+        // Fix the output sample rate first, it is part of the cache and coalescing keys
+        TtsRequest request = transcoder.withOutputSettings(clientRequest);
+
+        // All lookups below are served from the in-memory snapshot, no database work on the hot path
+        RoutingSnapshot snapshot = snapshotService.current();
+
+        // 1. Resolve the primary target plus any failover links declared on the voice
+        // (latency-aware balancing may move a clearly faster equivalent voice to the front)
+        List<RouteTarget> chain = configBalancer.order(resolveChain(request, snapshot), snapshot);
+
+        // Repeated prompts are served from cache, keyed by the voice that would serve them
+        if (audioCache.isEnabled() && !request.isCacheBypass()) {
+            RouteTarget primary = chain.get(0);
+            TtsRequest nativeRequest = request.toBuilder().voiceId(primary.getNativeVoiceId()).build();
+            Optional<TtsResponse> cached = audioCache.lookup(AudioCache.keyOf(primary.getProviderType(), nativeRequest));
+            if (cached.isPresent()) {
+                log.debug("Serving cached audio for {}", primary);
+                return cached.get();
+            }
+        }
+
+        // Identical concurrent requests share one upstream call
+        return requestCoalescer.execute(request, () -> synthesize(request, chain, snapshot));
+    }
+
+    /**
+     * Long texts are split and their pieces synthesized in parallel (see
+     * {@link SegmentedSynthesizer}), each routed on its own, in the provider's native format when
+     * the requested one is encoded here; the joined audio is encoded once. Short texts are one
+     * routed call.
+     */
+    private TtsResponse synthesize(TtsRequest request, List<RouteTarget> chain, RoutingSnapshot snapshot) {
+        TtsRequest nativeRequest = transcoder.nativeRequest(request);
+        // Any link may serve any piece, so pieces fit the smallest limit along the chain
+        int maxChars = chain.stream()
+                .mapToInt(target -> segmentedSynthesizer.maxChars(target.getProviderType()))
+                .min().orElseThrow();
+        List<String> pieces = segmentedSynthesizer.split(nativeRequest, maxChars);
+        if (pieces.size() <= 1) {
+            return route(request, chain, snapshot, null);
+        }
+        AtomicBoolean detoured = new AtomicBoolean();
+        TtsResponse response = segmentedSynthesizer.synthesize(nativeRequest, pieces,
+                segment -> route(segment, chain, snapshot, detoured));
+        try {
+            response = transcoder.encode(response, request);
+        } catch (RuntimeException e) {
+            closeQuietly(response);
+            throw e;
+        }
+        // Cached as the primary voice's audio, so not when a piece came from another link
+        RouteTarget primary = chain.get(0);
+        TtsRequest primaryRequest = request.toBuilder().voiceId(primary.getNativeVoiceId()).build();
+        return audioCache.cacheOnCompletion(response, AudioCache.keyOf(primary.getProviderType(), primaryRequest),
+                primary.getProviderType(), primaryRequest.getVoiceId(), () -> !detoured.get());
+    }
+
+    /**
+     * Provider a request goes to first, before any failover or balancing.
+     *
+     * @throws IllegalArgumentException if the voice can't be resolved to a provider.
+     */
+    public ProviderType primaryProvider(TtsRequest request) {
+        RoutingSnapshot snapshot = snapshotService.current();
+        return resolvePrimary(request, snapshot.findVoice(request.getVoiceId())).getProviderType();
+    }
+
+    /**
+     * @param detoured For a piece of a segmented request, set when the piece was not served by
+     *                 the primary link's first attempt; null for a whole request.
+     */
+    private TtsResponse route(TtsRequest request, List<RouteTarget> chain, RoutingSnapshot snapshot,
+                              AtomicBoolean detoured) {
+        boolean segment = detoured != null;
+        long deadline = failoverPolicy.deadlineFrom(System.currentTimeMillis());
+
+        AtomicInteger attempts = new AtomicInteger();
+        RuntimeException lastError = null;
+        for (int i = 0; i < chain.size(); i++) {
+            RouteTarget target = chain.get(i);
+            if (attempts.get() > 0 && !failoverPolicy.hasBudget(deadline)) {
+                log.warn("Request deadline exhausted after {} attempt(s), not failing over to {}", attempts.get(), target);
+                break;
+            }
+
+            // 2. Pick one of the active configurations (several accounts may share a type)
+            List<ProviderConfig> candidates = snapshot.getActiveConfigs(target.getProviderType());
+            if (candidates.isEmpty()) {
+                lastError = new TtsException("No active provider configuration found for type: " + target.getProviderType());
+                continue;
+            }
+
+            // 3. Select Implementation
+            TtsProvider provider = providers.get(target.getProviderType());
+            if (provider == null) {
+                lastError = new TtsException("No implementation found for provider type: " + target.getProviderType());
+                continue;
+            }
+
+            // 4. Skip configs whose breaker is open; if none is left, fail fast to the next link
+            ProviderConfig config = acquireConfig(candidates, snapshot);
+            if (config == null) {
+                lastError = new TtsException("Circuit open for all configurations of type: " + target.getProviderType());
+                log.warn("Circuit open for all {} configs, skipping {}", target.getProviderType(), target);
+                continue;
+            }
+
+            // 5. Invoke with the native voice of this link (hedged if enabled), leaving the caller's request untouched
+            TtsRequest attemptRequest = request.toBuilder().voiceId(target.getNativeVoiceId()).build();
+            RequestHedger.Attempt primary =
+                    raceDecided -> invoke(provider, config, attemptRequest, attempts.incrementAndGet(), deadline,
+                            raceDecided, segment);
+            RequestHedger.Attempt hedge = requestHedger.isEnabled()
+                    ? alternateAttempt(request, chain, i, config, snapshot, attempts, deadline, segment)
+                    : null;
+            try {
+                TtsResponse response = requestHedger.execute(primary, hedge,
+                        requestHedger.hedgeDelayMs(RoutingSnapshot.keyOf(config)), deadline, target.getProviderType().name());
+                if (segment && (i > 0 || attempts.get() > 1)) {
+                    detoured.set(true);
+                }
+                return response;
+            } catch (RuntimeException e) {
+                lastError = e;
+                if (!failoverPolicy.isRetryable(e)) {
+                    throw e;
+                }
+                log.warn("Attempt via {} ({}) failed: {}", config.getName(), target, e.getMessage());
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * Hedge target for a link: another active config of the same type if there is one,
+     * otherwise the next failover link that can be served.
+     */
+    private RequestHedger.Attempt alternateAttempt(TtsRequest request, List<RouteTarget> chain, int index,
+                                                   ProviderConfig primaryConfig, RoutingSnapshot snapshot,
+                                                   AtomicInteger attempts, long deadline, boolean segment) {
+        RouteTarget target = chain.get(index);
+        List<ProviderConfig> others = permittedConfigs(snapshot.getActiveConfigs(target.getProviderType()));
+        others.remove(primaryConfig);
+        if (others.isEmpty()) {
+            target = null;
+            for (int j = index + 1; j < chain.size() && target == null; j++) {
+                RouteTarget next = chain.get(j);
+                List<ProviderConfig> nextConfigs = permittedConfigs(snapshot.getActiveConfigs(next.getProviderType()));
+                if (providers.containsKey(next.getProviderType()) && !nextConfigs.isEmpty()) {
+                    target = next;
+                    others = nextConfigs;
+                }
+            }
+            if (target == null) {
+                return null;
+            }
+        }
+        TtsProvider provider = providers.get(target.getProviderType());
+        List<ProviderConfig> hedgeConfigs = others;
+        TtsRequest hedgeRequest = request.toBuilder().voiceId(target.getNativeVoiceId()).build();
+        // The breaker permission is only taken if the hedge is actually launched
+        return raceDecided -> {
+            ProviderConfig config = acquireConfig(hedgeConfigs, snapshot);
+            if (config == null) {
+                throw new TtsException("Circuit open for all hedge configurations");
+            }
+            return invoke(provider, config, hedgeRequest, attempts.incrementAndGet(), deadline, raceDecided, segment);
+        };
+    }
+
+    /**
+     * Balance over the configs whose breaker lets calls through and take a permission on the
+     * chosen one. Returns null when every breaker is open.
+     */
+    private ProviderConfig acquireConfig(List<ProviderConfig> candidates, RoutingSnapshot snapshot) {
+        List<ProviderConfig> permitted = permittedConfigs(candidates);
+        while (!permitted.isEmpty()) {
+            ProviderConfig config = configBalancer.select(permitted, snapshot);
+            if (circuitBreakers.forConfig(config).tryAcquirePermission()) {
+                return config;
+            }
+            // Half-open trial slots are taken, try the others
+            permitted.remove(config);
+        }
+        return null;
+    }
+
+    private List<ProviderConfig> permittedConfigs(List<ProviderConfig> configs) {
+        return configs.stream()
+                .filter(c -> circuitBreakers.forConfig(c).isCallPermitted())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * @param segment Whether the request is a piece of a segmented one, already in the native
+     *                format; its audio is encoded and cached once joined, not here.
+     */
+    private TtsResponse invoke(TtsProvider provider, ProviderConfig config, TtsRequest request, int attempt,
+                               long deadline, BooleanSupplier raceDecided, boolean segment) {
+        UUID configKey = RoutingSnapshot.keyOf(config);
+        CircuitBreaker breaker = circuitBreakers.forConfig(config);
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        if (concurrencyLimits.isEnabled()) {
+            try {
+                permit = concurrencyLimits.acquire(config, deadline, request.getPriority());
+            } catch (RuntimeException e) {
+                // Rejected locally, the upstream never saw this call
+                breaker.release();
+                throw e;
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        inFlightTracker.increment(configKey);
+        UpstreamCall call = new UpstreamCall(configKey, config.getName(), attempt, breaker, permit, raceDecided,
+                request.getText() == null ? 0 : request.getText().length());
+        TtsResponse response = null;
+        try {
+            // As PCM when the requested format is encoded here
+            response = provider.synthesize(transcoder.nativeRequest(request), config);
+            // From here on the call is settled by its stream; timed before encoding, so the
+            // score reflects the provider rather than our codecs
+            response = call.track(response, System.currentTimeMillis() - startTime);
+            if (!segment) {
+                response = transcoder.encode(response, request);
+                // Also after a bypassed lookup, so a forced refresh replaces the stale entry
+                response = audioCache.cacheOnCompletion(response, AudioCache.keyOf(provider.getType(), request),
+                        provider.getType(), request.getVoiceId());
+            }
+            return response;
+        } catch (RuntimeException e) {
+            // Settled first: closing a tracked stream settles the call as abandoned
+            call.failed(e, System.currentTimeMillis() - startTime);
+            if (response != null) {
+                closeQuietly(response);
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(TtsResponse response) {
+        if (response.getAudioStream() == null) return;
+        try {
+            response.getAudioStream().close();
+        } catch (IOException e) {
+            log.debug("Failed to close provider stream", e);
+        }
+    }
+
+    /**
+     * Bookkeeping of one upstream call, which outlives {@link #invoke}: streaming providers
+     * return at their first byte and keep the session open until the audio has been read. The
+     * in-flight count, breaker permission and concurrency permit are therefore held until the
+     * stream ends, fails or is closed, and settled exactly once. The {@link ProviderRequestEvent}
+     * is published then too, so the request log agrees with the breaker about streams that fail
+     * part-way.
+     *
+     * <p>The breaker and the limit are fed the time to first byte, as before the call was
+     * tracked to its end. The EWMA averages also get the total: time to first byte plus the time
+     * then spent waiting on the provider's stream, so a client reading slowly doesn't make the
+     * upstream look slow.
+     */
+    private final class UpstreamCall {
+        private final UUID configKey;
+        private final String configName;
+        private final int attempt;
+        private final CircuitBreaker breaker;
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+        private final BooleanSupplier raceDecided;
+        private final int chars;
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile long firstByteMs;
+
+        UpstreamCall(UUID configKey, String configName, int attempt, CircuitBreaker breaker,
+                     AdaptiveConcurrencyLimiter.Permit permit, BooleanSupplier raceDecided, int chars) {
+            this.configKey = configKey;
+            this.configName = configName;
+            this.attempt = attempt;
+            this.breaker = breaker;
+            this.permit = permit;
+            this.raceDecided = raceDecided;
+            this.chars = chars;
+        }
+
+        TtsResponse track(TtsResponse response, long firstByteMs) {
+            this.firstByteMs = firstByteMs;
+            // Hedge delays are a percentile of the time to first byte
+            latencyTracker.record(configKey, firstByteMs);
+            ewmaLatencyTracker.recordTimeToFirstByte(configKey, firstByteMs, chars);
+            if (response.getAudioStream() == null) {
+                succeeded(firstByteMs, firstByteMs);
+                return response;
+            }
+            response.setAudioStream(new CompletionTrackingInputStream(response.getAudioStream(),
+                    readNanos -> succeeded(firstByteMs, firstByteMs + TimeUnit.NANOSECONDS.toMillis(readNanos)),
+                    e -> failed(e, firstByteMs),
+                    this::abandoned));
+            return response;
+        }
+
+        void succeeded(long firstByteMs, long totalMs) {
+            if (!settle()) return;
+            ewmaLatencyTracker.recordTotal(configKey, totalMs, chars);
+            breaker.onSuccess(firstByteMs);
+            if (permit != null) permit.onSuccess(TimeUnit.MILLISECONDS.toNanos(firstByteMs));
+            publish(true, firstByteMs, null);
+        }
+
+        void failed(Exception error, long durationMs) {
+            if (!settle()) return;
+            boolean cancelled = raceDecided.getAsBoolean();
+            if (cancelled || !failoverPolicy.isRetryable(error)) {
+                // Cancelled hedges and bad input say nothing about the upstream's health
+                breaker.release();
+                if (permit != null) permit.onIgnore();
+            } else {
+                breaker.onError(durationMs);
+                ewmaLatencyTracker.recordFailure(configKey);
+                if (permit != null) {
+                    if (failoverPolicy.isOverload(error)) permit.onDropped(); else permit.onIgnore();
+                }
+            }
+            // A hedge loser interrupted after the race was decided is not a provider failure
+            if (!cancelled) {
+                publish(false, durationMs, error.getMessage());
+            }
+        }
+
+        // Closed before the end: the client went away or a hedge lost, which says nothing either way
+        void abandoned() {
+            if (!settle()) return;
+            breaker.release();
+            if (permit != null) permit.onIgnore();
+            publish(true, firstByteMs, null);
+        }
+
+        private void publish(boolean success, long latencyMs, String errorMessage) {
+            eventPublisher.publishEvent(new ProviderRequestEvent(ProviderRoutingService.this, configName, success,
+                    latencyMs, errorMessage, attempt));
+        }
+
+        private boolean settle() {
+            if (!settled.compareAndSet(false, true)) return false;
+            inFlightTracker.decrement(configKey);
+            return true;
+        }
+    }
+
+    private List<RouteTarget> resolveChain(TtsRequest request, RoutingSnapshot snapshot) {
+        Optional<VoiceDefinition> voiceDef = snapshot.findVoice(request.getVoiceId());
+        List<RouteTarget> chain = new ArrayList<>();
+        chain.add(resolvePrimary(request, voiceDef));
+
+        List<String> links = voiceDef.map(VoiceDefinition::getFailoverChain).orElse(List.of());
+        for (String link : links) {
+            resolveLink(link, snapshot).filter(t -> !chain.contains(t)).ifPresent(chain::add);
+        }
+        return chain;
+    }
+
+    private RouteTarget resolvePrimary(TtsRequest request, Optional<VoiceDefinition> voiceDef) {
         ProviderType type;
         String nativeVoiceId;
 
@@ -76,43 +489,26 @@ public class ProviderRoutingService {
             
             log.debug("Inferred provider {} for unmapped voice {}", type, request.getVoiceId());
         }
+        return new RouteTarget(type, nativeVoiceId);
+    }
 
-        // 2. Fetch Active Configuration
-        final ProviderType finalType = type;
-        ProviderConfig config = providerConfigRepository.findFirstByProviderTypeAndIsActiveTrue(finalType)
-                .orElseThrow(() -> new TtsException("No active provider configuration found for type: " + finalType));
-
-        // 3. Select Implementation
-        TtsProvider provider = providers.get(type);
-        if (provider == null) {
-            throw new TtsException("No implementation found for provider type: " + type);
+    // A link is either another voice definition id or "PROVIDER_TYPE:nativeVoiceId"
+    private Optional<RouteTarget> resolveLink(String link, RoutingSnapshot snapshot) {
+        Optional<VoiceDefinition> voice = snapshot.findVoice(link);
+        if (voice.isPresent()) {
+            return Optional.of(new RouteTarget(voice.get().getProviderType(), voice.get().getNativeVoiceId()));
         }
-
-        // 4. Update request with native ID and invoke
-        // Note: effectively modifying the request object here. 
-        // If deep copy needed, we should build a new one. But TtsRequest is @Data.
-        request.setVoiceId(nativeVoiceId);
-        
-        long startTime = System.currentTimeMillis();
-        boolean success = false;
-        String errorMessage = null;
-        try {
-            TtsResponse response = provider.synthesize(request, config);
-            success = true;
-            return response;
-        } catch (Exception e) {
-            errorMessage = e.getMessage();
-            throw e;
-        } finally {
-            long duration = System.currentTimeMillis() - startTime;
-            eventPublisher.publishEvent(new ProviderRequestEvent(
-                    this,
-                    config.getName(),
-                    success,
-                    duration,
-                    errorMessage
-            ));
+        int sep = link.indexOf(':');
+        if (sep > 0) {
+            try {
+                ProviderType type = ProviderType.valueOf(link.substring(0, sep).trim().toUpperCase());
+                return Optional.of(new RouteTarget(type, link.substring(sep + 1).trim()));
+            } catch (IllegalArgumentException e) {
+                // fall through to warning
+            }
         }
+        log.warn("Ignoring unresolvable failover link: {}", link);
+        return Optional.empty();
     }
     
     private ProviderType inferProvider(String voiceId) {
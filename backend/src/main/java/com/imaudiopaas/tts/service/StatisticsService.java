@@ -2,7 +2,11 @@ package com.imaudiopaas.tts.service;
 
 import com.imaudiopaas.tts.api.dto.StatisticsDto;
 import com.imaudiopaas.tts.repository.ProviderRequestLogRepository;
+import com.imaudiopaas.tts.service.routing.CircuitBreakerRegistry;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshotService;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -12,15 +16,23 @@ import org.springframework.stereotype.Service;
 public class StatisticsService {
 
     private final ProviderRequestLogRepository repository;
+    private final RoutingSnapshotService snapshotService;
+    private final CircuitBreakerRegistry circuitBreakers;
 
     public List<StatisticsDto> getProviderStatistics() {
+        // Request logs are keyed by config name; breaker state is only known for active configs
+        Map<String, String> circuitStates = new HashMap<>();
+        snapshotService.current().getActiveConfigs().values().stream()
+                .flatMap(List::stream)
+                .forEach(c -> circuitStates.put(c.getName(), circuitBreakers.stateOf(c).name()));
+
         List<Object[]> results = repository.findProviderStatisticsRaw();
         return results.stream()
-                .map(this::mapToDto)
+                .map(row -> mapToDto(row, circuitStates))
                 .collect(Collectors.toList());
     }
 
-    private StatisticsDto mapToDto(Object[] row) {
+    private StatisticsDto mapToDto(Object[] row, Map<String, String> circuitStates) {
         String providerName = (String) row[0];
         long total = ((Number) row[1]).longValue();
         long success = row[2] == null ? 0 : ((Number) row[2]).longValue();
@@ -36,6 +48,7 @@ public class StatisticsService {
                 .failureCount(failure)
                 .avgLatencyMs(avgLatency)
                 .successRate(successRate)
+                .circuitState(circuitStates.get(providerName))
                 .build();
     }
 }
@@ -0,0 +1,234 @@
+package com.imaudiopaas.tts.service.batch;
+
+import com.imaudiopaas.tts.config.TaskExecutorConfig;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.SynthesisKey;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs batches of speech requests through the normal routing, concurrently, handing results
+ * back as they finish.
+ *
+ * <p>Identical items (same {@link SynthesisKey}) are synthesized once and reported together.
+ * Calls are capped per provider across all batches on this node
+ * ({@code app.batch.provider-concurrency}), so a large batch queues here instead of running into
+ * the routing's own concurrency limits and getting 429s; the provider is the one the item's
+ * voice resolves to first. Each batch keeps at most {@code app.batch.max-parallel} items in
+ * flight or finished but not yet taken by the caller, which also bounds the audio held in memory.
+ *
+ * <p>An item that fails is reported with a status (400 for bad input, 429 when rejected by a
+ * concurrency limit, 500 otherwise) and does not affect the others.
+ *
+ * <p>Metrics: {@code tts.batch.items} (tagged {@code result=ok|error}, per item including
+ * duplicates) and {@code tts.batch.duplicates}.
+ */
+@Slf4j
+@Service
+public class BatchSynthesisService {
+
+    private final AsyncTaskExecutor executor;
+    private final ProviderRoutingService routingService;
+    private final MeterRegistry meterRegistry;
+    private final int maxItems;
+    private final int maxParallel;
+    private final int providerConcurrency;
+    private final Map<ProviderType, Semaphore> providerPermits = new ConcurrentHashMap<>();
+
+    public BatchSynthesisService(
+            @Qualifier(TaskExecutorConfig.SYNTHESIS_EXECUTOR) AsyncTaskExecutor executor,
+            ProviderRoutingService routingService,
+            MeterRegistry meterRegistry,
+            @Value("${app.batch.max-items:1000}") int maxItems,
+            @Value("${app.batch.max-parallel:16}") int maxParallel,
+            @Value("${app.batch.provider-concurrency:16}") int providerConcurrency) {
+        this.executor = executor;
+        this.routingService = routingService;
+        this.meterRegistry = meterRegistry;
+        this.maxItems = maxItems;
+        this.maxParallel = Math.max(1, maxParallel);
+        this.providerConcurrency = Math.max(1, providerConcurrency);
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Start synthesizing a batch.
+     *
+     * @param requests The items; null entries were rejected by the caller and are skipped.
+     * @return The running batch, to be read with {@link Batch#next()} and closed.
+     * @throws IllegalArgumentException if the batch is empty or larger than {@code app.batch.max-items}.
+     */
+    public Batch start(List<TtsRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch has no items");
+        }
+        if (requests.size() > maxItems) {
+            throw new IllegalArgumentException("Batch has " + requests.size() + " items, at most " + maxItems + " allowed");
+        }
+        Map<String, Unique> unique = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TtsRequest request = requests.get(i);
+            if (request == null) continue;
+            int index = i;
+            unique.computeIfAbsent(SynthesisKey.of(request), k -> new Unique(request)).indexes.add(index);
+        }
+        int duplicates = unique.values().stream().mapToInt(u -> u.indexes.size() - 1).sum();
+        if (duplicates > 0) {
+            meterRegistry.counter("tts.batch.duplicates").increment(duplicates);
+        }
+        log.info("Starting batch of {} items, {} distinct", requests.size(), unique.size());
+        Batch batch = new Batch(new ArrayList<>(unique.values()));
+        executor.execute(batch::dispatch);
+        return batch;
+    }
+
+    private Semaphore permits(ProviderType provider) {
+        return providerPermits.computeIfAbsent(provider, p -> new Semaphore(providerConcurrency, true));
+    }
+
+    /**
+     * Outcome of one distinct item.
+     *
+     * @param indexes Positions in the batch of every item with this request, in order.
+     * @param audio The complete audio, null on error.
+     * @param status 200, or the HTTP status the error would have had on its own.
+     */
+    public record Result(List<Integer> indexes, AudioFormat format, String contentType, byte[] audio,
+                         int status, String error) {
+
+        public boolean isSuccess() {
+            return audio != null;
+        }
+    }
+
+    private static final class Unique {
+        final TtsRequest request;
+        final List<Integer> indexes = new ArrayList<>();
+
+        Unique(TtsRequest request) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * A running batch. Results are handed out in the order they finish.
+     */
+    public final class Batch implements AutoCloseable {
+
+        private final List<Unique> items;
+        private final Semaphore slots = new Semaphore(maxParallel);
+        private final BlockingQueue<Result> finished = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+        private int taken;
+
+        private Batch(List<Unique> items) {
+            this.items = items;
+        }
+
+        /**
+         * Number of distinct items, which is how many results {@link #next()} hands out.
+         */
+        public int size() {
+            return items.size();
+        }
+
+        /**
+         * Wait for the next finished item.
+         *
+         * @return The result, or null once all have been handed out.
+         */
+        public Result next() throws InterruptedException {
+            if (taken == items.size()) {
+                return null;
+            }
+            Result result = finished.take();
+            taken++;
+            // This one is the caller's now, so the next item may start
+            slots.release();
+            return result;
+        }
+
+        /**
+         * Stop starting items, e.g. when the client went away. Items already running finish.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                slots.release(items.size());
+            }
+        }
+
+        private void dispatch() {
+            try {
+                for (Unique item : items) {
+                    slots.acquire();
+                    if (closed) {
+                        return;
+                    }
+                    executor.execute(() -> finished.add(run(item)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Result run(Unique item) {
+            Result result;
+            try {
+                Semaphore permits = permits(routingService.primaryProvider(item.request));
+                permits.acquire();
+                try {
+                    result = synthesize(item);
+                } finally {
+                    permits.release();
+                }
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                log.warn("Batch item {} failed: {}", item.indexes.get(0), e.getMessage());
+                result = new Result(item.indexes, item.request.getFormat(), null, null, statusOf(e),
+                        e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+            meterRegistry.counter("tts.batch.items", "result", result.isSuccess() ? "ok" : "error")
+                    .increment(item.indexes.size());
+            return result;
+        }
+
+        // Read to the end while holding the provider permit: streamed audio is still being synthesized
+        private Result synthesize(Unique item) throws Exception {
+            TtsResponse response = routingService.routeAndSynthesize(item.request);
+            byte[] audio;
+            try (InputStream in = response.getAudioStream()) {
+                audio = in.readAllBytes();
+            }
+            return new Result(item.indexes, response.getFormat(), response.getContentType(), audio, 200, null);
+        }
+    }
+
+    private static int statusOf(Exception e) {
+        if (e instanceof IllegalArgumentException) return 400;
+        if (e instanceof ConcurrencyLimitExceededException) return 429;
+        return 500;
+    }
+}
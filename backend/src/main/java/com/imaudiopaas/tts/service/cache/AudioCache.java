@@ -0,0 +1,250 @@
+package com.imaudiopaas.tts.service.cache;
+
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.SynthesisKey;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory cache of synthesized audio, keyed by {@link SynthesisKey} of the request as sent
+ * to the provider (native voice) plus the provider type.
+ *
+ * <p>Eviction is LRU within a total byte budget. Admission is frequency-aware (TinyLFU): every
+ * lookup is counted in a {@link FrequencySketch}, and a new entry that needs room only gets in
+ * if it has been requested more often than every entry it would evict. A one-off long text
+ * therefore can't flush the hot prompts. Entries larger than {@code max-entry-bytes} are never
+ * cached.
+ *
+ * <p>When the {@link DiskAudioCache} is enabled it backs this cache as a second tier: every
+ * completed response is also written to disk, and memory misses are looked up there.
+ */
+@Slf4j
+@Component
+public class AudioCache {
+
+    private final LinkedHashMap<String, CachedAudio> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final DiskAudioCache disk;
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter rejections;
+
+    public AudioCache(MeterRegistry meterRegistry, boolean enabled, long maxBytes, long maxEntryBytes) {
+        this(meterRegistry, enabled, maxBytes, maxEntryBytes, null);
+    }
+
+    @Autowired
+    public AudioCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.enabled:true}") boolean enabled,
+            @Value("${app.cache.memory.max-bytes:268435456}") long maxBytes,
+            @Value("${app.cache.memory.max-entry-bytes:8388608}") long maxEntryBytes,
+            DiskAudioCache disk) {
+        this.enabled = enabled;
+        this.disk = disk != null && disk.isEnabled() ? disk : null;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        // Assume ~64 KB per prompt to size the sketch
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / (64 * 1024))));
+        this.hits = meterRegistry.counter("tts.cache.requests", "tier", "memory", "result", "hit");
+        this.misses = meterRegistry.counter("tts.cache.requests", "tier", "memory", "result", "miss");
+        this.evictions = meterRegistry.counter("tts.cache.evictions", "tier", "memory");
+        this.rejections = meterRegistry.counter("tts.cache.admission.rejected", "tier", "memory");
+        Gauge.builder("tts.cache.bytes", this, AudioCache::getBytes).tag("tier", "memory").register(meterRegistry);
+        Gauge.builder("tts.cache.entries", this, AudioCache::getEntryCount).tag("tier", "memory").register(meterRegistry);
+        Gauge.builder("tts.cache.hit_ratio", this, AudioCache::getHitRatio).tag("tier", "memory").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key for a request resolved to a provider.
+     *
+     * @param providerType The provider serving the request.
+     * @param nativeRequest The request with {@code voiceId} set to the provider's native voice.
+     * @return The cache key.
+     */
+    public static String keyOf(ProviderType providerType, TtsRequest nativeRequest) {
+        return SynthesisKey.of(nativeRequest, providerType);
+    }
+
+    /**
+     * Look a key up in memory, then on disk.
+     *
+     * @return A response over the cached audio, or empty on a miss.
+     */
+    public Optional<TtsResponse> lookup(String key) {
+        Optional<CachedAudio> inMemory = get(key);
+        if (inMemory.isPresent()) {
+            return Optional.of(inMemory.get().toResponse());
+        }
+        return disk == null ? Optional.empty() : disk.lookup(key);
+    }
+
+    public synchronized Optional<CachedAudio> get(String key) {
+        sketch.increment(hash(key));
+        CachedAudio audio = entries.get(key);
+        (audio == null ? misses : hits).increment();
+        return Optional.ofNullable(audio);
+    }
+
+    /**
+     * Wrap a fresh upstream response so that its audio is offered to the cache once the client
+     * has read it to the end.
+     */
+    public TtsResponse cacheOnCompletion(TtsResponse response, String key, ProviderType providerType, String voiceId) {
+        return cacheOnCompletion(response, key, providerType, voiceId, () -> true);
+    }
+
+    /**
+     * Like {@link #cacheOnCompletion(TtsResponse, String, ProviderType, String)}, for audio whose
+     * eligibility is only known once it has been read.
+     *
+     * @param admit Checked once the audio has been read to the end; false drops it.
+     */
+    public TtsResponse cacheOnCompletion(TtsResponse response, String key, ProviderType providerType, String voiceId,
+                                         BooleanSupplier admit) {
+        if (!enabled || response.getAudioStream() == null || response.getContentLength() > maxEntryBytes) {
+            return response;
+        }
+        response.setAudioStream(new CachingInputStream(response.getAudioStream(), response.getContentLength(),
+                maxEntryBytes, data -> {
+                    if (!admit.getAsBoolean()) return;
+                    CachedAudio audio = new CachedAudio(key, providerType, voiceId, response.getFormat(), data,
+                            response.getSampleRate());
+                    put(audio);
+                    if (disk != null) {
+                        disk.store(audio);
+                    }
+                }));
+        return response;
+    }
+
+    /**
+     * Offer audio to the cache.
+     *
+     * @return Whether it was admitted.
+     */
+    public synchronized boolean put(CachedAudio audio) {
+        if (audio.size() == 0 || audio.size() > maxEntryBytes) {
+            return false;
+        }
+        CachedAudio previous = entries.remove(audio.getKey());
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+
+        // Collect LRU victims until the new entry fits; all of them must be colder than it
+        long needed = bytes + audio.size() - maxBytes;
+        if (needed > 0) {
+            int candidateFrequency = sketch.frequency(hash(audio.getKey()));
+            List<String> victims = new ArrayList<>();
+            long freed = 0;
+            for (Iterator<CachedAudio> it = entries.values().iterator(); it.hasNext() && freed < needed; ) {
+                CachedAudio victim = it.next();
+                if (sketch.frequency(hash(victim.getKey())) >= candidateFrequency) {
+                    rejections.increment();
+                    return false;
+                }
+                victims.add(victim.getKey());
+                freed += victim.size();
+            }
+            for (String victim : victims) {
+                bytes -= entries.remove(victim).size();
+                evictions.increment();
+            }
+        }
+        entries.put(audio.getKey(), audio);
+        bytes += audio.size();
+        return true;
+    }
+
+    /**
+     * Remove entries, optionally only those of one provider and/or native voice.
+     *
+     * @return The number of entries removed.
+     */
+    public int purge(ProviderType providerType, String voiceId) {
+        int removed = purgeMemory(providerType, voiceId);
+        if (disk != null) {
+            removed += disk.purge(providerType, voiceId);
+        }
+        log.info("Purged {} cached audio entries (provider={}, voice={})", removed, providerType, voiceId);
+        return removed;
+    }
+
+    private synchronized int purgeMemory(ProviderType providerType, String voiceId) {
+        int removed = 0;
+        for (Iterator<Map.Entry<String, CachedAudio>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            CachedAudio audio = it.next().getValue();
+            if ((providerType == null || providerType == audio.getProviderType())
+                    && (voiceId == null || voiceId.equals(audio.getVoiceId()))) {
+                it.remove();
+                bytes -= audio.size();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** The disk tier, or null when it is disabled. */
+    public DiskAudioCache getDisk() {
+        return disk;
+    }
+
+    public double getHits() {
+        return hits.count();
+    }
+
+    public double getMisses() {
+        return misses.count();
+    }
+
+    public double getEvictions() {
+        return evictions.count();
+    }
+
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private static long hash(String key) {
+        // Keys are hex SHA-256, so any 16 digits are already well mixed
+        return Long.parseUnsignedLong(key.substring(0, 16), 16);
+    }
+}
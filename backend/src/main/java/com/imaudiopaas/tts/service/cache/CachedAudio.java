@@ -0,0 +1,59 @@
+package com.imaudiopaas.tts.service.cache;
+
+import com.imaudiopaas.tts.core.codec.AudioIndex;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import lombok.Getter;
+
+/**
+ * Synthesized audio held by the {@link AudioCache}, with enough metadata to serve it and to
+ * purge it selectively, and the {@link AudioIndex} built from it on the way in.
+ */
+@Getter
+public class CachedAudio {
+
+    private final String key;
+    private final ProviderType providerType;
+    private final String voiceId;
+    private final AudioFormat format;
+    private final byte[] data;
+    private final int sampleRate;
+    private final AudioIndex index;
+    private final Instant createdAt;
+
+    public CachedAudio(String key, ProviderType providerType, String voiceId, AudioFormat format, byte[] data) {
+        this(key, providerType, voiceId, format, data, 0);
+    }
+
+    /**
+     * @param sampleRate Sample rate of PCM audio, 0 if unknown; needed to index it for seeking.
+     */
+    public CachedAudio(String key, ProviderType providerType, String voiceId, AudioFormat format, byte[] data,
+                       int sampleRate) {
+        this.key = key;
+        this.providerType = providerType;
+        this.voiceId = voiceId;
+        this.format = format;
+        this.data = data;
+        this.sampleRate = sampleRate;
+        this.index = AudioIndex.build(format, sampleRate, data);
+        this.createdAt = Instant.now();
+    }
+
+    public int size() {
+        return data.length;
+    }
+
+    public TtsResponse toResponse() {
+        return TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(data))
+                .format(format)
+                .contentLength(data.length)
+                .sampleRate(sampleRate)
+                .index(index)
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.imaudiopaas.tts.service.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Tees the audio read by the client into a buffer and hands the complete bytes to
+ * {@code onComplete} at end of file. Stops copying (and never calls back) once the audio grows
+ * past {@code maxBytes}, or if the stream is closed before the end.
+ */
+class CachingInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private final Consumer<byte[]> onComplete;
+    private ByteArrayOutputStream copy;
+    private boolean completed;
+
+    CachingInputStream(InputStream in, long sizeHint, long maxBytes, Consumer<byte[]> onComplete) {
+        super(in);
+        this.maxBytes = maxBytes;
+        this.onComplete = onComplete;
+        this.copy = new ByteArrayOutputStream(sizeHint > 0 && sizeHint <= maxBytes ? (int) sizeHint : 32 * 1024);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b < 0) {
+            complete();
+        } else if (copy != null) {
+            copy.write(b);
+            checkSize();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n < 0) {
+            complete();
+        } else if (copy != null) {
+            copy.write(b, off, n);
+            checkSize();
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would leave a hole in the copy
+        copy = null;
+        return super.skip(n);
+    }
+
+    private void checkSize() {
+        if (copy.size() > maxBytes) {
+            copy = null;
+        }
+    }
+
+    private void complete() {
+        if (!completed && copy != null) {
+            completed = true;
+            onComplete.accept(copy.toByteArray());
+            copy = null;
+        }
+    }
+}
@@ -0,0 +1,687 @@
+package com.imaudiopaas.tts.service.cache;
+
+import com.imaudiopaas.tts.core.codec.AudioIndex;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Second, persistent tier of the audio cache.
+ *
+ * <p>Audio is appended to memory-mapped segment files ({@code segment-NNNNNNNN.dat}); a record
+ * is {@code magic, crc32, length, key, provider, format, voice, indexLength, sampleRate, index,
+ * data}, with the {@link AudioIndex} of the audio just before it, and the magic is written last,
+ * so a record is either complete or invisible after a crash; anything without the magic is not
+ * a record. The only index is an
+ * {@link OffHeapIndex} rebuilt at startup by scanning the segments in order and validating each
+ * record's CRC; a torn tail is truncated. Purges append tombstones so they survive restarts.
+ *
+ * <p>Hits are served as a {@link FileRegionInputStream} over the segment, never copied onto the
+ * heap. Segments whose live data fell below {@code compaction-threshold} are compacted by
+ * copying their live records to the active segment; the oldest segments are dropped when the
+ * directory grows past {@code max-bytes}. Retired files are deleted after a grace period so that
+ * responses still streaming from them can finish.
+ *
+ * <p>All writes (appends, compaction, purges) happen on one background thread; lookups only take
+ * a read lock on the index.
+ */
+@Slf4j
+@Component
+public class DiskAudioCache {
+
+    static final int MAGIC = 0x54545333;
+    static final int HEADER_SIZE = 56;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.dat");
+    private static final ProviderType[] PROVIDERS = ProviderType.values();
+    private static final AudioFormat[] FORMATS = AudioFormat.values();
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+    private final double compactionThreshold;
+    private final long retireGraceMs;
+    private final long maxPendingBytes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapIndex index;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private ScheduledExecutorService writer;
+    private Segment active;
+    private int nextSegmentId = 1;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter compactions;
+
+    public DiskAudioCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.disk.enabled:false}") boolean enabled,
+            @Value("${app.cache.disk.directory:./data/audio-cache}") String directory,
+            @Value("${app.cache.disk.max-bytes:2147483648}") long maxBytes,
+            @Value("${app.cache.disk.segment-bytes:67108864}") long segmentBytes,
+            @Value("${app.cache.disk.compaction-threshold:0.5}") double compactionThreshold,
+            @Value("${app.cache.disk.retire-grace-ms:60000}") long retireGraceMs) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        this.maxBytes = Math.max(maxBytes, this.segmentBytes * 2);
+        this.compactionThreshold = compactionThreshold;
+        this.retireGraceMs = retireGraceMs;
+        this.maxPendingBytes = Math.max(this.segmentBytes, 64L * 1024 * 1024);
+        this.index = new OffHeapIndex((int) Math.min(1 << 24, this.maxBytes / (32 * 1024)));
+        this.hits = meterRegistry.counter("tts.cache.requests", "tier", "disk", "result", "hit");
+        this.misses = meterRegistry.counter("tts.cache.requests", "tier", "disk", "result", "miss");
+        this.evictions = meterRegistry.counter("tts.cache.evictions", "tier", "disk");
+        this.compactions = meterRegistry.counter("tts.cache.compactions", "tier", "disk");
+        Gauge.builder("tts.cache.bytes", this, DiskAudioCache::getBytes).tag("tier", "disk").register(meterRegistry);
+        Gauge.builder("tts.cache.entries", this, DiskAudioCache::getEntryCount).tag("tier", "disk").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches()).sorted().forEach(files::add);
+        }
+        lock.writeLock().lock();
+        try {
+            for (Path file : files) {
+                Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+                m.matches();
+                Segment segment = new Segment(Integer.parseInt(m.group(1)), file);
+                segments.put(segment.id, segment);
+                nextSegmentId = segment.id + 1;
+                recover(segment);
+            }
+            Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            if (last != null && last.size < segmentBytes - HEADER_SIZE) {
+                last.mapForAppend(segmentBytes);
+                active = last;
+            } else {
+                roll();
+            }
+            enforceBudget();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Disk audio cache opened at {}: {} segments, {} entries, {} bytes",
+                directory, segments.size(), index.size(), getBytes());
+
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tts-cache-disk");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::compact, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        lock.writeLock().lock();
+        try {
+            active.seal();
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Look up cached audio.
+     *
+     * @return A response streaming straight from the segment file, or empty on a miss.
+     */
+    public Optional<TtsResponse> lookup(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long[] k = keyBits(key);
+        lock.readLock().lock();
+        try {
+            OffHeapIndex.Location location = index.get(k[0], k[1]);
+            Segment segment = location == null ? null : segments.get(location.segment);
+            if (segment == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(TtsResponse.builder()
+                    .audioStream(new FileRegionInputStream(segment.channel, segment.path, location.offset, location.length))
+                    .format(FORMATS[location.format])
+                    .sampleRate(location.sampleRate)
+                    .contentLength(location.length)
+                    .index(readIndex(segment, location))
+                    .build());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The index sits right before the data; a read from the page cache, a few KB at most
+    private AudioIndex readIndex(Segment segment, OffHeapIndex.Location location) {
+        if (location.indexLength == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(location.indexLength);
+        try {
+            long position = location.offset - location.indexLength;
+            while (buffer.hasRemaining()) {
+                int n = segment.channel.read(buffer, position + buffer.position());
+                if (n < 0) return null;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read audio index from disk cache segment {}", segment.path, e);
+            return null;
+        }
+        return AudioIndex.fromBytes(buffer.flip());
+    }
+
+    /**
+     * Queue audio to be appended. Dropped silently if the writer is too far behind.
+     */
+    public void store(CachedAudio audio) {
+        byte[] audioIndex = audio.getIndex().toBytes();
+        if (!enabled || HEADER_SIZE + 255 + audioIndex.length + audio.size() > segmentBytes) {
+            return;
+        }
+        // The index keeps the rate in 16 bits
+        if (audio.getSampleRate() < 0 || audio.getSampleRate() > 0xffff) {
+            log.debug("Not storing {} at sample rate {}", audio.getKey(), audio.getSampleRate());
+            return;
+        }
+        if (pendingBytes.addAndGet(audio.size()) > maxPendingBytes) {
+            pendingBytes.addAndGet(-audio.size());
+            log.debug("Disk cache writer is behind, not storing {}", audio.getKey());
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                append(keyBytes(audio.getKey()), audio.getProviderType(), audio.getFormat(), audio.getSampleRate(),
+                        audio.getVoiceId(), ByteBuffer.wrap(audioIndex), ByteBuffer.wrap(audio.getData()));
+            } catch (Exception e) {
+                log.warn("Failed to write audio to disk cache", e);
+            } finally {
+                pendingBytes.addAndGet(-audio.size());
+            }
+        });
+    }
+
+    /**
+     * Remove entries, optionally only those of one provider and/or native voice.
+     *
+     * @return The number of entries removed.
+     */
+    public int purge(ProviderType providerType, String voiceId) {
+        if (!enabled) {
+            return 0;
+        }
+        try {
+            return writer.submit(() -> providerType == null && voiceId == null ? purgeAll() : purgeMatching(providerType, voiceId)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while purging disk cache", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to purge disk cache", e.getCause());
+        }
+    }
+
+    public long getBytes() {
+        lock.readLock().lock();
+        try {
+            return segments.values().stream().mapToLong(s -> s.size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public double getHits() {
+        return hits.count();
+    }
+
+    public double getMisses() {
+        return misses.count();
+    }
+
+    /** Wait until queued writes are on disk. */
+    void flush() throws ExecutionException, InterruptedException {
+        writer.submit(() -> { }).get();
+    }
+
+    /** Run a compaction pass now. */
+    void compactNow() throws ExecutionException, InterruptedException {
+        writer.submit((Runnable) this::compact).get();
+    }
+
+    // ---- writer thread ----
+
+    private void append(byte[] key, ProviderType providerType, AudioFormat format, int sampleRate, String voiceId,
+                        ByteBuffer audioIndex, ByteBuffer data) throws IOException {
+        byte[] voice = voiceId == null ? new byte[0] : voiceId.getBytes(StandardCharsets.UTF_8);
+        if (voice.length > 255) {
+            voice = new byte[0];
+        }
+        int dataLength = data == null ? -1 : data.remaining();
+        int indexLength = audioIndex == null ? 0 : audioIndex.remaining();
+        int dataOffset = HEADER_SIZE + voice.length + indexLength;
+        long recordLength = dataOffset + Math.max(0, dataLength);
+        if (active.size + recordLength > segmentBytes) {
+            lock.writeLock().lock();
+            try {
+                roll();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        MappedByteBuffer map = active.map;
+        int start = (int) active.size;
+        map.position(start + 8);
+        map.putInt(dataLength);
+        map.put(key);
+        map.put((byte) (providerType == null ? -1 : providerType.ordinal()));
+        map.put((byte) (format == null ? 0 : format.ordinal()));
+        map.putShort((short) voice.length);
+        map.putInt(indexLength);
+        map.putInt(sampleRate);
+        map.put(voice);
+        if (audioIndex != null) {
+            map.put(audioIndex.duplicate());
+        }
+        if (data != null) {
+            map.put(data.duplicate());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(map.slice(start + 8, (int) recordLength - 8));
+        map.putInt(start + 4, (int) crc.getValue());
+        map.force(start, (int) recordLength);
+        // Publish: the record only exists once its magic is in place
+        map.putInt(start, MAGIC);
+        map.force(start, 4);
+
+        lock.writeLock().lock();
+        try {
+            apply(active, start, key, dataLength, providerType, format, sampleRate, dataOffset, indexLength);
+            active.size += recordLength;
+            enforceBudget();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Segment segment, long start, byte[] key, int dataLength, ProviderType providerType,
+                       AudioFormat format, int sampleRate, int dataOffset, int indexLength) {
+        long[] k = keyBits(key);
+        OffHeapIndex.Location previous;
+        if (dataLength < 0) {
+            previous = index.remove(k[0], k[1]);
+        } else {
+            previous = index.put(k[0], k[1], new OffHeapIndex.Location(segment.id, start + dataOffset,
+                    dataLength, (byte) (providerType == null ? -1 : providerType.ordinal()),
+                    (byte) (format == null ? 0 : format.ordinal()), sampleRate, indexLength));
+            segment.liveBytes += dataLength;
+        }
+        if (previous != null) {
+            Segment old = segments.get(previous.segment);
+            if (old != null) old.liveBytes -= previous.length;
+        }
+    }
+
+    // Scan a segment at startup, indexing every valid record and cutting off a torn tail
+    private void recover(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long position = 0;
+        if (fileSize > 0) {
+            MappedByteBuffer map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            Record record;
+            while ((record = Record.read(map, position)) != null) {
+                apply(segment, position, record.key, record.dataLength, record.provider(), record.format(),
+                        record.sampleRate, record.dataOffset, record.indexLength);
+                position += record.length;
+            }
+            // The active segment is preallocated, so a zero tail is normal; anything else was torn
+            if (position + 4 <= fileSize && map.getInt((int) position) != 0) {
+                log.warn("Truncating torn record in disk cache segment {} at {} of {} bytes", segment.path, position, fileSize);
+            }
+        }
+        segment.size = position;
+        if (position < fileSize) {
+            segment.channel.truncate(position);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        int id = nextSegmentId++;
+        Segment segment = new Segment(id, directory.resolve(String.format("segment-%08d.dat", id)));
+        segment.mapForAppend(segmentBytes);
+        segments.put(id, segment);
+        active = segment;
+    }
+
+    // Drop whole segments, oldest first, until the directory fits the budget
+    private void enforceBudget() {
+        long total = segments.values().stream().mapToLong(s -> s.size).sum();
+        while (total > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            int dropped = index.removeIf(id -> id == oldest.id);
+            evictions.increment(dropped);
+            total -= oldest.size;
+            retire(oldest);
+        }
+    }
+
+    private void compact() {
+        try {
+            List<Segment> candidates = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (Segment segment : segments.values()) {
+                    if (segment != active && segment.size > 0
+                            && segment.liveBytes < segment.size * compactionThreshold) {
+                        candidates.add(segment);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (Segment segment : candidates) {
+                compact(segment);
+            }
+        } catch (Exception e) {
+            log.warn("Disk cache compaction failed", e);
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        boolean hasOlder = segments.firstKey() < segment.id;
+        MappedByteBuffer map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        long position = 0;
+        int moved = 0;
+        Record record;
+        while ((record = Record.read(map, position)) != null) {
+            if (!segments.containsKey(segment.id)) {
+                // Dropped by the budget while we were copying it
+                return;
+            }
+            long[] k = keyBits(record.key);
+            boolean live;
+            lock.readLock().lock();
+            try {
+                OffHeapIndex.Location location = index.get(k[0], k[1]);
+                live = location != null && location.segment == segment.id
+                        && location.offset == position + record.dataOffset;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (live) {
+                int dataStart = (int) position + record.dataOffset;
+                append(record.key, record.provider(), record.format(), record.sampleRate,
+                        new String(record.voice, StandardCharsets.UTF_8),
+                        record.indexLength == 0 ? null : map.slice(dataStart - record.indexLength, record.indexLength),
+                        map.slice(dataStart, record.dataLength));
+                moved++;
+            } else if (record.dataLength < 0 && hasOlder) {
+                // Older segments may still hold the purged record
+                append(record.key, null, null, 0, null, null, null);
+            }
+            position += record.length;
+        }
+        lock.writeLock().lock();
+        try {
+            index.removeIf(id -> id == segment.id);
+            retire(segment);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactions.increment();
+        log.info("Compacted disk cache segment {}: moved {} live entries", segment.path, moved);
+    }
+
+    private int purgeAll() throws IOException {
+        lock.writeLock().lock();
+        try {
+            int removed = index.size();
+            index.clear();
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                retire(segment);
+            }
+            active = null;
+            roll();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int purgeMatching(ProviderType providerType, String voiceId) throws IOException {
+        List<byte[]> matches = new ArrayList<>();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            MappedByteBuffer map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+            long position = 0;
+            Record record;
+            while ((record = Record.read(map, position)) != null) {
+                if (record.dataLength >= 0
+                        && (providerType == null || providerType == record.provider())
+                        && (voiceId == null || voiceId.equals(new String(record.voice, StandardCharsets.UTF_8)))) {
+                    matches.add(record.key);
+                }
+                position += record.length;
+            }
+        }
+        int removed = 0;
+        for (byte[] key : matches) {
+            long[] k = keyBits(key);
+            boolean present;
+            lock.readLock().lock();
+            try {
+                present = index.get(k[0], k[1]) != null;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (present) {
+                append(key, null, null, 0, null, null, null);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void retire(Segment segment) {
+        segments.remove(segment.id);
+        if (segment == active) {
+            segment.map = null;
+        }
+        // Responses may still be streaming from this file; delete it once they are done
+        Runnable delete = () -> {
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete retired disk cache segment {}", segment.path, e);
+            }
+        };
+        if (writer == null || writer.isShutdown()) {
+            delete.run();
+        } else {
+            writer.schedule(delete, retireGraceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static byte[] keyBytes(String key) {
+        return HexFormat.of().parseHex(key);
+    }
+
+    private static long[] keyBits(String key) {
+        return keyBits(keyBytes(key));
+    }
+
+    private static long[] keyBits(byte[] key) {
+        ByteBuffer buffer = ByteBuffer.wrap(key);
+        return new long[]{buffer.getLong(0), buffer.getLong(8)};
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        MappedByteBuffer map;
+        long size;
+        long liveBytes;
+
+        Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        // The mapping extends the file to its full size; the unused tail stays zero
+        void mapForAppend(long segmentBytes) throws IOException {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+
+        void seal() throws IOException {
+            if (map != null) {
+                map.force();
+                map = null;
+                channel.truncate(size);
+            }
+        }
+    }
+
+    private static final class Record {
+        byte[] key;
+        int dataLength;
+        byte providerOrdinal;
+        byte formatOrdinal;
+        byte[] voice;
+        int indexLength;
+        int sampleRate;
+        // From the start of the record
+        int dataOffset;
+        long length;
+
+        ProviderType provider() {
+            return providerOrdinal < 0 || providerOrdinal >= PROVIDERS.length ? null : PROVIDERS[providerOrdinal];
+        }
+
+        AudioFormat format() {
+            return formatOrdinal < 0 || formatOrdinal >= FORMATS.length ? AudioFormat.MP3 : FORMATS[formatOrdinal];
+        }
+
+        // Parse and validate the record at position; null at the end of valid data
+        static Record read(ByteBuffer map, long position) {
+            int limit = map.limit();
+            if (position + HEADER_SIZE > limit) {
+                return null;
+            }
+            int p = (int) position;
+            if (map.getInt(p) != MAGIC) {
+                return null;
+            }
+            Record record = new Record();
+            int storedCrc = map.getInt(p + 4);
+            record.dataLength = map.getInt(p + 8);
+            record.key = new byte[32];
+            map.get(p + 12, record.key);
+            record.providerOrdinal = map.get(p + 44);
+            record.formatOrdinal = map.get(p + 45);
+            int voiceLength = map.getShort(p + 46) & 0xffff;
+            record.indexLength = map.getInt(p + 48);
+            record.sampleRate = map.getInt(p + 52);
+            if (voiceLength > 255 || record.indexLength < 0 || record.indexLength > limit) {
+                return null;
+            }
+            record.dataOffset = HEADER_SIZE + voiceLength + record.indexLength;
+            record.length = (long) record.dataOffset + Math.max(0, record.dataLength);
+            if (record.dataLength < -1 || position + record.length > limit) {
+                return null;
+            }
+            record.voice = new byte[voiceLength];
+            map.get(p + HEADER_SIZE, record.voice);
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(p + 8, (int) record.length - 8));
+            if ((int) crc.getValue() != storedCrc) {
+                return null;
+            }
+            return record;
+        }
+    }
+
+    Map<Integer, Long> segmentSizes() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Long> sizes = new TreeMap<>();
+            segments.forEach((id, s) -> sizes.put(id, s.size));
+            return sizes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
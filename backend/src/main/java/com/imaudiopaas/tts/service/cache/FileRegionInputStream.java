@@ -0,0 +1,103 @@
+package com.imaudiopaas.tts.service.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Audio stored in a region of a disk cache segment. {@link #transferTo(OutputStream)} hands the
+ * region to {@link FileChannel#transferTo}, so the bytes go from the page cache to the socket
+ * without passing through the heap; the servlet layer can also skip the stream entirely and
+ * use the connector's sendfile support with {@link #getPath()}, {@link #getStart()} and
+ * {@link #getEnd()}.
+ */
+public class FileRegionInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final Path path;
+    private final long start;
+    private final long end;
+    private long position;
+
+    FileRegionInputStream(FileChannel channel, Path path, long start, long length) {
+        this.channel = channel;
+        this.path = path;
+        this.start = start;
+        this.end = start + length;
+        this.position = start;
+    }
+
+    /**
+     * The part of this region from {@code offset} (relative to its start) on, at most
+     * {@code length} bytes long, read independently of this stream.
+     */
+    public FileRegionInputStream region(long offset, long length) {
+        long from = Math.min(end, start + Math.max(0, offset));
+        return new FileRegionInputStream(channel, path, from, Math.max(0, Math.min(length, end - from)));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /** First byte of the audio in the file. */
+    public long getStart() {
+        return start;
+    }
+
+    /** One past the last byte of the audio in the file. */
+    public long getEnd() {
+        return end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (position >= end) return -1;
+        if (len == 0) return 0;
+        int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (n > 0) position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long transferred = 0;
+        while (position < end) {
+            long n = channel.transferTo(position, end - position, target);
+            if (n <= 0) break;
+            position += n;
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    @Override
+    public void close() {
+        // The segment channel is shared and owned by the disk cache
+        position = end;
+    }
+}
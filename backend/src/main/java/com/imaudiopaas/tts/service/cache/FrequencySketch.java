@@ -0,0 +1,63 @@
+package com.imaudiopaas.tts.service.cache;
+
+/**
+ * Approximate access frequency of cache keys (count-min sketch, TinyLFU style). Counters
+ * saturate at 15 and are all halved after {@code 10 x width} increments, so the sketch tracks
+ * recent popularity and forgets prompts that stopped being requested. Not thread-safe; the
+ * owning cache guards it.
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int resetAfter;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, expectedEntries) * 2 - 1);
+        this.counters = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.resetAfter = width * 10;
+    }
+
+    void increment(long hash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = index(hash, i);
+            if (counters[i][index] < MAX_COUNT) {
+                counters[i][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= resetAfter) {
+            reset();
+        }
+    }
+
+    int frequency(long hash) {
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, counters[i][index(hash, i)]);
+        }
+        return min;
+    }
+
+    private int index(long hash, int row) {
+        long h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        return (int) (h >>> 40) & mask;
+    }
+
+    private void reset() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >> 1);
+            }
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,199 @@
+package com.imaudiopaas.tts.service.cache;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntPredicate;
+
+/**
+ * Open-addressing hash table from a 128-bit key (the first half of the SHA-256 cache key) to
+ * the location of a record in the disk tier, stored in a direct buffer so that millions of
+ * entries cost no heap and no GC work. Linear probing with tombstones; grows by rehashing when
+ * more than 70% of the slots are taken. Not thread-safe, {@link DiskAudioCache} guards it.
+ */
+class OffHeapIndex {
+
+    /** keyHi(8) keyLo(8) offset(8) segment(4) length(4) provider(1) format(1) sampleRate(2) indexLength(4) */
+    private static final int SLOT = 40;
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+    private int used;
+
+    OffHeapIndex(int expectedEntries) {
+        allocate(tableSizeFor(expectedEntries));
+    }
+
+    /**
+     * Location of one record: data starts at {@code offset} in segment {@code segment}, right
+     * after {@code indexLength} bytes of its {@link com.imaudiopaas.tts.core.codec.AudioIndex}.
+     * The sample rate is 0 when unknown and fits in 16 unsigned bits.
+     */
+    static final class Location {
+        final int segment;
+        final long offset;
+        final int length;
+        final byte provider;
+        final byte format;
+        final int sampleRate;
+        final int indexLength;
+
+        Location(int segment, long offset, int length, byte provider, byte format, int sampleRate, int indexLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.provider = provider;
+            this.format = format;
+            this.sampleRate = sampleRate;
+            this.indexLength = indexLength;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    Location get(long keyHi, long keyLo) {
+        int slot = find(keyHi, keyLo);
+        return slot < 0 ? null : read(slot);
+    }
+
+    /**
+     * Insert or replace.
+     *
+     * @return The previous location, or null.
+     */
+    Location put(long keyHi, long keyLo, Location location) {
+        if ((used + 1) * 10L > capacity * 7L) {
+            rehash(size + 1 > capacity / 2 ? capacity * 2 : capacity);
+        }
+        int existing = find(keyHi, keyLo);
+        if (existing >= 0) {
+            Location previous = read(existing);
+            write(existing, keyHi, keyLo, location);
+            return previous;
+        }
+        int slot = indexFor(keyHi, keyLo);
+        while (segmentAt(slot) > EMPTY) {
+            slot = (slot + 1) & (capacity - 1);
+        }
+        if (segmentAt(slot) == EMPTY) {
+            used++;
+        }
+        write(slot, keyHi, keyLo, location);
+        size++;
+        return null;
+    }
+
+    Location remove(long keyHi, long keyLo) {
+        int slot = find(keyHi, keyLo);
+        if (slot < 0) {
+            return null;
+        }
+        Location previous = read(slot);
+        slots.putInt(slot * SLOT + 24, DELETED);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Remove every entry whose segment matches.
+     *
+     * @return The number of entries removed.
+     */
+    int removeIf(IntPredicate segmentMatches) {
+        int removed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int segment = segmentAt(slot);
+            if (segment > EMPTY && segmentMatches.test(segment)) {
+                slots.putInt(slot * SLOT + 24, DELETED);
+                size--;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    void clear() {
+        allocate(capacity);
+    }
+
+    private int find(long keyHi, long keyLo) {
+        int slot = indexFor(keyHi, keyLo);
+        for (int probes = 0; probes < capacity; probes++) {
+            int segment = segmentAt(slot);
+            if (segment == EMPTY) {
+                return -1;
+            }
+            int base = slot * SLOT;
+            if (segment > EMPTY && slots.getLong(base) == keyHi && slots.getLong(base + 8) == keyLo) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return -1;
+    }
+
+    private int segmentAt(int slot) {
+        return slots.getInt(slot * SLOT + 24);
+    }
+
+    private Location read(int slot) {
+        int base = slot * SLOT;
+        return new Location(slots.getInt(base + 24), slots.getLong(base + 16), slots.getInt(base + 28),
+                slots.get(base + 32), slots.get(base + 33), slots.getChar(base + 34), slots.getInt(base + 36));
+    }
+
+    private void write(int slot, long keyHi, long keyLo, Location location) {
+        int base = slot * SLOT;
+        slots.putLong(base, keyHi);
+        slots.putLong(base + 8, keyLo);
+        slots.putLong(base + 16, location.offset);
+        slots.putInt(base + 24, location.segment);
+        slots.putInt(base + 28, location.length);
+        slots.put(base + 32, location.provider);
+        slots.put(base + 33, location.format);
+        slots.putChar(base + 34, (char) location.sampleRate);
+        slots.putInt(base + 36, location.indexLength);
+    }
+
+    private int indexFor(long keyHi, long keyLo) {
+        // SHA-256 bits are uniformly distributed already
+        return (int) (keyHi ^ (keyHi >>> 32)) & (capacity - 1);
+    }
+
+    private void rehash(int newCapacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int base = slot * SLOT;
+            int segment = old.getInt(base + 24);
+            if (segment > EMPTY) {
+                long keyHi = old.getLong(base);
+                long keyLo = old.getLong(base + 8);
+                int target = indexFor(keyHi, keyLo);
+                while (segmentAt(target) != EMPTY) {
+                    target = (target + 1) & (capacity - 1);
+                }
+                write(target, keyHi, keyLo, new Location(segment, old.getLong(base + 16), old.getInt(base + 28),
+                        old.get(base + 32), old.get(base + 33), old.getChar(base + 34), old.getInt(base + 36)));
+                size++;
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT);
+        size = 0;
+        used = 0;
+    }
+
+    private static int tableSizeFor(int expectedEntries) {
+        int n = Math.max(16, (int) Math.min(1 << 26, expectedEntries * 2L));
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,156 @@
+package com.imaudiopaas.tts.service.coalescing;
+
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.SynthesisKey;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-flight for synthesis: while a request is being synthesized, identical requests (same
+ * {@link SynthesisKey}) of the same {@link Priority} wait for it instead of calling upstream
+ * themselves. Each caller gets its own stream over the shared audio, replayed from the start. A
+ * flight ends when its audio has been fully received or abandoned by all readers; later requests
+ * start a new one.
+ *
+ * <p>Flights are kept apart by priority because the leader's class is what waits for a provider
+ * slot: an interactive caller joining a bulk flight would queue behind bulk work.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long timeoutMs;
+
+    public RequestCoalescer(
+            MeterRegistry meterRegistry,
+            @Value("${app.coalescing.enabled:true}") boolean enabled,
+            @Value("${app.routing.request-timeout-ms:30000}") long timeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Run {@code call} for the request, or join an identical one already in flight.
+     *
+     * @param request The request, used to build the coalescing key.
+     * @param call The upstream call, only run by the first caller.
+     * @return A response whose audio stream belongs to this caller alone.
+     */
+    public TtsResponse execute(TtsRequest request, Supplier<TtsResponse> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        String key = keyOf(request);
+        while (true) {
+            Flight flight = new Flight();
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, call);
+            }
+            TtsResponse joined = existing.join(timeoutMs);
+            if (joined != null) {
+                meterRegistry.counter("tts.coalescing.joined").increment();
+                return joined;
+            }
+            // The flight ended between lookup and join; start over
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * Callers waiting for the request's flight to return, for tests.
+     */
+    int waiters(TtsRequest request) {
+        Flight flight = flights.get(keyOf(request));
+        return flight == null ? 0 : flight.waiters.get();
+    }
+
+    private static String keyOf(TtsRequest request) {
+        Priority priority = request.getPriority() != null ? request.getPriority() : Priority.STANDARD;
+        return SynthesisKey.of(request) + "/" + priority.tag();
+    }
+
+    private TtsResponse lead(String key, Flight flight, Supplier<TtsResponse> call) {
+        TtsResponse response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+        meterRegistry.counter("tts.coalescing.upstream").increment();
+        if (response.getAudioStream() == null) {
+            flights.remove(key, flight);
+            flight.result.complete(new Shared(response, null));
+            return response;
+        }
+        SharedAudioBuffer buffer = new SharedAudioBuffer(response.getAudioStream(), response.getContentLength(),
+                () -> flights.remove(key, flight));
+        // Take the leader's reader before publishing, so the buffer can't be abandoned in between
+        InputStream leaderStream = buffer.newReader();
+        flight.result.complete(new Shared(response, buffer));
+        return copyOf(response, leaderStream);
+    }
+
+    // Everything but the stream is shared as is
+    private static TtsResponse copyOf(TtsResponse response, InputStream stream) {
+        return response.toBuilder().audioStream(stream).build();
+    }
+
+    private static final class Shared {
+        final TtsResponse response;
+        final SharedAudioBuffer buffer;
+
+        Shared(TtsResponse response, SharedAudioBuffer buffer) {
+            this.response = response;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Flight {
+        final CompletableFuture<Shared> result = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger();
+
+        // Returns null if the flight's audio was abandoned before this caller could attach
+        TtsResponse join(long timeoutMs) {
+            Shared shared;
+            waiters.incrementAndGet();
+            try {
+                shared = result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new TtsException(cause.getMessage(), cause);
+            } catch (TimeoutException e) {
+                throw new TtsException("Timed out waiting for an identical in-flight request");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TtsException("Interrupted while waiting for an identical in-flight request", e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+            if (shared.buffer == null) {
+                return shared.response;
+            }
+            InputStream stream = shared.buffer.newReader();
+            return stream == null ? null : copyOf(shared.response, stream);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.imaudiopaas.tts.service.coalescing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Audio of one upstream response shared by several callers. Every caller gets its own
+ * {@link #newReader() reader} that starts at byte 0 and can be consumed at its own pace; bytes
+ * are pulled from the upstream on demand by whichever reader gets ahead, so no extra thread is
+ * needed and the first caller still receives audio as soon as the upstream sends it.
+ *
+ * <p>The upstream stream is closed once it is fully read, fails, or every reader has been
+ * closed; {@code onDone} runs exactly once at that point.
+ */
+@Slf4j
+public class SharedAudioBuffer {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_INITIAL_CAPACITY = 8 * 1024 * 1024;
+
+    private final InputStream upstream;
+    private final Runnable onDone;
+    private final ReentrantLock pumpLock = new ReentrantLock();
+
+    private byte[] data;
+    private int size;
+    private boolean complete;
+    private IOException failure;
+    private int openReaders;
+    private boolean done;
+
+    public SharedAudioBuffer(InputStream upstream, long sizeHint, Runnable onDone) {
+        this.upstream = upstream;
+        this.onDone = onDone;
+        int capacity = sizeHint > 0 ? (int) Math.min(sizeHint, MAX_INITIAL_CAPACITY) : 64 * 1024;
+        this.data = new byte[capacity];
+    }
+
+    /**
+     * Open another reader over the audio.
+     *
+     * @return A new stream positioned at byte 0, or null if the buffer was already abandoned
+     *         by all its readers before the upstream finished.
+     */
+    public synchronized InputStream newReader() {
+        if (done && !complete) {
+            return null;
+        }
+        openReaders++;
+        return new Reader();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int read(int position, byte[] b, int off, int len) throws IOException {
+        while (true) {
+            synchronized (this) {
+                if (position < size) {
+                    int n = Math.min(len, size - position);
+                    System.arraycopy(data, position, b, off, n);
+                    return n;
+                }
+                if (complete) return -1;
+                if (failure != null) throw failure;
+                if (done) throw new IOException("Shared audio stream was closed");
+            }
+            fill(position);
+        }
+    }
+
+    // Pull the next chunk from upstream unless another reader did while we waited for the lock
+    private void fill(int position) throws IOException {
+        pumpLock.lock();
+        try {
+            synchronized (this) {
+                if (position < size || complete || failure != null || done) return;
+            }
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int n;
+            try {
+                n = upstream.read(chunk);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+                finish();
+                throw e;
+            }
+            synchronized (this) {
+                if (n < 0) {
+                    complete = true;
+                } else {
+                    if (size + n > data.length) {
+                        data = Arrays.copyOf(data, Math.max(size + n, data.length * 2));
+                    }
+                    System.arraycopy(chunk, 0, data, size, n);
+                    size += n;
+                }
+            }
+            if (n < 0) finish();
+        } finally {
+            pumpLock.unlock();
+        }
+    }
+
+    private void readerClosed() {
+        boolean abandon;
+        synchronized (this) {
+            openReaders--;
+            abandon = openReaders == 0;
+        }
+        if (abandon) finish();
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (done) return;
+            done = true;
+        }
+        try {
+            upstream.close();
+        } catch (IOException e) {
+            log.debug("Failed to close shared upstream stream", e);
+        }
+        onDone.run();
+    }
+
+    private final class Reader extends InputStream {
+        private int position;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            if (len == 0) return 0;
+            int n = SharedAudioBuffer.this.read(position, b, off, len);
+            if (n > 0) position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            synchronized (SharedAudioBuffer.this) {
+                return Math.max(0, size - position);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                readerClosed();
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.imaudiopaas.tts.service.job;
+
+import com.imaudiopaas.tts.core.codec.WavHeader;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.stream.AudioJoiner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Files of synthesis jobs, one directory per job: the audio of every finished segment
+ * ({@code segment-NNNNNN.audio}), then the joined result ({@code speech.<format>}), after which
+ * the segments are deleted. Files are written under a temporary name and moved into place, so
+ * a segment file that exists is complete: that is what lets a job resume after a restart
+ * without synthesizing its finished segments again.
+ */
+class JobStorage {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{6})\\.audio");
+
+    private final Path root;
+
+    JobStorage(Path root) {
+        this.root = root;
+    }
+
+    Path directory(UUID id) {
+        return root.resolve(id.toString());
+    }
+
+    Path result(UUID id, AudioFormat format) {
+        return directory(id).resolve("speech." + format.name().toLowerCase(Locale.ROOT));
+    }
+
+    private Path segment(UUID id, int index) {
+        return directory(id).resolve(String.format("segment-%06d.audio", index));
+    }
+
+    /**
+     * Write one segment's audio.
+     *
+     * @return Bytes written.
+     */
+    long writeSegment(UUID id, int index, InputStream audio) throws IOException {
+        return writeAtomically(segment(id, index), out -> audio.transferTo(out));
+    }
+
+    /**
+     * Segments already on disk; leftovers of writes cut short are deleted.
+     */
+    BitSet completedSegments(UUID id) throws IOException {
+        BitSet done = new BitSet();
+        Path directory = directory(id);
+        if (!Files.isDirectory(directory)) {
+            return done;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher m = SEGMENT_NAME.matcher(name);
+                if (m.matches()) {
+                    done.set(Integer.parseInt(m.group(1)));
+                } else if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Join the segments in order into the result (see {@link AudioJoiner}), then delete them.
+     * A joined WAV gets its real sizes written back into the header.
+     *
+     * @param sampleRate Sample rate of PCM segments, 0 if unknown.
+     * @return Size of the result.
+     */
+    long assemble(UUID id, int segments, AudioFormat format, int sampleRate, int keepSilenceMs) throws IOException {
+        return assemble(id, segments, format, sampleRate, keepSilenceMs, format, UnaryOperator.identity());
+    }
+
+    /**
+     * Join the segments in order and encode the joined audio once, for result formats whose
+     * pieces can't be joined themselves.
+     *
+     * @param resultFormat Format {@code encoder} produces.
+     * @param encoder Turns the joined segments into the result; closing its stream closes theirs.
+     */
+    long assemble(UUID id, int segments, AudioFormat format, int sampleRate, int keepSilenceMs,
+                  AudioFormat resultFormat, UnaryOperator<InputStream> encoder) throws IOException {
+        Path result = result(id, resultFormat);
+        long size = writeAtomically(result, out -> {
+            try (InputStream pieces = new SequenceInputStream(new Enumeration<>() {
+                private int next;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return next < segments;
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    int i = next++;
+                    try {
+                        InputStream in = Files.newInputStream(segment(id, i));
+                        return i == 0
+                                ? AudioJoiner.first(format, in, sampleRate, keepSilenceMs)
+                                : AudioJoiner.next(format, in, sampleRate, keepSilenceMs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+                 InputStream joined = encoder.apply(pieces)) {
+                return joined.transferTo(out);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+        if (resultFormat == AudioFormat.WAV) {
+            fixWavSizes(result);
+        }
+        deleteSegments(id);
+        return size;
+    }
+
+    void deleteSegments(UUID id) throws IOException {
+        Path directory = directory(id);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (SEGMENT_NAME.matcher(name).matches() || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // The joined header says "size unknown", as streamed WAV does; a file can say the truth
+    private static void fixWavSizes(Path wav) throws IOException {
+        int headerLength;
+        try (InputStream in = Files.newInputStream(wav)) {
+            headerLength = WavHeader.read(in).getBytes().length;
+        }
+        try (FileChannel channel = FileChannel.open(wav, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer value = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.write(value.putInt(0, (int) Math.min(WavHeader.UNKNOWN_SIZE, size - 8)), 4);
+            channel.write(value.rewind().putInt(0, (int) Math.min(WavHeader.UNKNOWN_SIZE, size - headerLength)),
+                    headerLength - 4);
+        }
+    }
+
+    private interface Writer {
+        long write(OutputStream out) throws IOException;
+    }
+
+    private static long writeAtomically(Path target, Writer writer) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            written = writer.write(Channels.newOutputStream(channel));
+            // On disk before the rename, so a crash never leaves a complete-looking empty file
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+}
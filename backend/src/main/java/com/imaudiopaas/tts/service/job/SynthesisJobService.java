@@ -0,0 +1,507 @@
+package com.imaudiopaas.tts.service.job;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.stream.AudioJoiner;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
+import com.imaudiopaas.tts.exception.TtsException;
+import com.imaudiopaas.tts.model.SynthesisJob;
+import com.imaudiopaas.tts.repository.SynthesisJobRepository;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import com.imaudiopaas.tts.service.text.SentenceSegmenter;
+import com.imaudiopaas.tts.service.transcode.AudioTranscoder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Long-form synthesis outside the request path. A job's text is split into segments of up to
+ * {@code segmentChars} at sentence boundaries; each segment goes through
+ * {@link ProviderRoutingService} like any speech request (so it is cached, balanced, split
+ * further and failed over the same way), its audio is written to the job's directory, and once
+ * all are done they are joined into the result (see {@link JobStorage}). Formats whose pieces
+ * can't be joined (FLAC) are synthesized as PCM and encoded once, when the result is assembled.
+ *
+ * <p>A fixed pool of {@code workers} threads runs one segment each. They take segments round
+ * robin from up to {@code maxActiveJobs} jobs, at most {@code maxParallelSegments} of one job at
+ * a time, so a long book doesn't hold up everything submitted after it; further jobs wait, up to
+ * {@code maxQueuedJobs}. Node throughput is therefore about {@code workers} times the characters
+ * per second of one provider call, and shows as the rate of {@code tts.jobs.characters}.
+ *
+ * <p>Progress is saved after every segment. At startup, jobs still queued or running are picked
+ * up again: segments whose audio is on disk are not synthesized again. A segment that fails is
+ * tried up to {@code segmentAttempts} times in all, {@code retryDelayMs} apart, before the job
+ * fails.
+ */
+@Slf4j
+@Service
+public class SynthesisJobService {
+
+    private static final int FINISH = -1;
+
+    private final SynthesisJobRepository repository;
+    private final ProviderRoutingService routingService;
+    private final AudioTranscoder transcoder;
+    private final JobStorage storage;
+    private final int workers;
+    private final int maxActiveJobs;
+    private final int maxParallelSegments;
+    private final int maxQueuedJobs;
+    private final int segmentChars;
+    private final int maxInputChars;
+    private final int segmentAttempts;
+    private final long retryDelayMs;
+    private final int keepSilenceMs;
+
+    // Guards the scheduling state below; a job's entity is guarded by its JobRun
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Deque<JobRun> waiting = new ArrayDeque<>();
+    private final List<JobRun> active = new ArrayList<>();
+    private int cursor;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean stopped;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter characters;
+
+    @Autowired
+    public SynthesisJobService(
+            SynthesisJobRepository repository,
+            ProviderRoutingService routingService,
+            AudioTranscoder transcoder,
+            MeterRegistry meterRegistry,
+            @Value("${app.jobs.directory:./data/jobs}") String directory,
+            @Value("${app.jobs.workers:8}") int workers,
+            @Value("${app.jobs.max-active-jobs:4}") int maxActiveJobs,
+            @Value("${app.jobs.max-parallel-segments:4}") int maxParallelSegments,
+            @Value("${app.jobs.max-queued-jobs:1000}") int maxQueuedJobs,
+            @Value("${app.jobs.segment-chars:2000}") int segmentChars,
+            @Value("${app.jobs.max-input-chars:2000000}") int maxInputChars,
+            @Value("${app.jobs.segment-attempts:3}") int segmentAttempts,
+            @Value("${app.jobs.retry-delay-ms:5000}") long retryDelayMs,
+            @Value("${app.segmentation.keep-silence-ms:150}") int keepSilenceMs) {
+        this(repository, routingService, transcoder, meterRegistry, Paths.get(directory), workers, maxActiveJobs,
+                maxParallelSegments, maxQueuedJobs, segmentChars, maxInputChars, segmentAttempts, retryDelayMs,
+                keepSilenceMs);
+    }
+
+    public SynthesisJobService(SynthesisJobRepository repository, ProviderRoutingService routingService,
+                               AudioTranscoder transcoder, MeterRegistry meterRegistry, Path directory,
+                               int workers, int maxActiveJobs,
+                               int maxParallelSegments, int maxQueuedJobs, int segmentChars, int maxInputChars,
+                               int segmentAttempts, long retryDelayMs, int keepSilenceMs) {
+        this.repository = repository;
+        this.routingService = routingService;
+        this.transcoder = transcoder;
+        this.storage = new JobStorage(directory);
+        this.workers = Math.max(1, workers);
+        this.maxActiveJobs = Math.max(1, maxActiveJobs);
+        this.maxParallelSegments = Math.max(1, maxParallelSegments);
+        this.maxQueuedJobs = maxQueuedJobs;
+        this.segmentChars = segmentChars;
+        this.maxInputChars = maxInputChars;
+        this.segmentAttempts = Math.max(1, segmentAttempts);
+        this.retryDelayMs = retryDelayMs;
+        this.keepSilenceMs = keepSilenceMs;
+        this.meterRegistry = meterRegistry;
+        this.characters = meterRegistry.counter("tts.jobs.characters");
+        Gauge.builder("tts.jobs.queued", this, SynthesisJobService::getQueuedJobs).register(meterRegistry);
+        Gauge.builder("tts.jobs.active", this, SynthesisJobService::getActiveJobs).register(meterRegistry);
+    }
+
+    // Once the app is ready, so that resumed jobs find the providers loaded
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::work, "tts-job-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        resume();
+    }
+
+    /**
+     * Stop the workers. Jobs they were running stay {@code RUNNING} and resume on the next start.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+    }
+
+    /**
+     * Accept a job; {@code text}, {@code format} and the voice parameters must be set.
+     *
+     * @return The job as saved, {@code QUEUED}.
+     * @throws ConcurrencyLimitExceededException If too many jobs are waiting already.
+     */
+    public SynthesisJob submit(SynthesisJob job) {
+        String text = job.getText();
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Input text is required");
+        }
+        if (text.length() > maxInputChars) {
+            throw new IllegalArgumentException("Input is longer than " + maxInputChars + " characters");
+        }
+        if (getQueuedJobs() >= maxQueuedJobs) {
+            throw new ConcurrencyLimitExceededException("Too many synthesis jobs queued, try again later");
+        }
+        List<String> segments = SentenceSegmenter.split(text, segmentChars);
+        job.setId(UUID.randomUUID());
+        job.setStatus(SynthesisJob.Status.QUEUED);
+        job.setSegmentChars(segmentChars);
+        job.setTotalSegments(segments.size());
+        job.setTotalChars(segments.stream().mapToInt(String::length).sum());
+        job.setCompletedSegments(0);
+        job.setCompletedChars(0);
+        SynthesisJob saved = repository.save(job);
+        enqueue(new JobRun(saved, segments, new BitSet()));
+        log.info("Synthesis job {} queued: {} chars in {} segments", saved.getId(), saved.getTotalChars(), segments.size());
+        return saved;
+    }
+
+    public Optional<SynthesisJob> find(UUID id) {
+        return repository.findById(id);
+    }
+
+    /** Where the result of a succeeded job is. */
+    public Path resultPath(SynthesisJob job) {
+        return storage.result(job.getId(), job.getAudioFormat());
+    }
+
+    public int getQueuedJobs() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveJobs() {
+        lock.lock();
+        try {
+            return active.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Pick unfinished jobs up again, recounting their progress from the segments on disk
+    private void resume() {
+        List<SynthesisJob> unfinished = repository.findByStatusInOrderByCreatedAtAsc(
+                List.of(SynthesisJob.Status.QUEUED, SynthesisJob.Status.RUNNING));
+        for (SynthesisJob job : unfinished) {
+            List<String> segments = SentenceSegmenter.split(job.getText(), job.getSegmentChars());
+            BitSet done;
+            try {
+                done = storage.completedSegments(job.getId());
+            } catch (IOException e) {
+                log.warn("Can't list segments of synthesis job {}, starting it over", job.getId(), e);
+                done = new BitSet();
+            }
+            done.clear(segments.size(), Math.max(segments.size(), done.length()));
+            int completedChars = 0;
+            for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+                completedChars += segments.get(i).length();
+            }
+            job.setTotalSegments(segments.size());
+            job.setCompletedSegments(done.cardinality());
+            job.setCompletedChars(completedChars);
+            enqueue(new JobRun(repository.save(job), segments, done));
+        }
+        if (!unfinished.isEmpty()) {
+            log.info("Resuming {} synthesis jobs", unfinished.size());
+        }
+    }
+
+    private void enqueue(JobRun run) {
+        lock.lock();
+        try {
+            waiting.add(run);
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- workers ----
+
+    /** A segment to synthesize, or {@link #FINISH} to settle the job once nothing is in flight. */
+    private record Task(JobRun run, int segment) {
+    }
+
+    private void work() {
+        while (!stopped) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task.segment() == FINISH) {
+                finish(task.run());
+            } else {
+                synthesize(task.run(), task.segment());
+            }
+        }
+    }
+
+    private Task take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                while (active.size() < maxActiveJobs && !waiting.isEmpty()) {
+                    active.add(waiting.poll());
+                }
+                for (int i = 0; i < active.size(); i++) {
+                    int at = (cursor + i) % active.size();
+                    JobRun run = active.get(at);
+                    if (run.finishing) {
+                        continue;
+                    }
+                    if (run.inFlight == 0 && run.delayed == 0 && (run.failed || run.pending.isEmpty())) {
+                        run.finishing = true;
+                        return new Task(run, FINISH);
+                    }
+                    if (!run.failed && !run.pending.isEmpty() && run.inFlight < maxParallelSegments) {
+                        cursor = at + 1;
+                        run.inFlight++;
+                        return new Task(run, run.pending.poll());
+                    }
+                }
+                workAvailable.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void synthesize(JobRun run, int segment) {
+        SynthesisJob job = run.job;
+        String text = run.segments.get(segment);
+        try {
+            run.markRunning();
+            TtsResponse response = routingService.routeAndSynthesize(TtsRequest.builder()
+                    .text(text)
+                    .model(job.getModel())
+                    .voiceId(job.getVoice())
+                    .speed(job.getSpeed() != null ? job.getSpeed() : 1.0f)
+                    .format(run.segmentFormat)
+                    .sampleRate(job.getSampleRate())
+                    .priority(job.getPriority() != null ? job.getPriority() : Priority.BULK)
+                    .build());
+            try (InputStream audio = response.getAudioStream()) {
+                run.checkOutput(response);
+                storage.writeSegment(job.getId(), segment, audio);
+            }
+            characters.increment(text.length());
+            run.segmentDone(text.length());
+        } catch (Exception e) {
+            if (!stopped) {
+                log.warn("Segment {} of synthesis job {} failed: {}", segment + 1, job.getId(), e.getMessage());
+            }
+            settle(run, segment, false, e.getMessage());
+            return;
+        }
+        settle(run, segment, true, null);
+    }
+
+    private void settle(JobRun run, int segment, boolean done, String error) {
+        lock.lock();
+        try {
+            run.inFlight--;
+            // When shutting down, the job resumes with this segment on the next start
+            if (!done && !stopped) {
+                if (++run.attempts[segment] < segmentAttempts) {
+                    retry(run, segment);
+                } else if (!run.failed) {
+                    run.failed = true;
+                    run.error = "Segment " + (segment + 1) + " of " + run.segments.size() + " failed: " + error;
+                }
+            }
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void retry(JobRun run, int segment) {
+        if (retryDelayMs <= 0) {
+            run.pending.addFirst(segment);
+            return;
+        }
+        run.delayed++;
+        CompletableFuture.delayedExecutor(retryDelayMs, TimeUnit.MILLISECONDS).execute(() -> {
+            lock.lock();
+            try {
+                run.delayed--;
+                run.pending.addFirst(segment);
+                workAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private void finish(JobRun run) {
+        SynthesisJob job = run.job;
+        try {
+            if (!run.failed) {
+                if (job.getAudioFormat() == null) {
+                    throw new TtsException("No audio was synthesized");
+                }
+                int sampleRate = job.getAudioSampleRate() == null ? 0 : job.getAudioSampleRate();
+                long size;
+                if (job.getAudioFormat() == run.segmentFormat && run.segmentFormat != job.getFormat()) {
+                    size = storage.assemble(job.getId(), run.segments.size(), job.getAudioFormat(), sampleRate,
+                            keepSilenceMs, job.getFormat(), joined -> encode(joined, job.getFormat(), sampleRate));
+                    job.setAudioFormat(job.getFormat());
+                } else {
+                    size = storage.assemble(job.getId(), run.segments.size(), job.getAudioFormat(), sampleRate,
+                            keepSilenceMs);
+                }
+                run.finished(SynthesisJob.Status.SUCCEEDED, size, null);
+                log.info("Synthesis job {} done: {} chars, {} bytes of {}", job.getId(), job.getTotalChars(), size,
+                        job.getAudioFormat());
+            }
+        } catch (Exception e) {
+            if (stopped) {
+                return;
+            }
+            run.failed = true;
+            run.error = "Joining the segments failed: " + e.getMessage();
+        }
+        if (run.failed) {
+            log.warn("Synthesis job {} failed: {}", job.getId(), run.error);
+            try {
+                storage.deleteSegments(job.getId());
+            } catch (IOException e) {
+                log.warn("Failed to delete segments of synthesis job {}", job.getId(), e);
+            }
+            run.finished(SynthesisJob.Status.FAILED, null, run.error);
+        }
+        meterRegistry.counter("tts.jobs.completed", "result", run.failed ? "failed" : "succeeded").increment();
+        lock.lock();
+        try {
+            active.remove(run);
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // At the rate the segments were made at, and already at their loudness
+    private InputStream encode(InputStream pcm, AudioFormat format, int sampleRate) {
+        TtsResponse joined = TtsResponse.builder()
+                .audioStream(pcm)
+                .format(AudioFormat.PCM)
+                .sampleRate(sampleRate)
+                .build();
+        TtsRequest target = TtsRequest.builder()
+                .text("")
+                .format(format)
+                .sampleRate(sampleRate > 0 ? sampleRate : null)
+                .build();
+        return transcoder.encode(joined, target).getAudioStream();
+    }
+
+    /**
+     * A job being worked on. The scheduling fields are guarded by the service lock; the entity
+     * by this object, and saved after each change.
+     */
+    private final class JobRun {
+        final SynthesisJob job;
+        final List<String> segments;
+        // What segments are requested in: PCM when the job's format is encoded here but can't be joined
+        final AudioFormat segmentFormat;
+        final Deque<Integer> pending = new ArrayDeque<>();
+        final int[] attempts;
+        int inFlight;
+        // Failed segments waiting to be retried
+        int delayed;
+        volatile boolean failed;
+        volatile String error;
+        boolean finishing;
+
+        JobRun(SynthesisJob job, List<String> segments, BitSet done) {
+            this.job = job;
+            this.segments = segments;
+            this.segmentFormat = segments.size() > 1 && !AudioJoiner.canJoin(job.getFormat())
+                    && transcoder.canEncode(job.getFormat()) ? AudioFormat.PCM : job.getFormat();
+            this.attempts = new int[segments.size()];
+            for (int i = 0; i < segments.size(); i++) {
+                if (!done.get(i)) pending.add(i);
+            }
+        }
+
+        synchronized void markRunning() {
+            if (job.getStatus() != SynthesisJob.Status.RUNNING) {
+                job.setStatus(SynthesisJob.Status.RUNNING);
+                job.setStartedAt(LocalDateTime.now());
+                repository.save(job);
+            }
+        }
+
+        // All segments must come back in one format that can be joined
+        synchronized void checkOutput(TtsResponse response) {
+            AudioFormat format = response.getFormat();
+            if (job.getAudioFormat() == null) {
+                if (segments.size() > 1 && !AudioJoiner.canJoin(format)) {
+                    throw new TtsException("Provider returned " + format + " audio, which can't be joined");
+                }
+                job.setAudioFormat(format);
+                job.setAudioSampleRate(response.getSampleRate());
+            } else if (job.getAudioFormat() != format) {
+                throw new TtsException("Provider returned " + format + " audio after " + job.getAudioFormat());
+            }
+        }
+
+        synchronized void segmentDone(int chars) {
+            job.setCompletedSegments(job.getCompletedSegments() + 1);
+            job.setCompletedChars(job.getCompletedChars() + chars);
+            repository.save(job);
+        }
+
+        synchronized void finished(SynthesisJob.Status status, Long resultBytes, String errorMessage) {
+            job.setStatus(status);
+            job.setResultBytes(resultBytes);
+            job.setErrorMessage(errorMessage == null || errorMessage.length() <= 2048
+                    ? errorMessage : errorMessage.substring(0, 2048));
+            job.setFinishedAt(LocalDateTime.now());
+            repository.save(job);
+        }
+    }
+}
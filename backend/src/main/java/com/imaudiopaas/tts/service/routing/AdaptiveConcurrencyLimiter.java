@@ -0,0 +1,367 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
+import com.imaudiopaas.tts.exception.TtsException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gradient-style adaptive concurrency limit for one provider config.
+ *
+ * <p>The limit follows {@code limit * clamp(tolerance * longRtt / rtt) + sqrt(limit)}: while
+ * call latency stays near its long-term average the limit creeps up, when latency grows (the
+ * upstream is queueing) it shrinks in proportion, and a throttling error cuts it by
+ * {@code backoffRatio}. The limit is not raised while less than half of it is in use, so idle
+ * configs don't drift to the maximum.
+ *
+ * <p>Callers beyond the limit wait in one bounded FIFO queue per {@link Priority} and are
+ * rejected immediately once their class's queue is full. Freed slots go to the waiting classes
+ * by weighted fair queueing (start-time fair queueing: each waiter is tagged with the virtual
+ * time its class would start service at, advancing by {@code 1 / weight} per call, and the
+ * lowest tag goes first), so under contention interactive calls get most slots without bulk
+ * calls starving. A class may also have slots reserved: others are not admitted into the
+ * reserved part of the limit while the class is using less than its reservation, though at
+ * least one slot is always left to them.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final String name;
+    private final Settings settings;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Map<Priority, ArrayDeque<Waiter>> queues = new EnumMap<>(Priority.class);
+    private final int[] inFlightByClass = new int[Priority.values().length];
+    private final double[] lastStartTag = new double[Priority.values().length];
+
+    private double limit;
+    private double longRttMs = -1;
+    private int inFlight;
+    private int waiting;
+    // Start tag of the last waiter let through
+    private double virtualTime;
+
+    public AdaptiveConcurrencyLimiter(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.limit = settings.initialLimit;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight(Priority priority) {
+        lock.lock();
+        try {
+            return inFlightByClass[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth(Priority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a slot as a standard call, waiting at most {@code maxWaitMs} in the queue.
+     *
+     * @throws ConcurrencyLimitExceededException if the queue is full or the wait timed out.
+     */
+    public Permit acquire(long maxWaitMs) {
+        return acquire(maxWaitMs, Priority.STANDARD);
+    }
+
+    /**
+     * Take a slot, waiting at most {@code maxWaitMs} in the queue of the call's class.
+     *
+     * @param priority Class of the call, null for standard.
+     * @throws ConcurrencyLimitExceededException if the queue is full or the wait timed out.
+     */
+    public Permit acquire(long maxWaitMs, Priority priority) {
+        Priority p = priority != null ? priority : Priority.STANDARD;
+        lock.lock();
+        try {
+            ArrayDeque<Waiter> queue = queues.get(p);
+            // Waiters of other classes may only be held back by reservations this call can't break
+            if (queue.isEmpty() && admissible(p)) {
+                take(p);
+                return new Permit(p, System.nanoTime());
+            }
+            if (queue.size() >= settings.maxQueue) {
+                throw new ConcurrencyLimitExceededException("Concurrency limit reached for " + name
+                        + " (limit " + (int) limit + ", " + p.tag() + " queue full)");
+            }
+            Waiter waiter = enqueue(p);
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+                while (!waiter.granted) {
+                    if (nanos <= 0) {
+                        throw new ConcurrencyLimitExceededException(
+                                "Timed out waiting for a concurrency slot for " + name);
+                    }
+                    nanos = waiter.ready.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.granted) {
+                    // Handed a slot just as the wait was cut short, give it to the next one
+                    give(p);
+                }
+                throw new TtsException("Interrupted while waiting for a concurrency slot", e);
+            } finally {
+                if (!waiter.granted) {
+                    queue.remove(waiter);
+                    waiting--;
+                }
+            }
+            return new Permit(p, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Waiter enqueue(Priority priority) {
+        int i = priority.ordinal();
+        double start = Math.max(virtualTime, lastStartTag[i] + 1.0 / settings.weight(priority));
+        lastStartTag[i] = start;
+        Waiter waiter = new Waiter(priority, start, lock.newCondition());
+        queues.get(priority).addLast(waiter);
+        waiting++;
+        return waiter;
+    }
+
+    // Within the limit, and not into slots held for other classes below their reservation
+    private boolean admissible(Priority priority) {
+        int free = (int) limit - inFlight;
+        if (free <= 0) {
+            return false;
+        }
+        if (inFlightByClass[priority.ordinal()] < settings.reserved(priority)) {
+            return true;
+        }
+        int heldForOthers = 0;
+        for (Priority other : Priority.values()) {
+            if (other != priority) {
+                heldForOthers += Math.max(0, settings.reserved(other) - inFlightByClass[other.ordinal()]);
+            }
+        }
+        return free > Math.min(heldForOthers, (int) limit - 1);
+    }
+
+    private void take(Priority priority) {
+        inFlight++;
+        inFlightByClass[priority.ordinal()]++;
+    }
+
+    private void give(Priority priority) {
+        inFlight--;
+        inFlightByClass[priority.ordinal()]--;
+        dispatch();
+    }
+
+    // Hand free slots to the admissible queue heads, lowest start tag first
+    private void dispatch() {
+        while (waiting > 0) {
+            Waiter next = null;
+            for (Priority priority : Priority.values()) {
+                Waiter head = queues.get(priority).peekFirst();
+                if (head != null && (next == null || head.startTag < next.startTag) && admissible(priority)) {
+                    next = head;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            queues.get(next.priority).pollFirst();
+            waiting--;
+            virtualTime = Math.max(virtualTime, next.startTag);
+            take(next.priority);
+            next.granted = true;
+            next.ready.signal();
+        }
+    }
+
+    private void release(Priority priority, long latencyNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            int inFlightAtCall = inFlight;
+            if (outcome == Outcome.DROPPED) {
+                limit = Math.max(settings.minLimit, limit * settings.backoffRatio);
+            } else if (outcome == Outcome.SUCCESS) {
+                update(latencyNanos / 1_000_000.0, inFlightAtCall);
+            }
+            give(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(double rttMs, int inFlightAtCall) {
+        rttMs = Math.max(1.0, rttMs);
+        if (longRttMs < 0) {
+            longRttMs = rttMs;
+            return;
+        }
+        longRttMs += (rttMs - longRttMs) / settings.longWindow;
+        // Let the long-term baseline recover quickly after a period of high latency
+        if (longRttMs / rttMs > 2.0) {
+            longRttMs *= 0.95;
+        }
+        if (inFlightAtCall < limit / 2) {
+            // App-limited: latency says nothing about how far the limit could go
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, settings.tolerance * longRttMs / rttMs));
+        double target = limit * gradient + Math.sqrt(limit);
+        double next = limit * (1 - settings.smoothing) + target * settings.smoothing;
+        limit = Math.max(settings.minLimit, Math.min(settings.maxLimit, next));
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    /**
+     * A granted slot. Exactly one of the completion methods must be called.
+     */
+    public final class Permit {
+        private final Priority priority;
+        private final long startNanos;
+        private boolean done;
+
+        private Permit(Priority priority, long startNanos) {
+            this.priority = priority;
+            this.startNanos = startNanos;
+        }
+
+        /** The call succeeded; its latency feeds the limit. */
+        public void onSuccess() {
+            onSuccess(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * The call succeeded, with a latency measured by the caller, e.g. up to the first byte of
+         * a response whose permit is held until the whole stream has been read.
+         */
+        public void onSuccess(long latencyNanos) {
+            complete(Outcome.SUCCESS, latencyNanos);
+        }
+
+        /** The upstream throttled or timed out; back the limit off. */
+        public void onDropped() {
+            complete(Outcome.DROPPED, 0);
+        }
+
+        /** Release without a sample (client errors, cancelled hedges). */
+        public void onIgnore() {
+            complete(Outcome.IGNORED, 0);
+        }
+
+        private synchronized void complete(Outcome outcome, long latencyNanos) {
+            if (!done) {
+                done = true;
+                release(priority, latencyNanos, outcome);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final Priority priority;
+        final double startTag;
+        final Condition ready;
+        boolean granted;
+
+        Waiter(Priority priority, double startTag, Condition ready) {
+            this.priority = priority;
+            this.startTag = startTag;
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * Tuning shared by all limiters of a registry.
+     */
+    public static class Settings {
+        final int initialLimit;
+        final int minLimit;
+        final int maxLimit;
+        final int maxQueue;
+        final double tolerance;
+        final double smoothing;
+        final double backoffRatio;
+        final int longWindow;
+        final Map<Priority, Integer> weights;
+        final Map<Priority, Integer> reserved;
+
+        public Settings(int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                        double tolerance, double smoothing, double backoffRatio) {
+            this(initialLimit, minLimit, maxLimit, maxQueue, tolerance, smoothing, backoffRatio, Map.of(), Map.of());
+        }
+
+        /**
+         * @param weights Share of contended slots per class, missing classes use the defaults
+         *                (interactive 8, standard 4, bulk 1).
+         * @param reserved Slots reserved per class, none when missing.
+         */
+        public Settings(int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                        double tolerance, double smoothing, double backoffRatio,
+                        Map<Priority, Integer> weights, Map<Priority, Integer> reserved) {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.initialLimit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+            this.maxQueue = Math.max(0, maxQueue);
+            this.tolerance = tolerance;
+            this.smoothing = smoothing;
+            this.backoffRatio = backoffRatio;
+            this.longWindow = 600;
+            this.weights = new EnumMap<>(Map.of(Priority.INTERACTIVE, 8, Priority.STANDARD, 4, Priority.BULK, 1));
+            weights.forEach((priority, weight) -> this.weights.put(priority, Math.max(1, weight)));
+            this.reserved = new EnumMap<>(Priority.class);
+            reserved.forEach((priority, slots) -> this.reserved.put(priority, Math.max(0, slots)));
+        }
+
+        int weight(Priority priority) {
+            return weights.get(priority);
+        }
+
+        int reserved(Priority priority) {
+            return reserved.getOrDefault(priority, 0);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for one provider config. Outcomes of the last {@code windowSize} calls are
+ * kept in a ring; once at least {@code minimumCalls} are recorded and either the failure rate or
+ * the slow-call rate crosses its threshold, the breaker opens and rejects calls for
+ * {@code openDurationMs}. It then lets {@code halfOpenCalls} trial calls through and closes again
+ * only if those stay under the thresholds.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte EMPTY = 0;
+    private static final byte OK = 1;
+    private static final byte SLOW = 2;
+    private static final byte FAILED = 3;
+    private static final byte SLOW_FAILED = 4;
+
+    private final String name;
+    private final Settings settings;
+    private final LongSupplier clock;
+
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int trialsPermitted;
+    private int trialsCompleted;
+    private int trialFailures;
+    private int trialSlowCalls;
+
+    public CircuitBreaker(String name, Settings settings, LongSupplier clock) {
+        this.name = name;
+        this.settings = settings;
+        this.clock = clock;
+        this.window = new byte[settings.windowSize];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0.0 : (double) failures / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0.0 : (double) slowCalls / recorded;
+    }
+
+    /**
+     * Cheap check used to drop configs from the candidate list; does not take a trial slot.
+     */
+    public boolean isCallPermitted() {
+        return getState() != State.OPEN;
+    }
+
+    /**
+     * Take permission for one call. Every granted permission must be followed by exactly one of
+     * {@link #onSuccess}, {@link #onError} or {@link #release}.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() < openUntil) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                // fall through
+            default:
+                if (trialsPermitted < settings.halfOpenCalls) {
+                    trialsPermitted++;
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess(long durationMs) {
+        record(false, durationMs >= settings.slowCallMs);
+    }
+
+    public synchronized void onError(long durationMs) {
+        record(true, durationMs >= settings.slowCallMs);
+    }
+
+    /**
+     * Give back a permission without recording an outcome (client errors, cancelled hedges).
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && trialsPermitted > trialsCompleted) {
+            trialsPermitted--;
+        }
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (state == State.HALF_OPEN) {
+            trialsCompleted++;
+            if (failed) trialFailures++;
+            if (slow) trialSlowCalls++;
+            if (trialsCompleted >= settings.halfOpenCalls) {
+                boolean tripped = exceeds(trialFailures, trialsCompleted, settings.failureRateThreshold)
+                        || exceeds(trialSlowCalls, trialsCompleted, settings.slowCallRateThreshold);
+                transitionTo(tripped ? State.OPEN : State.CLOSED);
+            } else if (failed) {
+                // No point finishing the trial once a probe has failed
+                transitionTo(State.OPEN);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // Late result of a call started before the breaker opened
+            return;
+        }
+
+        byte previous = window[position];
+        if (previous == FAILED || previous == SLOW_FAILED) failures--;
+        if (previous == SLOW || previous == SLOW_FAILED) slowCalls--;
+        if (previous == EMPTY) recorded++;
+        window[position] = failed ? (slow ? SLOW_FAILED : FAILED) : (slow ? SLOW : OK);
+        position = (position + 1) % window.length;
+        if (failed) failures++;
+        if (slow) slowCalls++;
+
+        if (recorded >= settings.minimumCalls
+                && (exceeds(failures, recorded, settings.failureRateThreshold)
+                || exceeds(slowCalls, recorded, settings.slowCallRateThreshold))) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private static boolean exceeds(int count, int total, double threshold) {
+        return total > 0 && (double) count / total >= threshold;
+    }
+
+    private void transitionTo(State next) {
+        state = next;
+        trialsPermitted = 0;
+        trialsCompleted = 0;
+        trialFailures = 0;
+        trialSlowCalls = 0;
+        if (next == State.OPEN) {
+            openUntil = clock.getAsLong() + settings.openDurationMs;
+        }
+        if (next == State.CLOSED) {
+            Arrays.fill(window, EMPTY);
+            position = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+
+    /**
+     * Thresholds shared by all breakers of a registry.
+     */
+    public static class Settings {
+        final int windowSize;
+        final int minimumCalls;
+        final double failureRateThreshold;
+        final long slowCallMs;
+        final double slowCallRateThreshold;
+        final long openDurationMs;
+        final int halfOpenCalls;
+
+        public Settings(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallMs,
+                        double slowCallRateThreshold, long openDurationMs, int halfOpenCalls) {
+            this.windowSize = Math.max(1, windowSize);
+            this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallMs = slowCallMs;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.openDurationMs = openDurationMs;
+            this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * One {@link CircuitBreaker} per provider config. Breakers are keyed by config id, so they
+ * survive routing snapshot rebuilds the same way {@link InFlightTracker} counters do.
+ */
+@Component
+public class CircuitBreakerRegistry {
+
+    private final ConcurrentHashMap<UUID, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final CircuitBreaker.Settings settings;
+    private final LongSupplier clock;
+
+    @Autowired
+    public CircuitBreakerRegistry(
+            @Value("${app.routing.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${app.routing.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${app.routing.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${app.routing.circuit-breaker.slow-call-ms:10000}") long slowCallMs,
+            @Value("${app.routing.circuit-breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+            @Value("${app.routing.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+            @Value("${app.routing.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this(new CircuitBreaker.Settings(windowSize, minimumCalls, failureRateThreshold, slowCallMs,
+                slowCallRateThreshold, openDurationMs, halfOpenCalls), System::currentTimeMillis);
+    }
+
+    public CircuitBreakerRegistry(CircuitBreaker.Settings settings, LongSupplier clock) {
+        this.settings = settings;
+        this.clock = clock;
+    }
+
+    public CircuitBreaker forConfig(ProviderConfig config) {
+        return breakers.computeIfAbsent(RoutingSnapshot.keyOf(config),
+                k -> new CircuitBreaker(config.getName(), settings, clock));
+    }
+
+    public Optional<CircuitBreaker> find(UUID configKey) {
+        return Optional.ofNullable(breakers.get(configKey));
+    }
+
+    /**
+     * State for a config; configs that have not been called yet are closed.
+     */
+    public CircuitBreaker.State stateOf(ProviderConfig config) {
+        return find(RoutingSnapshot.keyOf(config))
+                .map(CircuitBreaker::getState)
+                .orElse(CircuitBreaker.State.CLOSED);
+    }
+}
@@ -0,0 +1,106 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Passes audio through unchanged and runs a callback once, when the upstream stream reaches
+ * end of file. Streams closed early (client went away) never fire the callback, so partial
+ * downloads don't skew total-latency averages. A read that fails runs the failure callback
+ * instead, and a close before either the abandon callback; exactly one of the three runs.
+ *
+ * <p>The completion callback can be given the time spent inside reads of the upstream, i.e.
+ * waiting on it, as opposed to the time the consumer took between reads.
+ */
+public class CompletionTrackingInputStream extends FilterInputStream {
+
+    private final LongConsumer onComplete;
+    private final Consumer<IOException> onFailure;
+    private final Runnable onAbandon;
+    private boolean completed;
+    private long readNanos;
+
+    public CompletionTrackingInputStream(InputStream in, Runnable onComplete) {
+        this(in, readNanos -> onComplete.run(), e -> { });
+    }
+
+    /**
+     * @param onComplete Called at end of file with the nanoseconds spent inside reads.
+     * @param onFailure Called with the exception of the first read that fails.
+     */
+    public CompletionTrackingInputStream(InputStream in, LongConsumer onComplete, Consumer<IOException> onFailure) {
+        this(in, onComplete, onFailure, () -> { });
+    }
+
+    /**
+     * @param onAbandon Called when the stream is closed before its end or a failure.
+     */
+    public CompletionTrackingInputStream(InputStream in, LongConsumer onComplete, Consumer<IOException> onFailure,
+                                         Runnable onAbandon) {
+        super(in);
+        this.onComplete = onComplete;
+        this.onFailure = onFailure;
+        this.onAbandon = onAbandon;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b;
+        try {
+            b = super.read();
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        } finally {
+            readNanos += System.nanoTime() - start;
+        }
+        if (b < 0) complete();
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int n;
+        try {
+            n = super.read(b, off, len);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        } finally {
+            readNanos += System.nanoTime() - start;
+        }
+        if (n < 0) complete();
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!completed) {
+                completed = true;
+                onAbandon.run();
+            }
+        }
+    }
+
+    private void complete() {
+        if (!completed) {
+            completed = true;
+            onComplete.accept(readNanos);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (!completed) {
+            completed = true;
+            onFailure.accept(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
+import com.imaudiopaas.tts.model.ProviderConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * One {@link AdaptiveConcurrencyLimiter} per provider config, keyed by config id. The current
+ * limit, in-flight count and queue depth of each are exported as gauges, also per
+ * {@link Priority} ({@code tts.concurrency.priority.*}), and the time calls spend waiting for a
+ * slot as {@code tts.concurrency.queue_wait}, tagged with the class (percentiles and histogram
+ * published, so the interactive p99 can be watched while bulk work runs).
+ */
+@Component
+public class ConcurrencyLimiterRegistry {
+
+    private final ConcurrentHashMap<UUID, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final AdaptiveConcurrencyLimiter.Settings settings;
+    private final boolean enabled;
+    private final long maxWaitMs;
+    private final boolean prioritiesEnabled;
+
+    @Autowired
+    public ConcurrencyLimiterRegistry(
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${app.routing.concurrency.enabled:true}") boolean enabled,
+            @Value("${app.routing.concurrency.initial-limit:20}") int initialLimit,
+            @Value("${app.routing.concurrency.min-limit:2}") int minLimit,
+            @Value("${app.routing.concurrency.max-limit:200}") int maxLimit,
+            @Value("${app.routing.concurrency.max-queue:50}") int maxQueue,
+            @Value("${app.routing.concurrency.max-wait-ms:2000}") long maxWaitMs,
+            @Value("${app.routing.concurrency.tolerance:1.5}") double tolerance,
+            @Value("${app.routing.concurrency.smoothing:0.2}") double smoothing,
+            @Value("${app.routing.concurrency.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${app.routing.priority.enabled:true}") boolean prioritiesEnabled) {
+        this(meterRegistry, enabled, maxWaitMs, new AdaptiveConcurrencyLimiter.Settings(
+                initialLimit, minLimit, maxLimit, maxQueue, tolerance, smoothing, backoffRatio,
+                perClass(environment, "app.routing.priority.weight."),
+                perClass(environment, "app.routing.priority.reserved.")), prioritiesEnabled);
+    }
+
+    public ConcurrencyLimiterRegistry(MeterRegistry meterRegistry, boolean enabled, long maxWaitMs,
+                                      AdaptiveConcurrencyLimiter.Settings settings) {
+        this(meterRegistry, enabled, maxWaitMs, settings, true);
+    }
+
+    public ConcurrencyLimiterRegistry(MeterRegistry meterRegistry, boolean enabled, long maxWaitMs,
+                                      AdaptiveConcurrencyLimiter.Settings settings, boolean prioritiesEnabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxWaitMs = maxWaitMs;
+        this.settings = settings;
+        this.prioritiesEnabled = prioritiesEnabled;
+    }
+
+    // <prefix><class>, e.g. app.routing.priority.weight.interactive
+    private static Map<Priority, Integer> perClass(Environment environment, String prefix) {
+        Map<Priority, Integer> values = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            Integer value = environment.getProperty(prefix + priority.tag(), Integer.class);
+            if (value != null) values.put(priority, value);
+        }
+        return values;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take a slot on the config's limiter as a standard call.
+     *
+     * @throws ConcurrencyLimitExceededException if the queue is full or the wait ran out.
+     */
+    public AdaptiveConcurrencyLimiter.Permit acquire(ProviderConfig config, long deadlineMillis) {
+        return acquire(config, deadlineMillis, Priority.STANDARD);
+    }
+
+    /**
+     * Take a slot on the config's limiter, queueing at most until {@code max-wait-ms} or the
+     * request deadline, whichever comes first. With priorities disabled every call is standard.
+     *
+     * @param priority Class of the call, null for standard.
+     * @throws ConcurrencyLimitExceededException if the queue is full or the wait ran out.
+     */
+    public AdaptiveConcurrencyLimiter.Permit acquire(ProviderConfig config, long deadlineMillis, Priority priority) {
+        Priority p = prioritiesEnabled && priority != null ? priority : Priority.STANDARD;
+        long waitMs = Math.min(maxWaitMs, Math.max(0, deadlineMillis - System.currentTimeMillis()));
+        long start = System.nanoTime();
+        try {
+            AdaptiveConcurrencyLimiter.Permit permit = forConfig(config).acquire(waitMs, p);
+            // Calls let straight through count too, the percentiles are of all calls
+            queueWait(config, p).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return permit;
+        } catch (ConcurrencyLimitExceededException e) {
+            meterRegistry.counter("tts.concurrency.rejected",
+                    "provider", String.valueOf(config.getProviderType()), "config", String.valueOf(config.getName()),
+                    "priority", p.tag())
+                    .increment();
+            throw e;
+        }
+    }
+
+    private Timer queueWait(ProviderConfig config, Priority priority) {
+        return Timer.builder("tts.concurrency.queue_wait")
+                .tags(tagsOf(config).and("priority", priority.tag()))
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Tags tagsOf(ProviderConfig config) {
+        return Tags.of("provider", String.valueOf(config.getProviderType()), "config", String.valueOf(config.getName()));
+    }
+
+    public AdaptiveConcurrencyLimiter forConfig(ProviderConfig config) {
+        return limiters.computeIfAbsent(RoutingSnapshot.keyOf(config), k -> register(config));
+    }
+
+    public Optional<AdaptiveConcurrencyLimiter> find(UUID configKey) {
+        return Optional.ofNullable(limiters.get(configKey));
+    }
+
+    private AdaptiveConcurrencyLimiter register(ProviderConfig config) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(config.getName(), settings);
+        Tags tags = tagsOf(config);
+        Gauge.builder("tts.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tags(tags).register(meterRegistry);
+        Gauge.builder("tts.concurrency.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tags(tags).register(meterRegistry);
+        Gauge.builder("tts.concurrency.queue", limiter, AdaptiveConcurrencyLimiter::getQueueDepth)
+                .tags(tags).register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            Tags classTags = tags.and("priority", priority.tag());
+            Gauge.builder("tts.concurrency.priority.in_flight", limiter, l -> l.getInFlight(priority))
+                    .tags(classTags).register(meterRegistry);
+            Gauge.builder("tts.concurrency.priority.queue", limiter, l -> l.getQueueDepth(priority))
+                    .tags(classTags).register(meterRegistry);
+        }
+        return limiter;
+    }
+}
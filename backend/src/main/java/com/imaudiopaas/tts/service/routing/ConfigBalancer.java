@@ -0,0 +1,38 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.List;
+
+/**
+ * Strategy for spreading traffic across several active configs of the same provider type.
+ */
+public interface ConfigBalancer {
+
+    /**
+     * Pick one config to serve the next request.
+     *
+     * @param candidates Non-empty list of active configs, all of the same provider type.
+     * @param snapshot The snapshot the candidates were taken from (weights, version).
+     * @return The selected config.
+     */
+    ProviderConfig select(List<ProviderConfig> candidates, RoutingSnapshot snapshot);
+
+    /**
+     * Order the failover chain of a request before it is tried. Strategies that don't rank
+     * providers keep the declared order.
+     *
+     * @param chain The resolved chain, requested voice first.
+     * @param snapshot The current routing snapshot.
+     * @return The chain in the order it should be attempted.
+     */
+    default List<RouteTarget> order(List<RouteTarget> chain, RoutingSnapshot snapshot) {
+        return chain;
+    }
+
+    /**
+     * Get the configuration name of this strategy.
+     *
+     * @return The strategy name as used in {@code app.routing.balancer}.
+     */
+    String getName();
+}
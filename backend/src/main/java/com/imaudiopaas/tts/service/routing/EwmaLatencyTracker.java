@@ -0,0 +1,129 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exponentially weighted moving averages of time-to-first-byte and total latency per config,
+ * in milliseconds per input character. Short texts are dominated by fixed overhead, so the
+ * character count is floored at {@code min-chars} before dividing.
+ *
+ * <p>Averages decay with wall time rather than per sample ({@code decay-ms} is the time
+ * constant), so a config that was slow a minute ago but has served a few fast calls since
+ * recovers quickly. A score that has not been updated for {@code stale-after-ms} is reported as
+ * unknown, which lets callers treat it optimistically and probe it again.
+ *
+ * <p>A failed call is recorded as if it had taken {@code error-penalty-ms} for a
+ * {@code min-chars} text, so a config that errors fast does not look like the fastest one.
+ */
+@Component
+public class EwmaLatencyTracker {
+
+    private final ConcurrentHashMap<UUID, Averages> averages = new ConcurrentHashMap<>();
+    private final double decayMs;
+    private final int minChars;
+    private final double ttfbWeight;
+    private final long staleAfterMs;
+    private final long errorPenaltyMs;
+    private final LongSupplier clock;
+
+    @Autowired
+    public EwmaLatencyTracker(
+            @Value("${app.routing.latency-aware.decay-ms:10000}") long decayMs,
+            @Value("${app.routing.latency-aware.min-chars:50}") int minChars,
+            @Value("${app.routing.latency-aware.ttfb-weight:0.5}") double ttfbWeight,
+            @Value("${app.routing.latency-aware.stale-after-ms:60000}") long staleAfterMs,
+            @Value("${app.routing.latency-aware.error-penalty-ms:10000}") long errorPenaltyMs) {
+        this(decayMs, minChars, ttfbWeight, staleAfterMs, errorPenaltyMs, System::currentTimeMillis);
+    }
+
+    public EwmaLatencyTracker(long decayMs, int minChars, double ttfbWeight, long staleAfterMs, LongSupplier clock) {
+        this(decayMs, minChars, ttfbWeight, staleAfterMs, 10000, clock);
+    }
+
+    public EwmaLatencyTracker(long decayMs, int minChars, double ttfbWeight, long staleAfterMs, long errorPenaltyMs,
+                              LongSupplier clock) {
+        this.decayMs = Math.max(1, decayMs);
+        this.minChars = Math.max(1, minChars);
+        this.ttfbWeight = Math.max(0, Math.min(1, ttfbWeight));
+        this.staleAfterMs = staleAfterMs;
+        this.errorPenaltyMs = Math.max(0, errorPenaltyMs);
+        this.clock = clock;
+    }
+
+    public void recordTimeToFirstByte(UUID configKey, long latencyMs, int chars) {
+        averages.computeIfAbsent(configKey, k -> new Averages()).ttfb.update(normalize(latencyMs, chars), clock.getAsLong());
+    }
+
+    public void recordTotal(UUID configKey, long latencyMs, int chars) {
+        averages.computeIfAbsent(configKey, k -> new Averages()).total.update(normalize(latencyMs, chars), clock.getAsLong());
+    }
+
+    /**
+     * Record a call that failed, before or after its first byte, as a slow one.
+     */
+    public void recordFailure(UUID configKey) {
+        double penalty = normalize(errorPenaltyMs, minChars);
+        long now = clock.getAsLong();
+        Averages a = averages.computeIfAbsent(configKey, k -> new Averages());
+        a.ttfb.update(penalty, now);
+        a.total.update(penalty, now);
+    }
+
+    public double timeToFirstBytePerChar(UUID configKey) {
+        Averages a = averages.get(configKey);
+        return a == null ? -1 : a.ttfb.read(clock.getAsLong());
+    }
+
+    public double totalPerChar(UUID configKey) {
+        Averages a = averages.get(configKey);
+        return a == null ? -1 : a.total.read(clock.getAsLong());
+    }
+
+    /**
+     * Blended latency score (ms per char, lower is better), or -1 if unknown or stale.
+     */
+    public double score(UUID configKey) {
+        double ttfb = timeToFirstBytePerChar(configKey);
+        double total = totalPerChar(configKey);
+        if (ttfb < 0) return total;
+        if (total < 0) return ttfb;
+        return ttfbWeight * ttfb + (1 - ttfbWeight) * total;
+    }
+
+    private double normalize(long latencyMs, int chars) {
+        return (double) latencyMs / Math.max(minChars, chars);
+    }
+
+    private final class Averages {
+        final Ewma ttfb = new Ewma();
+        final Ewma total = new Ewma();
+    }
+
+    private final class Ewma {
+        private double value = -1;
+        private long updatedAt;
+
+        synchronized void update(double sample, long now) {
+            if (value < 0) {
+                value = sample;
+            } else {
+                // Back-to-back samples still move the average by at least 10%
+                double w = Math.min(0.9, Math.exp(-Math.max(0, now - updatedAt) / decayMs));
+                value = value * w + sample * (1 - w);
+            }
+            updatedAt = now;
+        }
+
+        synchronized double read(long now) {
+            if (value < 0 || now - updatedAt > staleAfterMs) {
+                return -1;
+            }
+            return value;
+        }
+    }
+}
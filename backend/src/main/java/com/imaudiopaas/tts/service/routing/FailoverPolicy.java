@@ -0,0 +1,75 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+import java.util.concurrent.TimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Decides whether a failed upstream attempt may be retried on the next failover link, and
+ * whether enough of the request deadline is left to do so.
+ */
+@Component
+public class FailoverPolicy {
+
+    private final long requestTimeoutMs;
+    private final long minRemainingMs;
+
+    public FailoverPolicy(
+            @Value("${app.routing.request-timeout-ms:30000}") long requestTimeoutMs,
+            @Value("${app.routing.failover.min-remaining-ms:500}") long minRemainingMs) {
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.minRemainingMs = minRemainingMs;
+    }
+
+    public long deadlineFrom(long startMillis) {
+        return startMillis + requestTimeoutMs;
+    }
+
+    public boolean hasBudget(long deadlineMillis) {
+        return deadlineMillis - System.currentTimeMillis() >= minRemainingMs;
+    }
+
+    /**
+     * Invalid input fails the same way on every provider, so it is not retried. Everything else
+     * (timeouts, throttling, auth problems, vendor 5xx, missing config) is worth another link.
+     */
+    public boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof IllegalArgumentException) {
+                return false;
+            }
+            if (t instanceof RestClientResponseException) {
+                int status = ((RestClientResponseException) t).getStatusCode().value();
+                return status >= 500 || status == 401 || status == 403 || status == 408 || status == 429;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the upstream pushed back on load (throttling, overload or a timeout), as opposed
+     * to failing outright. Used to back off concurrency limits.
+     */
+    public boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof TimeoutException) {
+                return true;
+            }
+            if (t instanceof RestClientResponseException) {
+                int status = ((RestClientResponseException) t).getStatusCode().value();
+                return status == 429 || status == 503 || status == 504;
+            }
+            String message = t.getMessage();
+            if (message != null) {
+                String lower = message.toLowerCase(Locale.ROOT);
+                if (lower.contains("throttl") || lower.contains("too many requests") || lower.contains("rate limit")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
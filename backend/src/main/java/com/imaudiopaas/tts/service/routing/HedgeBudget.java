@@ -0,0 +1,39 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that caps hedging amplification: every primary call earns {@code ratio} of a
+ * token and every hedge spends one, so hedges never exceed that fraction of upstream traffic
+ * beyond a small burst.
+ */
+public class HedgeBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long earnPerRequest;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    public HedgeBudget(double ratio, int burst) {
+        this.earnPerRequest = Math.round(ratio * SCALE);
+        this.capacity = Math.max(1, burst) * SCALE;
+        this.balance = new AtomicLong(0);
+    }
+
+    public void onRequest() {
+        balance.getAndUpdate(b -> Math.min(capacity, b + earnPerRequest));
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
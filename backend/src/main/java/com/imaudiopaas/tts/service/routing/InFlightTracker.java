@@ -0,0 +1,32 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lock-free count of outstanding upstream calls per provider config. Counters are keyed by
+ * config id, so they survive routing snapshot rebuilds.
+ */
+@Component
+public class InFlightTracker {
+
+    private final ConcurrentHashMap<UUID, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    public int get(UUID configKey) {
+        AtomicInteger counter = counters.get(configKey);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public void increment(UUID configKey) {
+        counters.computeIfAbsent(configKey, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void decrement(UUID configKey) {
+        AtomicInteger counter = counters.get(configKey);
+        if (counter != null) {
+            counter.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Prefers the config that is fastest right now. Each config is scored by its EWMA latency per
+ * character, scaled by outstanding calls and divided by weight (peak-EWMA style, so the fastest
+ * config is not stampeded). Configs without a recent score are tried first, and a small share of
+ * traffic goes to a random config so that a recovered upstream is noticed.
+ *
+ * <p>The same scores order failover links: an equivalent voice on another provider is moved
+ * ahead of the requested one when it is clearly faster.
+ */
+public class LatencyAwareBalancer implements ConfigBalancer {
+
+    private final EwmaLatencyTracker latencies;
+    private final InFlightTracker inFlightTracker;
+    private final double explorationRate;
+    private final double switchRatio;
+
+    public LatencyAwareBalancer(EwmaLatencyTracker latencies, InFlightTracker inFlightTracker,
+                                double explorationRate, double switchRatio) {
+        this.latencies = latencies;
+        this.inFlightTracker = inFlightTracker;
+        this.explorationRate = explorationRate;
+        this.switchRatio = switchRatio;
+    }
+
+    @Override
+    public String getName() {
+        return "latency-aware";
+    }
+
+    @Override
+    public ProviderConfig select(List<ProviderConfig> candidates, RoutingSnapshot snapshot) {
+        int n = candidates.size();
+        if (n == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < explorationRate) {
+            return candidates.get(random.nextInt(n));
+        }
+        ProviderConfig best = null;
+        double bestCost = Double.MAX_VALUE;
+        // Start at a random offset so ties (e.g. several unknown configs) are spread out
+        int offset = random.nextInt(n);
+        for (int i = 0; i < n; i++) {
+            ProviderConfig config = candidates.get((offset + i) % n);
+            double cost = cost(config, snapshot);
+            if (cost < bestCost) {
+                best = config;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public List<RouteTarget> order(List<RouteTarget> chain, RoutingSnapshot snapshot) {
+        if (chain.size() < 2 || ThreadLocalRandom.current().nextDouble() < explorationRate) {
+            return chain;
+        }
+        double primaryScore = linkScore(chain.get(0), snapshot);
+        if (primaryScore < 0) {
+            // Nothing recent known about the requested voice: let it be probed
+            return chain;
+        }
+        int bestIndex = 0;
+        double bestScore = primaryScore;
+        for (int i = 1; i < chain.size(); i++) {
+            double score = linkScore(chain.get(i), snapshot);
+            if (score >= 0 && score < bestScore) {
+                bestIndex = i;
+                bestScore = score;
+            }
+        }
+        if (bestIndex == 0 || bestScore > primaryScore * switchRatio) {
+            return chain;
+        }
+        List<RouteTarget> reordered = new ArrayList<>(chain);
+        reordered.add(0, reordered.remove(bestIndex));
+        return reordered;
+    }
+
+    private double cost(ProviderConfig config, RoutingSnapshot snapshot) {
+        double score = latencies.score(RoutingSnapshot.keyOf(config));
+        if (score < 0) {
+            return -1;
+        }
+        return score * (inFlightTracker.get(RoutingSnapshot.keyOf(config)) + 1) / snapshot.getWeight(config);
+    }
+
+    // Best known score among the link's configs, or -1 if none has one
+    private double linkScore(RouteTarget target, RoutingSnapshot snapshot) {
+        double best = -1;
+        for (ProviderConfig config : snapshot.getActiveConfigs(target.getProviderType())) {
+            double score = latencies.score(RoutingSnapshot.keyOf(config));
+            if (score >= 0 && (best < 0 || score < best)) {
+                best = score;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,64 @@
+package com.imaudiopaas.tts.service.routing;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.stereotype.Component;
+
+/**
+ * Live per-config latency distribution over the most recent successful calls. Recording is a
+ * couple of atomic writes; percentiles are recomputed from the window every few samples and
+ * cached, so reading them on the hot path is a volatile read.
+ */
+@Component
+public class LatencyTracker {
+
+    static final int WINDOW_SIZE = 256;
+    static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final ConcurrentHashMap<UUID, Window> windows = new ConcurrentHashMap<>();
+
+    public void record(UUID configKey, long latencyMs) {
+        windows.computeIfAbsent(configKey, k -> new Window()).record(latencyMs);
+    }
+
+    /**
+     * Get a latency percentile for a config.
+     *
+     * @param configKey The config key, see {@link RoutingSnapshot#keyOf}.
+     * @param quantile Quantile in (0, 1], e.g. 0.95.
+     * @return The percentile in milliseconds, or -1 if there are not enough samples yet.
+     */
+    public long percentile(UUID configKey, double quantile) {
+        Window window = windows.get(configKey);
+        return window == null ? -1 : window.percentile(quantile);
+    }
+
+    private static final class Window {
+        private final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long[] sorted = new long[0];
+
+        void record(long latencyMs) {
+            long n = count.getAndIncrement();
+            samples.set((int) (n % WINDOW_SIZE), latencyMs);
+            if ((n + 1) % RECOMPUTE_EVERY == 0 || n + 1 == MIN_SAMPLES) {
+                int size = (int) Math.min(n + 1, WINDOW_SIZE);
+                long[] copy = new long[size];
+                for (int i = 0; i < size; i++) copy[i] = samples.get(i);
+                Arrays.sort(copy);
+                sorted = copy;
+            }
+        }
+
+        long percentile(double quantile) {
+            long[] current = sorted;
+            if (current.length < MIN_SAMPLES) return -1;
+            int index = (int) Math.ceil(quantile * current.length) - 1;
+            return current[Math.max(0, Math.min(current.length - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the config with the fewest in-flight requests per unit of weight. The scan starts at a
+ * random offset so ties don't always land on the first config.
+ */
+public class LeastOutstandingBalancer implements ConfigBalancer {
+
+    private final InFlightTracker inFlightTracker;
+
+    public LeastOutstandingBalancer(InFlightTracker inFlightTracker) {
+        this.inFlightTracker = inFlightTracker;
+    }
+
+    @Override
+    public String getName() {
+        return "least-outstanding";
+    }
+
+    @Override
+    public ProviderConfig select(List<ProviderConfig> candidates, RoutingSnapshot snapshot) {
+        int n = candidates.size();
+        if (n == 1) {
+            return candidates.get(0);
+        }
+        int offset = ThreadLocalRandom.current().nextInt(n);
+        ProviderConfig best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            ProviderConfig candidate = candidates.get((offset + i) % n);
+            double load = (double) inFlightTracker.get(RoutingSnapshot.keyOf(candidate)) / snapshot.getWeight(candidate);
+            if (load < bestLoad) {
+                bestLoad = load;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,43 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples two distinct configs at random and keeps the less loaded one (in-flight per unit of
+ * weight). Nearly as good as least-outstanding while only reading two counters.
+ */
+public class PowerOfTwoChoicesBalancer implements ConfigBalancer {
+
+    private final InFlightTracker inFlightTracker;
+
+    public PowerOfTwoChoicesBalancer(InFlightTracker inFlightTracker) {
+        this.inFlightTracker = inFlightTracker;
+    }
+
+    @Override
+    public String getName() {
+        return "power-of-two";
+    }
+
+    @Override
+    public ProviderConfig select(List<ProviderConfig> candidates, RoutingSnapshot snapshot) {
+        int n = candidates.size();
+        if (n == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(n);
+        int second = random.nextInt(n - 1);
+        if (second >= first) second++;
+
+        ProviderConfig a = candidates.get(first);
+        ProviderConfig b = candidates.get(second);
+        return load(a, snapshot) <= load(b, snapshot) ? a : b;
+    }
+
+    private double load(ProviderConfig config, RoutingSnapshot snapshot) {
+        return (double) inFlightTracker.get(RoutingSnapshot.keyOf(config)) / snapshot.getWeight(config);
+    }
+}
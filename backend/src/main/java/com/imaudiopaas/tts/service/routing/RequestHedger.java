@@ -0,0 +1,206 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opt-in request hedging. The primary attempt runs in the background; if it has not returned
+ * within the config's live p95 (or the configured percentile), a second attempt is launched on
+ * an alternate config or equivalent voice, subject to the {@link HedgeBudget}. The first success
+ * wins, the loser is interrupted and any audio it still produced is closed.
+ */
+@Slf4j
+@Component
+public class RequestHedger {
+
+    /**
+     * One upstream attempt. {@code raceDecided} turns true once another attempt has won, so a
+     * cancelled loser can skip reporting itself as a provider failure.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        TtsResponse run(BooleanSupplier raceDecided);
+    }
+
+    private final AsyncTaskExecutor executor;
+    private final LatencyTracker latencyTracker;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double quantile;
+    private final long minDelayMs;
+    private final long defaultDelayMs;
+    private final HedgeBudget budget;
+
+    @Autowired
+    public RequestHedger(
+            Environment environment,
+            LatencyTracker latencyTracker,
+            MeterRegistry meterRegistry,
+            @Value("${app.routing.hedging.enabled:false}") boolean enabled,
+            @Value("${app.routing.hedging.percentile:0.95}") double quantile,
+            @Value("${app.routing.hedging.min-delay-ms:50}") long minDelayMs,
+            @Value("${app.routing.hedging.default-delay-ms:1500}") long defaultDelayMs,
+            @Value("${app.routing.hedging.budget-ratio:0.05}") double budgetRatio) {
+        this(newExecutor(environment), latencyTracker, meterRegistry, enabled, quantile, minDelayMs, defaultDelayMs,
+                new HedgeBudget(budgetRatio, 10));
+    }
+
+    public RequestHedger(AsyncTaskExecutor executor, LatencyTracker latencyTracker, MeterRegistry meterRegistry,
+                         boolean enabled, double quantile, long minDelayMs, long defaultDelayMs, HedgeBudget budget) {
+        this.executor = executor;
+        this.latencyTracker = latencyTracker;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.quantile = quantile;
+        this.minDelayMs = minDelayMs;
+        this.defaultDelayMs = defaultDelayMs;
+        this.budget = budget;
+    }
+
+    private static AsyncTaskExecutor newExecutor(Environment environment) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("tts-hedge-");
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        return executor;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * How long to wait for the primary before hedging, derived from its live latency percentile.
+     */
+    public long hedgeDelayMs(UUID configKey) {
+        long observed = latencyTracker.percentile(configKey, quantile);
+        return observed < 0 ? defaultDelayMs : Math.max(minDelayMs, observed);
+    }
+
+    /**
+     * Run the primary attempt, hedging with {@code hedge} if it is slow.
+     *
+     * @param primary The primary attempt.
+     * @param hedge The alternate attempt, or null if there is nothing to hedge with.
+     * @param delayMs How long to give the primary before hedging.
+     * @param deadlineMillis Absolute deadline for the whole race.
+     * @param providerTag Provider type name used as metric tag.
+     * @return The winning response.
+     */
+    public TtsResponse execute(Attempt primary, Attempt hedge, long delayMs, long deadlineMillis, String providerTag) {
+        if (!enabled || hedge == null) {
+            return primary.run(() -> false);
+        }
+        budget.onRequest();
+        meterRegistry.counter("tts.hedge.eligible", "provider", providerTag).increment();
+
+        CompletableFuture<TtsResponse> winner = new CompletableFuture<>();
+        CompletableFuture<TtsResponse> primaryResult = new CompletableFuture<>();
+        CompletableFuture<TtsResponse> hedgeResult = new CompletableFuture<>();
+        Future<?> primaryFuture = executor.submit(() -> runAttempt(primary, primaryResult, winner));
+        Future<?> hedgeFuture = null;
+        TtsResponse response = null;
+        try {
+            // Phase 1: give the primary its usual latency; a fast failure goes straight to failover
+            try {
+                response = primaryResult.get(delayMs, TimeUnit.MILLISECONDS);
+                return response;
+            } catch (TimeoutException slowPrimary) {
+                // fall through to hedging
+            }
+
+            // Phase 2: hedge if the budget allows, then take the first success
+            if (!budget.tryAcquire()) {
+                response = await(primaryResult, deadlineMillis);
+                return response;
+            }
+            meterRegistry.counter("tts.hedge.launched", "provider", providerTag).increment();
+            log.debug("Primary slower than {}ms, launching hedge", delayMs);
+            hedgeFuture = executor.submit(() -> runAttempt(hedge, hedgeResult, winner));
+
+            AtomicInteger failures = new AtomicInteger();
+            primaryResult.whenComplete((r, e) -> settle(winner, r, e, failures, primaryResult));
+            hedgeResult.whenComplete((r, e) -> settle(winner, r, e, failures, primaryResult));
+
+            response = await(winner, deadlineMillis);
+            if (response == hedgeResult.getNow(null)) {
+                meterRegistry.counter("tts.hedge.won", "provider", providerTag).increment();
+            }
+            return response;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TtsException("Interrupted while waiting for synthesis", e);
+        } finally {
+            primaryFuture.cancel(true);
+            if (hedgeFuture != null) hedgeFuture.cancel(true);
+            // A loser may still have produced audio; release its upstream stream
+            TtsResponse kept = response;
+            primaryResult.thenAccept(r -> { if (r != kept) closeQuietly(r); });
+            hedgeResult.thenAccept(r -> { if (r != kept) closeQuietly(r); });
+        }
+    }
+
+    private TtsResponse await(CompletableFuture<TtsResponse> future, long deadlineMillis)
+            throws ExecutionException, InterruptedException {
+        long remaining = Math.max(1, deadlineMillis - System.currentTimeMillis());
+        try {
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TtsException("Synthesis did not complete within the request deadline");
+        }
+    }
+
+    private void runAttempt(Attempt attempt, CompletableFuture<TtsResponse> result,
+                            CompletableFuture<TtsResponse> winner) {
+        try {
+            result.complete(attempt.run(winner::isDone));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    // First success wins; if both fail, surface the primary's error
+    private void settle(CompletableFuture<TtsResponse> winner, TtsResponse response, Throwable error,
+                        AtomicInteger failures, CompletableFuture<TtsResponse> primaryResult) {
+        if (error == null) {
+            winner.complete(response);
+        } else if (failures.incrementAndGet() == 2) {
+            Throwable primaryError = primaryResult.handle((r, e) -> e).getNow(null);
+            winner.completeExceptionally(primaryError != null ? primaryError : error);
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new TtsException(cause.getMessage(), cause);
+    }
+
+    private void closeQuietly(TtsResponse response) {
+        if (response == null) return;
+        InputStream stream = response.getAudioStream();
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (Exception e) {
+            log.debug("Failed to close losing hedge stream", e);
+        }
+    }
+}
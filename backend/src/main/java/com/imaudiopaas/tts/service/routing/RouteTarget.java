@@ -0,0 +1,13 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import lombok.Value;
+
+/**
+ * One link of a routing chain: which provider type to call and with which native voice.
+ */
+@Value
+public class RouteTarget {
+    ProviderType providerType;
+    String nativeVoiceId;
+}
@@ -0,0 +1,28 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.core.event.RoutingConfigChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener attached to the routing tables. Hibernate resolves it through Spring's
+ * bean container, so every write path (admin API, repositories, seed scripts) triggers a
+ * snapshot rebuild without the callers having to remember to do so.
+ */
+@Component
+@RequiredArgsConstructor
+public class RoutingConfigEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        eventPublisher.publishEvent(new RoutingConfigChangedEvent(this, entity.getClass().getSimpleName()));
+    }
+}
@@ -0,0 +1,224 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.VoiceGender;
+import com.imaudiopaas.tts.model.ProviderConfig;
+import com.imaudiopaas.tts.model.VoiceDefinition;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable, versioned view of everything the router needs: voice definitions and the active
+ * configurations per provider type, with credentials already decrypted. The voices and configs
+ * are read-only copies of what the constructor is given: detached from JPA, so reading them never
+ * touches the database, and rejecting setters, since one snapshot is shared by every request.
+ */
+public final class RoutingSnapshot {
+
+    private final long version;
+    private final Instant builtAt;
+    private final Map<String, VoiceDefinition> voices;
+    private final Map<ProviderType, List<ProviderConfig>> activeConfigs;
+    private final Map<UUID, Integer> weights;
+
+    public RoutingSnapshot(long version, Map<String, VoiceDefinition> voices,
+                           Map<ProviderType, List<ProviderConfig>> activeConfigs,
+                           Map<UUID, Integer> weights) {
+        this.version = version;
+        this.builtAt = Instant.now();
+        Map<String, VoiceDefinition> voiceCopies = new HashMap<>();
+        voices.forEach((id, voice) -> voiceCopies.put(id, readOnly(voice)));
+        this.voices = Map.copyOf(voiceCopies);
+        Map<ProviderType, List<ProviderConfig>> configs = new EnumMap<>(ProviderType.class);
+        activeConfigs.forEach((type, list) ->
+                configs.put(type, list.stream().map(RoutingSnapshot::readOnly).toList()));
+        this.activeConfigs = Collections.unmodifiableMap(configs);
+        this.weights = Map.copyOf(weights);
+    }
+
+    public static RoutingSnapshot empty() {
+        return new RoutingSnapshot(0, Map.of(), Map.of(), Map.of());
+    }
+
+    /**
+     * Stable key for per-config runtime state (in-flight counters, breakers, ...). Unsaved
+     * configs have no id yet, so fall back to a key derived from the name.
+     */
+    public static UUID keyOf(ProviderConfig config) {
+        if (config.getId() != null) {
+            return config.getId();
+        }
+        return UUID.nameUUIDFromBytes(String.valueOf(config.getName()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public Optional<VoiceDefinition> findVoice(String voiceId) {
+        return voiceId == null ? Optional.empty() : Optional.ofNullable(voices.get(voiceId));
+    }
+
+    public List<ProviderConfig> getActiveConfigs(ProviderType type) {
+        return activeConfigs.getOrDefault(type, List.of());
+    }
+
+    public Map<ProviderType, List<ProviderConfig>> getActiveConfigs() {
+        return activeConfigs;
+    }
+
+    /**
+     * Load-balancing weight from {@code metadata.weight}, defaulting to 1.
+     */
+    public int getWeight(ProviderConfig config) {
+        return weights.getOrDefault(keyOf(config), 1);
+    }
+
+    public int getVoiceCount() {
+        return voices.size();
+    }
+
+    private static ProviderConfig readOnly(ProviderConfig source) {
+        return source instanceof ReadOnlyProviderConfig ? source : new ReadOnlyProviderConfig(source);
+    }
+
+    private static VoiceDefinition readOnly(VoiceDefinition source) {
+        return source instanceof ReadOnlyVoiceDefinition ? source : new ReadOnlyVoiceDefinition(source);
+    }
+
+    private static UnsupportedOperationException readOnlyError() {
+        return new UnsupportedOperationException("Routing snapshot entries are read-only");
+    }
+
+    // Fields are filled through super, every setter of the copy throws
+    private static final class ReadOnlyProviderConfig extends ProviderConfig {
+
+        ReadOnlyProviderConfig(ProviderConfig source) {
+            super.setId(source.getId());
+            super.setName(source.getName());
+            super.setProviderType(source.getProviderType());
+            super.setBaseUrl(source.getBaseUrl());
+            super.setAccessKey(source.getAccessKey());
+            super.setSecretKey(source.getSecretKey());
+            super.setMetadata(source.getMetadata());
+            super.setIsActive(source.getIsActive());
+            super.setCreatedAt(source.getCreatedAt());
+            super.setUpdatedAt(source.getUpdatedAt());
+        }
+
+        @Override
+        public void setId(UUID id) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setName(String name) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setProviderType(ProviderType providerType) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setBaseUrl(String baseUrl) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setAccessKey(String accessKey) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setSecretKey(String secretKey) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setMetadata(String metadata) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setIsActive(Boolean isActive) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setCreatedAt(LocalDateTime createdAt) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setUpdatedAt(LocalDateTime updatedAt) {
+            throw readOnlyError();
+        }
+    }
+
+    private static final class ReadOnlyVoiceDefinition extends VoiceDefinition {
+
+        ReadOnlyVoiceDefinition(VoiceDefinition source) {
+            super.setId(source.getId());
+            super.setProviderType(source.getProviderType());
+            super.setNativeVoiceId(source.getNativeVoiceId());
+            super.setDisplayName(source.getDisplayName());
+            super.setGender(source.getGender());
+            super.setStyles(source.getStyles() != null
+                    ? Collections.unmodifiableSet(new HashSet<>(source.getStyles())) : null);
+            super.setFailoverChain(source.getFailoverChain() != null
+                    ? Collections.unmodifiableList(new ArrayList<>(source.getFailoverChain())) : List.of());
+        }
+
+        @Override
+        public void setId(String id) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setProviderType(ProviderType providerType) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setNativeVoiceId(String nativeVoiceId) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setDisplayName(String displayName) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setGender(VoiceGender gender) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setStyles(Set<String> styles) {
+            throw readOnlyError();
+        }
+
+        @Override
+        public void setFailoverChain(List<String> failoverChain) {
+            throw readOnlyError();
+        }
+    }
+}
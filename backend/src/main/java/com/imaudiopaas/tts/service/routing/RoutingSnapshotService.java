@@ -0,0 +1,118 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.event.RoutingConfigChangedEvent;
+import com.imaudiopaas.tts.model.ProviderConfig;
+import com.imaudiopaas.tts.model.VoiceDefinition;
+import com.imaudiopaas.tts.repository.ProviderConfigRepository;
+import com.imaudiopaas.tts.repository.VoiceDefinitionRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Owns the current {@link RoutingSnapshot}. The hot path only performs a volatile read; the
+ * snapshot is rebuilt from the database at startup and after every committed routing change.
+ */
+@Slf4j
+@Service
+public class RoutingSnapshotService {
+
+    private static final int MAX_WEIGHT = 100;
+
+    private final ProviderConfigRepository providerConfigRepository;
+    private final VoiceDefinitionRepository voiceDefinitionRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile RoutingSnapshot snapshot;
+    private long nextVersion = 1;
+
+    public RoutingSnapshotService(
+            ProviderConfigRepository providerConfigRepository,
+            VoiceDefinitionRepository voiceDefinitionRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.providerConfigRepository = providerConfigRepository;
+        this.voiceDefinitionRepository = voiceDefinitionRepository;
+        this.objectMapper = objectMapper;
+        // REQUIRES_NEW: rebuilds run in the after-commit phase of the writing transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public RoutingSnapshot current() {
+        RoutingSnapshot current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        log.debug("Routing configuration changed ({}), rebuilding snapshot", event.getEntityType());
+        rebuild();
+    }
+
+    public synchronized RoutingSnapshot rebuild() {
+        long version = nextVersion;
+        RoutingSnapshot rebuilt = transactionTemplate.execute(status -> load(version));
+        // Only a snapshot that was actually published uses up a version
+        nextVersion = version + 1;
+        snapshot = rebuilt;
+        log.info("Routing snapshot v{} built: {} voices, {} active provider types",
+                rebuilt.getVersion(), rebuilt.getVoiceCount(), rebuilt.getActiveConfigs().size());
+        return rebuilt;
+    }
+
+    private RoutingSnapshot load(long version) {
+        Map<String, VoiceDefinition> voices = new HashMap<>();
+        for (VoiceDefinition voice : voiceDefinitionRepository.findAll()) {
+            voices.put(voice.getId(), voice);
+        }
+
+        Map<ProviderType, List<ProviderConfig>> configs = new EnumMap<>(ProviderType.class);
+        Map<UUID, Integer> weights = new HashMap<>();
+        providerConfigRepository.findByIsActiveTrue().stream()
+                .filter(c -> c.getProviderType() != null)
+                .sorted(Comparator.comparing(ProviderConfig::getName, Comparator.nullsLast(Comparator.naturalOrder())))
+                .forEach(c -> {
+                    configs.computeIfAbsent(c.getProviderType(), t -> new ArrayList<>()).add(c);
+                    weights.put(RoutingSnapshot.keyOf(c), parseWeight(c.getMetadata()));
+                });
+
+        // Copied by the snapshot while still in the transaction, so lazy collections load
+        return new RoutingSnapshot(version, voices, configs, weights);
+    }
+
+    private int parseWeight(String metadataJson) {
+        if (metadataJson == null) return 1;
+        try {
+            JsonNode root = objectMapper.readTree(metadataJson);
+            if (root != null && root.has("weight")) {
+                return Math.max(1, Math.min(MAX_WEIGHT, root.get("weight").asInt(1)));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to parse metadata for weight", e);
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.imaudiopaas.tts.service.routing;
+
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Smooth weighted round-robin. The interleaved schedule (e.g. weights 2:1 give A,B,A rather than
+ * A,A,B) is computed once per candidate set; the hot path is a single atomic increment. Callers
+ * pass different subsets of a provider's configs (open breakers filtered out, the primary removed
+ * for a hedge), so each subset keeps its own schedule and counter rather than one per provider
+ * type being rebuilt, and restarted, whenever the subset changes.
+ */
+public class WeightedRoundRobinBalancer implements ConfigBalancer {
+
+    private final ConcurrentHashMap<String, Schedule> schedules = new ConcurrentHashMap<>();
+    private volatile long version = Long.MIN_VALUE;
+
+    @Override
+    public String getName() {
+        return "weighted-round-robin";
+    }
+
+    @Override
+    public ProviderConfig select(List<ProviderConfig> candidates, RoutingSnapshot snapshot) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        if (version != snapshot.getVersion()) {
+            // Weights may have changed and configs gone away: start over rather than keep stale subsets
+            schedules.clear();
+            version = snapshot.getVersion();
+        }
+        String group = groupOf(candidates);
+        Schedule schedule = schedules.get(group);
+        if (schedule == null || !schedule.matches(candidates, snapshot.getVersion())) {
+            AtomicLong counter = schedule != null ? schedule.counter : new AtomicLong();
+            schedule = new Schedule(candidates, snapshot, counter);
+            schedules.put(group, schedule);
+        }
+        int slot = (int) Math.floorMod(schedule.counter.getAndIncrement(), (long) schedule.order.length);
+        return candidates.get(schedule.order[slot]);
+    }
+
+    // Candidates come in snapshot order, so the same subset always gives the same key
+    private static String groupOf(List<ProviderConfig> candidates) {
+        StringBuilder group = new StringBuilder(candidates.get(0).getProviderType() + ":");
+        for (ProviderConfig candidate : candidates) {
+            group.append(RoutingSnapshot.keyOf(candidate)).append(',');
+        }
+        return group.toString();
+    }
+
+    private static final class Schedule {
+        final long version;
+        final UUID[] keys;
+        final int[] order;
+        final AtomicLong counter;
+
+        Schedule(List<ProviderConfig> candidates, RoutingSnapshot snapshot, AtomicLong counter) {
+            this.version = snapshot.getVersion();
+            this.counter = counter;
+            int n = candidates.size();
+            this.keys = new UUID[n];
+            int[] weights = new int[n];
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                keys[i] = RoutingSnapshot.keyOf(candidates.get(i));
+                weights[i] = snapshot.getWeight(candidates.get(i));
+                total += weights[i];
+            }
+            // nginx-style smooth WRR, unrolled over one full cycle
+            this.order = new int[total];
+            int[] current = new int[n];
+            for (int step = 0; step < total; step++) {
+                int best = 0;
+                for (int i = 0; i < n; i++) {
+                    current[i] += weights[i];
+                    if (current[i] > current[best]) best = i;
+                }
+                current[best] -= total;
+                order[step] = best;
+            }
+        }
+
+        boolean matches(List<ProviderConfig> candidates, long snapshotVersion) {
+            if (version != snapshotVersion || keys.length != candidates.size()) return false;
+            for (int i = 0; i < keys.length; i++) {
+                if (!keys[i].equals(RoutingSnapshot.keyOf(candidates.get(i)))) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.imaudiopaas.tts.service.text;
+
+import com.imaudiopaas.tts.config.TaskExecutorConfig;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.stream.AudioJoiner;
+import com.imaudiopaas.tts.core.stream.AudioPipe;
+import com.imaudiopaas.tts.exception.TtsException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Synthesis of texts longer than a provider's segment limit: the text is split at sentence and
+ * clause boundaries (see {@link SentenceSegmenter}), the pieces are synthesized concurrently and
+ * their audio is joined back in order (see {@link AudioJoiner}), with the silence providers pad
+ * each piece with cut to {@code keepSilenceMs} per edge. Wall-clock time drops from the sum of
+ * the pieces to roughly the slowest batch of them.
+ *
+ * <p>Each piece is a call of its own, made through the given function: the router sends it
+ * through the same path as any request, so every piece waits for its own concurrency permit,
+ * passes its own breaker check and can fail over on its own.
+ *
+ * <p>The response is returned as soon as the first piece has started: it streams straight
+ * through, while the next pieces are read into memory as they complete, so their upstream
+ * sessions run at full speed instead of stalling until their turn. At most {@code maxParallel}
+ * pieces are in flight or buffered at a time, counting the one being read; the next is only
+ * started once the reader moves on. A failure of the first piece fails the call; a later one
+ * ends the stream with an {@link AudioPipe.UpstreamFailedException}, so the truncated audio is
+ * never cached. Closing the stream cancels the pieces still running.
+ *
+ * <p>Markup (SSML) and formats that can't be joined are always sent in one call.
+ */
+@Slf4j
+@Component
+public class SegmentedSynthesizer {
+
+    private final AsyncTaskExecutor executor;
+    private final boolean enabled;
+    private final int maxParallel;
+    private final int defaultMaxChars;
+    private final int keepSilenceMs;
+    private final Map<ProviderType, Integer> maxChars;
+    private final DistributionSummary segmentCounts;
+
+    @Autowired
+    public SegmentedSynthesizer(
+            @Qualifier(TaskExecutorConfig.SYNTHESIS_EXECUTOR) AsyncTaskExecutor executor,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${app.segmentation.enabled:true}") boolean enabled,
+            @Value("${app.segmentation.max-parallel:4}") int maxParallel,
+            @Value("${app.segmentation.max-chars.default:300}") int defaultMaxChars,
+            @Value("${app.segmentation.keep-silence-ms:150}") int keepSilenceMs) {
+        this(executor, meterRegistry, enabled, maxParallel, defaultMaxChars,
+                providerLimits(environment), keepSilenceMs);
+    }
+
+    public SegmentedSynthesizer(AsyncTaskExecutor executor, MeterRegistry meterRegistry, boolean enabled,
+                                int maxParallel, int defaultMaxChars, Map<ProviderType, Integer> maxChars) {
+        this(executor, meterRegistry, enabled, maxParallel, defaultMaxChars, maxChars, 150);
+    }
+
+    public SegmentedSynthesizer(AsyncTaskExecutor executor, MeterRegistry meterRegistry, boolean enabled,
+                                int maxParallel, int defaultMaxChars, Map<ProviderType, Integer> maxChars,
+                                int keepSilenceMs) {
+        this.executor = executor;
+        this.enabled = enabled;
+        this.maxParallel = Math.max(1, maxParallel);
+        this.defaultMaxChars = defaultMaxChars;
+        this.keepSilenceMs = keepSilenceMs;
+        this.maxChars = maxChars.isEmpty() ? new EnumMap<>(ProviderType.class) : new EnumMap<>(maxChars);
+        this.segmentCounts = meterRegistry.summary("tts.segmentation.segments");
+    }
+
+    // app.segmentation.max-chars.<provider>, e.g. max-chars.aliyun-cosyvoice
+    private static Map<ProviderType, Integer> providerLimits(Environment environment) {
+        Map<ProviderType, Integer> limits = new EnumMap<>(ProviderType.class);
+        for (ProviderType type : ProviderType.values()) {
+            String key = "app.segmentation.max-chars." + type.name().toLowerCase(Locale.ROOT).replace('_', '-');
+            Integer limit = environment.getProperty(key, Integer.class);
+            if (limit != null) limits.put(type, limit);
+        }
+        return limits;
+    }
+
+    /**
+     * Longest text sent to one provider call.
+     */
+    public int maxChars(ProviderType type) {
+        return maxChars.getOrDefault(type, defaultMaxChars);
+    }
+
+    /**
+     * Pieces a request's text is synthesized in.
+     *
+     * @param maxChars Longest text for one call, see {@link #maxChars(ProviderType)}.
+     * @return The pieces, or just the whole text if it is sent in one call.
+     */
+    public List<String> split(TtsRequest request, int maxChars) {
+        String text = request.getText();
+        if (!enabled || text == null || text.length() <= maxChars
+                || !AudioJoiner.canJoin(request.getFormat()) || text.contains("<speak")) {
+            return Collections.singletonList(text);
+        }
+        return SentenceSegmenter.split(text, maxChars);
+    }
+
+    /**
+     * Synthesize the pieces of a request and join their audio.
+     *
+     * @param request The request, in a format that can be joined.
+     * @param pieces Its text as returned by {@link #split}, more than one piece.
+     * @param synthesizeSegment Makes the call for one piece, given the request with its text.
+     * @throws RuntimeException what {@code synthesizeSegment} threw for the first piece.
+     */
+    public TtsResponse synthesize(TtsRequest request, List<String> pieces,
+                                  Function<TtsRequest, TtsResponse> synthesizeSegment) {
+        segmentCounts.record(pieces.size());
+        log.debug("Synthesizing {} chars as {} segments", request.getText().length(), pieces.size());
+        return new SegmentedAudioStream(request, pieces, synthesizeSegment).start();
+    }
+
+    private final class SegmentedAudioStream extends InputStream {
+        private final TtsRequest request;
+        private final List<String> pieces;
+        private final Function<TtsRequest, TtsResponse> synthesizeSegment;
+        private final List<Future<TtsResponse>> segments = new ArrayList<>();
+        private volatile boolean closed;
+        private AudioFormat format;
+        private TtsResponse first;
+        private InputStream current;
+        private int index;
+        private long delivered;
+
+        SegmentedAudioStream(TtsRequest request, List<String> pieces,
+                             Function<TtsRequest, TtsResponse> synthesizeSegment) {
+            this.request = request;
+            this.pieces = pieces;
+            this.synthesizeSegment = synthesizeSegment;
+            submitUpTo(maxParallel);
+        }
+
+        // Start pieces until count have been started, or all of them
+        private synchronized void submitUpTo(int count) {
+            while (!closed && segments.size() < Math.min(count, pieces.size())) {
+                int segment = segments.size();
+                TtsRequest segmentRequest = request.toBuilder().text(pieces.get(segment)).build();
+                segments.add(executor.submit(() -> synthesizeSegment(segment, segmentRequest)));
+            }
+        }
+
+        TtsResponse start() {
+            try {
+                first = future(0).get();
+            } catch (ExecutionException e) {
+                closeQuietly();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new TtsException("Segment synthesis failed: " + cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closeQuietly();
+                throw new TtsException("Interrupted while waiting for the first segment", e);
+            }
+            format = first.getFormat();
+            if (!AudioJoiner.canJoin(format)) {
+                closeQuietly();
+                throw new TtsException("Provider returned " + format + " audio, which can't be joined");
+            }
+            return TtsResponse.builder()
+                    .audioStream(this)
+                    .format(format)
+                    .sampleRate(first.getSampleRate())
+                    .contentLength(0) // Only known once every segment is done
+                    .build();
+        }
+
+        private TtsResponse synthesizeSegment(int segment, TtsRequest request) throws Exception {
+            if (closed) throw new CancellationException();
+            TtsResponse response = synthesizeSegment.apply(request);
+            if (closed) {
+                closeStream(response.getAudioStream());
+                throw new CancellationException();
+            }
+            if (segment == 0 || response.getAudioStream() == null) {
+                return response;
+            }
+            // Bounded by the window of pieces started ahead of the reader
+            byte[] audio;
+            try (InputStream in = response.getAudioStream()) {
+                audio = in.readAllBytes();
+            }
+            return TtsResponse.builder()
+                    .audioStream(new ByteArrayInputStream(audio))
+                    .format(response.getFormat())
+                    .sampleRate(response.getSampleRate())
+                    .contentLength(audio.length)
+                    .build();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n;
+            while ((n = read(one, 0, 1)) == 0) {
+                // keep reading
+            }
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (true) {
+                if (current == null) {
+                    if (index >= pieces.size()) return -1;
+                    current = open(index);
+                }
+                int n = current.read(b, off, len);
+                if (n >= 0) {
+                    delivered += n;
+                    return n;
+                }
+                current.close();
+                current = null;
+                index++;
+                // The window moves with the reader
+                submitUpTo(index + maxParallel);
+            }
+        }
+
+        private InputStream open(int segment) throws IOException {
+            if (segment == 0) {
+                return AudioJoiner.first(format, first.getAudioStream(), first.getSampleRate(), keepSilenceMs);
+            }
+            TtsResponse response;
+            try {
+                response = future(segment).get();
+            } catch (ExecutionException e) {
+                throw new AudioPipe.UpstreamFailedException(
+                        "Segment " + (segment + 1) + " of " + pieces.size() + " failed: " + e.getCause().getMessage(),
+                        delivered, e.getCause());
+            } catch (InterruptedException | CancellationException e) {
+                throw new AudioPipe.UpstreamFailedException("Segmented synthesis was cancelled", delivered, e);
+            }
+            if (response.getFormat() != format) {
+                throw new AudioPipe.UpstreamFailedException("Segment " + (segment + 1) + " returned "
+                        + response.getFormat() + " audio after " + format, delivered, null);
+            }
+            return AudioJoiner.next(format, response.getAudioStream(), response.getSampleRate(), keepSilenceMs);
+        }
+
+        private synchronized Future<TtsResponse> future(int segment) {
+            return segments.get(segment);
+        }
+
+        @Override
+        public void close() {
+            closeQuietly();
+        }
+
+        private void closeQuietly() {
+            List<Future<TtsResponse>> started;
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                started = List.copyOf(segments);
+            }
+            closeStream(current);
+            for (int i = index; i < started.size(); i++) {
+                Future<TtsResponse> segment = started.get(i);
+                if (segment.isDone()) {
+                    try {
+                        closeStream(segment.get().getAudioStream());
+                    } catch (Exception e) {
+                        // Failed or cancelled, nothing to release
+                    }
+                } else {
+                    segment.cancel(true);
+                }
+            }
+        }
+
+        private void closeStream(InputStream in) {
+            if (in == null) return;
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.debug("Failed to close segment stream", e);
+            }
+        }
+    }
+}
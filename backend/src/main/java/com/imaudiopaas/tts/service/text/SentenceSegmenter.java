@@ -0,0 +1,152 @@
+package com.imaudiopaas.tts.service.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Incremental sentence boundary detection for text that arrives in pieces (LLM token deltas).
+ * {@link #append} returns the sentences completed by a delta; the unfinished tail stays buffered
+ * until more text or {@link #flush()} arrives.
+ *
+ * <p>CJK terminators ({@code 。！？…}) and newlines end a sentence at once. ASCII {@code . ! ?}
+ * only do when followed by whitespace, so a delta ending in "3." waits for the next one before
+ * deciding between "3.14" and the end of a sentence; a period after a common abbreviation or a
+ * single capital (an initial) doesn't count. A sentence longer than {@code maxChars} is cut at
+ * the last comma-like mark, else the last space, else hard at the limit.
+ *
+ * <p>Segments with no letter or digit (a lone "…") are dropped. Not thread-safe.
+ */
+public class SentenceSegmenter {
+
+    private static final String HARD_TERMINATORS = "。！？!?…\n";
+    private static final String SOFT_BREAKS = ",;:，；：、";
+    private static final String CLOSERS = "\"')]}”’」』）》";
+    private static final Set<String> ABBREVIATIONS = Set.of(
+            "mr", "mrs", "ms", "dr", "prof", "st", "vs", "e.g", "i.e", "jr", "sr", "no", "fig", "inc", "ltd", "co");
+
+    private final int maxChars;
+    private final StringBuilder buffer = new StringBuilder();
+    private int scanFrom;
+
+    public SentenceSegmenter(int maxChars) {
+        this.maxChars = Math.max(16, maxChars);
+    }
+
+    /**
+     * Split a complete text in one go.
+     */
+    public static List<String> split(String text, int maxChars) {
+        SentenceSegmenter segmenter = new SentenceSegmenter(maxChars);
+        List<String> sentences = segmenter.append(text);
+        String rest = segmenter.flush();
+        if (rest != null) sentences.add(rest);
+        return sentences;
+    }
+
+    /**
+     * Add a delta of text.
+     *
+     * @return The sentences it completed, in order; often empty.
+     */
+    public List<String> append(CharSequence delta) {
+        buffer.append(delta);
+        List<String> sentences = new ArrayList<>();
+        int start = 0;
+        int i = scanFrom;
+        for (; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            int end = -1;
+            if (c == '.' || ((c == '!' || c == '?') && !isCjkContext(i))) {
+                int next = skipClosers(i + 1);
+                if (next >= buffer.length()) {
+                    // Can't tell yet whether this ends the sentence
+                    break;
+                }
+                if (Character.isWhitespace(buffer.charAt(next)) && !(c == '.' && isAbbreviation(start, i))) {
+                    end = next;
+                }
+            } else if (HARD_TERMINATORS.indexOf(c) >= 0) {
+                end = skipClosers(i + 1);
+            }
+
+            if (end >= 0) {
+                emit(sentences, start, end);
+                start = end;
+                i = end - 1;
+            } else if (i + 1 - start >= maxChars) {
+                int cut = softCut(start, i + 1);
+                emit(sentences, start, cut);
+                start = cut;
+            }
+        }
+        buffer.delete(0, start);
+        scanFrom = Math.max(0, i - start);
+        return sentences;
+    }
+
+    /**
+     * Take whatever is buffered as a final sentence.
+     *
+     * @return The remaining text, or null if there is nothing worth synthesizing.
+     */
+    public String flush() {
+        List<String> rest = new ArrayList<>(1);
+        emit(rest, 0, buffer.length());
+        reset();
+        return rest.isEmpty() ? null : rest.get(0);
+    }
+
+    public void reset() {
+        buffer.setLength(0);
+        scanFrom = 0;
+    }
+
+    public int bufferedChars() {
+        return buffer.length();
+    }
+
+    // ASCII "!" and "?" typed inside Chinese text end the sentence at once, like their full-width forms
+    private boolean isCjkContext(int i) {
+        return i > 0 && Character.UnicodeScript.of(buffer.charAt(i - 1)) == Character.UnicodeScript.HAN;
+    }
+
+    private int skipClosers(int from) {
+        int i = from;
+        while (i < buffer.length() && CLOSERS.indexOf(buffer.charAt(i)) >= 0) i++;
+        return i;
+    }
+
+    private boolean isAbbreviation(int start, int dot) {
+        int wordStart = dot;
+        while (wordStart > start && !Character.isWhitespace(buffer.charAt(wordStart - 1))) wordStart--;
+        String word = buffer.substring(wordStart, dot);
+        if (word.length() == 1 && Character.isUpperCase(word.charAt(0))) {
+            return true;
+        }
+        return ABBREVIATIONS.contains(word.toLowerCase(Locale.ROOT));
+    }
+
+    // Best place to cut an over-long sentence ending before `end`
+    private int softCut(int start, int end) {
+        int floor = start + maxChars / 2;
+        for (int i = end - 1; i >= floor; i--) {
+            if (SOFT_BREAKS.indexOf(buffer.charAt(i)) >= 0) return i + 1;
+        }
+        for (int i = end - 1; i >= floor; i--) {
+            if (Character.isWhitespace(buffer.charAt(i))) return i + 1;
+        }
+        return end;
+    }
+
+    private void emit(List<String> sentences, int start, int end) {
+        String sentence = buffer.substring(start, end).trim();
+        for (int i = 0; i < sentence.length(); i++) {
+            if (Character.isLetterOrDigit(sentence.charAt(i))) {
+                sentences.add(sentence);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.imaudiopaas.tts.service.transcode;
+
+import com.imaudiopaas.tts.core.codec.AudioEncoder;
+import com.imaudiopaas.tts.core.codec.EncoderPool;
+import com.imaudiopaas.tts.core.codec.LoudnessNormalizer;
+import com.imaudiopaas.tts.core.codec.PcmConverter;
+import com.imaudiopaas.tts.core.codec.PcmFormat;
+import com.imaudiopaas.tts.core.codec.TranscodingInputStream;
+import com.imaudiopaas.tts.core.codec.WavHeader;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import com.imaudiopaas.tts.service.routing.CompletionTrackingInputStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sits between the provider and the response for PCM-based formats: the provider is asked for
+ * raw PCM, which is normalized to 16-bit mono at the gateway's output rate (see
+ * {@link PcmConverter}) and encoded in-process as it streams through, with pooled encoders
+ * (see {@link EncoderPool}) and no native binaries. Clients get the same sample rate whichever
+ * provider served them.
+ *
+ * <p>PCM, WAV and FLAC are produced here; a provider that answers in WAV anyway (the
+ * self-hosted ones) has its header parsed and its samples converted and re-encoded. There is
+ * no pure Java Opus or AAC encoder worth shipping, so the API turns those formats away.
+ *
+ * <p>With {@code app.loudness.enabled} the converted PCM is also brought to one target loudness
+ * (see {@link LoudnessNormalizer}), so voices from different providers play back at the same
+ * level. The target is resolved into the request, which keeps normalized and unnormalized audio
+ * apart in the cache; MP3 can't be decoded here and is left as the provider made it.
+ *
+ * <p>Metrics, tagged {@code format}: {@code tts.transcode.duration} (conversion and encode time
+ * per stream), {@code tts.transcode.bytes.in} and {@code tts.transcode.bytes.out}.
+ */
+@Slf4j
+@Component
+public class AudioTranscoder {
+
+    static final int MIN_SAMPLE_RATE = 8000;
+    static final int MAX_SAMPLE_RATE = 48000;
+
+    private final MeterRegistry meterRegistry;
+    private final EncoderPool encoders;
+    private final boolean enabled;
+    private final int defaultSampleRate;
+    private final int outputSampleRate;
+    private final LoudnessNormalizer.Settings loudness;
+
+    public AudioTranscoder(MeterRegistry meterRegistry) {
+        this(meterRegistry, null);
+    }
+
+    /**
+     * @param loudness Loudness normalization settings, or null to leave levels alone.
+     */
+    public AudioTranscoder(MeterRegistry meterRegistry, LoudnessNormalizer.Settings loudness) {
+        this(meterRegistry, true, 64, 16000, 24000, loudness);
+    }
+
+    @Autowired
+    public AudioTranscoder(
+            MeterRegistry meterRegistry,
+            @Value("${app.transcoding.enabled:true}") boolean enabled,
+            @Value("${app.transcoding.encoder-pool:64}") int pooledEncoders,
+            @Value("${app.transcoding.default-sample-rate:16000}") int defaultSampleRate,
+            @Value("${app.transcoding.output-sample-rate:24000}") int outputSampleRate,
+            @Value("${app.loudness.enabled:false}") boolean loudnessEnabled,
+            @Value("${app.loudness.target-lufs:-16}") double targetLufs,
+            @Value("${app.loudness.max-gain-db:12}") double maxGainDb,
+            @Value("${app.loudness.ceiling-dbfs:-1}") double ceilingDbfs,
+            @Value("${app.loudness.look-ahead-ms:5}") int lookAheadMs,
+            @Value("${app.loudness.release-ms:50}") int releaseMs,
+            @Value("${app.loudness.prime-ms:400}") int primeMs) {
+        this(meterRegistry, enabled, pooledEncoders, defaultSampleRate, outputSampleRate, loudnessEnabled
+                ? new LoudnessNormalizer.Settings(targetLufs, maxGainDb, ceilingDbfs, lookAheadMs, releaseMs, primeMs)
+                : null);
+    }
+
+    private AudioTranscoder(MeterRegistry meterRegistry, boolean enabled, int pooledEncoders,
+                            int defaultSampleRate, int outputSampleRate, LoudnessNormalizer.Settings loudness) {
+        this.meterRegistry = meterRegistry;
+        this.encoders = new EncoderPool(pooledEncoders);
+        this.enabled = enabled;
+        this.defaultSampleRate = defaultSampleRate;
+        this.outputSampleRate = outputSampleRate;
+        this.loudness = loudness;
+    }
+
+    public boolean canEncode(AudioFormat format) {
+        return enabled && encoders.supports(format);
+    }
+
+    /**
+     * The request with the sample rate and loudness its audio will be delivered at filled in, so
+     * they are part of the cache and coalescing keys. Left as it is for formats that aren't
+     * produced here.
+     *
+     * @throws IllegalArgumentException for a requested rate outside 8000-48000 Hz.
+     */
+    public TtsRequest withOutputSettings(TtsRequest request) {
+        if (!canEncode(request.getFormat())) {
+            return request;
+        }
+        Integer rate = request.getSampleRate();
+        if (rate != null && (rate < MIN_SAMPLE_RATE || rate > MAX_SAMPLE_RATE)) {
+            throw new IllegalArgumentException("sample_rate must be between " + MIN_SAMPLE_RATE
+                    + " and " + MAX_SAMPLE_RATE + ", got " + rate);
+        }
+        boolean fillRate = rate == null && outputSampleRate > 0;
+        boolean fillLoudness = loudness != null && request.getLoudnessTarget() == null;
+        if (!fillRate && !fillLoudness) {
+            return request;
+        }
+        TtsRequest.TtsRequestBuilder builder = request.toBuilder();
+        if (fillRate) {
+            builder.sampleRate(outputSampleRate);
+        }
+        if (fillLoudness) {
+            builder.loudnessTarget(loudness.targetLufs());
+        }
+        return builder.build();
+    }
+
+    /**
+     * The request to send to the provider: PCM when the requested format is produced here.
+     */
+    public TtsRequest nativeRequest(TtsRequest request) {
+        if (!canEncode(request.getFormat()) || request.getFormat() == AudioFormat.PCM) {
+            return request;
+        }
+        return request.toBuilder().format(AudioFormat.PCM).build();
+    }
+
+    /**
+     * The provider's audio in the requested format and sample rate, converted as it is read.
+     * Audio that already matches, or that can't be decoded (MP3), is returned unchanged.
+     *
+     * @throws TtsException if the audio can't be decoded; the response's stream is left open.
+     */
+    public TtsResponse encode(TtsResponse response, TtsRequest request) {
+        AudioFormat source = response.getFormat();
+        AudioFormat target = request.getFormat();
+        Integer outputRate = request.getSampleRate();
+        Double loudnessTarget = loudness == null ? null : request.getLoudnessTarget();
+        if (!canEncode(target) || response.getAudioStream() == null
+                || (source != AudioFormat.PCM && source != AudioFormat.WAV)) {
+            return response;
+        }
+        int sourceRate = response.getSampleRate() > 0 ? response.getSampleRate() : defaultSampleRate;
+        if (source == target && loudnessTarget == null && (outputRate == null || (source == AudioFormat.PCM && sourceRate == outputRate))) {
+            // PCM reported at the right rate; WAV is only known once its header is read
+            return response;
+        }
+        InputStream in = response.getAudioStream();
+        try {
+            PcmFormat format;
+            long pcmBytes;
+            if (source == AudioFormat.WAV) {
+                WavHeader header = WavHeader.read(in);
+                format = header.getFormat();
+                if (format == null) {
+                    throw new IOException("WAV stream has no fmt chunk");
+                }
+                pcmBytes = header.getDataSize() == WavHeader.UNKNOWN_SIZE || header.getDataSize() == 0
+                        ? -1 : header.getDataSize();
+                in = header.data(in);
+            } else {
+                format = PcmFormat.mono16(sourceRate);
+                pcmBytes = response.getContentLength() > 0 ? response.getContentLength() : -1;
+            }
+            PcmConverter converter = converter(format, outputRate, loudnessTarget);
+            return encode(in, format, pcmBytes, converter, target);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new TtsException("Failed to transcode " + source + " to " + target + ": " + e.getMessage(), e);
+        }
+    }
+
+    private PcmConverter converter(PcmFormat format, Integer outputRate, Double loudnessTarget) {
+        if (loudnessTarget != null && loudness != null) {
+            LoudnessNormalizer.Settings settings = new LoudnessNormalizer.Settings(loudnessTarget,
+                    loudness.maxGainDb(), loudness.ceilingDbfs(), loudness.lookAheadMs(), loudness.releaseMs(),
+                    loudness.primeMs());
+            return new PcmConverter(format, outputRate != null ? outputRate : format.sampleRate(), settings);
+        }
+        return outputRate != null && PcmConverter.isNeeded(format, outputRate)
+                ? new PcmConverter(format, outputRate) : null;
+    }
+
+    private TtsResponse encode(InputStream pcm, PcmFormat format, long pcmBytes, PcmConverter converter,
+                               AudioFormat target) {
+        PcmFormat encoded = converter == null ? format : converter.getOutputFormat();
+        long encodedPcmBytes = converter == null ? pcmBytes : converter.outputLength(pcmBytes);
+        String tag = target.name().toLowerCase(Locale.ROOT);
+        CountingInputStream counted = new CountingInputStream(pcm);
+        AudioEncoder encoder = encoders.acquire(target);
+        long encodedLength;
+        InputStream stream;
+        try {
+            encodedLength = encoder.encodedLength(encoded, encodedPcmBytes);
+            stream = new TranscodingInputStream(counted, format, pcmBytes, converter, encoder, encoders);
+        } catch (RuntimeException e) {
+            encoders.release(encoder);
+            throw e;
+        }
+        CountingInputStream out = new CountingInputStream(stream);
+        Timer timer = meterRegistry.timer("tts.transcode.duration", "format", tag);
+        InputStream tracked = new CompletionTrackingInputStream(out, () -> {
+            // Time spent encoding: reads of the output minus the provider reads they waited on
+            timer.record(Math.max(0, out.nanos - counted.nanos), TimeUnit.NANOSECONDS);
+            meterRegistry.counter("tts.transcode.bytes.in", "format", tag).increment(counted.count);
+            meterRegistry.counter("tts.transcode.bytes.out", "format", tag).increment(out.count);
+        });
+        log.debug("Encoding {} PCM to {} {}", format, encoded, target);
+        return TtsResponse.builder()
+                .audioStream(tracked)
+                .format(target)
+                .sampleRate(encoded.sampleRate())
+                .contentLength(Math.max(encodedLength, 0))
+                .build();
+    }
+
+    // Bytes read and time spent blocked in reads
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+        long nanos;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.imaudiopaas.tts.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.stream.AudioPipe;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AudioStreamWriterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AudioStreamWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new AudioStreamWriter(new ObjectMapper(), meterRegistry);
+    }
+
+    /** Counts flushes, so we can check every chunk is pushed out at once. */
+    private static class FlushCountingStream extends ByteArrayOutputStream {
+        int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private static TtsResponse pipedResponse(AudioPipe pipe) {
+        return TtsResponse.builder().audioStream(pipe.getInputStream()).format(AudioFormat.MP3).build();
+    }
+
+    @Test
+    void flushesEveryProviderChunk() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        pipe.offer(ByteBuffer.wrap(new byte[] {1, 2}));
+        pipe.offer(ByteBuffer.wrap(new byte[] {3}));
+        pipe.complete();
+        FlushCountingStream out = new FlushCountingStream();
+
+        writer.audio(pipedResponse(pipe), System.nanoTime()).writeTo(out);
+
+        assertArrayEquals(new byte[] {1, 2, 3}, out.toByteArray());
+        assertEquals(1, out.flushes, "Chunks already queued are read and flushed together");
+        assertEquals(1, meterRegistry.timer("tts.stream.first_chunk", "mode", "audio").count());
+        assertEquals(3.0, meterRegistry.summary("tts.stream.chunk.bytes", "mode", "audio").totalAmount());
+    }
+
+    @Test
+    void rawStreamPropagatesMidStreamFailure() {
+        AudioPipe pipe = new AudioPipe(1024);
+        pipe.offer(ByteBuffer.wrap(new byte[] {1, 2}));
+        pipe.fail(new RuntimeException("reset"));
+
+        assertThrows(AudioPipe.UpstreamFailedException.class,
+                () -> writer.audio(pipedResponse(pipe), System.nanoTime()).writeTo(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void sseEndsWithErrorEventOnMidStreamFailure() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        pipe.offer(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        pipe.fail(new RuntimeException("reset"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        writer.sse(pipedResponse(pipe), System.nanoTime()).writeTo(out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertTrue(body.startsWith("data: {\"type\":\"speech.audio.delta\",\"audio\":\"AQID\"}\n\n"), body);
+        assertTrue(body.contains("\"type\":\"error\""), body);
+        assertTrue(!body.contains("speech.audio.done"), body);
+    }
+
+    @Test
+    void bodyClosesUpstreamWhenTheClientGoesAway() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        AtomicBoolean upstreamClosed = new AtomicBoolean();
+        pipe.onClose(() -> upstreamClosed.set(true));
+        pipe.offer(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        writer.body(pipedResponse(pipe), disconnected, System.nanoTime());
+
+        assertTrue(upstreamClosed.get());
+        assertEquals(1.0, meterRegistry.counter("tts.stream.responses", "mode", "body", "outcome", "client_abort").count());
+    }
+
+    @Test
+    void bodyRecordsThroughput() throws Exception {
+        byte[] audio = new byte[200_000];
+        TtsResponse response = TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(audio))
+                .format(AudioFormat.MP3)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        writer.body(response, out, System.nanoTime());
+
+        assertEquals(audio.length, out.size());
+        assertEquals(1.0, meterRegistry.counter("tts.stream.responses", "mode", "body", "outcome", "complete").count());
+        assertEquals(1, meterRegistry.summary("tts.stream.throughput", "mode", "body").count());
+    }
+}
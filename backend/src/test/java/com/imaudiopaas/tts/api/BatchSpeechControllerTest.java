@@ -0,0 +1,153 @@
+package com.imaudiopaas.tts.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.api.dto.BatchSpeechRequest;
+import com.imaudiopaas.tts.api.dto.OpenAiSpeechRequest;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import com.imaudiopaas.tts.service.batch.BatchSynthesisService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+class BatchSpeechControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Priority> priorities = new CopyOnWriteArrayList<>();
+    private BatchSpeechController controller;
+
+    @BeforeEach
+    void setUp() {
+        ProviderRoutingService routingService = mock(ProviderRoutingService.class);
+        when(routingService.primaryProvider(any())).thenReturn(ProviderType.ALIYUN);
+        when(routingService.routeAndSynthesize(any())).thenAnswer(invocation -> {
+            TtsRequest request = invocation.getArgument(0);
+            priorities.add(request.getPriority());
+            if (request.getText().contains("poison")) {
+                throw new TtsException("Provider refused the text");
+            }
+            byte[] audio = request.getText().getBytes(StandardCharsets.UTF_8);
+            return TtsResponse.builder()
+                    .audioStream(new ByteArrayInputStream(audio))
+                    .format(request.getFormat())
+                    .contentLength(audio.length)
+                    .build();
+        });
+        BatchSynthesisService batchService = new BatchSynthesisService(new SimpleAsyncTaskExecutor("test-batch-"),
+                routingService, new SimpleMeterRegistry(), 100, 4, 4);
+        controller = new BatchSpeechController(batchService,
+                Validation.buildDefaultValidatorFactory().getValidator(), objectMapper);
+    }
+
+    private static OpenAiSpeechRequest item(String input, String format) {
+        OpenAiSpeechRequest item = new OpenAiSpeechRequest();
+        item.setModel("tts-1");
+        item.setVoice("alloy");
+        item.setInput(input);
+        item.setResponseFormat(format);
+        return item;
+    }
+
+    private static BatchSpeechRequest batch(String output, OpenAiSpeechRequest... items) {
+        BatchSpeechRequest request = new BatchSpeechRequest();
+        request.setItems(new ArrayList<>(List.of(items)));
+        request.setOutput(output);
+        return request;
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void zipHoldsEachDistinctFileAndTheManifest() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.synthesize(batch(null,
+                item("Press one", "mp3"), item("Press two", "wav"), item("Press one", "mp3"),
+                item("A poison pill", "mp3"), item("", "mp3"), item("Press three", "opus")), null, null, null);
+
+        assertEquals("application/zip", response.getHeaders().getContentType().toString());
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body(response)))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) entries.put(entry.getName(), zip.readAllBytes());
+        }
+        assertEquals(3, entries.size(), entries.keySet().toString());
+        assertArrayEquals("Press one".getBytes(StandardCharsets.UTF_8), entries.get("0000.mp3"));
+        assertArrayEquals("Press two".getBytes(StandardCharsets.UTF_8), entries.get("0001.wav"));
+
+        JsonNode manifest = objectMapper.readTree(entries.get(BatchArchiveWriter.MANIFEST));
+        assertEquals(6, manifest.get("total").asInt());
+        assertEquals(3, manifest.get("distinct").asInt());
+        assertEquals(3, manifest.get("succeeded").asInt());
+        assertEquals(3, manifest.get("failed").asInt());
+        JsonNode items = manifest.get("items");
+        assertEquals("0000.mp3", items.get(2).get("file").asText());
+        assertEquals(0, items.get(2).get("duplicateOf").asInt());
+        assertEquals("audio/mpeg", items.get(0).get("contentType").asText());
+        assertEquals(500, items.get(3).get("errorStatus").asInt());
+        assertEquals("Provider refused the text", items.get(3).get("error").asText());
+        assertEquals(400, items.get(4).get("errorStatus").asInt());
+        assertTrue(items.get(4).get("error").asText().startsWith("Validation error"));
+        assertFalse(items.get(4).has("file"));
+        assertEquals(400, items.get(5).get("errorStatus").asInt());
+        assertTrue(items.get(5).get("error").asText().startsWith("Unsupported response_format"));
+        assertEquals(List.of(Priority.BULK), priorities.stream().distinct().toList());
+    }
+
+    @Test
+    void multipartHasAPartPerFileAndFailure() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.synthesize(batch(null,
+                item("Press one", "mp3"), item("A poison pill", "mp3"), item("Press one", "mp3")),
+                "multipart/mixed", null, null);
+
+        String contentType = response.getHeaders().getContentType().toString();
+        assertTrue(contentType.startsWith("multipart/mixed"), contentType);
+        String boundary = response.getHeaders().getContentType().getParameter("boundary");
+        String body = new String(body(response), StandardCharsets.UTF_8);
+
+        String[] parts = body.split("--" + boundary);
+        // Preamble, audio, error, manifest, epilogue
+        assertEquals(5, parts.length, body);
+        assertTrue(body.endsWith("--" + boundary + "--\r\n"));
+        assertTrue(body.contains("filename=\"0000.mp3\"\r\nX-Batch-Items: 0,2\r\nContent-Length: 9\r\n\r\nPress one\r\n"));
+        assertTrue(body.contains("X-Batch-Items: 1\r\n"));
+        assertTrue(parts[3].contains("filename=\"manifest.json\""));
+    }
+
+    @Test
+    void rejectsAnUnknownOutputBeforeStarting() {
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.synthesize(batch("tar", item("Press one", "mp3")), null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> controller.synthesize(batch(null), null, null, null));
+    }
+}
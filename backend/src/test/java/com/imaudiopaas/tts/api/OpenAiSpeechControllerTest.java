@@ -0,0 +1,209 @@
+package com.imaudiopaas.tts.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import com.imaudiopaas.tts.service.cache.CachedAudio;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class OpenAiSpeechControllerTest {
+
+    // Three seconds of 16 kHz PCM, every byte numbered
+    private static final byte[] AUDIO = new byte[16000 * 2 * 3];
+
+    static {
+        for (int i = 0; i < AUDIO.length; i++) AUDIO[i] = (byte) i;
+    }
+
+    private ProviderRoutingService routingService;
+    private OpenAiSpeechController controller;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        routingService = mock(ProviderRoutingService.class);
+        controller = new OpenAiSpeechController(routingService,
+                new AudioStreamWriter(new ObjectMapper(), new SimpleMeterRegistry()));
+        response = new MockHttpServletResponse();
+    }
+
+    private CachedAudio cached() {
+        CachedAudio audio = new CachedAudio("key", ProviderType.ALIYUN, "xiaoyun", AudioFormat.PCM, AUDIO, 16000);
+        when(routingService.routeAndSynthesize(any())).thenAnswer(invocation -> audio.toResponse());
+        return audio;
+    }
+
+    private void get(String range, String ifRange, String ifNoneMatch, Double t) throws Exception {
+        controller.getSpeech("Hello", "alloy", "tts-1", "pcm", null, null, t, range, ifRange, ifNoneMatch, null,
+                new MockHttpServletRequest(), response);
+    }
+
+    @Test
+    void cachedAudioCarriesItsContentHash() throws Exception {
+        CachedAudio audio = cached();
+
+        get(null, null, null, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(audio.getIndex().getEtag(), response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("3.000", response.getHeader("X-Content-Duration"));
+        assertEquals(AUDIO.length, response.getContentLengthLong());
+        assertArrayEquals(AUDIO, response.getContentAsByteArray());
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        CachedAudio audio = cached();
+
+        get(null, null, "\"other\", W/" + audio.getIndex().getEtag(), null);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void rangesArePartialContent() throws Exception {
+        cached();
+
+        get("bytes=100-199", null, null, null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/" + AUDIO.length, response.getHeader("Content-Range"));
+        assertEquals(100, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(AUDIO, 100, 200), response.getContentAsByteArray());
+
+        response = new MockHttpServletResponse();
+        get("bytes=-10", null, null, null);
+        assertEquals("bytes " + (AUDIO.length - 10) + "-" + (AUDIO.length - 1) + "/" + AUDIO.length,
+                response.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(AUDIO, AUDIO.length - 10, AUDIO.length), response.getContentAsByteArray());
+    }
+
+    @Test
+    void rangePastTheEndIsNotSatisfiable() throws Exception {
+        cached();
+
+        get("bytes=" + AUDIO.length + "-", null, null, null);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + AUDIO.length, response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void staleIfRangeGetsTheWholeBody() throws Exception {
+        cached();
+
+        get("bytes=100-199", "\"stale\"", null, null);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(AUDIO, response.getContentAsByteArray());
+    }
+
+    @Test
+    void seekStartsAtTheIndexedFrame() throws Exception {
+        CachedAudio audio = cached();
+
+        get("bytes=0-9", null, null, 2.5);
+
+        // 2 s of 16-bit 16 kHz is 64000 bytes in
+        String etag = response.getHeader("ETag");
+        assertEquals(206, response.getStatus());
+        assertEquals(audio.getIndex().getEtag().replace("\"", "") + "-64000", etag.replace("\"", ""));
+        assertEquals("bytes 0-9/" + (AUDIO.length - 64000), response.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(AUDIO, 64000, 64010), response.getContentAsByteArray());
+    }
+
+    @Test
+    void freshAudioIsSentWholeWithoutValidator() throws Exception {
+        when(routingService.routeAndSynthesize(any())).thenReturn(TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(AUDIO)).format(AudioFormat.PCM).contentLength(AUDIO.length).build());
+
+        get("bytes=100-199", null, null, null);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("ETag"));
+        assertEquals("none", response.getHeader("Accept-Ranges"));
+        assertArrayEquals(AUDIO, response.getContentAsByteArray());
+    }
+
+    @Test
+    void malformedRangesAreIgnored() {
+        assertNull(OpenAiSpeechController.ByteRange.parse("bytes=0-1,5-9", 100));
+        assertNull(OpenAiSpeechController.ByteRange.parse("bytes=9-1", 100));
+        assertNull(OpenAiSpeechController.ByteRange.parse("items=0-1", 100));
+        assertEquals(new OpenAiSpeechController.ByteRange(50, 99), OpenAiSpeechController.ByteRange.parse("bytes=50-500", 100));
+        assertThrows(IllegalArgumentException.class, () -> controller.getSpeech(" ", "alloy", "tts-1", "mp3", null, null,
+                null, null, null, null, null, new MockHttpServletRequest(), response));
+    }
+
+    @Test
+    void formatsThatCantBeEncodedAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> controller.getSpeech("hello", "alloy", "tts-1", "opus",
+                null, null, null, null, null, null, null, new MockHttpServletRequest(), response));
+        assertThrows(IllegalArgumentException.class, () -> OpenAiSpeechController.mapFormat("AAC"));
+        assertEquals(AudioFormat.FLAC, OpenAiSpeechController.mapFormat("flac"));
+        verify(routingService, times(0)).routeAndSynthesize(any());
+    }
+
+    @Test
+    void priorityIsInteractiveUnlessTheHeaderSaysOtherwise() throws Exception {
+        cached();
+        MockHttpServletRequest bulk = new MockHttpServletRequest();
+        bulk.addHeader(Priority.HEADER, "Bulk");
+
+        get(null, null, null, null);
+        controller.getSpeech("Hello", "alloy", "tts-1", "pcm", null, null, null, null, null, null, null,
+                bulk, new MockHttpServletResponse());
+
+        ArgumentCaptor<TtsRequest> requests = ArgumentCaptor.forClass(TtsRequest.class);
+        verify(routingService, times(2)).routeAndSynthesize(requests.capture());
+        assertEquals(Priority.INTERACTIVE, requests.getAllValues().get(0).getPriority());
+        assertEquals(Priority.BULK, requests.getAllValues().get(1).getPriority());
+
+        MockHttpServletRequest unknown = new MockHttpServletRequest();
+        unknown.addHeader(Priority.HEADER, "urgent");
+        assertThrows(IllegalArgumentException.class, () -> controller.getSpeech("Hello", "alloy", "tts-1", "pcm",
+                null, null, null, null, null, null, null, unknown, new MockHttpServletResponse()));
+    }
+
+    @Test
+    void noCacheIsOnlyHonoredForAuthenticatedCallers() throws Exception {
+        cached();
+        MockHttpServletRequest signedIn = new MockHttpServletRequest();
+        signedIn.setUserPrincipal(() -> "admin");
+
+        controller.getSpeech("Hello", "alloy", "tts-1", "pcm", null, null, null, null, null, null, "no-cache",
+                new MockHttpServletRequest(), new MockHttpServletResponse());
+        controller.getSpeech("Hello", "alloy", "tts-1", "pcm", null, null, null, null, null, null, "no-cache",
+                signedIn, new MockHttpServletResponse());
+
+        ArgumentCaptor<TtsRequest> requests = ArgumentCaptor.forClass(TtsRequest.class);
+        verify(routingService, times(2)).routeAndSynthesize(requests.capture());
+        assertFalse(requests.getAllValues().get(0).isCacheBypass());
+        assertTrue(requests.getAllValues().get(1).isCacheBypass());
+    }
+}
@@ -2,8 +2,10 @@ package com.imaudiopaas.tts.api;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -14,6 +16,7 @@ import com.imaudiopaas.tts.core.domain.AudioFormat;
 import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.service.ProviderRoutingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.ByteArrayInputStream;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,9 +25,10 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(OpenAiSpeechController.class)
-@Import({SecurityConfig.class, ApiTokenFilter.class})
+@Import({SecurityConfig.class, ApiTokenFilter.class, AudioStreamWriter.class, SimpleMeterRegistry.class})
 public class SpeechApiIntegrationTest {
 
     @Autowired
@@ -74,4 +78,59 @@ public class SpeechApiIntegrationTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
     }
+
+    private OpenAiSpeechRequest streamingRequest(Boolean stream, String streamFormat) {
+        OpenAiSpeechRequest requestDto = new OpenAiSpeechRequest();
+        requestDto.setInput("Hello world");
+        requestDto.setVoice("aliyun-xiaoyun");
+        requestDto.setModel("tts-1");
+        requestDto.setStream(stream);
+        requestDto.setStreamFormat(streamFormat);
+        when(routingService.routeAndSynthesize(any(TtsRequest.class))).thenReturn(TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(new byte[] {1, 2, 3}))
+                .format(AudioFormat.MP3)
+                .build());
+        return requestDto;
+    }
+
+    @Test
+    void whenStreamRequested_thenReturnsChunkedAudio() throws Exception {
+        MvcResult result = mockMvc.perform(post("/v1/audio/speech")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Authorization", "Bearer test-token")
+                        .content(objectMapper.writeValueAsString(streamingRequest(true, null))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.parseMediaType("audio/mpeg")))
+                .andExpect(content().bytes(new byte[] {1, 2, 3}));
+    }
+
+    @Test
+    void whenSseRequested_thenReturnsBase64AudioDeltas() throws Exception {
+        MvcResult result = mockMvc.perform(post("/v1/audio/speech")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Authorization", "Bearer test-token")
+                        .content(objectMapper.writeValueAsString(streamingRequest(null, "sse"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(
+                        "data: {\"type\":\"speech.audio.delta\",\"audio\":\"AQID\"}\n\n"
+                                + "data: {\"type\":\"speech.audio.done\"}\n\n"));
+    }
+
+    @Test
+    void whenUnknownStreamFormat_thenReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/v1/audio/speech")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Authorization", "Bearer test-token")
+                        .content(objectMapper.writeValueAsString(streamingRequest(null, "websocket"))))
+                .andExpect(status().isBadRequest());
+    }
 }
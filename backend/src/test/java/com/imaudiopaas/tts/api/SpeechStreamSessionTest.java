@@ -0,0 +1,148 @@
+package com.imaudiopaas.tts.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+class SpeechStreamSessionTest {
+
+    private static final TtsRequest TEMPLATE = TtsRequest.builder().text("").voiceId("alloy").build();
+
+    private final ByteArrayOutputStream audio = new ByteArrayOutputStream();
+    private final List<Map<String, Object>> events = new CopyOnWriteArrayList<>();
+    private SpeechStreamSession session;
+
+    private final SpeechStreamSession.Sink sink = new SpeechStreamSession.Sink() {
+        @Override
+        public void audio(byte[] data, int length) {
+            synchronized (audio) {
+                audio.write(data, 0, length);
+            }
+        }
+
+        @Override
+        public void event(Map<String, Object> event) {
+            events.add(event);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        if (session != null) session.close();
+    }
+
+    private SpeechStreamSession open(Function<TtsRequest, TtsResponse> synthesizer, int lookahead) {
+        session = new SpeechStreamSession(synthesizer, new SimpleAsyncTaskExecutor("test-ws-"), sink, lookahead, 1000, 200);
+        return session;
+    }
+
+    private static TtsResponse audioOf(String text) {
+        return TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(("[" + text + "]").getBytes(StandardCharsets.UTF_8)))
+                .format(AudioFormat.MP3)
+                .build();
+    }
+
+    private long count(String type) {
+        return events.stream().filter(e -> type.equals(e.get("type"))).count();
+    }
+
+    private void awaitEvents(String type, int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count(type) < n && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(n, count(type), "events: " + events);
+    }
+
+    @Test
+    void sendsAudioInSentenceOrderEvenWhenLaterSentencesFinishFirst() throws Exception {
+        CountDownLatch secondDone = new CountDownLatch(1);
+        open(request -> {
+            if (request.getText().startsWith("First")) {
+                try {
+                    // The second sentence is synthesized while the first is still running
+                    assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            } else {
+                secondDone.countDown();
+            }
+            return audioOf(request.getText());
+        }, 2);
+        session.configure(TEMPLATE);
+
+        session.appendText("First one. Sec");
+        session.appendText("ond one. Tail");
+        session.flush();
+
+        awaitEvents("segment.done", 3);
+        assertEquals("[First one.][Second one.][Tail]", audio.toString(StandardCharsets.UTF_8));
+        assertEquals("First one.", events.get(0).get("text"));
+    }
+
+    @Test
+    void cancelDropsPendingSegments() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        open(request -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return audioOf(request.getText());
+        }, 1);
+        session.configure(TEMPLATE);
+        session.appendText("Dropped one. Dropped two. ");
+
+        session.cancel();
+        release.countDown();
+        session.appendText("Kept. ");
+
+        awaitEvents("segment.done", 1);
+        assertEquals("[Kept.]", audio.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void reportsFailedSegmentsAndCarriesOn() throws Exception {
+        open(request -> {
+            if (request.getText().startsWith("Bad")) throw new TtsException("All providers failed");
+            return audioOf(request.getText());
+        }, 2);
+        session.configure(TEMPLATE);
+
+        session.appendText("Bad one. Good one. ");
+
+        awaitEvents("segment.done", 1);
+        assertEquals(1, count("error"));
+        assertEquals("[Good one.]", audio.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void refusesTextBeforeConfigurationAndBeyondTheBufferLimit() {
+        open(request -> audioOf(request.getText()), 1);
+
+        assertThrows(IllegalStateException.class, () -> session.appendText("Hello. "));
+
+        session.configure(TEMPLATE);
+        assertThrows(IllegalStateException.class, () -> session.appendText("x".repeat(1001)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.imaudiopaas.tts.core.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class AudioIndexTest {
+
+    // MPEG-2 Layer III, 48 kbit/s, 24 kHz, mono: 144 byte frames of 24 ms
+    private static final int FRAME_LENGTH = 144;
+
+    private static byte[] mp3(int frames, byte[] prefix) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(prefix);
+        for (int i = 0; i < frames; i++) {
+            byte[] frame = new byte[FRAME_LENGTH];
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xF3;
+            frame[2] = 0x64;
+            frame[3] = (byte) 0xC0;
+            frame[FRAME_LENGTH - 1] = (byte) i;
+            out.writeBytes(frame);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void mp3MarksTheFirstFrameOfEverySecond() {
+        byte[] id3 = {'I', 'D', '3', 4, 0, 0, 0, 0, 0, 2, 7, 7};
+        // 100 frames of 24 ms: 2.4 s
+        AudioIndex index = AudioIndex.build(AudioFormat.MP3, 0, mp3(100, id3));
+
+        assertEquals(2400, index.getDurationMs());
+        assertTrue(index.isSeekable());
+        assertEquals(id3.length, index.offsetAt(0));
+        assertEquals(id3.length, index.offsetAt(999));
+        // Frame 42 starts at 1008 ms
+        assertEquals(id3.length + 42 * FRAME_LENGTH, index.offsetAt(1000));
+        assertEquals(id3.length + 84 * FRAME_LENGTH, index.offsetAt(2000));
+        assertEquals(id3.length + 84 * FRAME_LENGTH, index.offsetAt(60_000), "Past the end: the last mark");
+    }
+
+    @Test
+    void wavOffsetsFollowTheByteRateBehindTheHeader() {
+        PcmFormat format = PcmFormat.mono16(16000);
+        int samples = 16000 * 5 / 2; // 2.5 s
+        ByteBuffer wav = ByteBuffer.allocate(WavHeader.CANONICAL_SIZE + samples * 2);
+        wav.put(WavHeader.write(format, samples * 2L));
+
+        AudioIndex index = AudioIndex.build(AudioFormat.WAV, 0, wav.array());
+
+        assertEquals(2500, index.getDurationMs());
+        assertEquals(WavHeader.CANONICAL_SIZE, index.offsetAt(0));
+        assertEquals(WavHeader.CANONICAL_SIZE + 2 * 32000, index.offsetAt(2100));
+    }
+
+    @Test
+    void pcmNeedsItsSampleRate() {
+        byte[] pcm = new byte[24000 * 2 * 3];
+
+        AudioIndex index = AudioIndex.build(AudioFormat.PCM, 24000, pcm);
+        assertEquals(3000, index.getDurationMs());
+        assertEquals(48000, index.offsetAt(1500));
+
+        AudioIndex unknown = AudioIndex.build(AudioFormat.PCM, 0, pcm);
+        assertFalse(unknown.isSeekable());
+        assertEquals(0, unknown.getDurationMs());
+        assertEquals(index.getEtag(), unknown.getEtag());
+    }
+
+    @Test
+    void unparseableAudioOnlyGetsTheHash() {
+        AudioIndex index = AudioIndex.build(AudioFormat.WAV, 0, new byte[] {1, 2, 3});
+
+        assertFalse(index.isSeekable());
+        assertEquals(0, index.offsetAt(5000));
+        assertTrue(index.getEtag().matches("\"[0-9a-f]{32}\""));
+    }
+
+    @Test
+    void etagFollowsTheContent() {
+        AudioIndex a = AudioIndex.build(AudioFormat.MP3, 0, mp3(10, new byte[0]));
+        AudioIndex b = AudioIndex.build(AudioFormat.MP3, 0, mp3(10, new byte[0]));
+        AudioIndex c = AudioIndex.build(AudioFormat.MP3, 0, mp3(11, new byte[0]));
+
+        assertEquals(a.getEtag(), b.getEtag());
+        assertNotEquals(a.getEtag(), c.getEtag());
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        AudioIndex index = AudioIndex.build(AudioFormat.MP3, 0, mp3(200, new byte[0]));
+
+        byte[] bytes = index.toBytes();
+        AudioIndex read = AudioIndex.fromBytes(ByteBuffer.wrap(bytes));
+
+        // 4.8 s: five marks
+        assertEquals(1 + 16 + 8 + 4 + 5 * 4, bytes.length);
+        assertEquals(index.getEtag(), read.getEtag());
+        assertEquals(index.getDurationMs(), read.getDurationMs());
+        for (long ms = 0; ms < 5000; ms += 500) {
+            assertEquals(index.offsetAt(ms), read.offsetAt(ms));
+        }
+        bytes[0] = 9;
+        assertNull(AudioIndex.fromBytes(ByteBuffer.wrap(bytes)));
+    }
+}
@@ -0,0 +1,127 @@
+package com.imaudiopaas.tts.core.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.jflac.FLACDecoder;
+import org.jflac.PCMProcessor;
+import org.jflac.metadata.StreamInfo;
+import org.jflac.util.ByteData;
+import org.junit.jupiter.api.Test;
+
+class FlacEncoderTest {
+
+    private static byte[] pcm(short[] samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short s : samples) buffer.putShort(s);
+        return buffer.array();
+    }
+
+    private static short[] speechLike(int n, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[n];
+        for (int i = 0; i < n; i++) {
+            double t = i / 16000.0;
+            double v = 6000 * Math.sin(2 * Math.PI * 180 * t) + 2500 * Math.sin(2 * Math.PI * 720 * t)
+                    + random.nextGaussian() * 200;
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+        }
+        return samples;
+    }
+
+    private static byte[] encode(PcmFormat format, byte[] pcm, int chunk) {
+        FlacEncoder encoder = new FlacEncoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.begin(format, pcm.length, out);
+        for (int i = 0; i < pcm.length; i += chunk) {
+            encoder.encode(pcm, i, Math.min(chunk, pcm.length - i), out);
+        }
+        encoder.finish(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(byte[] flac, StreamInfo[] info) throws Exception {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        FLACDecoder decoder = new FLACDecoder(new ByteArrayInputStream(flac));
+        decoder.addPCMProcessor(new PCMProcessor() {
+            @Override
+            public void processStreamInfo(StreamInfo streamInfo) {
+                info[0] = streamInfo;
+            }
+
+            @Override
+            public void processPCM(ByteData data) {
+                pcm.write(data.getData(), 0, data.getLen());
+            }
+        });
+        decoder.decode();
+        return pcm.toByteArray();
+    }
+
+    @Test
+    void roundTripsSpeechLikeAudioAcrossOddChunks() throws Exception {
+        // Not a multiple of the block size, chunks split samples in half
+        byte[] pcm = pcm(speechLike(3 * FlacEncoder.BLOCK_SIZE + 1234, 42));
+        byte[] flac = encode(PcmFormat.mono16(16000), pcm, 1001);
+
+        StreamInfo[] info = new StreamInfo[1];
+        assertArrayEquals(pcm, decode(flac, info));
+        assertEquals(16000, info[0].getSampleRate());
+        assertEquals(1, info[0].getChannels());
+        assertTrue(flac.length < pcm.length * 0.8, "expected compression, got " + flac.length + " of " + pcm.length);
+    }
+
+    @Test
+    void silenceBecomesConstantSubframes() throws Exception {
+        byte[] pcm = new byte[2 * FlacEncoder.BLOCK_SIZE * 4];
+        byte[] flac = encode(PcmFormat.mono16(24000), pcm, 4096);
+
+        assertArrayEquals(pcm, decode(flac, new StreamInfo[1]));
+        assertTrue(flac.length < 200, "silence took " + flac.length + " bytes");
+    }
+
+    @Test
+    void noiseFallsBackToVerbatimAndStereoRoundTrips() throws Exception {
+        Random random = new Random(7);
+        short[] samples = new short[2 * 5000];
+        for (int i = 0; i < samples.length; i++) samples[i] = (short) random.nextInt();
+        byte[] pcm = pcm(samples);
+        byte[] flac = encode(new PcmFormat(22050, 2, 16), pcm, 777);
+
+        StreamInfo[] info = new StreamInfo[1];
+        assertArrayEquals(pcm, decode(flac, info));
+        assertEquals(2, info[0].getChannels());
+        assertEquals(22050, info[0].getSampleRate());
+        // Verbatim caps the overhead at the frame headers
+        assertTrue(flac.length < pcm.length + 200);
+    }
+
+    @Test
+    void encoderIsReusableAfterAnAbandonedStream() throws Exception {
+        FlacEncoder encoder = new FlacEncoder();
+        ByteArrayOutputStream discarded = new ByteArrayOutputStream();
+        encoder.begin(PcmFormat.mono16(16000), -1, discarded);
+        encoder.encode(new byte[] {1, 2, 3}, 0, 3, discarded);
+
+        byte[] pcm = pcm(speechLike(5000, 1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.begin(PcmFormat.mono16(16000), -1, out);
+        encoder.encode(pcm, 0, pcm.length, out);
+        encoder.finish(out);
+
+        assertArrayEquals(pcm, decode(out.toByteArray(), new StreamInfo[1]));
+    }
+
+    @Test
+    void rejectsUnsupportedLayouts() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new FlacEncoder().begin(new PcmFormat(16000, 1, 24), -1, new ByteArrayOutputStream()));
+    }
+}
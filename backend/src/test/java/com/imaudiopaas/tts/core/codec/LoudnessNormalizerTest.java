@@ -0,0 +1,120 @@
+package com.imaudiopaas.tts.core.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LoudnessNormalizerTest {
+
+    private static final int RATE = 24000;
+    private static final LoudnessNormalizer.Settings SETTINGS =
+            new LoudnessNormalizer.Settings(-16, 20, -1, 5, 50, 400);
+
+    // Voiced stretches with pauses, two harmonics and some breath noise, scaled to `level`
+    private static float[] speechLike(int seconds, double level) {
+        Random random = new Random(11);
+        float[] x = new float[seconds * RATE];
+        for (int i = 0; i < x.length; i++) {
+            double t = (double) i / RATE;
+            double envelope = (t % 0.75) < 0.5 ? 1 : 0;
+            x[i] = (float) (level * envelope * (0.6 * Math.sin(2 * Math.PI * 150 * t)
+                    + 0.3 * Math.sin(2 * Math.PI * 900 * t) + 0.02 * random.nextGaussian()));
+        }
+        return x;
+    }
+
+    private static float[] normalize(float[] in, int maxBlock) {
+        LoudnessNormalizer normalizer = new LoudnessNormalizer(RATE, SETTINGS);
+        float[] out = new float[in.length + normalizer.maxOutput(maxBlock)];
+        int written = 0;
+        for (int i = 0, n; i < in.length; i += n) {
+            n = (int) Math.min(1 + (i * 7919L) % maxBlock, in.length - i);
+            written += normalizer.process(in, i, n, out, written);
+        }
+        written += normalizer.finish(out, written);
+        return Arrays.copyOf(out, written);
+    }
+
+    private static double integrated(float[] samples) {
+        LoudnessMeter meter = new LoudnessMeter(RATE);
+        meter.add(samples, 0, samples.length);
+        return meter.integrated();
+    }
+
+    @Test
+    void metersTheReferenceToneAtMinus23Lufs() {
+        // BS.1770: a 997 Hz sine at -20 dBFS reads -23.0 LUFS (the K-weighting gain is ~0 dB there)
+        float[] tone = new float[10 * RATE];
+        for (int i = 0; i < tone.length; i++) {
+            tone[i] = (float) (0.1 * 32768 * Math.sin(2 * Math.PI * 997 * i / RATE));
+        }
+        assertEquals(-23.0, integrated(tone), 0.1);
+    }
+
+    @Test
+    void bringsQuietAndLoudSpeechToTheTarget() {
+        for (double level : new double[] {2000, 6000, 20000}) {
+            float[] in = speechLike(20, level);
+            float[] out = normalize(in, 1024);
+
+            assertEquals(in.length, out.length);
+            // The first seconds are spent converging; judge the rest
+            float[] settled = Arrays.copyOfRange(out, 5 * RATE, out.length);
+            double loudness = integrated(settled);
+            assertEquals(-16, loudness, 1.0, "input at " + integrated(in) + " LUFS came out at " + loudness);
+        }
+    }
+
+    @Test
+    void keepsBoostedPeaksUnderTheCeiling() {
+        // Quiet speech with sharp clicks, which need far more headroom than the speech does
+        float[] in = speechLike(10, 3000);
+        for (int i = RATE; i < in.length; i += RATE) {
+            in[i] = 30000;
+            in[i + 1] = -30000;
+        }
+        float[] out = normalize(in, 1024);
+
+        double ceiling = 32768 * Math.pow(10, -1 / 20.0);
+        for (float v : out) {
+            assertTrue(Math.abs(v) <= ceiling + 1e-3, "peak " + v);
+        }
+        // The limiter ducks around the clicks only: the speech itself is still boosted
+        assertEquals(-16, integrated(Arrays.copyOfRange(out, 5 * RATE, out.length)), 1.5);
+    }
+
+    @Test
+    void blockSizesDoNotChangeTheOutput() {
+        float[] in = speechLike(3, 3000);
+        assertArrayEquals(normalize(in, 4096), normalize(in, 97));
+    }
+
+    @Test
+    void clipsShorterThanThePrimingWindowKeepTheirLength() {
+        float[] in = Arrays.copyOf(speechLike(1, 3000), RATE / 10);
+        float[] out = normalize(in, 1024);
+
+        assertEquals(in.length, out.length);
+        // Too short for a gated block, so the ungated reading sets the gain: still a boost
+        assertTrue(energy(out) > 4 * energy(in), "gain " + Math.sqrt(energy(out) / energy(in)));
+    }
+
+    private static double energy(float[] samples) {
+        double sum = 0;
+        for (float v : samples) sum += (double) v * v;
+        return sum;
+    }
+
+    @Test
+    void leavesSilenceSilent() {
+        float[] out = normalize(new float[2 * RATE], 1024);
+        assertEquals(2 * RATE, out.length);
+        for (float v : out) {
+            assertEquals(0f, v);
+        }
+    }
+}
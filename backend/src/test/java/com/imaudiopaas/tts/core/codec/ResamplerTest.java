@@ -0,0 +1,119 @@
+package com.imaudiopaas.tts.core.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class ResamplerTest {
+
+    private static float[] tone(double frequency, int rate, int n, double amplitude) {
+        float[] x = new float[n];
+        for (int i = 0; i < n; i++) x[i] = (float) (amplitude * Math.sin(2 * Math.PI * frequency * i / rate));
+        return x;
+    }
+
+    // Feeds the input in uneven blocks, the way chunks arrive from a provider
+    private static float[] resample(Resampler resampler, float[] in, int maxBlock) {
+        float[] out = new float[(int) resampler.outputLength(in.length) + resampler.maxOutput()];
+        int written = 0;
+        for (int i = 0, n; i < in.length; i += n) {
+            n = Math.min(1 + (i * 7919) % maxBlock, in.length - i);
+            written += resampler.process(in, i, n, out, written);
+        }
+        written += resampler.finish(out, written);
+        return Arrays.copyOf(out, written);
+    }
+
+    private static double snrDb(float[] actual, double frequency, int rate, double amplitude, int from, int to) {
+        double signal = 0;
+        double noise = 0;
+        for (int i = from; i < to; i++) {
+            double expected = amplitude * Math.sin(2 * Math.PI * frequency * i / rate);
+            signal += expected * expected;
+            noise += (actual[i] - expected) * (actual[i] - expected);
+        }
+        return 10 * Math.log10(signal / noise);
+    }
+
+    @Test
+    void upsamplesCleanlyAndAligned() {
+        for (int[] rates : new int[][] {{16000, 24000}, {22050, 24000}, {16000, 48000}, {8000, 22050}}) {
+            float[] in = tone(1000, rates[0], rates[0], 10000);
+            float[] out = resample(new Resampler(rates[0], rates[1], 1024), in, 1024);
+
+            assertEquals(rates[1], out.length, rates[0] + " -> " + rates[1]);
+            double snr = snrDb(out, 1000, rates[1], 10000, 200, out.length - 200);
+            assertTrue(snr > 60, rates[0] + " -> " + rates[1] + " SNR " + snr + " dB");
+        }
+    }
+
+    @Test
+    void downsamplingRemovesWhatTheNewRateCantCarry() {
+        int n = 48000;
+        float[] in = tone(1000, 48000, n, 8000);
+        float[] alias = tone(10000, 48000, n, 8000); // above the new 8 kHz Nyquist
+        for (int i = 0; i < n; i++) in[i] += alias[i];
+        float[] out = resample(new Resampler(48000, 16000, 512), in, 512);
+
+        assertEquals(16000, out.length);
+        double snr = snrDb(out, 1000, 16000, 8000, 200, out.length - 200);
+        assertTrue(snr > 50, "SNR " + snr + " dB");
+    }
+
+    @Test
+    void rejectsExtremeRatios() {
+        assertThrows(IllegalArgumentException.class, () -> new Resampler(96000, 8000, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new Resampler(0, 8000, 1024));
+    }
+
+    @Test
+    void convertsStereoHeaderLessPcmWithSplitFrames() {
+        PcmConverter converter = new PcmConverter(new PcmFormat(16000, 2, 16), 16000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Frames (100, 300) and (-50, -150), split mid-sample across calls
+        byte[] pcm = {100, 0, 44, 1, (byte) 0xCE, (byte) 0xFF, 0x6A, (byte) 0xFF};
+        converter.convert(pcm, 0, 3, out);
+        converter.convert(pcm, 3, 5, out);
+        converter.finish(out);
+
+        assertEquals(4, converter.outputLength(8));
+        byte[] mono = out.toByteArray();
+        assertEquals(4, mono.length);
+        assertEquals(200, (short) ((mono[0] & 0xFF) | (mono[1] << 8)));
+        assertEquals(-100, (short) ((mono[2] & 0xFF) | (mono[3] << 8)));
+    }
+
+    /**
+     * Throughput on one core for the ratios providers produce. The assertion only guards against
+     * a pathological regression.
+     */
+    @Test
+    @Tag("benchmark")
+    void resamplesFarFasterThanRealTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int seconds = 30;
+        for (int[] rates : new int[][] {{16000, 24000}, {22050, 24000}, {44100, 24000}, {48000, 16000}}) {
+            float[] in = tone(440, rates[0], rates[0] * seconds, 8000);
+            float[] out = new float[new Resampler(rates[0], rates[1], 1024).maxOutput()];
+            long best = Long.MAX_VALUE;
+            for (int pass = 0; pass < 5; pass++) {
+                Resampler resampler = new Resampler(rates[0], rates[1], 1024);
+                long before = threads.getCurrentThreadCpuTime();
+                for (int i = 0; i < in.length; i += 1024) {
+                    resampler.process(in, i, Math.min(1024, in.length - i), out, 0);
+                }
+                resampler.finish(out, 0);
+                best = Math.min(best, threads.getCurrentThreadCpuTime() - before);
+            }
+            double realTime = (double) seconds * 1e9 / Math.max(best, 1);
+            assertTrue(realTime > 50, rates[0] + " -> " + rates[1] + " only " + realTime + "x real time");
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.imaudiopaas.tts.core.stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.codec.Mp3Frame;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class AudioJoinerTest {
+
+    // MPEG-2 Layer III, 48 kbit/s, 24 kHz, mono: 144 byte frames of 24 ms
+    private static final int FRAME_LENGTH = 144;
+    private static final byte[] ID3 = {'I', 'D', '3', 4, 0, 0, 0, 0, 0, 2, 7, 7};
+
+    private static byte[] wav(byte[] samples) {
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes()).putInt(36 + samples.length).put("WAVE".getBytes());
+        header.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(16000).putInt(32000).putShort((short) 2).putShort((short) 16);
+        header.put("data".getBytes()).putInt(samples.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(header.array());
+        out.writeBytes(samples);
+        // A trailing chunk after the samples must not leak into the joined audio
+        out.writeBytes(new byte[] {'L', 'I', 'S', 'T', 2, 0, 0, 0, 9, 9});
+        return out.toByteArray();
+    }
+
+    /**
+     * A frame whose side information says silent (no Huffman data) or audible; the last main
+     * data byte carries {@code id} so frames can be told apart after joining.
+     */
+    private static byte[] frame(boolean silent, int id) {
+        byte[] frame = new byte[FRAME_LENGTH];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xF3;
+        frame[2] = 0x64;
+        frame[3] = (byte) 0xC0;
+        if (!silent) {
+            // part2_3_length 1000, big_values 100, global_gain 200, after main_data_begin and a private bit
+            setBits(frame, 4 * 8 + 9, 12, 1000);
+            setBits(frame, 4 * 8 + 21, 9, 100);
+            setBits(frame, 4 * 8 + 30, 8, 200);
+        }
+        frame[FRAME_LENGTH - 1] = (byte) id;
+        return frame;
+    }
+
+    private static byte[] infoFrame() {
+        byte[] frame = frame(true, 0);
+        System.arraycopy("Xing".getBytes(), 0, frame, 4 + 9, 4);
+        return frame;
+    }
+
+    private static void setBits(byte[] b, int bit, int count, int value) {
+        for (int i = 0; i < count; i++, bit++) {
+            if (((value >> (count - 1 - i)) & 1) != 0) {
+                b[bit >> 3] |= (byte) (1 << (7 - (bit & 7)));
+            }
+        }
+    }
+
+    // Silent frames, then audible ones numbered from `id`, then silent frames
+    private static byte[] mp3(int leading, int audible, int trailing, int id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < leading; i++) out.writeBytes(frame(true, 0));
+        for (int i = 0; i < audible; i++) out.writeBytes(frame(false, id + i));
+        for (int i = 0; i < trailing; i++) out.writeBytes(frame(true, 0));
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.writeBytes(part);
+        return out.toByteArray();
+    }
+
+    private static int countFrames(byte[] mp3, boolean silent) {
+        assertEquals(0, mp3.length % FRAME_LENGTH, "whole frames only");
+        int count = 0;
+        for (int at = 0; at < mp3.length; at += FRAME_LENGTH) {
+            Mp3Frame frame = Mp3Frame.parse(mp3, at);
+            assertEquals(FRAME_LENGTH, frame.length());
+            if (frame.isSilent(mp3, at) == silent) count++;
+        }
+        return count;
+    }
+
+    private static byte[] pcm(int silentMs, int toneMs, int trailingMs) {
+        int rate = 16000;
+        ByteBuffer pcm = ByteBuffer.allocate((silentMs + toneMs + trailingMs) * rate / 1000 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < silentMs * rate / 1000; i++) pcm.putShort((short) (i % 3 - 1)); // noise floor
+        for (int i = 0; i < toneMs * rate / 1000; i++) pcm.putShort((short) (6000 * Math.sin(2 * Math.PI * 300 * i / rate)));
+        while (pcm.hasRemaining()) pcm.putShort((short) 0);
+        return pcm.array();
+    }
+
+    @Test
+    void wavKeepsOneHeaderWithUnknownSizes() throws Exception {
+        byte[] first = AudioJoiner.first(AudioFormat.WAV, new ByteArrayInputStream(wav(new byte[] {1, 2}))).readAllBytes();
+        byte[] next = AudioJoiner.next(AudioFormat.WAV, new ByteArrayInputStream(wav(new byte[] {3, 4}))).readAllBytes();
+
+        assertEquals(46, first.length);
+        ByteBuffer header = ByteBuffer.wrap(first).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(-1, header.getInt(4));
+        assertEquals(-1, header.getInt(40));
+        assertArrayEquals(new byte[] {3, 4}, next);
+    }
+
+    @Test
+    void mp3DropsTagsAndTheInfoFrameOfEveryPiece() throws Exception {
+        byte[] audio = mp3(0, 3, 0, 1);
+        byte[] id3v1 = new byte[128];
+        System.arraycopy("TAG".getBytes(), 0, id3v1, 0, 3);
+        byte[] tagged = concat(ID3, infoFrame(), audio, id3v1);
+
+        byte[] first = AudioJoiner.first(AudioFormat.MP3, new ByteArrayInputStream(tagged)).readAllBytes();
+        byte[] next = AudioJoiner.next(AudioFormat.MP3, new ByteArrayInputStream(tagged)).readAllBytes();
+        byte[] untagged = AudioJoiner.next(AudioFormat.MP3, new ByteArrayInputStream(audio)).readAllBytes();
+
+        assertArrayEquals(audio, first);
+        assertArrayEquals(audio, next);
+        assertArrayEquals(audio, untagged);
+    }
+
+    @Test
+    void mp3ResyncsPastJunkAndDropsATruncatedLastFrame() throws Exception {
+        byte[] piece = concat(new byte[] {0x00, (byte) 0xFF, (byte) 0xF3, 0x01}, mp3(0, 2, 0, 1),
+                Arrays.copyOf(frame(false, 9), 100));
+
+        byte[] joined = AudioJoiner.next(AudioFormat.MP3, new ByteArrayInputStream(piece)).readAllBytes();
+
+        assertArrayEquals(mp3(0, 2, 0, 1), joined);
+    }
+
+    @Test
+    void mp3EdgeSilenceIsCutToTheKeptLength() throws Exception {
+        // 20 silent frames (480 ms) on each side of the speech
+        byte[] piece = concat(infoFrame(), mp3(20, 10, 20, 1));
+
+        byte[] trimmed = AudioJoiner.next(AudioFormat.MP3, new ByteArrayInputStream(piece), 0, 100).readAllBytes();
+
+        // 100 ms is five 24 ms frames; those also hold the 511 byte bit reservoir the first audible frame may use
+        assertEquals(10, countFrames(trimmed, false));
+        assertEquals(10, countFrames(trimmed, true));
+        assertArrayEquals(mp3(5, 10, 5, 1), trimmed);
+    }
+
+    @Test
+    void mp3PausesInsideAPieceAreKept() throws Exception {
+        byte[] piece = concat(mp3(0, 5, 30, 1), mp3(0, 5, 0, 6));
+
+        byte[] trimmed = AudioJoiner.next(AudioFormat.MP3, new ByteArrayInputStream(piece), 0, 100).readAllBytes();
+
+        assertArrayEquals(piece, trimmed);
+    }
+
+    @Test
+    void pcmEdgeSilenceIsCutAndPartialFramesDropped() throws Exception {
+        byte[] piece = concat(pcm(500, 200, 500), new byte[] {1});
+
+        byte[] trimmed = AudioJoiner.next(AudioFormat.PCM, new ByteArrayInputStream(piece), 16000, 100).readAllBytes();
+
+        // 100 + 200 + 100 ms at 16 kHz
+        assertEquals(400 * 16 * 2, trimmed.length);
+        byte[] tone = Arrays.copyOfRange(piece, 500 * 16 * 2, 700 * 16 * 2);
+        assertArrayEquals(tone, Arrays.copyOfRange(trimmed, 100 * 16 * 2, 300 * 16 * 2));
+        // Rate unknown: left alone
+        assertArrayEquals(piece, AudioJoiner.next(AudioFormat.PCM, new ByteArrayInputStream(piece), 0, 100).readAllBytes());
+    }
+
+    @Test
+    void wavPiecesAreTrimmedBehindTheirHeader() throws Exception {
+        byte[] samples = pcm(400, 100, 400);
+
+        byte[] first = AudioJoiner.first(AudioFormat.WAV, new ByteArrayInputStream(wav(samples)), 0, 50).readAllBytes();
+        byte[] next = AudioJoiner.next(AudioFormat.WAV, new ByteArrayInputStream(wav(samples)), 0, 50).readAllBytes();
+
+        assertEquals(44 + 200 * 16 * 2, first.length);
+        assertEquals(200 * 16 * 2, next.length);
+    }
+
+    @Test
+    void containerFormatsAreNotJoined() {
+        assertFalse(AudioJoiner.canJoin(AudioFormat.OPUS));
+        assertFalse(AudioJoiner.canJoin(AudioFormat.FLAC));
+    }
+
+    /**
+     * Joining streams frame by frame shouldn't cost more than its fixed buffers, however long
+     * the piece: ten minutes of MP3 through a joiner stay within a few buffers.
+     */
+    @Test
+    @Tag("benchmark")
+    void joiningIsAllocationLight() throws Exception {
+        byte[] piece = concat(ID3, infoFrame(), mp3(40, 25000, 40, 1));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        byte[] sink = new byte[16384];
+        for (int pass = 0; pass < 3; pass++) {
+            long allocBefore = threads.getThreadAllocatedBytes(threadId);
+            long total = 0;
+            try (InputStream in = AudioJoiner.next(AudioFormat.MP3, new ByteArrayInputStream(piece), 0, 150)) {
+                for (int n; (n = in.read(sink)) > 0; ) total += n;
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocBefore;
+            if (pass == 2) {
+                assertEquals(FRAME_LENGTH * (25000 + 2 * 7), total);
+                assertTrue(allocated < 256 * 1024, "allocated " + allocated + " bytes");
+            }
+        }
+    }
+}
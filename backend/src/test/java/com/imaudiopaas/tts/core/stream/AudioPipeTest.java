@@ -0,0 +1,106 @@
+package com.imaudiopaas.tts.core.stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class AudioPipeTest {
+
+    private static ByteBuffer bytes(int size, int value) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) value);
+        return ByteBuffer.wrap(data);
+    }
+
+    @Test
+    void readerGetsAudioBeforeUpstreamCompletes() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        pipe.offer(bytes(10, 1));
+
+        assertTrue(pipe.awaitFirstAudio(100));
+        byte[] buffer = new byte[100];
+        assertEquals(10, pipe.getInputStream().read(buffer));
+        assertFalse(pipe.isCompleted());
+
+        pipe.offer(bytes(5, 2));
+        pipe.complete();
+        assertEquals(5, pipe.getInputStream().read(buffer));
+        assertEquals(-1, pipe.getInputStream().read(buffer));
+    }
+
+    @Test
+    void offerNeverBlocksAndFailsThePipeOnOverflow() throws Exception {
+        AudioPipe pipe = new AudioPipe(100);
+        assertTrue(pipe.offer(bytes(80, 1)));
+
+        long start = System.nanoTime();
+        assertFalse(pipe.offer(bytes(80, 2)), "No room, and no waiting for the reader");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        assertFalse(pipe.offer(bytes(1, 3)));
+
+        // The reader keeps what arrived in time, then learns the stream is truncated
+        byte[] buffer = new byte[100];
+        assertEquals(80, pipe.getInputStream().read(buffer));
+        AudioPipe.UpstreamFailedException e = assertThrows(AudioPipe.UpstreamFailedException.class,
+                () -> pipe.getInputStream().read(buffer));
+        assertEquals(80, e.getBytesDelivered());
+    }
+
+    @Test
+    void offerFitsAgainOnceTheReaderCatchesUp() throws Exception {
+        AudioPipe pipe = new AudioPipe(100);
+        assertTrue(pipe.offer(bytes(80, 1)));
+
+        byte[] buffer = new byte[80];
+        assertEquals(80, pipe.getInputStream().read(buffer));
+        assertTrue(pipe.offer(bytes(80, 2)), "The reader made room");
+        assertEquals(80, pipe.getInputStream().read(buffer));
+        assertArrayEquals(bytes(80, 2).array(), buffer);
+        assertNull(pipe.getFailure());
+    }
+
+    @Test
+    void failureAfterFirstByteIsReportedAfterTheDeliveredAudio() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        pipe.offer(bytes(10, 1));
+        pipe.fail(new RuntimeException("connection reset"));
+
+        InputStream in = pipe.getInputStream();
+        assertEquals(10, in.read(new byte[100]));
+        AudioPipe.UpstreamFailedException e = assertThrows(AudioPipe.UpstreamFailedException.class,
+                () -> in.read(new byte[100]));
+        assertEquals(10, e.getBytesDelivered());
+        assertTrue(e.getMessage().contains("connection reset"));
+    }
+
+    @Test
+    void closingTheReaderReleasesUpstreamAndStopsTheWriter() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        AtomicBoolean released = new AtomicBoolean();
+        pipe.onClose(() -> released.set(true));
+        pipe.offer(bytes(10, 1));
+
+        pipe.getInputStream().close();
+        assertTrue(released.get());
+        assertFalse(pipe.offer(bytes(10, 2)));
+    }
+
+    @Test
+    void awaitFirstAudioTimesOut() throws Exception {
+        AudioPipe pipe = new AudioPipe(1024);
+        assertFalse(pipe.awaitFirstAudio(20));
+        pipe.fail(new RuntimeException("boom"));
+        assertTrue(pipe.awaitFirstAudio(20));
+        assertEquals(0, pipe.getBytesWritten());
+    }
+}
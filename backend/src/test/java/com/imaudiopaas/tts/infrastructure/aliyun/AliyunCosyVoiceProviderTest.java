@@ -3,13 +3,21 @@ package com.imaudiopaas.tts.infrastructure.aliyun;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.imaudiopaas.tts.core.domain.ProviderType;
 import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.exception.TtsException;
 import com.imaudiopaas.tts.model.ProviderConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AliyunCosyVoiceProviderTest {
 
@@ -41,4 +49,91 @@ class AliyunCosyVoiceProviderTest {
         // Then
         assertThrows(TtsException.class, () -> provider.synthesize(request, config));
     }
+
+    /**
+     * Stand-in for the DashScope websocket: pushes {@code frames} frames of 1 KB, one every
+     * {@code intervalMs}, from its own thread, like the SDK's callback mode.
+     */
+    private static AliyunCosyVoiceProvider.StreamingSynthesizer standIn(int frames, long intervalMs,
+                                                                         AtomicBoolean cancelled) {
+        return (param, text, pipe) -> {
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < frames && !cancelled.get(); i++) {
+                        Thread.sleep(intervalMs);
+                        pipe.offer(ByteBuffer.wrap(new byte[1024]));
+                    }
+                    pipe.complete();
+                } catch (InterruptedException e) {
+                    pipe.fail(e);
+                }
+            });
+            producer.start();
+            return () -> cancelled.set(true);
+        };
+    }
+
+    private static ProviderConfig configWithApiKey() {
+        ProviderConfig config = new ProviderConfig();
+        config.setSecretKey("test-api-key");
+        return config;
+    }
+
+    @Test
+    void whenSynthesizing_firstByteArrivesBeforeSynthesisEnds() throws Exception {
+        CountDownLatch rest = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        // Pushes one frame, then holds the other nine until the test lets it go on
+        provider = new AliyunCosyVoiceProvider(new ObjectMapper(), (param, text, pipe) -> {
+            Thread producer = new Thread(() -> {
+                pipe.offer(ByteBuffer.wrap(new byte[1024]));
+                try {
+                    rest.await();
+                    for (int i = 1; i < 10; i++) {
+                        pipe.offer(ByteBuffer.wrap(new byte[1024]));
+                    }
+                    finished.set(true);
+                    pipe.complete();
+                } catch (InterruptedException e) {
+                    pipe.fail(e);
+                }
+            });
+            producer.start();
+            return producer::interrupt;
+        }, 64 * 1024, 5000);
+        TtsRequest request = TtsRequest.builder().text("hello").voiceId("longxiaochun").build();
+
+        TtsResponse response = provider.synthesize(request, configWithApiKey());
+        try (InputStream in = response.getAudioStream()) {
+            assertEquals(1024, in.readNBytes(1024).length);
+            assertFalse(finished.get(), "The first frame is read while the upstream is still synthesizing");
+
+            rest.countDown();
+            assertEquals(9 * 1024, in.readAllBytes().length);
+        }
+        assertTrue(finished.get());
+    }
+
+    @Test
+    void whenReaderClosesEarly_thenUpstreamIsCancelled() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        provider = new AliyunCosyVoiceProvider(new ObjectMapper(), standIn(100, 10, cancelled), 4 * 1024, 5000);
+        TtsResponse response = provider.synthesize(TtsRequest.builder().text("hello").build(), configWithApiKey());
+
+        response.getAudioStream().read(new byte[1024]);
+        response.getAudioStream().close();
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void whenUpstreamFailsBeforeFirstFrame_thenSynthesizeThrows() {
+        provider = new AliyunCosyVoiceProvider(new ObjectMapper(), (param, text, pipe) -> {
+            pipe.fail(new TtsException("quota exceeded"));
+            return () -> { };
+        }, 64 * 1024, 5000);
+
+        TtsException e = assertThrows(TtsException.class,
+                () -> provider.synthesize(TtsRequest.builder().text("hello").build(), configWithApiKey()));
+        assertEquals("quota exceeded", e.getMessage());
+    }
 }
@@ -10,12 +10,16 @@ import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
 import com.imaudiopaas.tts.model.ProviderConfig;
 import java.io.IOException;
+import java.io.InputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 class QwenTtsProviderTest {
@@ -50,7 +54,8 @@ class QwenTtsProviderTest {
         mockServer.expect(requestTo("http://localhost:8001/api/tts"))
                 .andExpect(method(HttpMethod.POST))
                 .andExpect(content().string(org.hamcrest.Matchers.containsString("Hello Qwen")))
-                .andRespond(withSuccess(audioData, MediaType.APPLICATION_OCTET_STREAM));
+                .andRespond(withSuccess(audioData, MediaType.APPLICATION_OCTET_STREAM)
+                        .header(HttpHeaders.CONTENT_LENGTH, "4"));
 
         // When
         TtsResponse response = provider.synthesize(request, config);
@@ -60,5 +65,44 @@ class QwenTtsProviderTest {
         assertNotNull(response);
         assertEquals(AudioFormat.WAV, response.getFormat());
         assertEquals(4, response.getContentLength());
+        assertArrayEquals(audioData, response.getAudioStream().readAllBytes());
+    }
+
+    @Test
+    void synthesize_StreamsChunkedBodyWithoutLength() throws IOException {
+        TtsRequest request = TtsRequest.builder().text("Long form").voiceId("qwen-voice-1").build();
+        byte[] audioData = new byte[64 * 1024];
+        audioData[0] = 1;
+
+        mockServer.expect(requestTo("http://localhost:8001/api/tts"))
+                .andRespond(withSuccess(audioData, MediaType.APPLICATION_OCTET_STREAM));
+
+        TtsResponse response = provider.synthesize(request, config);
+
+        assertEquals(0, response.getContentLength(), "Unknown length, the body is streamed");
+        try (InputStream in = response.getAudioStream()) {
+            assertArrayEquals(audioData, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void synthesize_KeepsUpstreamStatusForFailover() {
+        TtsRequest request = TtsRequest.builder().text("Hello Qwen").voiceId("qwen-voice-1").build();
+
+        mockServer.expect(requestTo("http://localhost:8001/api/tts"))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> provider.synthesize(request, config));
+        assertInstanceOf(RestClientResponseException.class, e.getCause());
+    }
+
+    @Test
+    void synthesize_FailsOnEmptyBody() {
+        TtsRequest request = TtsRequest.builder().text("Hello Qwen").voiceId("qwen-voice-1").build();
+
+        mockServer.expect(requestTo("http://localhost:8001/api/tts"))
+                .andRespond(withSuccess(new byte[0], MediaType.APPLICATION_OCTET_STREAM));
+
+        assertThrows(RuntimeException.class, () -> provider.synthesize(request, config));
     }
 }
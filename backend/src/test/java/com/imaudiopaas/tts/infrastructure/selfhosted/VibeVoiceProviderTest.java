@@ -13,6 +13,7 @@ import java.io.IOException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.client.MockRestServiceServer;
@@ -51,7 +52,8 @@ class VibeVoiceProviderTest {
         mockServer.expect(requestTo("http://localhost:8000/tts"))
                 .andExpect(method(HttpMethod.POST))
                 .andExpect(content().string(org.hamcrest.Matchers.containsString("Hello Vibe")))
-                .andRespond(withSuccess(audioData, MediaType.APPLICATION_OCTET_STREAM));
+                .andRespond(withSuccess(audioData, MediaType.APPLICATION_OCTET_STREAM)
+                        .header(HttpHeaders.CONTENT_LENGTH, "4"));
 
         // When
         TtsResponse response = provider.synthesize(request, config);
@@ -61,5 +63,6 @@ class VibeVoiceProviderTest {
         assertNotNull(response);
         assertEquals(AudioFormat.WAV, response.getFormat()); // Assuming VibeVoice returns WAV
         assertEquals(4, response.getContentLength());
+        assertArrayEquals(audioData, response.getAudioStream().readAllBytes());
     }
 }
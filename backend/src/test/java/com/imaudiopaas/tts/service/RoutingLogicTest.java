@@ -1,24 +1,58 @@
 package com.imaudiopaas.tts.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.imaudiopaas.tts.core.TtsProvider;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
 import com.imaudiopaas.tts.core.domain.ProviderType;
 import com.imaudiopaas.tts.core.domain.TtsRequest;
 import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.event.ProviderRequestEvent;
 import com.imaudiopaas.tts.exception.TtsException;
 import com.imaudiopaas.tts.model.ProviderConfig;
+import com.imaudiopaas.tts.model.VoiceDefinition;
 import com.imaudiopaas.tts.repository.ProviderConfigRepository;
 import com.imaudiopaas.tts.repository.VoiceDefinitionRepository;
+import com.imaudiopaas.tts.service.cache.AudioCache;
+import com.imaudiopaas.tts.service.coalescing.RequestCoalescer;
+import com.imaudiopaas.tts.service.routing.AdaptiveConcurrencyLimiter;
+import com.imaudiopaas.tts.service.routing.CircuitBreaker;
+import com.imaudiopaas.tts.service.routing.CircuitBreakerRegistry;
+import com.imaudiopaas.tts.service.routing.ConcurrencyLimiterRegistry;
+import com.imaudiopaas.tts.service.routing.EwmaLatencyTracker;
+import com.imaudiopaas.tts.service.routing.FailoverPolicy;
+import com.imaudiopaas.tts.service.routing.HedgeBudget;
+import com.imaudiopaas.tts.service.routing.InFlightTracker;
+import com.imaudiopaas.tts.service.routing.LatencyTracker;
+import com.imaudiopaas.tts.service.routing.RequestHedger;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshot;
+import com.imaudiopaas.tts.service.routing.RoutingSnapshotService;
+import com.imaudiopaas.tts.service.routing.WeightedRoundRobinBalancer;
+import com.imaudiopaas.tts.service.text.SegmentedSynthesizer;
+import com.imaudiopaas.tts.service.transcode.AudioTranscoder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -31,11 +65,16 @@ class RoutingLogicTest {
     @Mock
     private ApplicationEventPublisher eventPublisher;
     @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
     private TtsProvider aliyunProvider;
     @Mock
     private TtsProvider cosyVoiceProvider;
 
     private ProviderRoutingService service;
+    private CircuitBreakerRegistry circuitBreakers;
+    private AudioCache audioCache;
+    private InFlightTracker inFlightTracker;
 
     @BeforeEach
     void setUp() {
@@ -43,10 +82,28 @@ class RoutingLogicTest {
         when(aliyunProvider.getType()).thenReturn(ProviderType.ALIYUN);
         when(cosyVoiceProvider.getType()).thenReturn(ProviderType.ALIYUN_COSYVOICE);
         
+        LatencyTracker latencyTracker = new LatencyTracker();
+        inFlightTracker = new InFlightTracker();
+        audioCache = new AudioCache(new SimpleMeterRegistry(), true, 1 << 20, 1 << 16);
+        circuitBreakers = new CircuitBreakerRegistry(
+                new CircuitBreaker.Settings(4, 2, 0.5, 10000, 0.8, 60000, 1), System::currentTimeMillis);
         service = new ProviderRoutingService(
                 java.util.Arrays.asList(aliyunProvider, cosyVoiceProvider),
-                configRepo,
-                voiceRepo,
+                new RoutingSnapshotService(configRepo, voiceRepo, new ObjectMapper(), transactionManager),
+                new WeightedRoundRobinBalancer(),
+                inFlightTracker,
+                new FailoverPolicy(30000, 0),
+                latencyTracker,
+                new EwmaLatencyTracker(10000, 50, 0.5, 60000, System::currentTimeMillis),
+                new RequestHedger(new SimpleAsyncTaskExecutor(), latencyTracker, new SimpleMeterRegistry(),
+                        false, 0.95, 50, 1500, new HedgeBudget(0.05, 10)),
+                circuitBreakers,
+                new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), true, 1000,
+                        new AdaptiveConcurrencyLimiter.Settings(20, 2, 200, 50, 1.5, 0.2, 0.9)),
+                new RequestCoalescer(new SimpleMeterRegistry(), true, 30000),
+                audioCache,
+                new SegmentedSynthesizer(new SimpleAsyncTaskExecutor(), new SimpleMeterRegistry(), true, 4, 300, Map.of()),
+                new AudioTranscoder(new SimpleMeterRegistry()),
                 eventPublisher
         );
     }
@@ -55,8 +112,8 @@ class RoutingLogicTest {
     void testAliyunSmartDefault() {
         // Setup config
         ProviderConfig config = new ProviderConfig();
-        when(configRepo.findFirstByProviderTypeAndIsActiveTrue(ProviderType.ALIYUN))
-                .thenReturn(Optional.of(config));
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
 
         // Setup mock response
         when(aliyunProvider.synthesize(any(), any())).thenReturn(TtsResponse.builder().build());
@@ -80,8 +137,8 @@ class RoutingLogicTest {
     void testAliyunCaseInsensitiveSmartDefault() {
         // Setup config
         ProviderConfig config = new ProviderConfig();
-        when(configRepo.findFirstByProviderTypeAndIsActiveTrue(ProviderType.ALIYUN))
-                .thenReturn(Optional.of(config));
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
         when(aliyunProvider.synthesize(any(), any())).thenReturn(TtsResponse.builder().build());
 
         TtsRequest request = TtsRequest.builder()
@@ -101,8 +158,8 @@ class RoutingLogicTest {
     void testCosyVoiceRouting() {
         // Setup config for CosyVoice
         ProviderConfig config = new ProviderConfig();
-        when(configRepo.findFirstByProviderTypeAndIsActiveTrue(ProviderType.ALIYUN_COSYVOICE))
-                .thenReturn(Optional.of(config));
+        config.setProviderType(ProviderType.ALIYUN_COSYVOICE);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
 
         when(cosyVoiceProvider.synthesize(any(), any())).thenReturn(TtsResponse.builder().build());
 
@@ -123,4 +180,316 @@ class RoutingLogicTest {
 
         assertEquals("longxiaochun", captor.getValue().getVoiceId(), "Voice ID should remain unchanged");
     }
+
+    @Test
+    void testHotPathServedFromSnapshot() {
+        ProviderConfig config = new ProviderConfig();
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        when(aliyunProvider.synthesize(any(), any())).thenReturn(TtsResponse.builder().build());
+
+        for (int i = 0; i < 5; i++) {
+            service.routeAndSynthesize(TtsRequest.builder().voiceId("aliyun").text("test").build());
+        }
+
+        // Snapshot is built once, subsequent requests never touch the repositories
+        verify(configRepo, times(1)).findByIsActiveTrue();
+        verify(voiceRepo, times(1)).findAll();
+        verify(voiceRepo, never()).findById(any());
+    }
+
+    @Test
+    void testSnapshotIsReadOnlyAndFailedRebuildKeepsVersion() {
+        ProviderConfig config = new ProviderConfig();
+        config.setProviderType(ProviderType.ALIYUN);
+        config.setBaseUrl("wss://primary");
+        VoiceDefinition voice = new VoiceDefinition();
+        voice.setId("narrator");
+        voice.setProviderType(ProviderType.ALIYUN);
+        voice.setFailoverChain(new java.util.ArrayList<>(List.of("cosyvoice")));
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        when(voiceRepo.findAll()).thenReturn(Collections.singletonList(voice));
+        RoutingSnapshotService snapshots =
+                new RoutingSnapshotService(configRepo, voiceRepo, new ObjectMapper(), transactionManager);
+
+        RoutingSnapshot first = snapshots.rebuild();
+        ProviderConfig shared = first.getActiveConfigs(ProviderType.ALIYUN).get(0);
+        assertThrows(UnsupportedOperationException.class, () -> shared.setBaseUrl("wss://elsewhere"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> first.findVoice("narrator").orElseThrow().getFailoverChain().add("aliyun"));
+        // Later changes to the entity don't leak into the published snapshot
+        config.setBaseUrl("wss://changed");
+        assertEquals("wss://primary", shared.getBaseUrl());
+
+        when(configRepo.findByIsActiveTrue()).thenThrow(new IllegalStateException("Database unavailable"));
+        assertThrows(IllegalStateException.class, snapshots::rebuild);
+        assertSame(first, snapshots.current());
+
+        doReturn(Collections.singletonList(config)).when(configRepo).findByIsActiveTrue();
+        assertEquals(first.getVersion() + 1, snapshots.rebuild().getVersion());
+    }
+
+    @Test
+    void testFailoverToNextLinkOnRetryableError() {
+        ProviderConfig aliyun = new ProviderConfig();
+        aliyun.setName("aliyun-main");
+        aliyun.setProviderType(ProviderType.ALIYUN);
+        ProviderConfig cosy = new ProviderConfig();
+        cosy.setName("cosy-main");
+        cosy.setProviderType(ProviderType.ALIYUN_COSYVOICE);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Arrays.asList(aliyun, cosy));
+        when(voiceRepo.findAll()).thenReturn(Collections.singletonList(
+                voice("aliyun-xiaoyun", ProviderType.ALIYUN, "xiaoyun", List.of("ALIYUN_COSYVOICE:longxiaochun"))));
+
+        TtsResponse fallbackResponse = TtsResponse.builder().build();
+        when(aliyunProvider.synthesize(any(), any())).thenThrow(new TtsException("upstream 503"));
+        when(cosyVoiceProvider.synthesize(any(), any())).thenReturn(fallbackResponse);
+
+        TtsResponse response = service.routeAndSynthesize(
+                TtsRequest.builder().voiceId("aliyun-xiaoyun").text("hello").build());
+
+        assertSame(fallbackResponse, response);
+        ArgumentCaptor<TtsRequest> captor = ArgumentCaptor.forClass(TtsRequest.class);
+        verify(cosyVoiceProvider).synthesize(captor.capture(), any());
+        assertEquals("longxiaochun", captor.getValue().getVoiceId());
+        // One log event per attempt
+        verify(eventPublisher, times(2)).publishEvent(any(ProviderRequestEvent.class));
+    }
+
+    @Test
+    void testNonRetryableErrorIsNotFailedOver() {
+        ProviderConfig aliyun = new ProviderConfig();
+        aliyun.setProviderType(ProviderType.ALIYUN);
+        ProviderConfig cosy = new ProviderConfig();
+        cosy.setProviderType(ProviderType.ALIYUN_COSYVOICE);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Arrays.asList(aliyun, cosy));
+        when(voiceRepo.findAll()).thenReturn(Collections.singletonList(
+                voice("aliyun-xiaoyun", ProviderType.ALIYUN, "xiaoyun", List.of("ALIYUN_COSYVOICE:longxiaochun"))));
+        when(aliyunProvider.synthesize(any(), any())).thenThrow(new IllegalArgumentException("text too long"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.routeAndSynthesize(
+                TtsRequest.builder().voiceId("aliyun-xiaoyun").text("hello").build()));
+        verify(cosyVoiceProvider, never()).synthesize(any(), any());
+    }
+
+    @Test
+    void testOpenCircuitDivertsToOtherConfig() {
+        ProviderConfig broken = new ProviderConfig();
+        broken.setName("aliyun-a");
+        broken.setProviderType(ProviderType.ALIYUN);
+        ProviderConfig healthy = new ProviderConfig();
+        healthy.setName("aliyun-b");
+        healthy.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Arrays.asList(broken, healthy));
+        when(aliyunProvider.synthesize(any(), any())).thenReturn(TtsResponse.builder().build());
+
+        CircuitBreaker breaker = circuitBreakers.forConfig(broken);
+        breaker.onError(10);
+        breaker.onError(10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        for (int i = 0; i < 4; i++) {
+            service.routeAndSynthesize(TtsRequest.builder().voiceId("xiaoyun").text("hello").build());
+        }
+        verify(aliyunProvider, times(4)).synthesize(any(), eq(healthy));
+        verify(aliyunProvider, never()).synthesize(any(), eq(broken));
+    }
+
+    @Test
+    void testOpenCircuitFailsFastWithoutCallingUpstream() {
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        when(aliyunProvider.synthesize(any(), any())).thenThrow(new TtsException("upstream 503"));
+
+        TtsRequest request = TtsRequest.builder().voiceId("xiaoyun").text("hello").build();
+        assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        // The breaker is open after two failures; the third request never reaches the provider
+        TtsException error = assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        assertTrue(error.getMessage().contains("Circuit open"));
+        verify(aliyunProvider, times(2)).synthesize(any(), any());
+    }
+
+    @Test
+    void testUndecodableAudioCountsAgainstTheProvider() {
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        when(aliyunProvider.synthesize(any(), any())).thenAnswer(inv -> TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream("not-a-wav-stream".getBytes()))
+                .format(AudioFormat.WAV)
+                .build());
+        TtsRequest request = TtsRequest.builder().voiceId("xiaoyun").text("hello")
+                .format(AudioFormat.WAV).sampleRate(8000).cacheBypass(true).build();
+
+        assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        // Both failures reached the breaker rather than being dropped when the stream closed
+        TtsException error = assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        assertTrue(error.getMessage().contains("Circuit open"));
+        verify(aliyunProvider, times(2)).synthesize(any(), any());
+        assertEquals(0, inFlightTracker.get(RoutingSnapshot.keyOf(config)));
+    }
+
+    @Test
+    void testUpstreamCallIsHeldUntilItsStreamEnds() throws Exception {
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        when(aliyunProvider.synthesize(any(), any())).thenAnswer(inv -> TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream("mp3-bytes".getBytes()))
+                .format(AudioFormat.MP3)
+                .build());
+        TtsRequest request = TtsRequest.builder().voiceId("xiaoyun").text("hello").cacheBypass(true).build();
+        java.util.UUID key = RoutingSnapshot.keyOf(config);
+
+        // Streaming providers return at the first byte; the call lasts until the audio is read
+        TtsResponse read = service.routeAndSynthesize(request);
+        assertEquals(1, inFlightTracker.get(key));
+        read.getAudioStream().readAllBytes();
+        assertEquals(0, inFlightTracker.get(key));
+        read.getAudioStream().close();
+        assertEquals(0, inFlightTracker.get(key));
+
+        TtsResponse abandoned = service.routeAndSynthesize(request);
+        assertEquals(1, inFlightTracker.get(key));
+        abandoned.getAudioStream().close();
+        assertEquals(0, inFlightTracker.get(key));
+    }
+
+    @Test
+    void testStreamFailingPartWayIsLoggedWhenItFails() throws Exception {
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        when(aliyunProvider.synthesize(any(), any())).thenAnswer(inv -> TtsResponse.builder()
+                .audioStream(new InputStream() {
+                    private int delivered;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (delivered++ < 3) return 1;
+                        throw new IOException("connection reset");
+                    }
+                })
+                .format(AudioFormat.MP3)
+                .build());
+        TtsRequest request = TtsRequest.builder().voiceId("xiaoyun").text("hello").cacheBypass(true).build();
+
+        TtsResponse response = service.routeAndSynthesize(request);
+        // Nothing is logged while the audio is still streaming
+        verify(eventPublisher, never()).publishEvent(any(ProviderRequestEvent.class));
+        assertThrows(IOException.class, () -> response.getAudioStream().readAllBytes());
+        response.getAudioStream().close();
+
+        ArgumentCaptor<ProviderRequestEvent> event = ArgumentCaptor.forClass(ProviderRequestEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertFalse(event.getValue().isSuccess());
+        assertTrue(event.getValue().getErrorMessage().contains("connection reset"));
+
+        // The breaker saw the same failure
+        try (InputStream in = service.routeAndSynthesize(request).getAudioStream()) {
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+        TtsException error = assertThrows(TtsException.class, () -> service.routeAndSynthesize(request));
+        assertTrue(error.getMessage().contains("Circuit open"));
+    }
+
+    @Test
+    void testEachSegmentIsRoutedOnItsOwn() throws Exception {
+        ProviderConfig aliyun = new ProviderConfig();
+        aliyun.setName("aliyun-main");
+        aliyun.setProviderType(ProviderType.ALIYUN);
+        ProviderConfig cosy = new ProviderConfig();
+        cosy.setName("cosy-main");
+        cosy.setProviderType(ProviderType.ALIYUN_COSYVOICE);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Arrays.asList(aliyun, cosy));
+        when(voiceRepo.findAll()).thenReturn(Collections.singletonList(
+                voice("aliyun-xiaoyun", ProviderType.ALIYUN, "xiaoyun", List.of("ALIYUN_COSYVOICE:longxiaochun"))));
+        org.mockito.stubbing.Answer<TtsResponse> echo = inv -> TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(((TtsRequest) inv.getArgument(0)).getText().getBytes()))
+                .format(AudioFormat.PCM)
+                .sampleRate(24000)
+                .build();
+        when(cosyVoiceProvider.synthesize(any(), any())).thenAnswer(echo);
+        when(aliyunProvider.synthesize(any(), any())).thenAnswer(inv -> {
+            if (((TtsRequest) inv.getArgument(0)).getText().startsWith("Second")) {
+                throw new TtsException("upstream 503");
+            }
+            return echo.answer(inv);
+        });
+        String sentence = " sentence of the long prompt, padded out with enough words to fill most of a segment"
+                + " on its own so that the text has to be split into three pieces.";
+        TtsRequest request = TtsRequest.builder().voiceId("aliyun-xiaoyun").format(AudioFormat.PCM)
+                .text("First" + sentence + " Second" + sentence + " Third" + sentence).build();
+
+        String audio;
+        try (InputStream in = service.routeAndSynthesize(request).getAudioStream()) {
+            audio = new String(in.readAllBytes());
+        }
+
+        // Only the failed piece went to the next link; each piece was a call of its own
+        assertTrue(audio.startsWith("First") && audio.contains("Second") && audio.contains("Third"), audio);
+        ArgumentCaptor<TtsRequest> primaryCalls = ArgumentCaptor.forClass(TtsRequest.class);
+        verify(aliyunProvider, atLeast(1)).synthesize(primaryCalls.capture(), eq(aliyun));
+        ArgumentCaptor<TtsRequest> failoverCalls = ArgumentCaptor.forClass(TtsRequest.class);
+        verify(cosyVoiceProvider, atLeast(1)).synthesize(failoverCalls.capture(), eq(cosy));
+        assertTrue(failoverCalls.getAllValues().stream()
+                .anyMatch(r -> r.getText().startsWith("Second") && r.getVoiceId().equals("longxiaochun")));
+        // The breaker may open after the failure and send other pieces to the next link too
+        assertEquals(4, primaryCalls.getAllValues().size() + failoverCalls.getAllValues().size());
+        verify(eventPublisher, times(4)).publishEvent(any(ProviderRequestEvent.class));
+        assertEquals(0, inFlightTracker.get(RoutingSnapshot.keyOf(aliyun)));
+        assertEquals(0, inFlightTracker.get(RoutingSnapshot.keyOf(cosy)));
+
+        // Audio partly from another voice is not cached as the primary's
+        try (InputStream in = service.routeAndSynthesize(request).getAudioStream()) {
+            in.readAllBytes();
+        }
+        assertEquals(0.0, audioCache.getHits());
+    }
+
+    @Test
+    void testRepeatedPromptServedFromCache() throws Exception {
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+        when(configRepo.findByIsActiveTrue()).thenReturn(Collections.singletonList(config));
+        byte[] audio = "mp3-bytes".getBytes();
+        byte[] fresh = "fresh-mp3-bytes".getBytes();
+        byte[][] upstream = {audio};
+        when(aliyunProvider.synthesize(any(), any())).thenAnswer(inv -> TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(upstream[0]))
+                .format(AudioFormat.MP3)
+                .build());
+        TtsRequest request = TtsRequest.builder().voiceId("xiaoyun").text("hello").build();
+
+        // The first response is only cached once the client has read it completely
+        assertArrayEquals(audio, service.routeAndSynthesize(request).getAudioStream().readAllBytes());
+        assertArrayEquals(audio, service.routeAndSynthesize(request).getAudioStream().readAllBytes());
+        verify(aliyunProvider, times(1)).synthesize(any(), any());
+
+        // Bypass always goes upstream, and its result replaces the cached entry
+        upstream[0] = fresh;
+        TtsRequest bypass = request.toBuilder().cacheBypass(true).build();
+        assertArrayEquals(fresh, service.routeAndSynthesize(bypass).getAudioStream().readAllBytes());
+        verify(aliyunProvider, times(2)).synthesize(any(), any());
+        assertEquals(1.0, audioCache.getHits());
+        assertArrayEquals(fresh, service.routeAndSynthesize(request).getAudioStream().readAllBytes());
+        verify(aliyunProvider, times(2)).synthesize(any(), any());
+    }
+
+    private VoiceDefinition voice(String id, ProviderType type, String nativeId, List<String> failoverChain) {
+        VoiceDefinition voice = new VoiceDefinition();
+        voice.setId(id);
+        voice.setProviderType(type);
+        voice.setNativeVoiceId(nativeId);
+        voice.setFailoverChain(failoverChain);
+        return voice;
+    }
 }
@@ -0,0 +1,131 @@
+package com.imaudiopaas.tts.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.infrastructure.selfhosted.QwenTtsProvider;
+import com.imaudiopaas.tts.model.ProviderConfig;
+import com.imaudiopaas.tts.repository.ProviderConfigRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+/**
+ * Drives sustained concurrent synthesis through the real router and samples the Hikari pool.
+ * Request logging is mocked out so the only possible database users are the routing lookups.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-load;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=4"
+})
+class RoutingSnapshotLoadTest {
+
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 40;
+
+    @Autowired
+    private ProviderRoutingService routingService;
+
+    @Autowired
+    private ProviderConfigRepository providerConfigRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @SpyBean
+    private QwenTtsProvider qwenProvider;
+
+    @MockBean
+    private ProviderRequestEventListener requestEventListener;
+
+    @Test
+    void sustainedSynthesisKeepsConnectionPoolIdle() throws Exception {
+        ProviderConfig config = new ProviderConfig();
+        config.setName("qwen-load");
+        config.setProviderType(ProviderType.QWEN);
+        config.setBaseUrl("http://localhost:1");
+        config.setAccessKey("load-key");
+        providerConfigRepository.save(config);
+
+        doAnswer(inv -> {
+            Thread.sleep(5); // simulated upstream latency
+            return TtsResponse.builder()
+                    .audioStream(new ByteArrayInputStream(new byte[] {1}))
+                    .format(AudioFormat.WAV)
+                    .contentLength(1)
+                    .build();
+        }).when(qwenProvider).synthesize(any(), any());
+
+        HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger peakActive = new AtomicInteger();
+        AtomicInteger samples = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peakActive.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                samples.incrementAndGet();
+                Thread.onSpinWait();
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                int ok = 0;
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    // Distinct texts, so that neither the cache nor coalescing spares the router
+                    TtsRequest request = TtsRequest.builder()
+                            .text("load test " + thread + "-" + i)
+                            .voiceId("qwen-voice")
+                            .model("qwen")
+                            .build();
+                    TtsResponse response = routingService.routeAndSynthesize(request);
+                    try (InputStream in = response.getAudioStream()) {
+                        if (in.readAllBytes().length == 1) ok++;
+                    }
+                }
+                return ok;
+            }));
+        }
+
+        sampler.start();
+        start.countDown();
+        int completed = 0;
+        for (Future<Integer> f : results) completed += f.get();
+        running.set(false);
+        sampler.join();
+        executor.shutdown();
+
+        assertEquals(THREADS * REQUESTS_PER_THREAD, completed);
+        verify(qwenProvider, times(THREADS * REQUESTS_PER_THREAD)).synthesize(any(), any());
+        assertTrue(samples.get() > 0);
+        assertEquals(0, peakActive.get(), "Routing hot path must not check out JDBC connections");
+    }
+}
@@ -0,0 +1,158 @@
+package com.imaudiopaas.tts.service.batch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+class BatchSynthesisServiceTest {
+
+    private final List<String> synthesized = new CopyOnWriteArrayList<>();
+    private final Map<ProviderType, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<ProviderType, Integer> peak = new ConcurrentHashMap<>();
+    private ProviderRoutingService routingService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        routingService = mock(ProviderRoutingService.class);
+        when(routingService.primaryProvider(any())).thenAnswer(invocation -> {
+            TtsRequest request = invocation.getArgument(0);
+            if (request.getVoiceId().equals("nobody")) {
+                throw new IllegalArgumentException("Cannot infer provider for voice ID: nobody");
+            }
+            return request.getVoiceId().startsWith("aws") ? ProviderType.AWS : ProviderType.ALIYUN;
+        });
+        when(routingService.routeAndSynthesize(any())).thenAnswer(invocation -> {
+            TtsRequest request = invocation.getArgument(0);
+            ProviderType provider = routingService.primaryProvider(request);
+            int now = inFlight.computeIfAbsent(provider, p -> new AtomicInteger()).incrementAndGet();
+            peak.merge(provider, now, Math::max);
+            try {
+                Thread.sleep(20);
+                synthesized.add(request.getText());
+                if (request.getText().contains("poison")) {
+                    throw new TtsException("Provider refused the text");
+                }
+                byte[] audio = request.getText().getBytes(StandardCharsets.UTF_8);
+                return TtsResponse.builder()
+                        .audioStream(new ByteArrayInputStream(audio))
+                        .format(request.getFormat())
+                        .contentLength(audio.length)
+                        .build();
+            } finally {
+                inFlight.get(provider).decrementAndGet();
+            }
+        });
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private BatchSynthesisService newService(int maxParallel, int providerConcurrency) {
+        return new BatchSynthesisService(new SimpleAsyncTaskExecutor("test-batch-"), routingService, meterRegistry,
+                100, maxParallel, providerConcurrency);
+    }
+
+    private static TtsRequest request(String text, String voice) {
+        return TtsRequest.builder().text(text).voiceId(voice).model("tts-1").speed(1.0f).format(AudioFormat.MP3).build();
+    }
+
+    private static List<BatchSynthesisService.Result> drain(BatchSynthesisService.Batch batch) throws Exception {
+        List<BatchSynthesisService.Result> results = new ArrayList<>();
+        try (batch) {
+            BatchSynthesisService.Result result;
+            while ((result = batch.next()) != null) results.add(result);
+        }
+        return results;
+    }
+
+    @Test
+    void synthesizesIdenticalItemsOnce() throws Exception {
+        BatchSynthesisService service = newService(4, 4);
+
+        List<BatchSynthesisService.Result> results = drain(service.start(List.of(
+                request("Press one", "alloy"), request("Press two", "alloy"),
+                request("Press one", "alloy"), request("Press one", "aws-joanna"))));
+
+        assertEquals(3, results.size());
+        assertEquals(3, synthesized.size());
+        BatchSynthesisService.Result pressOne = results.stream()
+                .filter(r -> r.indexes().get(0) == 0).findFirst().orElseThrow();
+        assertEquals(List.of(0, 2), pressOne.indexes());
+        assertArrayEquals("Press one".getBytes(StandardCharsets.UTF_8), pressOne.audio());
+        assertEquals(1, meterRegistry.counter("tts.batch.duplicates").count());
+        assertEquals(4, meterRegistry.counter("tts.batch.items", "result", "ok").count());
+    }
+
+    @Test
+    void capsCallsPerProvider() throws Exception {
+        BatchSynthesisService service = newService(16, 2);
+        List<TtsRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            requests.add(request("Prompt " + i, i % 2 == 0 ? "alloy" : "aws-joanna"));
+        }
+
+        // Two batches at once share the caps
+        BatchSynthesisService.Batch first = service.start(requests);
+        BatchSynthesisService.Batch second = service.start(requests.subList(0, 6));
+        assertEquals(12, drain(first).size());
+        assertEquals(6, drain(second).size());
+
+        assertEquals(2, peak.get(ProviderType.ALIYUN));
+        assertEquals(2, peak.get(ProviderType.AWS));
+    }
+
+    @Test
+    void reportsFailedItemsWithoutFailingTheBatch() throws Exception {
+        BatchSynthesisService service = newService(4, 4);
+
+        List<BatchSynthesisService.Result> results = drain(service.start(Arrays.asList(
+                request("Fine", "alloy"), null, request("A poison pill", "alloy"), request("Who?", "nobody"))));
+
+        Map<Integer, BatchSynthesisService.Result> byIndex = new HashMap<>();
+        results.forEach(r -> byIndex.put(r.indexes().get(0), r));
+        assertEquals(3, results.size(), "Rejected items are left to the caller");
+        assertTrue(byIndex.get(0).isSuccess());
+        assertFalse(byIndex.get(2).isSuccess());
+        assertEquals(500, byIndex.get(2).status());
+        assertEquals("Provider refused the text", byIndex.get(2).error());
+        assertEquals(400, byIndex.get(3).status());
+        assertNull(byIndex.get(3).audio());
+        assertEquals(2, meterRegistry.counter("tts.batch.items", "result", "error").count());
+    }
+
+    @Test
+    void limitsBatchSize() {
+        BatchSynthesisService service = newService(4, 4);
+        List<TtsRequest> tooMany = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) tooMany.add(request("Prompt " + i, "alloy"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.start(tooMany));
+        assertThrows(IllegalArgumentException.class, () -> service.start(List.of()));
+    }
+}
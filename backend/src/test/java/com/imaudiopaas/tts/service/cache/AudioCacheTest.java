@@ -0,0 +1,124 @@
+package com.imaudiopaas.tts.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AudioCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AudioCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Room for three 1 KB prompts
+        cache = new AudioCache(meterRegistry, true, 3 * 1024, 2 * 1024);
+    }
+
+    private static String key(String text) {
+        return AudioCache.keyOf(ProviderType.ALIYUN, TtsRequest.builder().text(text).voiceId("xiaoyun").build());
+    }
+
+    private static CachedAudio audio(String key, int size) {
+        return new CachedAudio(key, ProviderType.ALIYUN, "xiaoyun", AudioFormat.MP3, new byte[size]);
+    }
+
+    @Test
+    void keyDependsOnProvider() {
+        TtsRequest request = TtsRequest.builder().text("hello").voiceId("xiaoyun").build();
+        assertFalse(AudioCache.keyOf(ProviderType.ALIYUN, request)
+                .equals(AudioCache.keyOf(ProviderType.ALIYUN_COSYVOICE, request)));
+    }
+
+    @Test
+    void evictsByBytesNotEntryCount() {
+        for (String text : new String[]{"a", "b", "c", "d"}) {
+            // "d" is requested once more than the others, so it is hotter than the LRU victim
+            cache.get(key(text));
+            cache.get(key(text));
+            if (text.equals("d")) cache.get(key(text));
+            assertTrue(cache.put(audio(key(text), 1024)));
+        }
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(3 * 1024, cache.getBytes());
+        assertFalse(cache.get(key("a")).isPresent(), "Least recently used entry is evicted");
+        assertEquals(1.0, meterRegistry.counter("tts.cache.evictions", "tier", "memory").count());
+    }
+
+    @Test
+    void oneOffLongTextDoesNotFlushHotPrompts() {
+        for (String text : new String[]{"hot-1", "hot-2", "hot-3"}) {
+            for (int i = 0; i < 5; i++) cache.get(key(text));
+            cache.put(audio(key(text), 1024));
+        }
+
+        cache.get(key("one-off"));
+        assertFalse(cache.put(audio(key("one-off"), 2 * 1024)));
+
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(1.0, meterRegistry.counter("tts.cache.admission.rejected", "tier", "memory").count());
+        assertEquals(0.0, meterRegistry.counter("tts.cache.evictions", "tier", "memory").count());
+    }
+
+    @Test
+    void oversizedEntriesAreNeverCached() {
+        assertFalse(cache.put(audio(key("long"), 3 * 1024)));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void hitRatioIsTracked() {
+        cache.put(audio(key("a"), 10));
+        cache.get(key("a"));
+        cache.get(key("a"));
+        cache.get(key("b"));
+        cache.get(key("c"));
+        assertEquals(0.5, cache.getHitRatio(), 1e-9);
+        assertEquals(0.5, meterRegistry.get("tts.cache.hit_ratio").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void storesOnlyFullyReadResponses() throws Exception {
+        byte[] data = new byte[500];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+
+        TtsResponse partial = cache.cacheOnCompletion(TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(data)).format(AudioFormat.MP3).build(),
+                key("a"), ProviderType.ALIYUN, "xiaoyun");
+        try (InputStream in = partial.getAudioStream()) {
+            in.readNBytes(100);
+        }
+        assertEquals(0, cache.getEntryCount());
+
+        TtsResponse full = cache.cacheOnCompletion(TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(data)).format(AudioFormat.MP3).build(),
+                key("a"), ProviderType.ALIYUN, "xiaoyun");
+        try (InputStream in = full.getAudioStream()) {
+            in.readAllBytes();
+        }
+        assertArrayEquals(data, cache.get(key("a")).get().getData());
+    }
+
+    @Test
+    void purgeByVoice() {
+        cache.put(audio(key("a"), 10));
+        cache.put(new CachedAudio(key("b"), ProviderType.ALIYUN, "xiaogang", AudioFormat.MP3, new byte[10]));
+
+        assertEquals(1, cache.purge(null, "xiaogang"));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(1, cache.purge(null, null));
+        assertEquals(0, cache.getBytes());
+    }
+}
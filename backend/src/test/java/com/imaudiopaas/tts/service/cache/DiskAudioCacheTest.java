@@ -0,0 +1,240 @@
+package com.imaudiopaas.tts.service.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.codec.AudioIndex;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskAudioCacheTest {
+
+    private static final int SEGMENT_BYTES = 16 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private DiskAudioCache cache;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (cache != null) cache.close();
+    }
+
+    private DiskAudioCache open(long maxBytes) throws Exception {
+        DiskAudioCache disk = new DiskAudioCache(new SimpleMeterRegistry(), true, directory.toString(), maxBytes,
+                SEGMENT_BYTES, 0.5, 0);
+        disk.open();
+        return disk;
+    }
+
+    private DiskAudioCache reopen() throws Exception {
+        cache.close();
+        cache = open(1 << 20);
+        return cache;
+    }
+
+    private static String key(String text) {
+        return AudioCache.keyOf(ProviderType.ALIYUN, TtsRequest.builder().text(text).voiceId("xiaoyun").build());
+    }
+
+    private static CachedAudio audio(String text, String voice, int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) text.hashCode());
+        return new CachedAudio(key(text), ProviderType.ALIYUN, voice, AudioFormat.WAV, data);
+    }
+
+    private static byte[] read(TtsResponse response) throws Exception {
+        try (InputStream in = response.getAudioStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    void servesStoredAudioFromFileRegion() throws Exception {
+        cache = open(1 << 20);
+        CachedAudio stored = audio("hello", "xiaoyun", 3000);
+        cache.store(stored);
+        cache.flush();
+
+        TtsResponse response = cache.lookup(key("hello")).orElseThrow();
+        assertInstanceOf(FileRegionInputStream.class, response.getAudioStream());
+        assertEquals(AudioFormat.WAV, response.getFormat());
+        assertEquals(3000, response.getContentLength());
+        assertArrayEquals(stored.getData(), read(response));
+        assertFalse(cache.lookup(key("other")).isPresent());
+    }
+
+    @Test
+    void rebuildsIndexFromSegmentsAfterRestart() throws Exception {
+        cache = open(1 << 20);
+        for (int i = 0; i < 10; i++) {
+            cache.store(audio("text-" + i, "xiaoyun", 4000));
+        }
+        cache.store(audio("text-0", "xiaoyun", 500));
+        cache.flush();
+
+        reopen();
+        assertEquals(10, cache.getEntryCount());
+        assertEquals(500, read(cache.lookup(key("text-0")).orElseThrow()).length, "Later records win");
+        assertArrayEquals(audio("text-9", "xiaoyun", 4000).getData(), read(cache.lookup(key("text-9")).orElseThrow()));
+    }
+
+    @Test
+    void storesTheAudioIndexAlongsideTheData() throws Exception {
+        cache = open(1 << 20);
+        CachedAudio stored = new CachedAudio(key("indexed"), ProviderType.ALIYUN, "xiaoyun", AudioFormat.PCM,
+                new byte[2000 * 2 * 3], 2000);
+        cache.store(stored);
+        cache.flush();
+
+        AudioIndex index = cache.lookup(key("indexed")).orElseThrow().getIndex();
+        assertEquals(stored.getIndex().getEtag(), index.getEtag());
+        assertEquals(3000, index.getDurationMs());
+        assertEquals(8000, index.offsetAt(2000));
+
+        reopen();
+        TtsResponse response = cache.lookup(key("indexed")).orElseThrow();
+        assertEquals(stored.getIndex().getEtag(), response.getIndex().getEtag());
+        assertEquals(2000, response.getSampleRate());
+        assertArrayEquals(stored.getData(), read(response));
+    }
+
+    @Test
+    void treatsAnythingWithoutTheMagicAsNotARecord() throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        byte[] voice = "xiaoyun".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(DiskAudioCache.HEADER_SIZE + voice.length + data.length);
+        record.putInt(DiskAudioCache.MAGIC + 1).putInt(0).putInt(data.length)
+                .put(HexFormat.of().parseHex(key("foreign")))
+                .put((byte) ProviderType.ALIYUN.ordinal()).put((byte) AudioFormat.PCM.ordinal())
+                .putShort((short) voice.length).putInt(0).putInt(24000).put(voice).put(data);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        record.putInt(4, (int) crc.getValue());
+        Files.write(directory.resolve("segment-00000001.dat"), record.array());
+
+        cache = open(1 << 20);
+        assertEquals(0, cache.getEntryCount());
+        assertFalse(cache.lookup(key("foreign")).isPresent());
+        cache.store(audio("new", "xiaoyun", 100));
+        cache.flush();
+
+        reopen();
+        assertEquals(1, cache.getEntryCount());
+        assertTrue(cache.lookup(key("new")).isPresent());
+    }
+
+    @Test
+    void doesNotStoreAudioAtASampleRateTheIndexCannotHold() throws Exception {
+        cache = open(1 << 20);
+        cache.store(new CachedAudio(key("high"), ProviderType.ALIYUN, "xiaoyun", AudioFormat.PCM, new byte[480], 96000));
+        cache.store(new CachedAudio(key("wide"), ProviderType.ALIYUN, "xiaoyun", AudioFormat.PCM, new byte[480], 48000));
+        cache.flush();
+
+        assertFalse(cache.lookup(key("high")).isPresent());
+        assertEquals(48000, cache.lookup(key("wide")).orElseThrow().getSampleRate());
+        reopen();
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    void truncatesTornTailOnStartup() throws Exception {
+        cache = open(1 << 20);
+        cache.store(audio("complete", "xiaoyun", 1000));
+        cache.flush();
+        cache.close();
+
+        // Simulate a crash in the middle of the next append
+        Path segment = directory.resolve("segment-00000001.dat");
+        long validSize = Files.size(segment);
+        byte[] torn = new byte[200];
+        Arrays.fill(torn, (byte) 7);
+        torn[0] = 0x54;
+        Files.write(segment, torn, StandardOpenOption.APPEND);
+
+        cache = open(1 << 20);
+        assertEquals(1, cache.getEntryCount());
+        assertTrue(cache.lookup(key("complete")).isPresent());
+        cache.close();
+        cache = null;
+        assertEquals(validSize, Files.size(segment));
+    }
+
+    @Test
+    void purgeSurvivesRestart() throws Exception {
+        cache = open(1 << 20);
+        cache.store(audio("a", "xiaoyun", 1000));
+        cache.store(audio("b", "xiaogang", 1000));
+        cache.flush();
+
+        assertEquals(1, cache.purge(ProviderType.ALIYUN, "xiaoyun"));
+        assertFalse(cache.lookup(key("a")).isPresent());
+
+        reopen();
+        assertFalse(cache.lookup(key("a")).isPresent());
+        assertTrue(cache.lookup(key("b")).isPresent());
+    }
+
+    @Test
+    void dropsOldestSegmentsOverBudget() throws Exception {
+        cache = open(2 * SEGMENT_BYTES);
+        for (int i = 0; i < 12; i++) {
+            cache.store(audio("text-" + i, "xiaoyun", 5000));
+        }
+        cache.flush();
+
+        assertTrue(cache.getBytes() <= 2 * SEGMENT_BYTES);
+        assertFalse(cache.lookup(key("text-0")).isPresent());
+        assertTrue(cache.lookup(key("text-11")).isPresent());
+    }
+
+    @Test
+    void compactsSegmentsWithMostlyDeadData() throws Exception {
+        cache = open(1 << 20);
+        for (int i = 0; i < 3; i++) {
+            cache.store(audio("text-" + i, "xiaoyun", 5000));
+        }
+        // Fill the next segment, so that the first one is sealed
+        for (int i = 0; i < 3; i++) {
+            cache.store(audio("filler-" + i, "xiaogang", 5000));
+        }
+        cache.flush();
+        cache.purge(ProviderType.ALIYUN, "xiaoyun");
+        cache.store(audio("text-2", "xiaoyun", 5000));
+        cache.flush();
+        assertTrue(cache.segmentSizes().containsKey(1));
+
+        cache.compactNow();
+        Map<Integer, Long> sizes = cache.segmentSizes();
+        assertFalse(sizes.containsKey(1), "Segment with no live data is retired");
+        assertEquals(4, cache.getEntryCount());
+
+        reopen();
+        assertEquals(4, cache.getEntryCount());
+        assertFalse(cache.lookup(key("text-0")).isPresent());
+        assertTrue(cache.lookup(key("filler-0")).isPresent());
+    }
+}
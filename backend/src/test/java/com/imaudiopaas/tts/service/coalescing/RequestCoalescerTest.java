@@ -0,0 +1,242 @@
+package com.imaudiopaas.tts.service.coalescing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.SynthesisKey;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new RequestCoalescer(meterRegistry, true, 5000);
+    }
+
+    private static TtsRequest request(String text) {
+        return TtsRequest.builder().text(text).voiceId("xiaoyun").build();
+    }
+
+    private static byte[] audio(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) bytes[i] = (byte) i;
+        return bytes;
+    }
+
+    // Until count callers wait on the request's flight
+    private void awaitWaiters(TtsRequest request, int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.waiters(request) < count) {
+            assertTrue(System.nanoTime() < deadline, "callers did not join the flight");
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneUpstreamCall() throws Exception {
+        byte[] audio = audio(100_000);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    TtsResponse response = coalescer.execute(request("hello"), () -> {
+                        upstreamCalls.incrementAndGet();
+                        // Answer only once every other caller has joined
+                        awaitWaiters(request("hello"), callers - 1);
+                        return TtsResponse.builder()
+                                .audioStream(new ByteArrayInputStream(audio))
+                                .format(AudioFormat.MP3)
+                                .contentLength(audio.length)
+                                .build();
+                    });
+                    try (InputStream in = response.getAudioStream()) {
+                        return in.readAllBytes();
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(audio, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(callers - 1, meterRegistry.counter("tts.coalescing.joined").count());
+    }
+
+    @Test
+    void lateJoinerReplaysFromTheStart() throws Exception {
+        byte[] audio = audio(50_000);
+        TtsResponse leader = coalescer.execute(request("hello"), () -> TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(audio)).format(AudioFormat.PCM).sampleRate(24000).build());
+        InputStream leaderStream = leader.getAudioStream();
+        byte[] head = leaderStream.readNBytes(1000);
+
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        TtsResponse follower = coalescer.execute(request("hello"), () -> {
+            upstreamCalls.incrementAndGet();
+            return null;
+        });
+
+        assertNotSame(leaderStream, follower.getAudioStream());
+        assertEquals(24000, leader.getSampleRate());
+        assertEquals(24000, follower.getSampleRate());
+        assertArrayEquals(audio, follower.getAudioStream().readAllBytes());
+        byte[] rest = leaderStream.readAllBytes();
+        assertEquals(audio.length, head.length + rest.length);
+        assertEquals(0, upstreamCalls.get());
+    }
+
+    @Test
+    void flightEndsOnceAudioIsComplete() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            TtsResponse response = coalescer.execute(request("hello"), () -> {
+                upstreamCalls.incrementAndGet();
+                return TtsResponse.builder().audioStream(new ByteArrayInputStream(audio(10))).build();
+            });
+            response.getAudioStream().readAllBytes();
+            response.getAudioStream().close();
+        }
+        assertEquals(3, upstreamCalls.get());
+    }
+
+    @Test
+    void upstreamStreamIsClosedWhenAllReadersLeave() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        TtsResponse response = coalescer.execute(request("hello"), () -> TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(audio(100_000)) {
+                    @Override
+                    public void close() {
+                        closed.set(true);
+                    }
+                })
+                .build());
+        response.getAudioStream().readNBytes(10);
+        response.getAudioStream().close();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void failureIsSharedWithWaitingCallers() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> leader = pool.submit(() -> coalescer.execute(request("hello"), () -> {
+                leaderStarted.countDown();
+                try {
+                    release.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new TtsException("upstream 503");
+            }));
+            assertTrue(leaderStarted.await(2, TimeUnit.SECONDS));
+            Future<?> follower = pool.submit(() -> coalescer.execute(request("hello"), () -> {
+                throw new AssertionError("follower must not call upstream");
+            }));
+            awaitWaiters(request("hello"), 1);
+            release.countDown();
+
+            Exception error = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertTrue(error.getCause() instanceof TtsException);
+            assertEquals("upstream 503", error.getCause().getMessage());
+            assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void interactiveCallerDoesNotWaitOnABulkFlight() throws Exception {
+        CountDownLatch bulkStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Priority> upstreamCalls = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            TtsRequest bulk = request("hello").toBuilder().priority(Priority.BULK).build();
+            Future<TtsResponse> bulkLeader = pool.submit(() -> coalescer.execute(bulk, () -> {
+                upstreamCalls.add(Priority.BULK);
+                bulkStarted.countDown();
+                try {
+                    release.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return TtsResponse.builder().audioStream(new ByteArrayInputStream(audio(10))).build();
+            }));
+            assertTrue(bulkStarted.await(2, TimeUnit.SECONDS));
+            Future<TtsResponse> bulkFollower = pool.submit(() -> coalescer.execute(bulk, () -> {
+                throw new AssertionError("a bulk caller joins the bulk flight");
+            }));
+            awaitWaiters(bulk, 1);
+
+            // Runs its own call at its own class while the bulk one is still waiting
+            TtsRequest interactive = request("hello").toBuilder().priority(Priority.INTERACTIVE).build();
+            TtsResponse response = coalescer.execute(interactive, () -> {
+                upstreamCalls.add(Priority.INTERACTIVE);
+                return TtsResponse.builder().audioStream(new ByteArrayInputStream(audio(10))).build();
+            });
+            assertArrayEquals(audio(10), response.getAudioStream().readAllBytes());
+            assertFalse(bulkLeader.isDone(), "the bulk flight is still waiting");
+
+            release.countDown();
+            assertArrayEquals(audio(10), bulkLeader.get(5, TimeUnit.SECONDS).getAudioStream().readAllBytes());
+            assertArrayEquals(audio(10), bulkFollower.get(5, TimeUnit.SECONDS).getAudioStream().readAllBytes());
+            assertEquals(List.of(Priority.BULK, Priority.INTERACTIVE), upstreamCalls);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void keyIgnoresExtraBodyOrderButNotContent() {
+        Map<String, Object> a = new LinkedHashMap<>();
+        a.put("emotion", "happy");
+        a.put("pitch", 1.2);
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("pitch", 1.2);
+        b.put("emotion", "happy");
+
+        TtsRequest first = request("hello").toBuilder().extraBody(a).build();
+        TtsRequest second = request("hello").toBuilder().extraBody(b).stream(true).build();
+        assertEquals(SynthesisKey.of(first), SynthesisKey.of(second));
+
+        TtsRequest faster = first.toBuilder().speed(1.5f).build();
+        assertNotEquals(SynthesisKey.of(first), SynthesisKey.of(faster));
+    }
+}
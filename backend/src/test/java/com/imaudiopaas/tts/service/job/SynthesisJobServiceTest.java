@@ -0,0 +1,269 @@
+package com.imaudiopaas.tts.service.job;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.imaudiopaas.tts.core.codec.PcmFormat;
+import com.imaudiopaas.tts.core.codec.WavHeader;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
+import com.imaudiopaas.tts.exception.TtsException;
+import com.imaudiopaas.tts.model.SynthesisJob;
+import com.imaudiopaas.tts.repository.SynthesisJobRepository;
+import com.imaudiopaas.tts.service.ProviderRoutingService;
+import com.imaudiopaas.tts.service.text.SentenceSegmenter;
+import com.imaudiopaas.tts.service.transcode.AudioTranscoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jflac.FLACDecoder;
+import org.jflac.PCMProcessor;
+import org.jflac.metadata.StreamInfo;
+import org.jflac.util.ByteData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SynthesisJobServiceTest {
+
+    private static final int SEGMENT_CHARS = 60;
+
+    @TempDir
+    Path directory;
+
+    private final Map<UUID, SynthesisJob> rows = new ConcurrentHashMap<>();
+    private final List<String> synthesized = new CopyOnWriteArrayList<>();
+    private SynthesisJobRepository repository;
+    private ProviderRoutingService routingService;
+    private SimpleMeterRegistry meterRegistry;
+    private SynthesisJobService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(SynthesisJobRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            SynthesisJob job = invocation.getArgument(0);
+            rows.put(job.getId(), job);
+            return job;
+        });
+        when(repository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.getArgument(0))));
+        when(repository.findByStatusInOrderByCreatedAtAsc(any())).thenAnswer(invocation -> {
+            Collection<SynthesisJob.Status> statuses = invocation.getArgument(0);
+            return rows.values().stream().filter(job -> statuses.contains(job.getStatus())).toList();
+        });
+        routingService = mock(ProviderRoutingService.class);
+        when(routingService.routeAndSynthesize(any())).thenAnswer(invocation -> {
+            TtsRequest request = invocation.getArgument(0);
+            synthesized.add(request.getText());
+            if (request.getText().contains("poison")) {
+                throw new TtsException("Provider refused the text");
+            }
+            byte[] pcm = pcm(request.getText());
+            byte[] audio = request.getFormat() == AudioFormat.WAV ? wav(pcm) : pcm;
+            return TtsResponse.builder()
+                    .audioStream(new ByteArrayInputStream(audio))
+                    .format(request.getFormat())
+                    .contentLength(audio.length)
+                    .sampleRate(16000)
+                    .build();
+        });
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private static byte[] decodeFlac(byte[] flac, StreamInfo[] info) throws Exception {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        FLACDecoder decoder = new FLACDecoder(new ByteArrayInputStream(flac));
+        decoder.addPCMProcessor(new PCMProcessor() {
+            @Override
+            public void processStreamInfo(StreamInfo streamInfo) {
+                info[0] = streamInfo;
+            }
+
+            @Override
+            public void processPCM(ByteData data) {
+                pcm.write(data.getData(), 0, data.getLen());
+            }
+        });
+        decoder.decode();
+        return pcm.toByteArray();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) service.stop();
+    }
+
+    private SynthesisJobService newService(int maxQueuedJobs) {
+        return new SynthesisJobService(repository, routingService, new AudioTranscoder(meterRegistry), meterRegistry,
+                directory, 3, 2, 2, maxQueuedJobs, SEGMENT_CHARS, 100_000, 2, 0, 150);
+    }
+
+    // One loud 16-bit sample per character, so nothing gets trimmed as silence
+    private static byte[] pcm(String text) {
+        ByteBuffer pcm = ByteBuffer.allocate(text.length() * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (char c : text.toCharArray()) pcm.putShort((short) (c * 100));
+        return pcm.array();
+    }
+
+    private static byte[] wav(byte[] pcm) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(WavHeader.write(PcmFormat.mono16(16000), pcm.length));
+        out.writeBytes(pcm);
+        return out.toByteArray();
+    }
+
+    private static String book(int sentences, String marker) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            text.append("This is sentence number ").append(i).append(i == sentences / 2 ? marker : "").append(". ");
+        }
+        return text.toString().trim();
+    }
+
+    private static SynthesisJob job(String text, AudioFormat format) {
+        SynthesisJob job = new SynthesisJob();
+        job.setText(text);
+        job.setModel("tts-1");
+        job.setVoice("alloy");
+        job.setFormat(format);
+        return job;
+    }
+
+    private SynthesisJob awaitDone(UUID id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            SynthesisJob job = rows.get(id);
+            if (job.getStatus() == SynthesisJob.Status.SUCCEEDED || job.getStatus() == SynthesisJob.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job " + id + " didn't finish");
+    }
+
+    private static byte[] expectedPcm(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String segment : SentenceSegmenter.split(text, SEGMENT_CHARS)) out.writeBytes(pcm(segment));
+        return out.toByteArray();
+    }
+
+    @Test
+    void joinsSegmentsInOrderIntoTheResult() throws Exception {
+        service = newService(10);
+        service.start();
+        String text = book(30, "");
+
+        SynthesisJob job = awaitDone(service.submit(job(text, AudioFormat.PCM)).getId());
+
+        assertEquals(SynthesisJob.Status.SUCCEEDED, job.getStatus());
+        assertTrue(job.getTotalSegments() > 10);
+        assertEquals(job.getTotalSegments(), job.getCompletedSegments());
+        assertEquals(job.getTotalChars(), job.getCompletedChars());
+        assertEquals(job.getTotalChars(), meterRegistry.counter("tts.jobs.characters").count());
+        byte[] result = Files.readAllBytes(service.resultPath(job));
+        assertArrayEquals(expectedPcm(text), result);
+        assertEquals(result.length, job.getResultBytes());
+        try (var files = Files.list(directory.resolve(job.getId().toString()))) {
+            assertEquals(1, files.count(), "Segments are deleted once joined");
+        }
+    }
+
+    @Test
+    void joinedWavHasItsRealSizes() throws Exception {
+        service = newService(10);
+        service.start();
+        String text = book(8, "");
+
+        SynthesisJob job = awaitDone(service.submit(job(text, AudioFormat.WAV)).getId());
+
+        byte[] result = Files.readAllBytes(service.resultPath(job));
+        ByteBuffer header = ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(result.length - 8, header.getInt(4));
+        assertEquals(result.length - WavHeader.CANONICAL_SIZE, header.getInt(40));
+        assertEquals(expectedPcm(text).length, result.length - WavHeader.CANONICAL_SIZE);
+    }
+
+    @Test
+    void flacIsSynthesizedAsPcmAndEncodedOnceJoined() throws Exception {
+        service = newService(10);
+        service.start();
+        String text = book(8, "");
+
+        SynthesisJob job = awaitDone(service.submit(job(text, AudioFormat.FLAC)).getId());
+
+        assertEquals(SynthesisJob.Status.SUCCEEDED, job.getStatus(), job.getErrorMessage());
+        assertEquals(AudioFormat.FLAC, job.getAudioFormat());
+        assertTrue(service.resultPath(job).toString().endsWith("speech.flac"));
+        StreamInfo[] info = new StreamInfo[1];
+        assertArrayEquals(expectedPcm(text), decodeFlac(Files.readAllBytes(service.resultPath(job)), info));
+        assertEquals(16000, info[0].getSampleRate());
+    }
+
+    @Test
+    void resumesWithoutSynthesizingFinishedSegmentsAgain() throws Exception {
+        String text = book(20, "");
+        List<String> segments = SentenceSegmenter.split(text, SEGMENT_CHARS);
+        // Queued, then the node went down after three segments
+        SynthesisJobService before = newService(10);
+        SynthesisJob job = before.submit(job(text, AudioFormat.PCM));
+        JobStorage storage = new JobStorage(directory);
+        for (int i = 0; i < 3; i++) {
+            storage.writeSegment(job.getId(), i, new ByteArrayInputStream(pcm(segments.get(i))));
+        }
+        Files.write(storage.directory(job.getId()).resolve("segment-000003.audio.tmp"), new byte[] {1, 2});
+        job.setStatus(SynthesisJob.Status.RUNNING);
+        job.setAudioFormat(AudioFormat.PCM);
+        job.setAudioSampleRate(16000);
+
+        service = newService(10);
+        service.start();
+        job = awaitDone(job.getId());
+
+        assertEquals(SynthesisJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals(segments.subList(3, segments.size()), synthesized.stream().sorted((a, b) ->
+                Integer.compare(segments.indexOf(a), segments.indexOf(b))).toList());
+        assertArrayEquals(expectedPcm(text), Files.readAllBytes(service.resultPath(job)));
+    }
+
+    @Test
+    void failsWhenASegmentKeepsFailing() throws Exception {
+        service = newService(10);
+        service.start();
+
+        SynthesisJob job = awaitDone(service.submit(job(book(20, " poison"), AudioFormat.PCM)).getId());
+
+        assertEquals(SynthesisJob.Status.FAILED, job.getStatus());
+        assertTrue(job.getErrorMessage().contains("Provider refused the text"), job.getErrorMessage());
+        assertEquals(2, synthesized.stream().filter(text -> text.contains("poison")).count(), "Tried twice");
+        assertEquals(1, meterRegistry.counter("tts.jobs.completed", "result", "failed").count());
+    }
+
+    @Test
+    void limitsWaitingJobs() {
+        service = newService(1);
+
+        service.submit(job("One.", AudioFormat.MP3));
+
+        assertThrows(ConcurrencyLimitExceededException.class, () -> service.submit(job("Two.", AudioFormat.MP3)));
+        assertThrows(IllegalArgumentException.class, () -> service.submit(job(" ", AudioFormat.MP3)));
+    }
+}
@@ -0,0 +1,208 @@
+package com.imaudiopaas.tts.service.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.Priority;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.exception.ConcurrencyLimitExceededException;
+import com.imaudiopaas.tts.model.ProviderConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static AdaptiveConcurrencyLimiter limiter(int initial, int maxQueue) {
+        return new AdaptiveConcurrencyLimiter("aliyun-a",
+                new AdaptiveConcurrencyLimiter.Settings(initial, 1, 100, maxQueue, 1.5, 0.5, 0.5));
+    }
+
+    @Test
+    void rejectsImmediatelyWhenQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0);
+        limiter.acquire(0);
+
+        long start = System.nanoTime();
+        assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(5000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000, "Rejection should not wait");
+    }
+
+    @Test
+    void queuedCallerGetsReleasedSlot() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire(0);
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            limiter.acquire(5000).onIgnore();
+            acquired.countDown();
+        });
+        waiter.start();
+        long until = System.currentTimeMillis() + 2000;
+        while (limiter.getQueueDepth() == 0 && System.currentTimeMillis() < until) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, limiter.getQueueDepth());
+
+        held.onIgnore();
+        assertTrue(acquired.await(2, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedCallerTimesOut() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 5);
+        limiter.acquire(0);
+
+        assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(20));
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    void throttlingShrinksTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(40, 0);
+        limiter.acquire(0).onDropped();
+        assertEquals(20, limiter.getLimit());
+        limiter.acquire(0).onDropped();
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsSteadyUnderLoad() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 0);
+        for (int round = 0; round < 20; round++) {
+            // Saturate the current limit so samples are not app-limited
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                permits.add(limiter.acquire(0));
+            }
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::onSuccess);
+        }
+        assertTrue(limiter.getLimit() > 4, "Limit should grow, was " + limiter.getLimit());
+    }
+
+    @Test
+    void idleConfigDoesNotGrow() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(0).onSuccess();
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void registryExportsGaugesAndCountsRejections() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConcurrencyLimiterRegistry registry = new ConcurrencyLimiterRegistry(meterRegistry, true, 10,
+                new AdaptiveConcurrencyLimiter.Settings(1, 1, 10, 0, 1.5, 0.2, 0.9));
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+
+        registry.acquire(config, System.currentTimeMillis() + 1000);
+        assertThrows(ConcurrencyLimitExceededException.class,
+                () -> registry.acquire(config, System.currentTimeMillis() + 1000));
+
+        assertEquals(1.0, meterRegistry.get("tts.concurrency.limit").tag("config", "aliyun-a").gauge().value());
+        assertEquals(1.0, meterRegistry.get("tts.concurrency.in_flight").tag("config", "aliyun-a").gauge().value());
+        assertEquals(1.0, meterRegistry.get("tts.concurrency.rejected").tag("config", "aliyun-a").counter().count());
+    }
+
+    private static AdaptiveConcurrencyLimiter prioritized(int initial, Map<Priority, Integer> weights,
+                                                          Map<Priority, Integer> reserved) {
+        return new AdaptiveConcurrencyLimiter("aliyun-a",
+                new AdaptiveConcurrencyLimiter.Settings(initial, 1, 100, 10, 1.5, 0.5, 0.5, weights, reserved));
+    }
+
+    private record Grant(String label, AdaptiveConcurrencyLimiter.Permit permit) {
+    }
+
+    @Test
+    void freedSlotsGoToClassesByWeight() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = prioritized(1, Map.of(Priority.INTERACTIVE, 2, Priority.BULK, 1), Map.of());
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire(0, Priority.BULK);
+        BlockingQueue<Grant> grants = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 4; i++) {
+            for (Priority priority : List.of(Priority.BULK, Priority.INTERACTIVE)) {
+                String label = priority.tag() + "-" + i;
+                Thread waiter = new Thread(() -> grants.add(new Grant(label, limiter.acquire(5000, priority))));
+                waiter.start();
+            }
+        }
+        long until = System.currentTimeMillis() + 2000;
+        while (limiter.getQueueDepth() < 8 && System.currentTimeMillis() < until) {
+            Thread.sleep(5);
+        }
+        assertEquals(4, limiter.getQueueDepth(Priority.INTERACTIVE));
+        assertEquals(4, limiter.getQueueDepth(Priority.BULK));
+
+        List<String> order = new ArrayList<>();
+        held.onIgnore();
+        for (int i = 0; i < 8; i++) {
+            Grant grant = grants.poll(2, TimeUnit.SECONDS);
+            order.add(grant.label().substring(0, grant.label().indexOf('-')));
+            grant.permit().onIgnore();
+        }
+
+        // Twice the share for interactive, bulk still gets its turns
+        assertEquals(List.of("interactive", "interactive", "bulk", "interactive", "interactive", "bulk", "bulk", "bulk"),
+                order);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void reservedSlotsAreKeptForTheirClass() {
+        AdaptiveConcurrencyLimiter limiter = prioritized(4, Map.of(), Map.of(Priority.INTERACTIVE, 2));
+        limiter.acquire(0, Priority.BULK);
+        limiter.acquire(0, Priority.STANDARD);
+
+        assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(0, Priority.BULK));
+        limiter.acquire(0, Priority.INTERACTIVE);
+        limiter.acquire(0, Priority.INTERACTIVE);
+        assertEquals(2, limiter.getInFlight(Priority.INTERACTIVE));
+        assertEquals(4, limiter.getInFlight());
+    }
+
+    @Test
+    void reservationsLeaveOneSlotToTheOthers() {
+        AdaptiveConcurrencyLimiter limiter = prioritized(2, Map.of(), Map.of(Priority.INTERACTIVE, 4));
+
+        limiter.acquire(0, Priority.BULK);
+        assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(0, Priority.BULK));
+        limiter.acquire(0, Priority.INTERACTIVE);
+    }
+
+    @Test
+    void registryTimesQueueWaitPerClass() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdaptiveConcurrencyLimiter.Settings settings = new AdaptiveConcurrencyLimiter.Settings(1, 1, 10, 0, 1.5, 0.2, 0.9);
+        ProviderConfig config = new ProviderConfig();
+        config.setName("aliyun-a");
+        config.setProviderType(ProviderType.ALIYUN);
+
+        ConcurrencyLimiterRegistry registry = new ConcurrencyLimiterRegistry(meterRegistry, true, 10, settings);
+        registry.acquire(config, System.currentTimeMillis() + 1000, Priority.INTERACTIVE);
+        assertThrows(ConcurrencyLimitExceededException.class,
+                () -> registry.acquire(config, System.currentTimeMillis() + 1000, Priority.BULK));
+
+        assertEquals(1, meterRegistry.get("tts.concurrency.queue_wait").tag("priority", "interactive").timer().count());
+        assertEquals(1.0, meterRegistry.get("tts.concurrency.rejected").tag("priority", "bulk").counter().count());
+        assertEquals(1.0, meterRegistry.get("tts.concurrency.priority.in_flight").tag("priority", "interactive")
+                .gauge().value());
+
+        // Disabled, every call is standard
+        SimpleMeterRegistry plainRegistry = new SimpleMeterRegistry();
+        new ConcurrencyLimiterRegistry(plainRegistry, true, 10, settings, false)
+                .acquire(config, System.currentTimeMillis() + 1000, Priority.INTERACTIVE);
+        assertEquals(1, plainRegistry.get("tts.concurrency.queue_wait").tag("priority", "standard").timer().count());
+    }
+}
@@ -0,0 +1,107 @@
+package com.imaudiopaas.tts.service.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    private AtomicLong now;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000);
+        // window 10, judge after 4 calls, 50% failures or 50% slow (>= 1s) trips, open 5s, 2 probes
+        breaker = new CircuitBreaker("aliyun-a",
+                new CircuitBreaker.Settings(10, 4, 0.5, 1000, 0.5, 5000, 2), now::get);
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        breaker.onError(10);
+        breaker.onError(10);
+        breaker.onError(10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onError(10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void slowSuccessesTripTheBreaker() {
+        breaker.onSuccess(10);
+        breaker.onSuccess(10);
+        breaker.onSuccess(1500);
+        breaker.onSuccess(2000);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void oldOutcomesSlideOutOfTheWindow() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(10);
+        }
+        breaker.onError(10);
+        breaker.onError(10);
+        breaker.onError(10);
+        // 3 of 7 failed
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        for (int i = 0; i < 6; i++) {
+            breaker.onSuccess(10);
+        }
+        // The failures are still inside the last 10 calls but under the threshold
+        assertEquals(0.3, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    void halfOpenLimitsProbesAndClosesOnSuccess() {
+        trip();
+        now.addAndGet(5000);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission(), "Only two probes may run at once");
+
+        breaker.onSuccess(10);
+        breaker.onSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void failedProbeReopens() {
+        trip();
+        now.addAndGet(5000);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError(10);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        now.addAndGet(5000);
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasedProbeFreesItsSlot() {
+        trip();
+        now.addAndGet(5000);
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.release();
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(10);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
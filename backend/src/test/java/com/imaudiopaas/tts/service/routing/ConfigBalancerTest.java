@@ -0,0 +1,192 @@
+package com.imaudiopaas.tts.service.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.model.ProviderConfig;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConfigBalancerTest {
+
+    private ProviderConfig primary;
+    private ProviderConfig secondary;
+    private RoutingSnapshot snapshot;
+    private InFlightTracker inFlightTracker;
+
+    @BeforeEach
+    void setUp() {
+        primary = config("aliyun-a");
+        secondary = config("aliyun-b");
+        Map<UUID, Integer> weights = new HashMap<>();
+        weights.put(primary.getId(), 3);
+        weights.put(secondary.getId(), 1);
+        snapshot = new RoutingSnapshot(1, Map.of(),
+                Map.of(ProviderType.ALIYUN, Arrays.asList(primary, secondary)), weights);
+        inFlightTracker = new InFlightTracker();
+    }
+
+    @Test
+    void weightedRoundRobin_FollowsWeightsAndInterleaves() {
+        WeightedRoundRobinBalancer balancer = new WeightedRoundRobinBalancer();
+        List<ProviderConfig> candidates = snapshot.getActiveConfigs(ProviderType.ALIYUN);
+
+        Map<String, Integer> hits = new HashMap<>();
+        ProviderConfig previous = null;
+        int longestRun = 0;
+        int run = 0;
+        for (int i = 0; i < 400; i++) {
+            ProviderConfig picked = balancer.select(candidates, snapshot);
+            hits.merge(picked.getName(), 1, Integer::sum);
+            run = picked == previous ? run + 1 : 1;
+            longestRun = Math.max(longestRun, run);
+            previous = picked;
+        }
+
+        assertEquals(300, hits.get("aliyun-a"));
+        assertEquals(100, hits.get("aliyun-b"));
+        assertTrue(longestRun <= 3, "Smooth WRR should not emit long bursts");
+    }
+
+    @Test
+    void weightedRoundRobin_KeepsWeightsWhenSubsetsAlternate() {
+        ProviderConfig third = config("aliyun-c");
+        Map<UUID, Integer> weights = Map.of(primary.getId(), 3, secondary.getId(), 1, third.getId(), 1);
+        RoutingSnapshot three = new RoutingSnapshot(2, Map.of(),
+                Map.of(ProviderType.ALIYUN, List.of(primary, secondary, third)), weights);
+        WeightedRoundRobinBalancer balancer = new WeightedRoundRobinBalancer();
+        List<ProviderConfig> all = three.getActiveConfigs(ProviderType.ALIYUN);
+        // What the router passes while the third config's breaker is open
+        List<ProviderConfig> permitted = all.subList(0, 2);
+
+        Map<String, Integer> allHits = new HashMap<>();
+        Map<String, Integer> permittedHits = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            allHits.merge(balancer.select(all, three).getName(), 1, Integer::sum);
+            permittedHits.merge(balancer.select(permitted, three).getName(), 1, Integer::sum);
+        }
+
+        assertEquals(Map.of("aliyun-a", 300, "aliyun-b", 100, "aliyun-c", 100), allHits);
+        assertEquals(Map.of("aliyun-a", 375, "aliyun-b", 125), permittedHits);
+    }
+
+    @Test
+    void leastOutstanding_PrefersLessLoadedPerWeight() {
+        LeastOutstandingBalancer balancer = new LeastOutstandingBalancer(inFlightTracker);
+        List<ProviderConfig> candidates = snapshot.getActiveConfigs(ProviderType.ALIYUN);
+
+        // 3 in flight on weight 3 (load 1.0) vs 2 in flight on weight 1 (load 2.0)
+        for (int i = 0; i < 3; i++) inFlightTracker.increment(primary.getId());
+        for (int i = 0; i < 2; i++) inFlightTracker.increment(secondary.getId());
+
+        assertEquals(primary, balancer.select(candidates, snapshot));
+
+        inFlightTracker.decrement(secondary.getId());
+        inFlightTracker.decrement(secondary.getId());
+        assertEquals(secondary, balancer.select(candidates, snapshot));
+    }
+
+    @Test
+    void powerOfTwo_WithTwoCandidatesAlwaysPicksLessLoaded() {
+        PowerOfTwoChoicesBalancer balancer = new PowerOfTwoChoicesBalancer(inFlightTracker);
+        List<ProviderConfig> candidates = snapshot.getActiveConfigs(ProviderType.ALIYUN);
+
+        for (int i = 0; i < 10; i++) inFlightTracker.increment(primary.getId());
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(secondary, balancer.select(candidates, snapshot));
+        }
+    }
+
+    @Test
+    void latencyAware_PrefersFasterConfigPerWeight() {
+        AtomicLong now = new AtomicLong(0);
+        EwmaLatencyTracker latencies = new EwmaLatencyTracker(10000, 50, 0.5, 60000, now::get);
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(latencies, inFlightTracker, 0.0, 0.7);
+        List<ProviderConfig> candidates = snapshot.getActiveConfigs(ProviderType.ALIYUN);
+
+        // 10 ms/char on weight 3 vs 1 ms/char on weight 1
+        latencies.recordTimeToFirstByte(primary.getId(), 1000, 100);
+        latencies.recordTimeToFirstByte(secondary.getId(), 100, 100);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(secondary, balancer.select(candidates, snapshot));
+        }
+
+        // Load on the fast config pushes traffic back to the other one
+        for (int i = 0; i < 5; i++) inFlightTracker.increment(secondary.getId());
+        assertEquals(primary, balancer.select(candidates, snapshot));
+    }
+
+    @Test
+    void latencyAware_FailuresCountAgainstAConfig() {
+        EwmaLatencyTracker latencies = new EwmaLatencyTracker(10000, 50, 0.5, 60000, 10000, () -> 0L);
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(latencies, inFlightTracker, 0.0, 0.7);
+        List<ProviderConfig> candidates = snapshot.getActiveConfigs(ProviderType.ALIYUN);
+
+        latencies.recordTimeToFirstByte(primary.getId(), 100, 100);
+        latencies.recordTimeToFirstByte(secondary.getId(), 300, 100);
+        assertEquals(primary, balancer.select(candidates, snapshot));
+
+        // Failing fast must not look like serving fast
+        latencies.recordFailure(primary.getId());
+        assertEquals(secondary, balancer.select(candidates, snapshot));
+    }
+
+    @Test
+    void latencyAware_ProbesConfigsWithoutRecentScore() {
+        AtomicLong now = new AtomicLong(0);
+        EwmaLatencyTracker latencies = new EwmaLatencyTracker(10000, 50, 0.5, 60000, now::get);
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(latencies, inFlightTracker, 0.0, 0.7);
+        List<ProviderConfig> candidates = snapshot.getActiveConfigs(ProviderType.ALIYUN);
+
+        latencies.recordTimeToFirstByte(primary.getId(), 100, 100);
+        latencies.recordTimeToFirstByte(secondary.getId(), 5000, 100);
+        assertEquals(primary, balancer.select(candidates, snapshot));
+
+        // The slow config's score goes stale while it gets no traffic; it is probed again
+        now.addAndGet(61_000);
+        latencies.recordTimeToFirstByte(primary.getId(), 100, 100);
+        assertEquals(secondary, balancer.select(candidates, snapshot));
+    }
+
+    @Test
+    void latencyAware_MovesClearlyFasterEquivalentVoiceToFront() {
+        ProviderConfig cosy = config("cosy");
+        cosy.setProviderType(ProviderType.ALIYUN_COSYVOICE);
+        RoutingSnapshot twoProviders = new RoutingSnapshot(2, Map.of(),
+                Map.of(ProviderType.ALIYUN, List.of(primary), ProviderType.ALIYUN_COSYVOICE, List.of(cosy)), Map.of());
+        EwmaLatencyTracker latencies = new EwmaLatencyTracker(10000, 50, 0.5, 60000, () -> 0L);
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(latencies, inFlightTracker, 0.0, 0.7);
+        List<RouteTarget> chain = List.of(
+                new RouteTarget(ProviderType.ALIYUN, "xiaoyun"),
+                new RouteTarget(ProviderType.ALIYUN_COSYVOICE, "longxiaochun"));
+
+        // Only 10% faster: keep the requested voice
+        latencies.recordTotal(primary.getId(), 1000, 100);
+        latencies.recordTotal(cosy.getId(), 900, 100);
+        assertEquals("xiaoyun", balancer.order(chain, twoProviders).get(0).getNativeVoiceId());
+
+        EwmaLatencyTracker slowPrimary = new EwmaLatencyTracker(10000, 50, 0.5, 60000, () -> 0L);
+        slowPrimary.recordTotal(primary.getId(), 3000, 100);
+        slowPrimary.recordTotal(cosy.getId(), 900, 100);
+        List<RouteTarget> ordered = new LatencyAwareBalancer(slowPrimary, inFlightTracker, 0.0, 0.7)
+                .order(chain, twoProviders);
+        assertEquals("longxiaochun", ordered.get(0).getNativeVoiceId());
+        assertEquals("xiaoyun", ordered.get(1).getNativeVoiceId());
+    }
+
+    private ProviderConfig config(String name) {
+        ProviderConfig config = new ProviderConfig();
+        config.setId(UUID.randomUUID());
+        config.setName(name);
+        config.setProviderType(ProviderType.ALIYUN);
+        return config;
+    }
+}
@@ -0,0 +1,152 @@
+package com.imaudiopaas.tts.service.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.exception.TtsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+class RequestHedgerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private RequestHedger hedger(HedgeBudget budget) {
+        return new RequestHedger(new SimpleAsyncTaskExecutor(), new LatencyTracker(), meterRegistry,
+                true, 0.95, 10, 1500, budget);
+    }
+
+    private static TtsResponse response(AtomicBoolean closed) {
+        return TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(new byte[]{1}) {
+                    @Override
+                    public void close() {
+                        closed.set(true);
+                    }
+                })
+                .format(AudioFormat.MP3)
+                .build();
+    }
+
+    private static long deadline() {
+        return System.currentTimeMillis() + 5000;
+    }
+
+    @Test
+    void fastPrimary_NoHedgeLaunched() {
+        TtsResponse fast = response(new AtomicBoolean());
+        AtomicInteger hedgeCalls = new AtomicInteger();
+
+        TtsResponse result = hedger(new HedgeBudget(1.0, 10)).execute(
+                decided -> fast,
+                decided -> { hedgeCalls.incrementAndGet(); return null; },
+                500, deadline(), "ALIYUN");
+
+        assertSame(fast, result);
+        assertEquals(0, hedgeCalls.get());
+        assertEquals(0.0, meterRegistry.counter("tts.hedge.launched", "provider", "ALIYUN").count());
+    }
+
+    @Test
+    void slowPrimary_HedgeWinsAndLoserStreamIsClosed() throws Exception {
+        AtomicBoolean primaryClosed = new AtomicBoolean();
+        AtomicBoolean primarySawDecision = new AtomicBoolean();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch primaryDone = new CountDownLatch(1);
+        TtsResponse hedgeResponse = response(new AtomicBoolean());
+
+        TtsResponse result = hedger(new HedgeBudget(1.0, 10)).execute(
+                decided -> {
+                    try {
+                        // Ignore the interrupt to simulate a provider that still returns audio
+                        while (!release.await(10, TimeUnit.MILLISECONDS)) { }
+                    } catch (InterruptedException e) {
+                        // fall through and return anyway
+                    }
+                    primarySawDecision.set(decided.getAsBoolean());
+                    primaryDone.countDown();
+                    return response(primaryClosed);
+                },
+                decided -> hedgeResponse,
+                20, deadline(), "ALIYUN");
+
+        assertSame(hedgeResponse, result);
+        assertEquals(1.0, meterRegistry.counter("tts.hedge.launched", "provider", "ALIYUN").count());
+        assertEquals(1.0, meterRegistry.counter("tts.hedge.won", "provider", "ALIYUN").count());
+
+        release.countDown();
+        assertTrue(primaryDone.await(2, TimeUnit.SECONDS));
+        assertTrue(primarySawDecision.get(), "Loser should see that the race was decided");
+        long until = System.currentTimeMillis() + 2000;
+        while (!primaryClosed.get() && System.currentTimeMillis() < until) {
+            Thread.sleep(5);
+        }
+        assertTrue(primaryClosed.get(), "Losing audio stream should be closed");
+    }
+
+    @Test
+    void fastPrimaryFailure_IsSurfacedWithoutHedging() {
+        AtomicInteger hedgeCalls = new AtomicInteger();
+
+        TtsException error = assertThrows(TtsException.class, () -> hedger(new HedgeBudget(1.0, 10)).execute(
+                decided -> { throw new TtsException("boom"); },
+                decided -> { hedgeCalls.incrementAndGet(); return null; },
+                1000, deadline(), "ALIYUN"));
+
+        assertEquals("boom", error.getMessage());
+        assertEquals(0, hedgeCalls.get());
+    }
+
+    @Test
+    void exhaustedBudget_WaitsForPrimaryInstead() {
+        // No burst and no earned tokens: hedging is never allowed
+        RequestHedger hedger = hedger(new HedgeBudget(0.0, 0));
+        TtsResponse slow = response(new AtomicBoolean());
+        AtomicInteger hedgeCalls = new AtomicInteger();
+
+        TtsResponse result = hedger.execute(
+                decided -> { sleep(60); return slow; },
+                decided -> { hedgeCalls.incrementAndGet(); return null; },
+                10, deadline(), "ALIYUN");
+
+        assertSame(slow, result);
+        assertEquals(0, hedgeCalls.get());
+        assertEquals(1.0, meterRegistry.counter("tts.hedge.eligible", "provider", "ALIYUN").count());
+        assertEquals(0.0, meterRegistry.counter("tts.hedge.launched", "provider", "ALIYUN").count());
+    }
+
+    @Test
+    void budget_CapsHedgeRate() {
+        HedgeBudget budget = new HedgeBudget(0.1, 1);
+        int granted = 0;
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+            if (budget.tryAcquire()) granted++;
+        }
+        assertTrue(granted <= 11, "Expected roughly 10% of requests to hedge, got " + granted);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
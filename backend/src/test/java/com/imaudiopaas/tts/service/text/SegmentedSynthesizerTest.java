@@ -0,0 +1,160 @@
+package com.imaudiopaas.tts.service.text;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.ProviderType;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import com.imaudiopaas.tts.core.stream.AudioPipe;
+import com.imaudiopaas.tts.exception.TtsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+class SegmentedSynthesizerTest {
+
+    private static final String SENTENCE = "This sentence is exactly fifty characters long ok.";
+
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+
+    private SegmentedSynthesizer synthesizer(int maxParallel) {
+        return synthesizer(new SimpleAsyncTaskExecutor("test-segment-"), maxParallel);
+    }
+
+    private static SegmentedSynthesizer synthesizer(AsyncTaskExecutor executor, int maxParallel) {
+        return new SegmentedSynthesizer(executor, new SimpleMeterRegistry(), true, maxParallel, 1000,
+                Map.of(ProviderType.TENCENT, 60));
+    }
+
+    /** PCM upstream whose audio is the segment text, so order is easy to check. */
+    private Function<TtsRequest, TtsResponse> upstream(Function<String, Long> delayMs) {
+        return request -> {
+            calls.add(request.getText());
+            try {
+                Thread.sleep(delayMs.apply(request.getText()));
+            } catch (InterruptedException e) {
+                throw new TtsException("interrupted", e);
+            }
+            if (request.getText().contains("fails")) throw new TtsException("upstream error");
+            return TtsResponse.builder()
+                    .audioStream(new ByteArrayInputStream(request.getText().getBytes(StandardCharsets.UTF_8)))
+                    .format(AudioFormat.PCM)
+                    .build();
+        };
+    }
+
+    /** As the router does it: one call unless the text is split. */
+    private static TtsResponse synthesize(SegmentedSynthesizer synthesizer, TtsRequest request,
+                                          Function<TtsRequest, TtsResponse> upstream) {
+        List<String> pieces = synthesizer.split(request, synthesizer.maxChars(ProviderType.TENCENT));
+        return pieces.size() <= 1 ? upstream.apply(request) : synthesizer.synthesize(request, pieces, upstream);
+    }
+
+    private static TtsRequest request(String text) {
+        return TtsRequest.builder().text(text).voiceId("v").format(AudioFormat.PCM).build();
+    }
+
+    @Test
+    void shortTextIsOneCall() throws Exception {
+        TtsResponse response = synthesize(synthesizer(4), request(SENTENCE), upstream(t -> 0L));
+
+        assertEquals(List.of(SENTENCE), calls);
+        assertEquals(SENTENCE, new String(response.getAudioStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void markupAndUnjoinableFormatsAreNotSplit() {
+        String text = (SENTENCE + " ").repeat(3).trim();
+        SegmentedSynthesizer synthesizer = synthesizer(4);
+
+        assertEquals(3, synthesizer.split(request(text), 60).size());
+        assertEquals(1, synthesizer.split(request("<speak>" + text + "</speak>"), 60).size());
+        assertEquals(1, synthesizer.split(request(text).toBuilder().format(AudioFormat.OPUS).build(), 60).size());
+    }
+
+    @Test
+    void longTextIsSynthesizedInParallelAndJoinedInOrder() throws Exception {
+        String text = (SENTENCE + " ").repeat(8).trim();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        // The first calls only return once four of them are running at the same time
+        CountDownLatch batch = new CountDownLatch(4);
+        Function<TtsRequest, TtsResponse> upstream = upstream(t -> 0L);
+        Function<TtsRequest, TtsResponse> counting = request -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                batch.countDown();
+                batch.await(5, TimeUnit.SECONDS);
+                return upstream.apply(request);
+            } catch (InterruptedException e) {
+                throw new TtsException("interrupted", e);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+
+        TtsResponse response = synthesize(synthesizer(4), request(text), counting);
+        byte[] audio;
+        try (InputStream in = response.getAudioStream()) {
+            audio = in.readAllBytes();
+        }
+
+        assertEquals(8, calls.size());
+        assertArrayEquals(SENTENCE.repeat(8).getBytes(StandardCharsets.UTF_8), audio);
+        assertEquals(4, peak.get(), "four calls at a time, no more");
+    }
+
+    @Test
+    void onlyAWindowOfSegmentsIsStartedAheadOfTheReader() throws Exception {
+        String text = (SENTENCE + " ").repeat(6).trim();
+
+        // Pieces run as they are started, so the calls made are exactly the pieces started
+        SegmentedSynthesizer synthesizer = synthesizer(new ConcurrentTaskExecutor(Runnable::run), 2);
+        TtsResponse response = synthesize(synthesizer, request(text), upstream(t -> 0L));
+        InputStream in = response.getAudioStream();
+        assertEquals(2, calls.size(), "the reader hasn't moved, so nothing past the window starts");
+
+        // Reading into the second segment moves the window by one
+        in.readNBytes(SENTENCE.length() + 1);
+        assertEquals(3, calls.size());
+
+        assertEquals(SENTENCE.length() * 5 - 1, in.readAllBytes().length);
+        assertEquals(6, calls.size());
+        in.close();
+    }
+
+    @Test
+    void laterSegmentFailureEndsTheStreamAfterEarlierAudio() throws Exception {
+        String text = SENTENCE + " This sentence fails and is fifty characters too.";
+
+        TtsResponse response = synthesize(synthesizer(4), request(text), upstream(t -> 0L));
+        InputStream in = response.getAudioStream();
+
+        byte[] firstSegment = in.readNBytes(SENTENCE.length());
+        assertEquals(SENTENCE, new String(firstSegment, StandardCharsets.UTF_8));
+        AudioPipe.UpstreamFailedException e = assertThrows(AudioPipe.UpstreamFailedException.class, in::read);
+        assertEquals(SENTENCE.length(), e.getBytesDelivered());
+    }
+
+    @Test
+    void firstSegmentFailureFailsTheCall() {
+        String text = "This sentence fails and is fifty characters too. " + SENTENCE;
+
+        assertThrows(TtsException.class, () -> synthesize(synthesizer(4), request(text), upstream(t -> 0L)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.imaudiopaas.tts.service.text;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SentenceSegmenterTest {
+
+    private static List<String> feed(SentenceSegmenter segmenter, String... deltas) {
+        List<String> sentences = new ArrayList<>();
+        for (String delta : deltas) {
+            sentences.addAll(segmenter.append(delta));
+        }
+        return sentences;
+    }
+
+    @Test
+    void emitsSentencesAsDeltasCompleteThem() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(200);
+
+        assertEquals(List.of(), feed(segmenter, "Hello", " wor", "ld"));
+        assertEquals(List.of("Hello world."), feed(segmenter, ". How", " are"));
+        assertEquals(List.of("How are you?"), feed(segmenter, " you? "));
+        assertNull(segmenter.flush());
+    }
+
+    @Test
+    void waitsForTheNextDeltaToTellDecimalsFromSentenceEnds() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(200);
+
+        assertEquals(List.of(), feed(segmenter, "Pi is 3."));
+        assertEquals(List.of("Pi is 3.14 roughly."), feed(segmenter, "14 roughly. "));
+    }
+
+    @Test
+    void doesNotSplitAfterAbbreviationsOrInitials() {
+        List<String> sentences = SentenceSegmenter.split("Dr. Smith met J. R. Doe, e.g. at noon. Then left.", 200);
+
+        assertEquals(List.of("Dr. Smith met J. R. Doe, e.g. at noon.", "Then left."), sentences);
+    }
+
+    @Test
+    void splitsChineseOnFullWidthAndAsciiTerminators() {
+        List<String> sentences = SentenceSegmenter.split("你好。今天天气怎么样?很好！", 200);
+
+        assertEquals(List.of("你好。", "今天天气怎么样?", "很好！"), sentences);
+    }
+
+    @Test
+    void cutsOverLongSentencesAtSoftBreaks() {
+        String text = "one two three four five six seven, eight nine ten eleven twelve thirteen";
+
+        List<String> sentences = SentenceSegmenter.split(text, 40);
+
+        assertEquals("one two three four five six seven,", sentences.get(0));
+        for (String sentence : sentences) {
+            assertTrue(sentence.length() <= 40, sentence);
+        }
+    }
+
+    @Test
+    void dropsSegmentsWithoutLettersOrDigits() {
+        assertEquals(List.of("Well…", "Done."), SentenceSegmenter.split("Well… … Done.", 200));
+    }
+}
@@ -0,0 +1,256 @@
+package com.imaudiopaas.tts.service.transcode;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.imaudiopaas.tts.core.codec.LoudnessMeter;
+import com.imaudiopaas.tts.core.codec.LoudnessNormalizer;
+import com.imaudiopaas.tts.core.codec.PcmFormat;
+import com.imaudiopaas.tts.core.codec.WavHeader;
+import com.imaudiopaas.tts.core.domain.AudioFormat;
+import com.imaudiopaas.tts.core.domain.SynthesisKey;
+import com.imaudiopaas.tts.core.domain.TtsRequest;
+import com.imaudiopaas.tts.core.domain.TtsResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class AudioTranscoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AudioTranscoder transcoder = new AudioTranscoder(meterRegistry);
+
+    private static byte[] speechLikePcm(int seconds, int sampleRate) {
+        Random random = new Random(3);
+        ByteBuffer pcm = ByteBuffer.allocate(seconds * sampleRate * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < seconds * sampleRate; i++) {
+            double t = (double) i / sampleRate;
+            // Half a second of voicing, a quarter second of pause
+            double envelope = (t % 0.75) < 0.5 ? 1 : 0;
+            double v = envelope * (5000 * Math.sin(2 * Math.PI * 150 * t) + 2000 * Math.sin(2 * Math.PI * 900 * t)
+                    + random.nextGaussian() * 150);
+            pcm.putShort((short) v);
+        }
+        return pcm.array();
+    }
+
+    private static TtsResponse pcmResponse(byte[] pcm, int sampleRate) {
+        return TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(pcm))
+                .format(AudioFormat.PCM)
+                .sampleRate(sampleRate)
+                .contentLength(pcm.length)
+                .build();
+    }
+
+    // No sample rate: delivered at the provider's rate
+    private static TtsRequest as(AudioFormat format) {
+        return TtsRequest.builder().text("hi").format(format).build();
+    }
+
+    @Test
+    void asksProvidersForPcmOnlyWhenEncodingHere() {
+        TtsRequest flac = TtsRequest.builder().text("hi").format(AudioFormat.FLAC).build();
+        TtsRequest mp3 = TtsRequest.builder().text("hi").format(AudioFormat.MP3).build();
+        TtsRequest opus = TtsRequest.builder().text("hi").format(AudioFormat.OPUS).build();
+
+        assertEquals(AudioFormat.PCM, transcoder.nativeRequest(flac).getFormat());
+        assertEquals(AudioFormat.FLAC, flac.getFormat());
+        assertSame(mp3, transcoder.nativeRequest(mp3));
+        assertSame(opus, transcoder.nativeRequest(opus));
+    }
+
+    @Test
+    void wrapsPcmInWavWithKnownLength() throws Exception {
+        byte[] pcm = speechLikePcm(1, 24000);
+        TtsResponse wav = transcoder.encode(pcmResponse(pcm, 24000), as(AudioFormat.WAV));
+
+        assertEquals(AudioFormat.WAV, wav.getFormat());
+        assertEquals(pcm.length + 44, wav.getContentLength());
+        try (InputStream in = wav.getAudioStream()) {
+            WavHeader header = WavHeader.read(in);
+            assertEquals(PcmFormat.mono16(24000), header.getFormat());
+            assertEquals(pcm.length, header.getDataSize());
+            assertArrayEquals(pcm, in.readAllBytes());
+        }
+        assertEquals(pcm.length, meterRegistry.counter("tts.transcode.bytes.in", "format", "wav").count());
+    }
+
+    @Test
+    void reencodesWavFromSelfHostedProvidersAndPassesMp3Through() throws Exception {
+        byte[] pcm = speechLikePcm(1, 16000);
+        ByteBuffer wav = ByteBuffer.allocate(44 + pcm.length);
+        wav.put(WavHeader.write(PcmFormat.mono16(16000), pcm.length)).put(pcm);
+        TtsResponse flac = transcoder.encode(TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(wav.array()))
+                .format(AudioFormat.WAV)
+                .build(), as(AudioFormat.FLAC));
+
+        assertEquals(AudioFormat.FLAC, flac.getFormat());
+        byte[] encoded = flac.getAudioStream().readAllBytes();
+        assertArrayEquals("fLaC".getBytes(), Arrays.copyOf(encoded, 4));
+        assertTrue(encoded.length < pcm.length);
+
+        TtsResponse mp3 = TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(new byte[] {1}))
+                .format(AudioFormat.MP3)
+                .build();
+        assertSame(mp3, transcoder.encode(mp3, as(AudioFormat.FLAC)));
+    }
+
+    @Test
+    void closingEarlyClosesTheProviderStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream upstream = new ByteArrayInputStream(speechLikePcm(2, 16000)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        TtsResponse flac = transcoder.encode(TtsResponse.builder()
+                .audioStream(upstream)
+                .format(AudioFormat.PCM)
+                .sampleRate(16000)
+                .build(), as(AudioFormat.FLAC));
+
+        InputStream in = flac.getAudioStream();
+        in.readNBytes(100);
+        in.close();
+
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void fillsInTheOutputRateForFormatsProducedHere() {
+        assertEquals(24000, transcoder.withOutputSettings(as(AudioFormat.WAV)).getSampleRate());
+        assertEquals(16000, transcoder.withOutputSettings(as(AudioFormat.FLAC).toBuilder().sampleRate(16000).build())
+                .getSampleRate());
+        assertNull(transcoder.withOutputSettings(as(AudioFormat.MP3)).getSampleRate());
+        assertThrows(IllegalArgumentException.class,
+                () -> transcoder.withOutputSettings(as(AudioFormat.PCM).toBuilder().sampleRate(4000).build()));
+    }
+
+    @Test
+    void resamplesAndDownmixesWavToTheRequestedRate() throws Exception {
+        // 22050 Hz stereo, as a self-hosted model might return it
+        int frames = 22050;
+        ByteBuffer wav = ByteBuffer.allocate(44 + frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put(WavHeader.write(new PcmFormat(22050, 2, 16), frames * 4L));
+        for (int i = 0; i < frames; i++) {
+            short s = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 22050.0));
+            wav.putShort(s).putShort(s);
+        }
+        TtsRequest request = as(AudioFormat.WAV).toBuilder().sampleRate(24000).build();
+        TtsResponse converted = transcoder.encode(TtsResponse.builder()
+                .audioStream(new ByteArrayInputStream(wav.array()))
+                .format(AudioFormat.WAV)
+                .build(), request);
+
+        assertEquals(24000, converted.getSampleRate());
+        assertEquals(44 + 24000 * 2, converted.getContentLength());
+        try (InputStream in = converted.getAudioStream()) {
+            WavHeader header = WavHeader.read(in);
+            assertEquals(PcmFormat.mono16(24000), header.getFormat());
+            byte[] pcm = in.readAllBytes();
+            assertEquals(24000 * 2, pcm.length);
+            // Still a 440 Hz tone of the same level, away from the edges
+            ByteBuffer samples = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 100; i < 23900; i += 37) {
+                double expected = 8000 * Math.sin(2 * Math.PI * 440 * i / 24000.0);
+                assertEquals(expected, samples.getShort(2 * i), 40, "sample " + i);
+            }
+        }
+    }
+
+    @Test
+    void pcmAlreadyAtTheOutputRateIsPassedThrough() {
+        TtsResponse pcm = pcmResponse(new byte[] {1, 2}, 24000);
+        assertSame(pcm, transcoder.encode(pcm, as(AudioFormat.PCM).toBuilder().sampleRate(24000).build()));
+    }
+
+    @Test
+    void normalizesLoudnessWhenEnabledAndKeysOnIt() throws Exception {
+        AudioTranscoder normalizing = new AudioTranscoder(meterRegistry,
+                new LoudnessNormalizer.Settings(-16, 20, -1, 5, 50, 400));
+        TtsRequest request = normalizing.withOutputSettings(as(AudioFormat.PCM));
+        assertEquals(-16.0, request.getLoudnessTarget());
+        assertNull(transcoder.withOutputSettings(as(AudioFormat.PCM)).getLoudnessTarget());
+        assertNull(normalizing.withOutputSettings(as(AudioFormat.MP3)).getLoudnessTarget());
+        assertNotEquals(SynthesisKey.of(request, null),
+                SynthesisKey.of(transcoder.withOutputSettings(as(AudioFormat.PCM)), null));
+
+        // Quiet speech at the output rate, which would otherwise pass straight through
+        byte[] quiet = speechLikePcm(10, 24000);
+        for (int i = 0; i < quiet.length; i += 2) {
+            short s = (short) (((quiet[i] & 0xFF) | (quiet[i + 1] << 8)) / 4);
+            quiet[i] = (byte) s;
+            quiet[i + 1] = (byte) (s >> 8);
+        }
+        TtsResponse normalized = normalizing.encode(pcmResponse(quiet, 24000), request);
+        byte[] pcm;
+        try (InputStream in = normalized.getAudioStream()) {
+            pcm = in.readAllBytes();
+        }
+
+        assertEquals(quiet.length, pcm.length);
+        assertEquals(quiet.length, normalized.getContentLength());
+        LoudnessMeter meter = new LoudnessMeter(24000);
+        ByteBuffer samples = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+        float[] tail = new float[5 * 24000];
+        for (int i = 0; i < tail.length; i++) {
+            tail[i] = samples.getShort(pcm.length - 2 * tail.length + 2 * i);
+        }
+        meter.add(tail, 0, tail.length);
+        assertEquals(-16, meter.integrated(), 1.0);
+    }
+
+    /**
+     * Not a microbenchmark, but enough to catch an encoder that can't keep up with real time or
+     * that allocates per chunk.
+     */
+    @Test
+    @Tag("benchmark")
+    void encodesFasterThanRealTimeWithBoundedAllocation() throws Exception {
+        int seconds = 60;
+        int sampleRate = 24000;
+        byte[] pcm = speechLikePcm(seconds, sampleRate);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        byte[] sink = new byte[8192];
+
+        for (AudioFormat format : new AudioFormat[] {AudioFormat.WAV, AudioFormat.FLAC}) {
+            // Warm up, then measure the last pass, with a pooled encoder
+            for (int pass = 0; pass < 3; pass++) {
+                long threadId = Thread.currentThread().getId();
+                long cpuBefore = threads.getCurrentThreadCpuTime();
+                long allocBefore = threads.getThreadAllocatedBytes(threadId);
+                long out = 0;
+                try (InputStream in = transcoder.encode(pcmResponse(pcm, sampleRate), as(format)).getAudioStream()) {
+                    int n;
+                    while ((n = in.read(sink)) >= 0) out += n;
+                }
+                long cpuNanos = threads.getCurrentThreadCpuTime() - cpuBefore;
+                long allocated = threads.getThreadAllocatedBytes(threadId) - allocBefore;
+                if (pass < 2) continue;
+
+                double realTimeFactor = seconds * 1e9 / Math.max(cpuNanos, 1);
+                assertTrue(out > 0, format + " produced no audio");
+                assertTrue(realTimeFactor > 20, format + " encoded only " + realTimeFactor + "x real time");
+                // The source buffer and encoder scratch space are reused: well under 1 KB per second of audio
+                assertTrue(allocated < seconds * 1024L, format + " allocated " + allocated + " bytes");
+            }
+        }
+    }
+}
@@ -79,6 +79,7 @@ export interface StatisticsDto {
     failureCount: number;
     successRate: number;
     avgLatencyMs: number;
+    circuitState: string;
 }
 
 export const getStatistics = async () => {
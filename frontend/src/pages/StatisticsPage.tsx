@@ -61,6 +61,7 @@ const StatisticsPage: React.FC = () => {
         { id: 'failureCount', label: 'Failure Count', numeric: true },
         { id: 'successRate', label: 'Success Rate', numeric: true },
         { id: 'avgLatencyMs', label: 'Avg Latency (ms)', numeric: true },
+        { id: 'circuitState', label: 'Circuit', numeric: false },
     ];
 
     return (
@@ -117,11 +118,12 @@ const StatisticsPage: React.FC = () => {
                                     <TableCell align="right">
                                         {stat.avgLatencyMs ? stat.avgLatencyMs.toFixed(2) : '0.00'}
                                     </TableCell>
+                                    <TableCell>{stat.circuitState || '-'}</TableCell>
                                 </TableRow>
                             ))}
                             {stats.length === 0 && (
                                 <TableRow>
-                                    <TableCell colSpan={6} align="center">
+                                    <TableCell colSpan={7} align="center">
                                         No statistics available
                                     </TableCell>
                                 </TableRow>